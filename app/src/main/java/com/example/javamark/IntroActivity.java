@@ -7,6 +7,8 @@ import android.widget.Button;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.javamark.storage.StorageMaintenance;
+
 /**
  * Стартовый экран для выбора функциональности приложения
  */
@@ -17,6 +19,11 @@ public class IntroActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_intro);
 
+        // Обслуживание хранилищ — один раз при запуске, а не при повторном создании экрана
+        if (savedInstanceState == null) {
+            StorageMaintenance.demoteColdRecordsAsync(this);
+        }
+
         Button btnStartGeodesic = findViewById(R.id.btn_start_geodesic);
         Button btnStartTheodolite = findViewById(R.id.btn_start_theodolite);
         Button btnStartGyroscopic = findViewById(R.id.btn_start_gyroscopic);
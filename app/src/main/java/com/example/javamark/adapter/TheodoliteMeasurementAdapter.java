@@ -12,6 +12,7 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.javamark.R;
+import com.example.javamark.model.AngleParser;
 import com.example.javamark.model.AngleValue;
 import com.example.javamark.model.StationMeasurement;
 import com.google.android.material.textfield.TextInputEditText;
@@ -185,17 +186,13 @@ public class TheodoliteMeasurementAdapter extends RecyclerView.Adapter<Theodolit
 
                 @Override
                 public void afterTextChanged(Editable s) {
-                    try {
-                        String angleString = s.toString();
-                        if (!angleString.isEmpty()) {
-                            AngleValue angle = AngleValue.parseAngle(angleString);
-                            measurement.setLeftCirclePoint1(angle);
-                            measurement.calculateAngles();
-                            updateCalculatedValues(measurement);
-                            notifyChange(measurement);
-                        }
-                    } catch (Exception e) {
-                        // Игнорируем ошибку парсинга
+                    // Пока ввод не разбирается как угол, прежнее значение остается
+                    long angle = AngleParser.parse(s);
+                    if (!AngleParser.isError(angle)) {
+                        measurement.setLeftCirclePoint1(AngleValue.fromUnits(angle));
+                        measurement.calculateAngles();
+                        updateCalculatedValues(measurement);
+                        notifyChange(measurement);
                     }
                 }
             });
@@ -209,17 +206,12 @@ public class TheodoliteMeasurementAdapter extends RecyclerView.Adapter<Theodolit
 
                 @Override
                 public void afterTextChanged(Editable s) {
-                    try {
-                        String angleString = s.toString();
-                        if (!angleString.isEmpty()) {
-                            AngleValue angle = AngleValue.parseAngle(angleString);
-                            measurement.setRightCirclePoint1(angle);
-                            measurement.calculateAngles();
-                            updateCalculatedValues(measurement);
-                            notifyChange(measurement);
-                        }
-                    } catch (Exception e) {
-                        // Игнорируем ошибку парсинга
+                    long angle = AngleParser.parse(s);
+                    if (!AngleParser.isError(angle)) {
+                        measurement.setRightCirclePoint1(AngleValue.fromUnits(angle));
+                        measurement.calculateAngles();
+                        updateCalculatedValues(measurement);
+                        notifyChange(measurement);
                     }
                 }
             });
@@ -234,17 +226,12 @@ public class TheodoliteMeasurementAdapter extends RecyclerView.Adapter<Theodolit
 
                 @Override
                 public void afterTextChanged(Editable s) {
-                    try {
-                        String angleString = s.toString();
-                        if (!angleString.isEmpty()) {
-                            AngleValue angle = AngleValue.parseAngle(angleString);
-                            measurement.setLeftCirclePoint2(angle);
-                            measurement.calculateAngles();
-                            updateCalculatedValues(measurement);
-                            notifyChange(measurement);
-                        }
-                    } catch (Exception e) {
-                        // Игнорируем ошибку парсинга
+                    long angle = AngleParser.parse(s);
+                    if (!AngleParser.isError(angle)) {
+                        measurement.setLeftCirclePoint2(AngleValue.fromUnits(angle));
+                        measurement.calculateAngles();
+                        updateCalculatedValues(measurement);
+                        notifyChange(measurement);
                     }
                 }
             });
@@ -258,17 +245,12 @@ public class TheodoliteMeasurementAdapter extends RecyclerView.Adapter<Theodolit
 
                 @Override
                 public void afterTextChanged(Editable s) {
-                    try {
-                        String angleString = s.toString();
-                        if (!angleString.isEmpty()) {
-                            AngleValue angle = AngleValue.parseAngle(angleString);
-                            measurement.setRightCirclePoint2(angle);
-                            measurement.calculateAngles();
-                            updateCalculatedValues(measurement);
-                            notifyChange(measurement);
-                        }
-                    } catch (Exception e) {
-                        // Игнорируем ошибку парсинга
+                    long angle = AngleParser.parse(s);
+                    if (!AngleParser.isError(angle)) {
+                        measurement.setRightCirclePoint2(AngleValue.fromUnits(angle));
+                        measurement.calculateAngles();
+                        updateCalculatedValues(measurement);
+                        notifyChange(measurement);
                     }
                 }
             });
@@ -283,17 +265,12 @@ public class TheodoliteMeasurementAdapter extends RecyclerView.Adapter<Theodolit
 
                 @Override
                 public void afterTextChanged(Editable s) {
-                    try {
-                        String angleString = s.toString();
-                        if (!angleString.isEmpty()) {
-                            AngleValue angle = AngleValue.parseAngle(angleString);
-                            measurement.setSlopeAngle(angle);
-                            measurement.calculateHorizontalDistance();
-                            updateCalculatedValues(measurement);
-                            notifyChange(measurement);
-                        }
-                    } catch (Exception e) {
-                        // Игнорируем ошибку парсинга
+                    long angle = AngleParser.parse(s);
+                    if (!AngleParser.isError(angle)) {
+                        measurement.setSlopeAngle(AngleValue.fromUnits(angle));
+                        measurement.calculateHorizontalDistance();
+                        updateCalculatedValues(measurement);
+                        notifyChange(measurement);
                     }
                 }
             });
@@ -2,12 +2,15 @@ package com.example.javamark.calculator;
 
 import android.util.Log;
 
-import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.Angles;
 import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.GyroscopicMeasurement.Angle;
 import android.content.Context;
 import android.widget.Toast;
 /**
- * Класс для выполнения расчётов гироскопического ориентирования
+ * Класс для выполнения расчётов гироскопического ориентирования.
+ * Углы читаются из ячеек измерения и вычисляются в целочисленном представлении ({@link Angles}),
+ * поэтому расчет не создает объектов
  */
 public class GyroscopicCalculator {
     private static final String TAG = "GyroscopicCalculator";
@@ -34,8 +37,6 @@ public class GyroscopicCalculator {
             measurement.setN0Prime(n0Prime);
             measurement.setN0DoublePrime(n0DoublePrime);
             measurement.setN0(n0);
-
-            Log.d(TAG, "Нуль торсиона: n0' = " + n0Prime + ", n0'' = " + n0DoublePrime + ", n0 = " + n0);
         } catch (Exception e) {
             Log.e(TAG, "Ошибка при вычислении нуля торсиона: " + e.getMessage(), e);
         }
@@ -46,23 +47,25 @@ public class GyroscopicCalculator {
      */
     public void calculateEquilibrium() {
         try {
-            // N0' = (N1 + 2*N2 + N3) / 4
-            double n1Decimal = measurement.getN1().toDecimalDegrees();
-            double n2Decimal = measurement.getN2().toDecimalDegrees();
-            double n3Decimal = measurement.getN3().toDecimalDegrees();
-            double n4Decimal = measurement.getN4().toDecimalDegrees();
-
-            double n0PrimeDecimal = (n1Decimal + 2 * n2Decimal + n3Decimal) / 4.0;
-            double n0DoublePrimeDecimal = (n2Decimal + 2 * n3Decimal + n4Decimal) / 4.0;
-            double n0Decimal = (n0PrimeDecimal + n0DoublePrimeDecimal) / 2.0;
-
-            measurement.setN0Prime(AngleValue.fromDecimalDegrees(n0PrimeDecimal));
-            measurement.setN0DoublePrime(AngleValue.fromDecimalDegrees(n0DoublePrimeDecimal));
-            measurement.setN0(AngleValue.fromDecimalDegrees(n0Decimal));
-
-            Log.d(TAG, "Положение равновесия ЧЭ: N0' = " + measurement.getN0Prime() +
-                    ", N0'' = " + measurement.getN0DoublePrime() +
-                    ", N0 = " + measurement.getN0());
+            if (!measurement.hasAngle(Angle.N1) || !measurement.hasAngle(Angle.N2)
+                    || !measurement.hasAngle(Angle.N3) || !measurement.hasAngle(Angle.N4)) {
+                Log.e(TAG, "Отсчеты N1-N4 не заданы, невозможно вычислить положение равновесия");
+                return;
+            }
+            long n1 = measurement.getAngle(Angle.N1);
+            long n2 = measurement.getAngle(Angle.N2);
+            long n3 = measurement.getAngle(Angle.N3);
+            long n4 = measurement.getAngle(Angle.N4);
+
+            // N0' = (N1 + 2*N2 + N3) / 4, N0'' = (N2 + 2*N3 + N4) / 4
+            // N0 = (N0' + N0'') / 2 — по неокругленным N0' и N0''
+            long n0Prime = Angles.divide(n1 + 2 * n2 + n3, 4);
+            long n0DoublePrime = Angles.divide(n2 + 2 * n3 + n4, 4);
+            long n0 = Angles.divide(n1 + 3 * n2 + 3 * n3 + n4, 8);
+
+            measurement.setAngle(Angle.N0_PRIME, n0Prime);
+            measurement.setAngle(Angle.N0_DOUBLE_PRIME, n0DoublePrime);
+            measurement.setAngle(Angle.N0, n0);
         } catch (Exception e) {
             Log.e(TAG, "Ошибка при вычислении положения равновесия ЧЭ: " + e.getMessage(), e);
         }
@@ -74,63 +77,21 @@ public class GyroscopicCalculator {
     public void calculateDirection() {
         try {
             // N' - для первой пары отсчетов (КЛ1 и КП1)
-            AngleValue kl1 = measurement.getKL1();
-            AngleValue kp1 = measurement.getKP1();
-
-            if (kl1 != null && kp1 != null) {
-                // Сначала преобразуем оба угла в десятичные градусы для более точных вычислений
-                double kl1DecimalDegrees = kl1.toDecimalDegrees();
-                double kp1DecimalDegrees = kp1.toDecimalDegrees();
-
-                // Вычисляем среднее значение
-                double nPrimeDecimalDegrees = (kl1DecimalDegrees + kp1DecimalDegrees) / 2.0;
-
-                // Создаем AngleValue из десятичных градусов
-                AngleValue nPrime = AngleValue.fromDecimalDegrees(nPrimeDecimalDegrees);
-                measurement.setNPrime(nPrime);
-
-                // Отладочная информация
-                Log.d(TAG, "N' вычисление: (" + kl1 + " + " + kp1 + ") / 2 = " + nPrime);
+            if (measurement.hasAngle(Angle.KL1) && measurement.hasAngle(Angle.KP1)) {
+                measurement.setAngle(Angle.N_PRIME,
+                        Angles.mean(measurement.getAngle(Angle.KL1), measurement.getAngle(Angle.KP1)));
             }
 
             // N'' - аналогично для КЛ2 и КП2
-            AngleValue kl2 = measurement.getKL2();
-            AngleValue kp2 = measurement.getKP2();
-
-            if (kl2 != null && kp2 != null) {
-                // Сначала преобразуем оба угла в десятичные градусы для более точных вычислений
-                double kl2DecimalDegrees = kl2.toDecimalDegrees();
-                double kp2DecimalDegrees = kp2.toDecimalDegrees();
-
-                // Вычисляем среднее значение
-                double nDoublePrimeDecimalDegrees = (kl2DecimalDegrees + kp2DecimalDegrees) / 2.0;
-
-                // Создаем AngleValue из десятичных градусов
-                AngleValue nDoublePrime = AngleValue.fromDecimalDegrees(nDoublePrimeDecimalDegrees);
-                measurement.setNDoublePrime(nDoublePrime);
-
-                // Отладочная информация
-                Log.d(TAG, "N'' вычисление: (" + kl2 + " + " + kp2 + ") / 2 = " + nDoublePrime);
+            if (measurement.hasAngle(Angle.KL2) && measurement.hasAngle(Angle.KP2)) {
+                measurement.setAngle(Angle.N_DOUBLE_PRIME,
+                        Angles.mean(measurement.getAngle(Angle.KL2), measurement.getAngle(Angle.KP2)));
             }
 
             // N = (N' + N'') / 2 - всегда рассчитываем, даже если разница больше допустимой
-            if (measurement.getNPrime() != null && measurement.getNDoublePrime() != null) {
-                double nPrimeDecimal = measurement.getNPrime().toDecimalDegrees();
-                double nDoublePrimeDecimal = measurement.getNDoublePrime().toDecimalDegrees();
-                double nDecimal = (nPrimeDecimal + nDoublePrimeDecimal) / 2.0;
-
-                AngleValue n = AngleValue.fromDecimalDegrees(nDecimal);
-                measurement.setN(n);
-
-                // Отладочная информация
-                double differenceInDegrees = Math.abs(nPrimeDecimal - nDoublePrimeDecimal);
-                double differenceInSeconds = differenceInDegrees * 3600;
-
-                Log.d(TAG, "Примычное направление: N' = " + measurement.getNPrime() +
-                        ", N'' = " + measurement.getNDoublePrime() +
-                        ", |N' - N''| = " + String.format("%.1f", differenceInSeconds) + "\" " +
-                        (differenceInSeconds <= 30.0 ? "✓" : "✗") +
-                        ", N = " + n);
+            if (measurement.hasAngle(Angle.N_PRIME) && measurement.hasAngle(Angle.N_DOUBLE_PRIME)) {
+                measurement.setAngle(Angle.N,
+                        Angles.mean(measurement.getAngle(Angle.N_PRIME), measurement.getAngle(Angle.N_DOUBLE_PRIME)));
             }
         } catch (Exception e) {
             Log.e(TAG, "Ошибка при вычислении примычного направления: " + e.getMessage(), e);
@@ -139,8 +100,8 @@ public class GyroscopicCalculator {
     }
 
     /**
-     * Полностью переработанный метод расчета поправки за закручивание торсиона
-     * без использования промежуточных AngleValue для сложения
+     * Расчет поправки за закручивание торсиона в целочисленных углах ({@link Angles}).
+     * ε вычисляется по неокругленным ψt и ψk
      */
     public void calculateTorsionCorrection() {
         try {
@@ -150,25 +111,15 @@ public class GyroscopicCalculator {
             }
 
             // 1. Расчет ψt = t × (n₀ - nₖ)
-            double tDecimalDegrees = measurement.getT().toDecimalDegrees();
-            double n0Value = measurement.getN0Value();
-            double nkValue = measurement.getNkValue();
-            double difference = n0Value - nkValue;
-
-            // Вычисляем ψt в десятичных градусах
-            double psiTDecimal = tDecimalDegrees * difference;
-
-            // Отладочное сообщение
-            String logMsg1 = String.format("ψt вычисление: %.6f° × (%.4f - %.4f = %.4f) = %.6f°",
-                    tDecimalDegrees, n0Value, nkValue, difference, psiTDecimal);
-            Log.d(TAG, logMsg1);
-
-            // Сохраняем ψt в модели
-            AngleValue psiT = AngleValue.fromDecimalDegrees(psiTDecimal);
-            measurement.setPsiT(psiT);
+            if (!measurement.hasAngle(Angle.T)) {
+                Log.e(TAG, "t не задано, невозможно продолжить вычисления");
+                return;
+            }
+            double psiTExact = measurement.getAngle(Angle.T) * (measurement.getN0Value() - measurement.getNkValue());
+            measurement.setAngle(Angle.PSI_T, Angles.round(psiTExact));
 
             // 2. Получаем и сохраняем Nk как среднее между Nk' и Nk''
-            if (measurement.getNkPrime() == null || measurement.getNkDoublePrime() == null) {
+            if (!measurement.hasAngle(Angle.NK_PRIME) || !measurement.hasAngle(Angle.NK_DOUBLE_PRIME)) {
                 Log.e(TAG, "Nk' или Nk'' равны null, невозможно продолжить вычисления");
                 if (context != null) {
                     Toast.makeText(context, "Ошибка: Nk' или Nk'' не заданы", Toast.LENGTH_LONG).show();
@@ -176,15 +127,11 @@ public class GyroscopicCalculator {
                 return;
             }
 
-            double nkPrimeDecimal = measurement.getNkPrime().toDecimalDegrees();
-            double nkDoublePrimeDecimal = measurement.getNkDoublePrime().toDecimalDegrees();
-            double nkDecimal = (nkPrimeDecimal + nkDoublePrimeDecimal) / 2.0;
-
-            AngleValue nk = AngleValue.fromDecimalDegrees(nkDecimal);
-            measurement.setNk(nk);
+            long nkSum = measurement.getAngle(Angle.NK_PRIME) + measurement.getAngle(Angle.NK_DOUBLE_PRIME);
+            measurement.setAngle(Angle.NK, Angles.divide(nkSum, 2));
 
             // 3. Расчет ψk = Nk - N0
-            if (measurement.getN0() == null) {
+            if (!measurement.hasAngle(Angle.N0)) {
                 Log.e(TAG, "N0 равен null, невозможно продолжить вычисления");
                 if (context != null) {
                     Toast.makeText(context, "Ошибка: N0 не задан", Toast.LENGTH_LONG).show();
@@ -192,43 +139,22 @@ public class GyroscopicCalculator {
                 return;
             }
 
-            double n0Decimal = measurement.getN0().toDecimalDegrees();
-            double psiKDecimal = nkDecimal - n0Decimal;
-
-            // Отладочное сообщение
-            String logMsg2 = String.format("ψk вычисление: %.4f° - %.4f° = %.4f°",
-                    nkDecimal, n0Decimal, psiKDecimal);
-            Log.d(TAG, logMsg2);
-
-            // Сохраняем ψk в модели
-            AngleValue psiK = AngleValue.fromDecimalDegrees(psiKDecimal);
-            measurement.setPsiK(psiK);
+            // Удвоенное ψk точно в целых: 2ψk = (Nk' + Nk'') - 2N0
+            long psiKTwice = nkSum - 2 * measurement.getAngle(Angle.N0);
+            measurement.setAngle(Angle.PSI_K, Angles.divide(psiKTwice, 2));
 
-            // 4. Прямой расчет ε = (ψt + ψk) / D в десятичных градусах
+            // 4. ε = (ψt + ψk) / D
             double D = measurement.getD();
-
-            // КЛЮЧЕВОЕ ИЗМЕНЕНИЕ: Работаем с десятичными градусами, а не с объектами AngleValue
-            double epsilonDecimal = (psiTDecimal + psiKDecimal) / D;
-
-            // Отладочное сообщение с подробностями
-            String logMsg3 = String.format("ε вычисление: (%.6f° + %.6f° = %.6f°) / %.2f = %.6f°",
-                    psiTDecimal, psiKDecimal, (psiTDecimal + psiKDecimal), D, epsilonDecimal);
-            Log.d(TAG, logMsg3);
+            double epsilonExact = (psiTExact + psiKTwice / 2.0) / D;
+            long epsilon = Angles.round(epsilonExact);
+            measurement.setAngle(Angle.EPSILON, epsilon);
 
             if (context != null) {
-                Toast.makeText(context, logMsg3, Toast.LENGTH_LONG).show();
+                Toast.makeText(context, String.format("ε вычисление: (%.6f° + %.6f° = %.6f°) / %.2f = %.6f°",
+                        psiTExact / Angles.UNITS_PER_DEGREE, psiKTwice / 2.0 / Angles.UNITS_PER_DEGREE,
+                        (psiTExact + psiKTwice / 2.0) / Angles.UNITS_PER_DEGREE, D,
+                        Angles.toDecimalDegrees(epsilon)), Toast.LENGTH_LONG).show();
             }
-
-            // Создаем AngleValue из десятичных градусов
-            AngleValue epsilon = AngleValue.fromDecimalDegrees(epsilonDecimal);
-            measurement.setEpsilon(epsilon);
-
-            // Отладочное сообщение с итоговыми результатами
-            Log.d(TAG, "Результаты поправки за закручивание торсиона: " +
-                    "ψt = " + psiT.toString() + " (" + psiTDecimal + "°), " +
-                    "ψk = " + psiK.toString() + " (" + psiKDecimal + "°), " +
-                    "ε = " + epsilon.toString() + " (" + epsilonDecimal + "°)");
-
         } catch (Exception e) {
             Log.e(TAG, "Ошибка при вычислении поправки за закручивание торсиона: " + e.getMessage(), e);
             e.printStackTrace();
@@ -239,36 +165,21 @@ public class GyroscopicCalculator {
             }
         }
     }
-    /**
-     * Обрабатывает отрицательные углы, сохраняя знак
-     */
-    private AngleValue handleNegativeAngle(double decimalDegrees) {
-        return AngleValue.fromDecimalDegrees(decimalDegrees);
-    }
 
     /**
      * Вычисляет гироскопический азимут
      */
     public void calculateGyroscopicAzimuth() {
         try {
-            // Г = N - N0 + ε
-            double nDecimal = measurement.getN().toDecimalDegrees();
-            double n0Decimal = measurement.getN0().toDecimalDegrees();
-            double epsilonDecimal = measurement.getEpsilon().toDecimalDegrees();
-
-            double azimuthDecimal = nDecimal - n0Decimal + epsilonDecimal;
-
-            // Приведение к диапазону [0, 360)
-            while (azimuthDecimal < 0) {
-                azimuthDecimal += 360.0;
-            }
-            while (azimuthDecimal >= 360.0) {
-                azimuthDecimal -= 360.0;
+            if (!measurement.hasAngle(Angle.N) || !measurement.hasAngle(Angle.N0)
+                    || !measurement.hasAngle(Angle.EPSILON)) {
+                Log.e(TAG, "N, N0 или ε не заданы, невозможно вычислить гироскопический азимут");
+                return;
             }
-
-            measurement.setGyroscopicAzimuth(AngleValue.fromDecimalDegrees(azimuthDecimal));
-
-            Log.d(TAG, "Гироскопический азимут: Г = " + measurement.getGyroscopicAzimuth());
+            // Г = N - N0 + ε, приведенный к диапазону [0, 360)
+            long azimuth = Angles.normalize(measurement.getAngle(Angle.N) - measurement.getAngle(Angle.N0)
+                    + measurement.getAngle(Angle.EPSILON));
+            measurement.setAngle(Angle.GYROSCOPIC_AZIMUTH, azimuth);
         } catch (Exception e) {
             Log.e(TAG, "Ошибка при вычислении гироскопического азимута: " + e.getMessage(), e);
         }
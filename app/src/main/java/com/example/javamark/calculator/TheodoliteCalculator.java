@@ -1,9 +1,13 @@
 package com.example.javamark.calculator;
 
 import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.Angles;
+import com.example.javamark.model.StationColumns;
 import com.example.javamark.model.StationMeasurement;
 import com.example.javamark.model.TheodoliteJournal;
 
+import java.util.List;
+
 /**
  * Класс для выполнения расчётов теодолитного хода
  */
@@ -19,12 +23,25 @@ public class TheodoliteCalculator {
      * Выполняет все вычисления для журнала теодолитного хода
      */
     public void calculateAll() {
-        if (journal.getMeasurements() == null || journal.getMeasurements().isEmpty()) {
+        List<StationMeasurement> measurements = journal.getMeasurements();
+        if (measurements == null || measurements.isEmpty()) {
             return;
         }
 
-        for (StationMeasurement measurement : journal.getMeasurements()) {
-            calculateMeasurement(measurement);
+        if (measurements instanceof StationColumns) {
+            // Весь ход пересчитывается по столбцам, без создания объектов станций
+            StationColumns columns = (StationColumns) measurements;
+            columns.calculateAngles();
+            columns.calculateHorizontalDistances();
+            return;
+        }
+        for (int i = 0; i < measurements.size(); i++) {
+            StationMeasurement measurement = measurements.get(i);
+            if (measurement != null) {
+                calculateMeasurement(measurement);
+                // Списки, хранящие станции вне объектов, получают результат обратно
+                measurements.set(i, measurement);
+            }
         }
     }
 
@@ -46,19 +63,16 @@ public class TheodoliteCalculator {
      * @return массив из двух значений: [MO, verticalAngle]
      */
     public static AngleValue[] calculateVerticalAngle(AngleValue leftCircle, AngleValue rightCircle) {
-        double kl = leftCircle.toDecimalDegrees();
-        double kp = rightCircle.toDecimalDegrees();
+        long kl = leftCircle.toUnits();
+        long kp = rightCircle.toUnits();
 
         // Вычисление места нуля MO = (КП + КЛ) / 2
-        double mo = (kp + kl) / 2.0;
+        long mo = Angles.mean(kp, kl);
 
         // Вычисление вертикального угла ν = MO - КП
-        double v = mo - kp;
+        long v = Angles.subtract(mo, kp);
 
-        AngleValue moAngle = AngleValue.fromDecimalDegrees(mo);
-        AngleValue verticalAngle = AngleValue.fromDecimalDegrees(v);
-
-        return new AngleValue[] {moAngle, verticalAngle};
+        return new AngleValue[] {AngleValue.fromUnits(mo), AngleValue.fromUnits(v)};
     }
 
     /**
@@ -69,12 +83,7 @@ public class TheodoliteCalculator {
      * @return true, если разность не превышает допустимую
      */
     public static boolean checkCircleDifference(AngleValue leftCircle, AngleValue rightCircle, double allowableDifference) {
-        double kl = leftCircle.toDecimalDegrees();
-        double kp = rightCircle.toDecimalDegrees();
-
-        // Преобразуем допустимую разность из минут в градусы
-        double allowableDifferenceInDegrees = allowableDifference / 60.0;
-
-        return Math.abs(kl - kp) <= allowableDifferenceInDegrees;
+        long difference = Angles.abs(leftCircle.toUnits() - rightCircle.toUnits());
+        return Angles.compare(difference, Angles.fromMinutes(allowableDifference)) <= 0;
     }
 }
\ No newline at end of file
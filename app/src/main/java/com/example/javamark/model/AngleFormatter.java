@@ -0,0 +1,198 @@
+package com.example.javamark.model;
+
+/**
+ * Запись угла (десятые доли секунды, {@link Angles}) в текст без String.format:
+ * символы пишутся прямо в переданный char[] или StringBuilder, числа не упаковываются в объекты.
+ * <p>
+ * Форматы:
+ * <ul>
+ *     <li>{@link Style#DMS} — как {@link AngleValue#toString()}: -123°45′7.8″;</li>
+ *     <li>{@link Style#DECIMAL_DEGREES} — 123.755000°;</li>
+ *     <li>{@link Style#GONS} — 137.5000g.</li>
+ * </ul>
+ * Знак минус ставится перед всем углом, десятичный разделитель — точка, округление от нуля.
+ * Форматтер хранит буфер для записи в StringBuilder, поэтому не потокобезопасен:
+ * его создают на экран или отчет и используют повторно
+ */
+public final class AngleFormatter {
+    public enum Style {
+        DMS,             // Градусы, минуты, секунды; decimals — знаки после запятой у секунд
+        DECIMAL_DEGREES, // Десятичные градусы
+        GONS             // Гоны (400 на круг)
+    }
+
+    // Наибольшее количество знаков после запятой
+    public static final int MAX_DECIMALS = 6;
+    // Наибольшая длина записи любого угла в любом формате
+    public static final int MAX_LENGTH = 32;
+
+    private static final long UNITS_PER_GON = Angles.UNITS_PER_DEGREE * 9 / 10;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private final Style style;
+    private final int decimals;
+    private final char[] scratch = new char[MAX_LENGTH];
+
+    /**
+     * @param decimals Знаков после запятой: у секунд для DMS, у градусов или гонов для остальных форматов
+     */
+    public AngleFormatter(Style style, int decimals) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Количество знаков после запятой должно быть от 0 до " + MAX_DECIMALS);
+        }
+        this.style = style;
+        this.decimals = decimals;
+    }
+
+    public Style getStyle() {
+        return style;
+    }
+
+    public int getDecimals() {
+        return decimals;
+    }
+
+    /**
+     * Записывает угол в buffer начиная с offset
+     * @return Позиция за последним записанным символом
+     */
+    public int format(long angle, char[] buffer, int offset) {
+        boolean negative = angle < 0;
+        // Модуль Long.MIN_VALUE не представим; такие углы не встречаются, но запись не должна ломаться
+        long magnitude = negative ? -Math.max(angle, -Long.MAX_VALUE) : angle;
+        switch (style) {
+            case DECIMAL_DEGREES:
+                return writeDecimal(negative, magnitude, Angles.UNITS_PER_DEGREE, '°', buffer, offset);
+            case GONS:
+                return writeDecimal(negative, magnitude, UNITS_PER_GON, 'g', buffer, offset);
+            default:
+                return writeDms(negative, magnitude, buffer, offset);
+        }
+    }
+
+    /**
+     * Дописывает угол в конец out
+     */
+    public StringBuilder append(StringBuilder out, long angle) {
+        return out.append(scratch, 0, format(angle, scratch, 0));
+    }
+
+    /**
+     * Угол в виде строки; для таблиц и отчетов лучше {@link #append} или {@link #formatColumn}
+     */
+    public String format(long angle) {
+        return new String(scratch, 0, format(angle, scratch, 0));
+    }
+
+    /**
+     * Записывает подряд в buffer углы столбца angle всех строк журнала: текст строки row
+     * занимает buffer[ends[row - 1]..ends[row]) (для первой строки — с нуля). Незаданные углы
+     * и строки без станций записываются как missing. Размер buffer — не меньше
+     * {@code columns.size() * }{@link #MAX_LENGTH}, если missing не длиннее MAX_LENGTH
+     * @return Общая длина записанного текста
+     */
+    public int formatColumn(StationColumns columns, StationColumns.Angle angle, String missing,
+                            char[] buffer, int[] ends) {
+        int rows = columns.size();
+        int position = 0;
+        for (int row = 0; row < rows; row++) {
+            if (columns.hasStation(row) && columns.hasAngle(row, angle)) {
+                position = format(columns.getAngle(row, angle), buffer, position);
+            } else {
+                missing.getChars(0, missing.length(), buffer, position);
+                position += missing.length();
+            }
+            ends[row] = position;
+        }
+        return position;
+    }
+
+    /**
+     * Запись градусов, минут и секунд в виде {@link AngleValue#toString()} по уже разобранным
+     * составляющим (модули, секунды — в десятых долях)
+     */
+    static int formatDms(boolean negative, long degrees, long minutes, long tenthsOfSecond,
+                         char[] buffer, int offset) {
+        if (negative) {
+            buffer[offset++] = '-';
+        }
+        offset = writeDigits(degrees, buffer, offset);
+        buffer[offset++] = '°';
+        offset = writeDigits(minutes, buffer, offset);
+        buffer[offset++] = '′';
+        offset = writeDigits(tenthsOfSecond / Angles.UNITS_PER_SECOND, buffer, offset);
+        buffer[offset++] = '.';
+        buffer[offset++] = (char) ('0' + tenthsOfSecond % Angles.UNITS_PER_SECOND);
+        buffer[offset++] = '″';
+        return offset;
+    }
+
+    private int writeDms(boolean negative, long magnitude, char[] buffer, int offset) {
+        if (decimals == 0) {
+            // Секунды округляются целиком, с переносом в минуты и градусы
+            magnitude = (magnitude + Angles.UNITS_PER_SECOND / 2) / Angles.UNITS_PER_SECOND * Angles.UNITS_PER_SECOND;
+        }
+        long degrees = magnitude / Angles.UNITS_PER_DEGREE;
+        long minutes = magnitude % Angles.UNITS_PER_DEGREE / Angles.UNITS_PER_MINUTE;
+        long tenths = magnitude % Angles.UNITS_PER_MINUTE;
+        if (negative && magnitude != 0) {
+            buffer[offset++] = '-';
+        }
+        offset = writeDigits(degrees, buffer, offset);
+        buffer[offset++] = '°';
+        offset = writeDigits(minutes, buffer, offset);
+        buffer[offset++] = '′';
+        offset = writeDigits(tenths / Angles.UNITS_PER_SECOND, buffer, offset);
+        if (decimals > 0) {
+            // Представление точнее 0,1″ не хранит: остальные знаки — нули
+            buffer[offset++] = '.';
+            buffer[offset++] = (char) ('0' + tenths % Angles.UNITS_PER_SECOND);
+            for (int i = 1; i < decimals; i++) {
+                buffer[offset++] = '0';
+            }
+        }
+        buffer[offset++] = '″';
+        return offset;
+    }
+
+    private int writeDecimal(boolean negative, long magnitude, long unitsPerWhole, char symbol,
+                             char[] buffer, int offset) {
+        long whole = magnitude / unitsPerWhole;
+        // Остаток меньше unitsPerWhole, поэтому умножение на 10^6 не переполняется
+        long scale = POWERS_OF_TEN[decimals];
+        long fraction = (magnitude % unitsPerWhole * scale * 2 + unitsPerWhole) / (unitsPerWhole * 2);
+        if (fraction == scale) {
+            whole++;
+            fraction = 0;
+        }
+        if (negative && (whole != 0 || fraction != 0)) {
+            buffer[offset++] = '-';
+        }
+        offset = writeDigits(whole, buffer, offset);
+        if (decimals > 0) {
+            buffer[offset++] = '.';
+            for (int i = decimals - 1; i >= 0; i--) {
+                buffer[offset + i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            offset += decimals;
+        }
+        buffer[offset++] = symbol;
+        return offset;
+    }
+
+    /**
+     * Десятичная запись неотрицательного числа
+     */
+    private static int writeDigits(long value, char[] buffer, int offset) {
+        int length = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            length++;
+        }
+        for (int i = offset + length - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + length;
+    }
+}
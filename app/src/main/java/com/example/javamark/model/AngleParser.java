@@ -0,0 +1,305 @@
+package com.example.javamark.model;
+
+/**
+ * Разбор угла из текста за один проход без создания объектов: результат — угол
+ * в десятых долях секунды ({@link Angles}) или код ошибки с позицией в том же long.
+ * Исключения не выбрасываются, поэтому разбор можно выполнять на каждое нажатие клавиши.
+ * <p>
+ * Поддерживаемые форматы:
+ * <ul>
+ *     <li>градусы, минуты, секунды со знаками: 123°45′07.8″, 123°45'07.8", 123°45′;</li>
+ *     <li>через пробелы или двоеточия: 123 45 7.8, 123:45:7.8;</li>
+ *     <li>десятичные градусы: 123.755 или 123.755°;</li>
+ *     <li>упакованные градусы ГГГ.ММСС (123.4507 = 123°45′07″), см. {@link #parse(CharSequence, boolean)};</li>
+ *     <li>гоны: 137.5g, 137.5gon, 137.5ᵍ.</li>
+ * </ul>
+ * Знак минус ставится перед всем углом. Запятая принимается как десятичный разделитель.
+ * Дробная часть допускается только у последней составляющей, минуты и секунды — меньше 60.
+ * Результат округляется до 0,1″ от нуля
+ */
+public final class AngleParser {
+    // Коды ошибок
+    public static final int ERROR_EMPTY = 1;                // Нет ни одной цифры
+    public static final int ERROR_UNEXPECTED_CHARACTER = 2; // Недопустимый символ
+    public static final int ERROR_TOO_MANY_COMPONENTS = 3;  // Больше трех составляющих или нарушен их порядок
+    public static final int ERROR_OUT_OF_RANGE = 4;         // Минуты или секунды не меньше 60
+    public static final int ERROR_TOO_LARGE = 5;            // Угол не помещается в представление
+
+    // Признак ошибки в старших 24 битах: углы из не более чем 12 цифр до них не достают;
+    // далее 8 бит кода и 32 бита позиции
+    private static final long ERROR_FLAG = Long.MIN_VALUE;
+    private static final long ERROR_MASK = 0xFFFFFF0000000000L;
+
+    // Наибольшая целая часть составляющей и количество учитываемых цифр дробной части
+    private static final long MAX_INTEGER = 999_999_999_999L;
+    private static final int MAX_FRACTION_DIGITS = 12;
+    private static final long[] POWERS_OF_TEN = new long[MAX_FRACTION_DIGITS + 1];
+
+    // Составляющие угла
+    private static final int DEGREES = 0;
+    private static final int MINUTES = 1;
+    private static final int SECONDS = 2;
+    private static final int GONS = 3;
+    private static final long[] UNITS = {Angles.UNITS_PER_DEGREE, Angles.UNITS_PER_MINUTE, Angles.UNITS_PER_SECOND,
+            Angles.UNITS_PER_DEGREE * 9 / 10};
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private AngleParser() {
+    }
+
+    /**
+     * Разбирает угол; одно число с дробной частью без знака единиц — десятичные градусы
+     * @return Угол в десятых долях секунды или ошибка (см. {@link #isError(long)})
+     */
+    public static long parse(CharSequence text) {
+        return parse(text, false);
+    }
+
+    /**
+     * Разбирает угол
+     * @param packed true, если одно число с дробной частью без знака единиц записано
+     *               как ГГГ.ММСС (123.4507 = 123°45′07″, 123.45 = 123°45′), иначе как десятичные градусы
+     * @return Угол в десятых долях секунды или ошибка (см. {@link #isError(long)})
+     */
+    public static long parse(CharSequence text, boolean packed) {
+        int length = text.length();
+        int i = skipSpaces(text, 0, length);
+        boolean negative = false;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '−' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) != '+';
+            i = skipSpaces(text, i + 1, length);
+        }
+
+        long total = 0;
+        int components = 0;
+        int lastUnit = -1;
+        boolean fractionSeen = false;
+        boolean symbolSeen = false;
+        // Последняя составляющая сохраняется до конца разбора: ее смысл может зависеть от того, что за ней
+        long integer = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean hasFraction = false;
+        int numberStart = 0;
+
+        while (i < length) {
+            char c = text.charAt(i);
+            if (!isDigit(c) && c != '.' && c != ',') {
+                return error(ERROR_UNEXPECTED_CHARACTER, i);
+            }
+            if (fractionSeen) {
+                // Дробная часть была не у последней составляющей
+                return error(ERROR_UNEXPECTED_CHARACTER, i);
+            }
+            // Число: целая часть, затем необязательная дробная
+            numberStart = i;
+            integer = 0;
+            for (; i < length; i++) {
+                c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (integer > MAX_INTEGER / 10) {
+                    return error(ERROR_TOO_LARGE, numberStart);
+                }
+                integer = integer * 10 + (c - '0');
+            }
+            boolean anyDigit = i > numberStart;
+            fraction = 0;
+            fractionDigits = 0;
+            if (i < length && (c == '.' || c == ',')) {
+                for (i++; i < length; i++) {
+                    c = text.charAt(i);
+                    if (c < '0' || c > '9') {
+                        break;
+                    }
+                    if (fractionDigits < MAX_FRACTION_DIGITS) {
+                        fraction = fraction * 10 + (c - '0');
+                        fractionDigits++;
+                    }
+                    anyDigit = true;
+                }
+            }
+            hasFraction = fractionDigits > 0;
+            if (!anyDigit) {
+                return error(ERROR_EMPTY, numberStart);
+            }
+
+            // Единицы числа: по знаку после него, без знака — следующие по порядку
+            int unit = lastUnit + 1;
+            int unitEnd = i;
+            if (i < length) {
+                c = text.charAt(i);
+                if (c == '°') {
+                    unit = DEGREES;
+                    unitEnd = i + 1;
+                } else if (c == '′' || c == '\'') {
+                    unit = MINUTES;
+                    unitEnd = i + 1;
+                    if (c == '\'' && i + 1 < length && text.charAt(i + 1) == '\'') {
+                        unit = SECONDS;
+                        unitEnd = i + 2;
+                    }
+                } else if (c == '″' || c == '"') {
+                    unit = SECONDS;
+                    unitEnd = i + 1;
+                } else if (c == 'g' || c == 'G' || c == 'ᵍ') {
+                    unit = GONS;
+                    unitEnd = skipGonSuffix(text, i, length);
+                }
+            }
+            boolean symbol = unitEnd > i;
+            symbolSeen |= symbol;
+            if (unit == GONS ? !symbol || components > 0 : unit <= lastUnit) {
+                return error(ERROR_TOO_MANY_COMPONENTS, numberStart);
+            }
+            if ((unit == MINUTES || unit == SECONDS) && integer >= 60) {
+                return error(ERROR_OUT_OF_RANGE, numberStart);
+            }
+
+            i = unitEnd;
+            int next = skipSpaces(text, i, length);
+            if (next < length && text.charAt(next) == ':' && unit != GONS) {
+                next = skipSpaces(text, next + 1, length);
+            } else if (next == i && next < length && !symbol) {
+                // Числа без знака единиц разделяются пробелом или двоеточием
+                return error(ERROR_UNEXPECTED_CHARACTER, next);
+            }
+            i = next;
+            components++;
+            lastUnit = unit;
+
+            if (i < length) {
+                // Составляющая не последняя: за гонами ничего быть не может
+                if (unit == GONS) {
+                    return error(ERROR_TOO_MANY_COMPONENTS, i);
+                }
+                fractionSeen = hasFraction;
+                total += integer * UNITS[unit] + scaleFraction(fraction, fractionDigits, UNITS[unit]);
+            } else if (components == 1 && !symbolSeen && packed && hasFraction) {
+                long value = unpack(integer, fraction, fractionDigits);
+                if (value < 0) {
+                    return error(ERROR_OUT_OF_RANGE, numberStart);
+                }
+                total = value;
+            } else {
+                total += integer * UNITS[unit] + scaleFraction(fraction, fractionDigits, UNITS[unit]);
+            }
+        }
+        if (components == 0) {
+            return error(ERROR_EMPTY, i);
+        }
+        return negative ? -total : total;
+    }
+
+    /**
+     * Проверяет, является ли результат разбора ошибкой
+     */
+    public static boolean isError(long result) {
+        return (result & ERROR_MASK) == ERROR_FLAG;
+    }
+
+    /**
+     * Код ошибки (ERROR_*) или 0, если угол разобран
+     */
+    public static int errorCode(long result) {
+        return isError(result) ? (int) ((result >>> 32) & 0xFF) : 0;
+    }
+
+    /**
+     * Позиция символа, на котором разбор остановился, или -1, если угол разобран
+     */
+    public static int errorPosition(long result) {
+        return isError(result) ? (int) result : -1;
+    }
+
+    /**
+     * Описание ошибки для сообщения пользователю
+     */
+    public static String errorMessage(int code) {
+        switch (code) {
+            case ERROR_EMPTY: return "Введите угол";
+            case ERROR_UNEXPECTED_CHARACTER: return "Недопустимый символ в записи угла";
+            case ERROR_TOO_MANY_COMPONENTS: return "Неверный порядок градусов, минут и секунд";
+            case ERROR_OUT_OF_RANGE: return "Минуты и секунды должны быть меньше 60";
+            case ERROR_TOO_LARGE: return "Слишком большой угол";
+            default: return "Неверный формат угла";
+        }
+    }
+
+    private static long error(int code, int position) {
+        return ERROR_FLAG | (long) code << 32 | position;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int skipSpaces(CharSequence text, int i, int length) {
+        while (i < length && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Пропускает обозначение гонов: g, gon или ᵍ
+     */
+    private static int skipGonSuffix(CharSequence text, int i, int length) {
+        if (text.charAt(i) == 'ᵍ') {
+            return i + 1;
+        }
+        if (i + 2 < length && (text.charAt(i + 1) == 'o' || text.charAt(i + 1) == 'O')
+                && (text.charAt(i + 2) == 'n' || text.charAt(i + 2) == 'N')) {
+            return i + 3;
+        }
+        return i + 1;
+    }
+
+    /**
+     * Дробная часть fraction / 10^digits составляющей, переведенная в десятые доли секунды
+     * с округлением от нуля
+     */
+    private static long scaleFraction(long fraction, int digits, long unitsPerComponent) {
+        if (digits == 0) {
+            return 0;
+        }
+        long divisor = POWERS_OF_TEN[digits];
+        long scaled = fraction * unitsPerComponent;
+        if (divisor == unitsPerComponent) {
+            // Десятые доли секунды: делить не нужно
+            return fraction;
+        }
+        long result = scaled / divisor;
+        if (2 * (scaled - result * divisor) >= divisor) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Угол из записи ГГГ.ММСС: первые две цифры дробной части — минуты, следующие две — секунды,
+     * остальные — доли секунды
+     * @return Угол или -1, если минуты или секунды не меньше 60
+     */
+    private static long unpack(long degrees, long fraction, int digits) {
+        while (digits < 4) {
+            fraction *= 10;
+            digits++;
+        }
+        long secondsScale = POWERS_OF_TEN[digits - 4];
+        long minutes = fraction / (secondsScale * 100);
+        long seconds = fraction / secondsScale % 100;
+        if (minutes >= 60 || seconds >= 60) {
+            return -1;
+        }
+        return degrees * Angles.UNITS_PER_DEGREE + minutes * Angles.UNITS_PER_MINUTE + seconds * Angles.UNITS_PER_SECOND
+                + scaleFraction(fraction % secondsScale, digits - 4, Angles.UNITS_PER_SECOND);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.javamark.model;
+
+/**
+ * Операции над углами в целочисленном представлении: угол хранится в long
+ * как количество десятых долей угловой секунды. Точность совпадает с точностью,
+ * с которой углы показываются и сохраняются ({@link AngleValue}: секунды до 0,1″),
+ * поэтому сложение, вычитание и сравнение выполняются без ошибок округления.
+ * Операции не создают объектов; {@link AngleValue} нужен только для показа и ввода угла
+ */
+public final class Angles {
+    // Единица представления — 0,1″
+    public static final long UNITS_PER_SECOND = 10;
+    public static final long UNITS_PER_MINUTE = 60 * UNITS_PER_SECOND;
+    public static final long UNITS_PER_DEGREE = 60 * UNITS_PER_MINUTE;
+    // Полный круг, 360°
+    public static final long FULL_CIRCLE = 360 * UNITS_PER_DEGREE;
+
+    private Angles() {
+    }
+
+    /**
+     * Угол из градусов, минут и секунд. Знак задается первой ненулевой составляющей,
+     * как в {@link AngleValue}; секунды округляются до 0,1″
+     */
+    public static long of(int degrees, int minutes, double seconds) {
+        boolean negative = degrees < 0 || (degrees == 0 && (minutes < 0 || (minutes == 0 && seconds < 0)));
+        long magnitude = Math.abs((long) degrees) * UNITS_PER_DEGREE + Math.abs((long) minutes) * UNITS_PER_MINUTE
+                + round(Math.abs(seconds) * UNITS_PER_SECOND);
+        return negative ? -magnitude : magnitude;
+    }
+
+    public static long fromDecimalDegrees(double degrees) {
+        return round(degrees * UNITS_PER_DEGREE);
+    }
+
+    public static double toDecimalDegrees(long angle) {
+        return (double) angle / UNITS_PER_DEGREE;
+    }
+
+    public static double toRadians(long angle) {
+        return toDecimalDegrees(angle) * (Math.PI / 180.0);
+    }
+
+    /**
+     * Угол из угловых минут, например допустимой разности отсчетов
+     */
+    public static long fromMinutes(double minutes) {
+        return round(minutes * UNITS_PER_MINUTE);
+    }
+
+    public static long add(long a, long b) {
+        return a + b;
+    }
+
+    public static long subtract(long a, long b) {
+        return a - b;
+    }
+
+    /**
+     * Среднее двух углов, округленное до 0,1″ от нуля, как при округлении секунд
+     */
+    public static long mean(long a, long b) {
+        return divide(a + b, 2);
+    }
+
+    /**
+     * Деление угла на целое с округлением до 0,1″ от нуля
+     */
+    public static long divide(long angle, long divisor) {
+        long quotient = angle / divisor;
+        long remainder = angle % divisor;
+        if (2 * Math.abs(remainder) >= Math.abs(divisor)) {
+            quotient += (angle < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Умножение угла на число с округлением до 0,1″ от нуля
+     */
+    public static long scale(long angle, double factor) {
+        return round(angle * factor);
+    }
+
+    /**
+     * Приводит угол к диапазону [0°, 360°)
+     */
+    public static long normalize(long angle) {
+        return Math.floorMod(angle, FULL_CIRCLE);
+    }
+
+    public static int compare(long a, long b) {
+        return Long.compare(a, b);
+    }
+
+    public static long abs(long angle) {
+        return Math.abs(angle);
+    }
+
+    public static boolean isNegative(long angle) {
+        return angle < 0;
+    }
+
+    /**
+     * Целые градусы абсолютной величины угла
+     */
+    public static int degrees(long angle) {
+        return (int) (Math.abs(angle) / UNITS_PER_DEGREE);
+    }
+
+    /**
+     * Целые минуты абсолютной величины угла, [0, 59]
+     */
+    public static int minutes(long angle) {
+        return (int) (Math.abs(angle) % UNITS_PER_DEGREE / UNITS_PER_MINUTE);
+    }
+
+    /**
+     * Секунды абсолютной величины угла в десятых долях, [0, 599]
+     */
+    public static int tenthsOfSecond(long angle) {
+        return (int) (Math.abs(angle) % UNITS_PER_MINUTE);
+    }
+
+    /**
+     * Секунды абсолютной величины угла, [0, 59.9]
+     */
+    public static double seconds(long angle) {
+        return tenthsOfSecond(angle) / (double) UNITS_PER_SECOND;
+    }
+
+    /**
+     * Градусы угла со знаком, как в {@link AngleValue}: знак ставится
+     * на первую ненулевую составляющую
+     */
+    public static int signedDegrees(long angle) {
+        return angle < 0 ? -degrees(angle) : degrees(angle);
+    }
+
+    public static int signedMinutes(long angle) {
+        return angle < 0 && degrees(angle) == 0 ? -minutes(angle) : minutes(angle);
+    }
+
+    public static double signedSeconds(long angle) {
+        return angle < 0 && Math.abs(angle) < UNITS_PER_MINUTE ? -seconds(angle) : seconds(angle);
+    }
+
+    /**
+     * Округляет угол, вычисленный в дробных десятых долях секунды, до целых от нуля,
+     * как округляются секунды в {@link AngleValue}
+     */
+    public static long round(double value) {
+        return value < 0 ? -(long) Math.floor(-value + 0.5) : (long) Math.floor(value + 0.5);
+    }
+}
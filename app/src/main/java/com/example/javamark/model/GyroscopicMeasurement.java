@@ -5,12 +5,37 @@ import java.io.Serializable;
 import java.util.Date;
 
 /**
- * Класс для хранения данных гироскопического ориентирования
+ * Класс для хранения данных гироскопического ориентирования.
+ * Все углы измерения хранятся в одном массиве long в десятых долях секунды ({@link Angles}),
+ * по ячейке на угол ({@link Angle}), а дата создания — в миллисекундах. Измерение
+ * занимает несколько объектов вместо нескольких десятков, а расчеты читают и пишут углы
+ * без создания объектов. Методы с {@link AngleValue} — представления для интерфейса:
+ * get возвращает новый объект, и изменение этого объекта не меняет измерение
  */
 public class GyroscopicMeasurement implements Serializable {
+    /**
+     * Углы измерения в порядке ячеек массива углов
+     */
+    public enum Angle {
+        // Положение равновесия ЧЭ
+        N1, N2, N3, N4, N0_PRIME, N0_DOUBLE_PRIME, N0,
+        // Примычное направление
+        KL1, KP1, KL2, KP2, N_PRIME, N_DOUBLE_PRIME, N,
+        // Поправка за закручивание торсиона
+        T, NK_PRIME, NK_DOUBLE_PRIME, NK, PSI_T, PSI_K, EPSILON,
+        // Результат
+        GYROSCOPIC_AZIMUTH
+    }
+
+    private static final int ANGLE_COUNT = Angle.values().length;
+    // Дата создания не задана
+    private static final long NO_DATE = Long.MIN_VALUE;
+
     private int id;
     private String name;
-    private Date createdAt;
+    private long createdAt;
+    // Версия записи в хранилище, с которой прочитан объект (не сериализуется)
+    private transient long version;
 
     // transient, чтобы не сериализовать контекст
     private transient Context context;
@@ -19,53 +44,19 @@ public class GyroscopicMeasurement implements Serializable {
     private double n1Value, n2Value, n3Value, n4Value;
     private double n0PrimeValue, n0DoublePrimeValue, n0Value;
 
-    // Положение равновесия ЧЭ (угловые значения)
-    private AngleValue N1, N2, N3, N4;
-    private AngleValue N0Prime, N0DoublePrime, N0;
-
-    // Примычное направление
-    private AngleValue KL1, KP1, KL2, KP2;
-    private AngleValue NPrime, NDoublePrime, N;
+    // Углы в десятых долях секунды, по ячейке на каждый угол из Angle
+    private final long[] angles = new long[ANGLE_COUNT];
+    // Биты незаданных углов (null в представлении AngleValue)
+    private int missingAngles;
 
     // Поправка за закручивание торсиона
     private double nkValue = 40.0; // По умолчанию 40
-    private AngleValue t; // По умолчанию 0°1'
-    private AngleValue NkPrime, NkDoublePrime, Nk;
-    private AngleValue psiT, psiK;
     private double D = 1.0; // Добротность по умолчанию 1.0
-    private AngleValue epsilon;
-
-    // Результат
-    private AngleValue gyroscopicAzimuth;
 
     public GyroscopicMeasurement() {
-        this.createdAt = new Date();
-        // Инициализация углов
-        this.N1 = new AngleValue();
-        this.N2 = new AngleValue();
-        this.N3 = new AngleValue();
-        this.N4 = new AngleValue();
-        this.N0Prime = new AngleValue();
-        this.N0DoublePrime = new AngleValue();
-        this.N0 = new AngleValue();
-
-        this.KL1 = new AngleValue();
-        this.KP1 = new AngleValue();
-        this.KL2 = new AngleValue();
-        this.KP2 = new AngleValue();
-        this.NPrime = new AngleValue();
-        this.NDoublePrime = new AngleValue();
-        this.N = new AngleValue();
-
-        this.t = new AngleValue(0, 1, 0); // 0°1'0"
-        this.NkPrime = new AngleValue();
-        this.NkDoublePrime = new AngleValue();
-        this.Nk = new AngleValue();
-        this.psiT = new AngleValue();
-        this.psiK = new AngleValue();
-        this.epsilon = new AngleValue();
-
-        this.gyroscopicAzimuth = new AngleValue();
+        this.createdAt = System.currentTimeMillis();
+        // Углы равны нулю, кроме t
+        setAngle(Angle.T, Angles.UNITS_PER_MINUTE); // 0°1'0"
     }
 
     public GyroscopicMeasurement(String name) {
@@ -82,6 +73,14 @@ public class GyroscopicMeasurement implements Serializable {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -91,11 +90,52 @@ public class GyroscopicMeasurement implements Serializable {
     }
 
     public Date getCreatedAt() {
-        return createdAt;
+        return createdAt != NO_DATE ? new Date(createdAt) : null;
     }
 
     public void setCreatedAt(Date createdAt) {
-        this.createdAt = createdAt;
+        this.createdAt = createdAt != null ? createdAt.getTime() : NO_DATE;
+    }
+
+    /**
+     * Угол в десятых долях секунды; незаданный угол равен нулю
+     */
+    public long getAngle(Angle angle) {
+        return angles[angle.ordinal()];
+    }
+
+    public void setAngle(Angle angle, long value) {
+        angles[angle.ordinal()] = value;
+        missingAngles &= ~(1 << angle.ordinal());
+    }
+
+    public boolean hasAngle(Angle angle) {
+        return (missingAngles & (1 << angle.ordinal())) == 0;
+    }
+
+    public void clearAngle(Angle angle) {
+        angles[angle.ordinal()] = 0;
+        missingAngles |= 1 << angle.ordinal();
+    }
+
+    /**
+     * Копирует все углы другого измерения, включая незаданные
+     */
+    public void copyAnglesFrom(GyroscopicMeasurement source) {
+        System.arraycopy(source.angles, 0, angles, 0, ANGLE_COUNT);
+        missingAngles = source.missingAngles;
+    }
+
+    private AngleValue view(Angle angle) {
+        return hasAngle(angle) ? AngleValue.fromUnits(getAngle(angle)) : null;
+    }
+
+    private void set(Angle angle, AngleValue value) {
+        if (value != null) {
+            setAngle(angle, value.toUnits());
+        } else {
+            clearAngle(angle);
+        }
     }
 
     // Context getter/setter
@@ -166,116 +206,116 @@ public class GyroscopicMeasurement implements Serializable {
 
     // Положение равновесия ЧЭ (угловые значения)
     public AngleValue getN1() {
-        return N1;
+        return view(Angle.N1);
     }
 
     public void setN1(AngleValue n1) {
-        N1 = n1;
+        set(Angle.N1, n1);
     }
 
     public AngleValue getN2() {
-        return N2;
+        return view(Angle.N2);
     }
 
     public void setN2(AngleValue n2) {
-        N2 = n2;
+        set(Angle.N2, n2);
     }
 
     public AngleValue getN3() {
-        return N3;
+        return view(Angle.N3);
     }
 
     public void setN3(AngleValue n3) {
-        N3 = n3;
+        set(Angle.N3, n3);
     }
 
     public AngleValue getN4() {
-        return N4;
+        return view(Angle.N4);
     }
 
     public void setN4(AngleValue n4) {
-        N4 = n4;
+        set(Angle.N4, n4);
     }
 
     public AngleValue getN0Prime() {
-        return N0Prime;
+        return view(Angle.N0_PRIME);
     }
 
     public void setN0Prime(AngleValue n0Prime) {
-        N0Prime = n0Prime;
+        set(Angle.N0_PRIME, n0Prime);
     }
 
     public AngleValue getN0DoublePrime() {
-        return N0DoublePrime;
+        return view(Angle.N0_DOUBLE_PRIME);
     }
 
     public void setN0DoublePrime(AngleValue n0DoublePrime) {
-        N0DoublePrime = n0DoublePrime;
+        set(Angle.N0_DOUBLE_PRIME, n0DoublePrime);
     }
 
     public AngleValue getN0() {
-        return N0;
+        return view(Angle.N0);
     }
 
     public void setN0(AngleValue n0) {
-        N0 = n0;
+        set(Angle.N0, n0);
     }
 
     // Примычное направление
     public AngleValue getKL1() {
-        return KL1;
+        return view(Angle.KL1);
     }
 
     public void setKL1(AngleValue KL1) {
-        this.KL1 = KL1;
+        set(Angle.KL1, KL1);
     }
 
     public AngleValue getKP1() {
-        return KP1;
+        return view(Angle.KP1);
     }
 
     public void setKP1(AngleValue KP1) {
-        this.KP1 = KP1;
+        set(Angle.KP1, KP1);
     }
 
     public AngleValue getKL2() {
-        return KL2;
+        return view(Angle.KL2);
     }
 
     public void setKL2(AngleValue KL2) {
-        this.KL2 = KL2;
+        set(Angle.KL2, KL2);
     }
 
     public AngleValue getKP2() {
-        return KP2;
+        return view(Angle.KP2);
     }
 
     public void setKP2(AngleValue KP2) {
-        this.KP2 = KP2;
+        set(Angle.KP2, KP2);
     }
 
     public AngleValue getNPrime() {
-        return NPrime;
+        return view(Angle.N_PRIME);
     }
 
     public void setNPrime(AngleValue NPrime) {
-        this.NPrime = NPrime;
+        set(Angle.N_PRIME, NPrime);
     }
 
     public AngleValue getNDoublePrime() {
-        return NDoublePrime;
+        return view(Angle.N_DOUBLE_PRIME);
     }
 
     public void setNDoublePrime(AngleValue NDoublePrime) {
-        this.NDoublePrime = NDoublePrime;
+        set(Angle.N_DOUBLE_PRIME, NDoublePrime);
     }
 
     public AngleValue getN() {
-        return N;
+        return view(Angle.N);
     }
 
     public void setN(AngleValue n) {
-        N = n;
+        set(Angle.N, n);
     }
 
     // Поправка за закручивание торсиона
@@ -288,51 +328,51 @@ public class GyroscopicMeasurement implements Serializable {
     }
 
     public AngleValue getT() {
-        return t;
+        return view(Angle.T);
     }
 
     public void setT(AngleValue t) {
-        this.t = t;
+        set(Angle.T, t);
     }
 
     public AngleValue getNkPrime() {
-        return NkPrime;
+        return view(Angle.NK_PRIME);
     }
 
     public void setNkPrime(AngleValue nkPrime) {
-        NkPrime = nkPrime;
+        set(Angle.NK_PRIME, nkPrime);
     }
 
     public AngleValue getNkDoublePrime() {
-        return NkDoublePrime;
+        return view(Angle.NK_DOUBLE_PRIME);
     }
 
     public void setNkDoublePrime(AngleValue nkDoublePrime) {
-        NkDoublePrime = nkDoublePrime;
+        set(Angle.NK_DOUBLE_PRIME, nkDoublePrime);
     }
 
     public AngleValue getNk() {
-        return Nk;
+        return view(Angle.NK);
     }
 
     public void setNk(AngleValue nk) {
-        Nk = nk;
+        set(Angle.NK, nk);
     }
 
     public AngleValue getPsiT() {
-        return psiT;
+        return view(Angle.PSI_T);
     }
 
     public void setPsiT(AngleValue psiT) {
-        this.psiT = psiT;
+        set(Angle.PSI_T, psiT);
     }
 
     public AngleValue getPsiK() {
-        return psiK;
+        return view(Angle.PSI_K);
     }
 
     public void setPsiK(AngleValue psiK) {
-        this.psiK = psiK;
+        set(Angle.PSI_K, psiK);
     }
 
     public double getD() {
@@ -344,20 +384,20 @@ public class GyroscopicMeasurement implements Serializable {
     }
 
     public AngleValue getEpsilon() {
-        return epsilon;
+        return view(Angle.EPSILON);
     }
 
     public void setEpsilon(AngleValue epsilon) {
-        this.epsilon = epsilon;
+        set(Angle.EPSILON, epsilon);
     }
 
     // Результат
     public AngleValue getGyroscopicAzimuth() {
-        return gyroscopicAzimuth;
+        return view(Angle.GYROSCOPIC_AZIMUTH);
     }
 
     public void setGyroscopicAzimuth(AngleValue gyroscopicAzimuth) {
-        this.gyroscopicAzimuth = gyroscopicAzimuth;
+        set(Angle.GYROSCOPIC_AZIMUTH, gyroscopicAzimuth);
     }
     private double psiTDirectValue; // Прямое значение ψt = t * (n₀ - nₖ)
 
@@ -371,6 +411,6 @@ public class GyroscopicMeasurement implements Serializable {
     // Форматированная дата
     public String getFormattedDate() {
         java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("dd.MM.yyyy HH:mm");
-        return sdf.format(createdAt);
+        return sdf.format(getCreatedAt());
     }
 }
\ No newline at end of file
@@ -12,6 +12,8 @@ public class Project implements Serializable {
     private int id;
     private String name;
     private Date createdAt;
+    // Версия записи в хранилище, с которой прочитан объект (не сериализуется)
+    private transient long version;
     private List<ReferencePoint> referencePoints;
     private double maxAllowableError;
     private CalculationResult result;
@@ -35,6 +37,14 @@ public class Project implements Serializable {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,348 @@
+package com.example.javamark.model;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Станции журнала, хранящиеся по столбцам: номера, расстояния и углы всех станций
+ * лежат в параллельных массивах примитивов, углы — в десятых долях секунды ({@link Angles}).
+ * Пересчет всего хода выполняется простыми циклами по массивам
+ * ({@link #calculateAngles()}, {@link #calculateHorizontalDistances()}).
+ * Объект станции создается только при обращении к строке: каждый вызов get возвращает
+ * новую копию, поэтому измененную станцию нужно вернуть в список через set
+ * (см. {@link TheodoliteJournal#updateMeasurement(int, StationMeasurement)})
+ */
+public final class StationColumns extends AbstractList<StationMeasurement> implements RandomAccess, Serializable {
+    /**
+     * Угловые столбцы станции
+     */
+    public enum Angle {
+        SLOPE,
+        LEFT_CIRCLE_1, RIGHT_CIRCLE_1, LEFT_CIRCLE_2, RIGHT_CIRCLE_2,
+        LEFT_DIFFERENCE, RIGHT_DIFFERENCE, AVERAGE
+    }
+
+    private static final int ANGLE_COUNT = Angle.values().length;
+    // Бит строки без станции (null в списке); младшие биты — незаданные углы
+    private static final int NULL_ROW = 1 << ANGLE_COUNT;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int size;
+    private int[] stationNumbers;
+    private int[] pointNumbers1;
+    private int[] pointNumbers2;
+    private double[] distances;
+    private double[] horizontalDistances;
+    private final long[][] angles = new long[ANGLE_COUNT][];
+    private int[] flags;
+
+    public StationColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StationColumns(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Копия столбцов другого списка
+     */
+    public StationColumns(StationColumns source) {
+        allocate(Math.max(source.size, 1));
+        size = source.size;
+        System.arraycopy(source.stationNumbers, 0, stationNumbers, 0, size);
+        System.arraycopy(source.pointNumbers1, 0, pointNumbers1, 0, size);
+        System.arraycopy(source.pointNumbers2, 0, pointNumbers2, 0, size);
+        System.arraycopy(source.distances, 0, distances, 0, size);
+        System.arraycopy(source.horizontalDistances, 0, horizontalDistances, 0, size);
+        for (int column = 0; column < ANGLE_COUNT; column++) {
+            System.arraycopy(source.angles[column], 0, angles[column], 0, size);
+        }
+        System.arraycopy(source.flags, 0, flags, 0, size);
+    }
+
+    private void allocate(int capacity) {
+        stationNumbers = new int[capacity];
+        pointNumbers1 = new int[capacity];
+        pointNumbers2 = new int[capacity];
+        distances = new double[capacity];
+        horizontalDistances = new double[capacity];
+        for (int column = 0; column < ANGLE_COUNT; column++) {
+            angles[column] = new long[capacity];
+        }
+        flags = new int[capacity];
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= flags.length) {
+            return;
+        }
+        int capacity = Math.max(required, flags.length + (flags.length >> 1));
+        stationNumbers = Arrays.copyOf(stationNumbers, capacity);
+        pointNumbers1 = Arrays.copyOf(pointNumbers1, capacity);
+        pointNumbers2 = Arrays.copyOf(pointNumbers2, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        horizontalDistances = Arrays.copyOf(horizontalDistances, capacity);
+        for (int column = 0; column < ANGLE_COUNT; column++) {
+            angles[column] = Arrays.copyOf(angles[column], capacity);
+        }
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    /**
+     * Сдвигает строки начиная с from на shift позиций (вправо при вставке, влево при удалении)
+     */
+    private void shift(int from, int shift) {
+        int count = size - from;
+        int to = from + shift;
+        System.arraycopy(stationNumbers, from, stationNumbers, to, count);
+        System.arraycopy(pointNumbers1, from, pointNumbers1, to, count);
+        System.arraycopy(pointNumbers2, from, pointNumbers2, to, count);
+        System.arraycopy(distances, from, distances, to, count);
+        System.arraycopy(horizontalDistances, from, horizontalDistances, to, count);
+        for (int column = 0; column < ANGLE_COUNT; column++) {
+            System.arraycopy(angles[column], from, angles[column], to, count);
+        }
+        System.arraycopy(flags, from, flags, to, count);
+    }
+
+    private void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Создает объект станции по строке
+     * @return Новая копия станции или null, если в строке нет станции
+     */
+    @Override
+    public StationMeasurement get(int index) {
+        checkIndex(index, size);
+        if ((flags[index] & NULL_ROW) != 0) {
+            return null;
+        }
+        StationMeasurement station = new StationMeasurement(stationNumbers[index], pointNumbers1[index],
+                pointNumbers2[index]);
+        station.setDistance(distances[index]);
+        station.setSlopeAngle(view(index, Angle.SLOPE));
+        station.setHorizontalDistance(horizontalDistances[index]);
+        station.setLeftCirclePoint1(view(index, Angle.LEFT_CIRCLE_1));
+        station.setRightCirclePoint1(view(index, Angle.RIGHT_CIRCLE_1));
+        station.setLeftCirclePoint2(view(index, Angle.LEFT_CIRCLE_2));
+        station.setRightCirclePoint2(view(index, Angle.RIGHT_CIRCLE_2));
+        station.setAngleLeftDifference(view(index, Angle.LEFT_DIFFERENCE));
+        station.setAngleRightDifference(view(index, Angle.RIGHT_DIFFERENCE));
+        station.setAverageAngle(view(index, Angle.AVERAGE));
+        return station;
+    }
+
+    private AngleValue view(int row, Angle angle) {
+        return hasAngle(row, angle) ? AngleValue.fromUnits(getAngle(row, angle)) : null;
+    }
+
+    @Override
+    public StationMeasurement set(int index, StationMeasurement element) {
+        StationMeasurement previous = get(index);
+        write(index, element);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, StationMeasurement element) {
+        checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        shift(index, 1);
+        size++;
+        write(index, element);
+        modCount++;
+    }
+
+    @Override
+    public StationMeasurement remove(int index) {
+        StationMeasurement previous = get(index);
+        shift(index + 1, -1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        shift(toIndex, fromIndex - toIndex);
+        size -= toIndex - fromIndex;
+        modCount++;
+    }
+
+    /**
+     * Записывает станцию в строку; углы округляются до 0,1″
+     */
+    private void write(int row, StationMeasurement station) {
+        if (station == null) {
+            stationNumbers[row] = 0;
+            pointNumbers1[row] = 0;
+            pointNumbers2[row] = 0;
+            distances[row] = 0;
+            horizontalDistances[row] = 0;
+            for (int column = 0; column < ANGLE_COUNT; column++) {
+                angles[column][row] = 0;
+            }
+            flags[row] = NULL_ROW;
+            return;
+        }
+        flags[row] = 0;
+        stationNumbers[row] = station.getStationNumber();
+        pointNumbers1[row] = station.getPointNumber1();
+        pointNumbers2[row] = station.getPointNumber2();
+        distances[row] = station.getDistance();
+        horizontalDistances[row] = station.getHorizontalDistance();
+        write(row, Angle.SLOPE, station.getSlopeAngle());
+        write(row, Angle.LEFT_CIRCLE_1, station.getLeftCirclePoint1());
+        write(row, Angle.RIGHT_CIRCLE_1, station.getRightCirclePoint1());
+        write(row, Angle.LEFT_CIRCLE_2, station.getLeftCirclePoint2());
+        write(row, Angle.RIGHT_CIRCLE_2, station.getRightCirclePoint2());
+        write(row, Angle.LEFT_DIFFERENCE, station.getAngleLeftDifference());
+        write(row, Angle.RIGHT_DIFFERENCE, station.getAngleRightDifference());
+        write(row, Angle.AVERAGE, station.getAverageAngle());
+    }
+
+    private void write(int row, Angle angle, AngleValue value) {
+        if (value != null) {
+            setAngle(row, angle, value.toUnits());
+        } else {
+            clearAngle(row, angle);
+        }
+    }
+
+    /**
+     * Есть ли в строке станция (в списке допускаются null)
+     */
+    public boolean hasStation(int row) {
+        checkIndex(row, size);
+        return (flags[row] & NULL_ROW) == 0;
+    }
+
+    public int getStationNumber(int row) {
+        checkIndex(row, size);
+        return stationNumbers[row];
+    }
+
+    public int getPointNumber1(int row) {
+        checkIndex(row, size);
+        return pointNumbers1[row];
+    }
+
+    public int getPointNumber2(int row) {
+        checkIndex(row, size);
+        return pointNumbers2[row];
+    }
+
+    public double getDistance(int row) {
+        checkIndex(row, size);
+        return distances[row];
+    }
+
+    public double getHorizontalDistance(int row) {
+        checkIndex(row, size);
+        return horizontalDistances[row];
+    }
+
+    /**
+     * Угол строки в десятых долях секунды; незаданный угол равен нулю
+     */
+    public long getAngle(int row, Angle angle) {
+        checkIndex(row, size);
+        return angles[angle.ordinal()][row];
+    }
+
+    public boolean hasAngle(int row, Angle angle) {
+        checkIndex(row, size);
+        return (flags[row] & (1 << angle.ordinal())) == 0;
+    }
+
+    public void setAngle(int row, Angle angle, long value) {
+        checkIndex(row, size);
+        angles[angle.ordinal()][row] = value;
+        flags[row] &= ~(1 << angle.ordinal());
+    }
+
+    public void clearAngle(int row, Angle angle) {
+        checkIndex(row, size);
+        angles[angle.ordinal()][row] = 0;
+        flags[row] |= 1 << angle.ordinal();
+    }
+
+    /**
+     * Пересчитывает разности КЛ и КП и средние углы всех станций,
+     * как {@link StationMeasurement#calculateAngles()}: станции, где введены не все отсчеты, пропускаются
+     */
+    public void calculateAngles() {
+        long[] left1 = angles[Angle.LEFT_CIRCLE_1.ordinal()];
+        long[] right1 = angles[Angle.RIGHT_CIRCLE_1.ordinal()];
+        long[] left2 = angles[Angle.LEFT_CIRCLE_2.ordinal()];
+        long[] right2 = angles[Angle.RIGHT_CIRCLE_2.ordinal()];
+        long[] leftDifference = angles[Angle.LEFT_DIFFERENCE.ordinal()];
+        long[] rightDifference = angles[Angle.RIGHT_DIFFERENCE.ordinal()];
+        long[] average = angles[Angle.AVERAGE.ordinal()];
+        int readings = NULL_ROW | 1 << Angle.LEFT_CIRCLE_1.ordinal() | 1 << Angle.RIGHT_CIRCLE_1.ordinal()
+                | 1 << Angle.LEFT_CIRCLE_2.ordinal() | 1 << Angle.RIGHT_CIRCLE_2.ordinal();
+        int results = 1 << Angle.LEFT_DIFFERENCE.ordinal() | 1 << Angle.RIGHT_DIFFERENCE.ordinal()
+                | 1 << Angle.AVERAGE.ordinal();
+        for (int row = 0; row < size; row++) {
+            if ((flags[row] & readings) != 0 || !isEntered(left1[row]) || !isEntered(left2[row])
+                    || !isEntered(right1[row]) || !isEntered(right2[row])) {
+                continue;
+            }
+            long klDiff = Math.abs(left2[row] - left1[row]);
+            long kpDiff = Angles.FULL_CIRCLE - Math.abs(right2[row] - right1[row]);
+            leftDifference[row] = klDiff;
+            rightDifference[row] = kpDiff;
+            average[row] = Angles.mean(klDiff, kpDiff);
+            flags[row] &= ~results;
+        }
+    }
+
+    /**
+     * Пересчитывает горизонтальные проложения всех станций,
+     * как {@link StationMeasurement#calculateHorizontalDistance()}
+     */
+    public void calculateHorizontalDistances() {
+        long[] slope = angles[Angle.SLOPE.ordinal()];
+        int missing = NULL_ROW | 1 << Angle.SLOPE.ordinal();
+        for (int row = 0; row < size; row++) {
+            int rowFlags = flags[row];
+            if ((rowFlags & NULL_ROW) != 0) {
+                continue;
+            }
+            double distance = distances[row];
+            horizontalDistances[row] = distance <= 0 || (rowFlags & missing) != 0
+                    ? 0 : distance * Math.cos(Angles.toRadians(slope[row]));
+        }
+    }
+
+    /**
+     * Отсчет считается введенным, если у него есть положительная составляющая,
+     * как в {@link StationMeasurement#calculateAngles()}
+     */
+    private static boolean isEntered(long angle) {
+        return Angles.signedDegrees(angle) > 0 || Angles.signedMinutes(angle) > 0 || Angles.signedSeconds(angle) > 0;
+    }
+
+    /**
+     * При стандартной сериализации сохраняется обычный список
+     */
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+}
@@ -168,11 +168,8 @@ public class StationMeasurement implements Serializable {
                 return;
             }
 
-            // Преобразуем угол наклона в радианы
-            double slopeAngleRadians = slopeAngle.toDecimalDegrees() * Math.PI / 180.0;
-
             // Вычисляем горизонтальное проложение
-            horizontalDistance = distance * Math.cos(slopeAngleRadians);
+            horizontalDistance = distance * Math.cos(Angles.toRadians(slopeAngle.toUnits()));
 
         } catch (Exception e) {
             Log.e(TAG, "Ошибка при вычислении горизонтального проложения: " + e.getMessage());
@@ -181,51 +178,44 @@ public class StationMeasurement implements Serializable {
     }
 
     /**
-     * Вычисляет углы (разница КЛ, разница КП, средний угол)
+     * Вычисляет углы (разница КЛ, разница КП, средний угол) в целочисленных углах ({@link Angles}).
+     * Результаты записываются в существующие объекты углов станции
      */
     public void calculateAngles() {
         try {
             // Проверяем, что все необходимые отсчеты введены и не содержат нулевые значения
-            if (leftCirclePoint1 != null && leftCirclePoint2 != null &&
-                    rightCirclePoint1 != null && rightCirclePoint2 != null &&
-                    (leftCirclePoint1.getDegrees() > 0 || leftCirclePoint1.getMinutes() > 0 || leftCirclePoint1.getSeconds() > 0) &&
-                    (leftCirclePoint2.getDegrees() > 0 || leftCirclePoint2.getMinutes() > 0 || leftCirclePoint2.getSeconds() > 0) &&
-                    (rightCirclePoint1.getDegrees() > 0 || rightCirclePoint1.getMinutes() > 0 || rightCirclePoint1.getSeconds() > 0) &&
-                    (rightCirclePoint2.getDegrees() > 0 || rightCirclePoint2.getMinutes() > 0 || rightCirclePoint2.getSeconds() > 0)) {
-
-                // Вычисляем разницу между отсчетами КЛ
-                double kl1 = leftCirclePoint1.toDecimalDegrees();
-                double kl2 = leftCirclePoint2.toDecimalDegrees();
-                double klDiff = Math.abs(kl2 - kl1);
-
-                Log.d(TAG, "КЛ1: " + kl1 + ", КЛ2: " + kl2 + ", Разница КЛ: " + klDiff);
-
-                this.angleLeftDifference = AngleValue.fromDecimalDegrees(klDiff);
-
-                // Вычисляем разницу между отсчетами КП
-                double kp1 = rightCirclePoint1.toDecimalDegrees();
-                double kp2 = rightCirclePoint2.toDecimalDegrees();
-                double kpDiff = Math.abs(kp2 - kp1);
+            if (isEntered(leftCirclePoint1) && isEntered(leftCirclePoint2)
+                    && isEntered(rightCirclePoint1) && isEntered(rightCirclePoint2)) {
+                // Разница между отсчетами КЛ
+                long klDiff = Angles.abs(leftCirclePoint2.toUnits() - leftCirclePoint1.toUnits());
+                angleLeftDifference = assign(angleLeftDifference, klDiff);
 
                 // Для КП сначала находим разницу, потом из 360° вычитаем
-                double adjustedKpDiff = 360.0 - kpDiff;
-
-                Log.d(TAG, "КП1: " + kp1 + ", КП2: " + kp2 + ", Разница КП: " + kpDiff + ", Скорректированная разница КП: " + adjustedKpDiff);
-
-                this.angleRightDifference = AngleValue.fromDecimalDegrees(adjustedKpDiff);
-
-                // Вычисляем средний угол как среднее между двумя разницами
-                double avgDiff = (klDiff + adjustedKpDiff) / 2.0;
+                long kpDiff = Angles.FULL_CIRCLE - Angles.abs(rightCirclePoint2.toUnits() - rightCirclePoint1.toUnits());
+                angleRightDifference = assign(angleRightDifference, kpDiff);
 
-                Log.d(TAG, "Средний угол: " + avgDiff);
-
-                this.averageAngle = AngleValue.fromDecimalDegrees(avgDiff);
-            } else {
-                Log.d(TAG, "Не все необходимые отсчеты введены или содержат нулевые значения");
+                // Средний угол как среднее между двумя разницами
+                averageAngle = assign(averageAngle, Angles.mean(klDiff, kpDiff));
             }
         } catch (Exception e) {
             Log.e(TAG, "Ошибка при вычислении углов: " + e.getMessage());
             e.printStackTrace();
         }
     }
+
+    private static boolean isEntered(AngleValue reading) {
+        return reading != null
+                && (reading.getDegrees() > 0 || reading.getMinutes() > 0 || reading.getSeconds() > 0);
+    }
+
+    /**
+     * Записывает результат в существующий объект угла; объект создается, только если угла еще нет
+     */
+    private static AngleValue assign(AngleValue target, long angle) {
+        if (target == null) {
+            return AngleValue.fromUnits(angle);
+        }
+        target.setUnits(angle);
+        return target;
+    }
 }
\ No newline at end of file
@@ -5,16 +5,58 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Класс, представляющий журнал теодолитного хода
+ * Класс, представляющий журнал теодолитного хода.
+ * Станции нового журнала хранятся по столбцам ({@link StationColumns})
  */
 public class TheodoliteJournal implements Serializable {
     private int id;
     private String name;
     private List<StationMeasurement> measurements;
     private java.util.Date createdAt;
+    // Версия записи в хранилище, с которой прочитан объект (не сериализуется)
+    private transient long version;
+
+    // Изменения станций с момента последнего сохранения (не сериализуются)
+    private transient List<StationChange> pendingChanges;
+    // true, если список измерений заменен целиком и журнал нужно сохранить полностью
+    private transient boolean changesUntracked;
+
+    /**
+     * Изменение одной станции: добавление, изменение или удаление по номеру в списке
+     */
+    public static final class StationChange {
+        public static final int ADD = 1;
+        public static final int UPDATE = 2;
+        public static final int REMOVE = 3;
+
+        private final int type;
+        private final int position;
+        private final StationMeasurement station;
+
+        public StationChange(int type, int position, StationMeasurement station) {
+            this.type = type;
+            this.position = position;
+            this.station = station;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * Станция для добавления или изменения, null для удаления
+         */
+        public StationMeasurement getStation() {
+            return station;
+        }
+    }
 
     public TheodoliteJournal() {
-        this.measurements = new ArrayList<>();
+        this.measurements = new StationColumns();
         this.createdAt = new java.util.Date();
     }
 
@@ -32,6 +74,14 @@ public class TheodoliteJournal implements Serializable {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -46,6 +96,10 @@ public class TheodoliteJournal implements Serializable {
 
     public void setMeasurements(List<StationMeasurement> measurements) {
         this.measurements = measurements;
+        synchronized (this) {
+            changesUntracked = true;
+            changes().clear();
+        }
     }
 
     public java.util.Date getCreatedAt() {
@@ -59,6 +113,90 @@ public class TheodoliteJournal implements Serializable {
     // Вспомогательные методы
     public void addMeasurement(StationMeasurement measurement) {
         this.measurements.add(measurement);
+        recordChange(StationChange.ADD, measurements.size() - 1, measurement);
+    }
+
+    /**
+     * Отмечает, что станция с указанным номером изменена
+     */
+    public void updateMeasurement(int position) {
+        recordUpdate(position, measurements.get(position));
+    }
+
+    /**
+     * Записывает измененную станцию в список и отмечает ее изменение.
+     * Список столбцов возвращает копии станций, поэтому изменения копии
+     * попадают в журнал только через этот метод
+     */
+    public void updateMeasurement(int position, StationMeasurement measurement) {
+        if (measurements instanceof StationColumns) {
+            measurements.set(position, measurement);
+        }
+        recordUpdate(position, measurement);
+    }
+
+    private void recordUpdate(int position, StationMeasurement measurement) {
+        synchronized (this) {
+            // Повторные изменения той же станции подряд сохраняются одной записью
+            List<StationChange> changes = changes();
+            if (!changes.isEmpty()) {
+                StationChange last = changes.get(changes.size() - 1);
+                if (last.getType() != StationChange.REMOVE && last.getPosition() == position
+                        && last.getStation() == measurement) {
+                    return;
+                }
+            }
+            recordChange(StationChange.UPDATE, position, measurement);
+        }
+    }
+
+    /**
+     * Удаляет станцию с указанным номером
+     */
+    public StationMeasurement removeMeasurement(int position) {
+        StationMeasurement removed = measurements.remove(position);
+        recordChange(StationChange.REMOVE, position, null);
+        return removed;
+    }
+
+    /**
+     * Забирает накопленные изменения станций для сохранения
+     * @return изменения в порядке выполнения или null, если журнал нужно сохранить целиком
+     */
+    public synchronized List<StationChange> drainPendingChanges() {
+        List<StationChange> drained = changesUntracked ? null : new ArrayList<>(changes());
+        changes().clear();
+        changesUntracked = false;
+        return drained;
+    }
+
+    /**
+     * Отмечает, что журнал совпадает с сохраненным (например, сразу после загрузки)
+     */
+    public synchronized void clearPendingChanges() {
+        changes().clear();
+        changesUntracked = false;
+    }
+
+    /**
+     * Сбрасывает накопленные изменения: следующее сохранение запишет журнал целиком
+     */
+    public synchronized void resetChangeTracking() {
+        changes().clear();
+        changesUntracked = true;
+    }
+
+    private synchronized void recordChange(int type, int position, StationMeasurement station) {
+        if (!changesUntracked) {
+            changes().add(new StationChange(type, position, station));
+        }
+    }
+
+    private List<StationChange> changes() {
+        if (pendingChanges == null) {
+            pendingChanges = new ArrayList<>();
+        }
+        return pendingChanges;
     }
 
     public String getFormattedDate() {
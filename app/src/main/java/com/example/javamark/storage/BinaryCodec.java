@@ -0,0 +1,536 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.Angles;
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.GyroscopicMeasurement.Angle;
+import com.example.javamark.model.StationColumns;
+import com.example.javamark.model.StationMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактное двоичное представление измерений.
+ * Формат записи: [магический байт][версия][тип][таблица строк][тело].
+ * Углы записываются фиксированной длины без имен полей, ID и номера — varint,
+ * строки (названия) — индексом в таблице строк записи.
+ * Записи в JSON, сохраненные прежними версиями, распознаются по первому байту
+ */
+final class BinaryCodec {
+    static final byte MAGIC = (byte) 0xB7;
+    static final byte VERSION = 1;
+
+    static final byte TYPE_GYROSCOPIC = 1;
+    static final byte TYPE_STATION = 2;
+    static final byte TYPE_JOURNAL = 3;
+    static final byte TYPE_JOURNAL_INFO = 4;
+    static final byte TYPE_STATION_CHANGE = 5;
+
+    // Признак угла: отсутствует, короткий [short, byte, double] или полный [int, int, double]
+    private static final byte ANGLE_NULL = 0;
+    private static final byte ANGLE_SHORT = 1;
+    private static final byte ANGLE_WIDE = 2;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Проверяет, записаны ли данные в двоичном формате (а не в JSON)
+     */
+    static boolean isBinary(byte[] data) {
+        return data != null && data.length >= 3 && data[0] == MAGIC;
+    }
+
+    static byte[] encodeGyroscopic(GyroscopicMeasurement measurement) {
+        Writer writer = new Writer();
+        writer.writeVarInt(measurement.getId());
+        writer.writeString(measurement.getName());
+        writer.writeDate(measurement.getCreatedAt());
+
+        writer.writeDouble(measurement.getN1Value());
+        writer.writeDouble(measurement.getN2Value());
+        writer.writeDouble(measurement.getN3Value());
+        writer.writeDouble(measurement.getN4Value());
+        writer.writeDouble(measurement.getN0PrimeValue());
+        writer.writeDouble(measurement.getN0DoublePrimeValue());
+        writer.writeDouble(measurement.getN0Value());
+
+        writer.writeAngle(measurement, Angle.N1);
+        writer.writeAngle(measurement, Angle.N2);
+        writer.writeAngle(measurement, Angle.N3);
+        writer.writeAngle(measurement, Angle.N4);
+        writer.writeAngle(measurement, Angle.N0_PRIME);
+        writer.writeAngle(measurement, Angle.N0_DOUBLE_PRIME);
+        writer.writeAngle(measurement, Angle.N0);
+
+        writer.writeAngle(measurement, Angle.KL1);
+        writer.writeAngle(measurement, Angle.KP1);
+        writer.writeAngle(measurement, Angle.KL2);
+        writer.writeAngle(measurement, Angle.KP2);
+        writer.writeAngle(measurement, Angle.N_PRIME);
+        writer.writeAngle(measurement, Angle.N_DOUBLE_PRIME);
+        writer.writeAngle(measurement, Angle.N);
+
+        writer.writeDouble(measurement.getNkValue());
+        writer.writeAngle(measurement, Angle.T);
+        writer.writeAngle(measurement, Angle.NK_PRIME);
+        writer.writeAngle(measurement, Angle.NK_DOUBLE_PRIME);
+        writer.writeAngle(measurement, Angle.NK);
+        writer.writeAngle(measurement, Angle.PSI_T);
+        writer.writeAngle(measurement, Angle.PSI_K);
+        writer.writeDouble(measurement.getD());
+        writer.writeAngle(measurement, Angle.EPSILON);
+        writer.writeDouble(measurement.getPsiTDirectValue());
+
+        writer.writeAngle(measurement, Angle.GYROSCOPIC_AZIMUTH);
+        return writer.toByteArray(TYPE_GYROSCOPIC);
+    }
+
+    static GyroscopicMeasurement decodeGyroscopic(byte[] data) throws IOException {
+        Reader reader = new Reader(data, TYPE_GYROSCOPIC);
+        try {
+            GyroscopicMeasurement measurement = new GyroscopicMeasurement();
+            measurement.setId(reader.readVarInt());
+            measurement.setName(reader.readString());
+            measurement.setCreatedAt(reader.readDate());
+
+            measurement.setN1(reader.readDouble());
+            measurement.setN2(reader.readDouble());
+            measurement.setN3(reader.readDouble());
+            measurement.setN4(reader.readDouble());
+            measurement.setN0Prime(reader.readDouble());
+            measurement.setN0DoublePrime(reader.readDouble());
+            measurement.setN0(reader.readDouble());
+
+            reader.readAngle(measurement, Angle.N1);
+            reader.readAngle(measurement, Angle.N2);
+            reader.readAngle(measurement, Angle.N3);
+            reader.readAngle(measurement, Angle.N4);
+            reader.readAngle(measurement, Angle.N0_PRIME);
+            reader.readAngle(measurement, Angle.N0_DOUBLE_PRIME);
+            reader.readAngle(measurement, Angle.N0);
+
+            reader.readAngle(measurement, Angle.KL1);
+            reader.readAngle(measurement, Angle.KP1);
+            reader.readAngle(measurement, Angle.KL2);
+            reader.readAngle(measurement, Angle.KP2);
+            reader.readAngle(measurement, Angle.N_PRIME);
+            reader.readAngle(measurement, Angle.N_DOUBLE_PRIME);
+            reader.readAngle(measurement, Angle.N);
+
+            measurement.setNk(reader.readDouble());
+            reader.readAngle(measurement, Angle.T);
+            reader.readAngle(measurement, Angle.NK_PRIME);
+            reader.readAngle(measurement, Angle.NK_DOUBLE_PRIME);
+            reader.readAngle(measurement, Angle.NK);
+            reader.readAngle(measurement, Angle.PSI_T);
+            reader.readAngle(measurement, Angle.PSI_K);
+            measurement.setD(reader.readDouble());
+            reader.readAngle(measurement, Angle.EPSILON);
+            measurement.setPsiTDirectValue(reader.readDouble());
+
+            reader.readAngle(measurement, Angle.GYROSCOPIC_AZIMUTH);
+            return measurement;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Запись измерения обрезана", e);
+        }
+    }
+
+    static byte[] encodeStation(StationMeasurement station) {
+        Writer writer = new Writer();
+        writeStationBody(writer, station);
+        return writer.toByteArray(TYPE_STATION);
+    }
+
+    static StationMeasurement decodeStation(byte[] data) throws IOException {
+        Reader reader = new Reader(data, TYPE_STATION);
+        try {
+            return readStationBody(reader);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Запись станции обрезана", e);
+        }
+    }
+
+    static byte[] encodeJournal(TheodoliteJournal journal) {
+        Writer writer = new Writer();
+        writer.writeVarInt(journal.getId());
+        writer.writeString(journal.getName());
+        writer.writeDate(journal.getCreatedAt());
+
+        List<StationMeasurement> measurements = journal.getMeasurements();
+        if (measurements == null) {
+            writer.writeVarInt(-1);
+        } else {
+            writer.writeVarInt(measurements.size());
+            for (StationMeasurement station : measurements) {
+                writeStationBody(writer, station);
+            }
+        }
+        return writer.toByteArray(TYPE_JOURNAL);
+    }
+
+    static TheodoliteJournal decodeJournal(byte[] data) throws IOException {
+        Reader reader = new Reader(data, TYPE_JOURNAL);
+        try {
+            TheodoliteJournal journal = new TheodoliteJournal();
+            journal.setId(reader.readVarInt());
+            journal.setName(reader.readString());
+            journal.setCreatedAt(reader.readDate());
+
+            int count = reader.readVarInt();
+            if (count < 0) {
+                journal.setMeasurements(null);
+            } else {
+                List<StationMeasurement> measurements = new StationColumns(count);
+                for (int i = 0; i < count; i++) {
+                    measurements.add(readStationBody(reader));
+                }
+                journal.setMeasurements(measurements);
+            }
+            return journal;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Запись журнала обрезана", e);
+        }
+    }
+
+    /**
+     * Журнал без станций: станции хранятся отдельно (см. {@link MappedStationFile})
+     */
+    static byte[] encodeJournalInfo(TheodoliteJournal journal) {
+        Writer writer = new Writer();
+        writer.writeVarInt(journal.getId());
+        writer.writeString(journal.getName());
+        writer.writeDate(journal.getCreatedAt());
+        return writer.toByteArray(TYPE_JOURNAL_INFO);
+    }
+
+    static TheodoliteJournal decodeJournalInfo(byte[] data) throws IOException {
+        Reader reader = new Reader(data, TYPE_JOURNAL_INFO);
+        try {
+            TheodoliteJournal journal = new TheodoliteJournal();
+            journal.setId(reader.readVarInt());
+            journal.setName(reader.readString());
+            journal.setCreatedAt(reader.readDate());
+            return journal;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Запись журнала обрезана", e);
+        }
+    }
+
+    /**
+     * Изменение одной станции журнала: тип, номер в списке и станция (кроме удаления)
+     */
+    static byte[] encodeStationChange(TheodoliteJournal.StationChange change) {
+        Writer writer = new Writer();
+        writer.writeVarInt(change.getType());
+        writer.writeVarInt(change.getPosition());
+        if (change.getType() != TheodoliteJournal.StationChange.REMOVE) {
+            writeStationBody(writer, change.getStation());
+        }
+        return writer.toByteArray(TYPE_STATION_CHANGE);
+    }
+
+    static TheodoliteJournal.StationChange decodeStationChange(byte[] data) throws IOException {
+        Reader reader = new Reader(data, TYPE_STATION_CHANGE);
+        try {
+            int type = reader.readVarInt();
+            int position = reader.readVarInt();
+            if (type < TheodoliteJournal.StationChange.ADD || type > TheodoliteJournal.StationChange.REMOVE) {
+                throw new IOException("Неверный тип изменения станции: " + type);
+            }
+            StationMeasurement station = type != TheodoliteJournal.StationChange.REMOVE ? readStationBody(reader) : null;
+            return new TheodoliteJournal.StationChange(type, position, station);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Запись изменения обрезана", e);
+        }
+    }
+
+    private static void writeStationBody(Writer writer, StationMeasurement station) {
+        writer.writeVarInt(station.getStationNumber());
+        writer.writeVarInt(station.getPointNumber1());
+        writer.writeVarInt(station.getPointNumber2());
+        writer.writeDouble(station.getDistance());
+        writer.writeAngle(station.getSlopeAngle());
+        writer.writeDouble(station.getHorizontalDistance());
+        writer.writeAngle(station.getLeftCirclePoint1());
+        writer.writeAngle(station.getRightCirclePoint1());
+        writer.writeAngle(station.getLeftCirclePoint2());
+        writer.writeAngle(station.getRightCirclePoint2());
+        writer.writeAngle(station.getAngleLeftDifference());
+        writer.writeAngle(station.getAngleRightDifference());
+        writer.writeAngle(station.getAverageAngle());
+    }
+
+    private static StationMeasurement readStationBody(Reader reader) throws IOException {
+        StationMeasurement station = new StationMeasurement(reader.readVarInt(), reader.readVarInt(), reader.readVarInt());
+        station.setDistance(reader.readDouble());
+        station.setSlopeAngle(reader.readAngle());
+        station.setHorizontalDistance(reader.readDouble());
+        station.setLeftCirclePoint1(reader.readAngle());
+        station.setRightCirclePoint1(reader.readAngle());
+        station.setLeftCirclePoint2(reader.readAngle());
+        station.setRightCirclePoint2(reader.readAngle());
+        station.setAngleLeftDifference(reader.readAngle());
+        station.setAngleRightDifference(reader.readAngle());
+        station.setAverageAngle(reader.readAngle());
+        return station;
+    }
+
+    /**
+     * Запись тела в буфер с накоплением таблицы строк.
+     * Таблица записывается перед телом, поэтому тело собирается отдельно
+     */
+    private static final class Writer {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final byte[] scratch = new byte[8];
+
+        void writeVarInt(int value) {
+            writeVarLong(value);
+        }
+
+        /**
+         * Знаковое число в кодировке zigzag + varint: малые по модулю значения занимают 1 байт
+         */
+        void writeVarLong(long value) {
+            writeUnsignedVarLong(body, (value << 1) ^ (value >> 63));
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            for (int i = 7; i >= 0; i--) {
+                scratch[7 - i] = (byte) (bits >>> (i * 8));
+            }
+            body.write(scratch, 0, 8);
+        }
+
+        /**
+         * Строка записывается индексом в таблице строк, 0 означает null
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeUnsignedVarLong(body, 0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = strings.size() + 1;
+                strings.put(value, index);
+            }
+            writeUnsignedVarLong(body, index);
+        }
+
+        void writeDate(Date value) {
+            if (value == null) {
+                body.write(0);
+            } else {
+                body.write(1);
+                writeVarLong(value.getTime());
+            }
+        }
+
+        void writeAngle(AngleValue angle) {
+            if (angle == null) {
+                body.write(ANGLE_NULL);
+            } else {
+                writeAngle(angle.getDegrees(), angle.getMinutes(), angle.getSeconds());
+            }
+        }
+
+        /**
+         * Пишет угол измерения из ячейки, не создавая объект угла. Формат тот же,
+         * что у {@link #writeAngle(AngleValue)}
+         */
+        void writeAngle(GyroscopicMeasurement measurement, Angle slot) {
+            if (!measurement.hasAngle(slot)) {
+                body.write(ANGLE_NULL);
+                return;
+            }
+            long angle = measurement.getAngle(slot);
+            writeAngle(Angles.signedDegrees(angle), Angles.signedMinutes(angle), Angles.signedSeconds(angle));
+        }
+
+        private void writeAngle(int degrees, int minutes, double seconds) {
+            if (degrees >= Short.MIN_VALUE && degrees <= Short.MAX_VALUE && minutes >= 0 && minutes <= 0xFF) {
+                body.write(ANGLE_SHORT);
+                body.write(degrees >>> 8);
+                body.write(degrees);
+                body.write(minutes);
+            } else {
+                body.write(ANGLE_WIDE);
+                writeInt(degrees);
+                writeInt(minutes);
+            }
+            writeDouble(seconds);
+        }
+
+        private void writeInt(int value) {
+            body.write(value >>> 24);
+            body.write(value >>> 16);
+            body.write(value >>> 8);
+            body.write(value);
+        }
+
+        byte[] toByteArray(byte type) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 16);
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.write(type);
+            writeUnsignedVarLong(out, strings.size());
+            for (String value : strings.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeUnsignedVarLong(out, bytes.length);
+                out.write(bytes, 0, bytes.length);
+            }
+            byte[] bodyBytes = body.toByteArray();
+            out.write(bodyBytes, 0, bodyBytes.length);
+            return out.toByteArray();
+        }
+
+        private static void writeUnsignedVarLong(ByteArrayOutputStream out, long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+
+    /**
+     * Чтение записи: проверка заголовка, таблица строк и последовательное чтение тела
+     */
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        Reader(byte[] data, byte expectedType) throws IOException {
+            if (!isBinary(data)) {
+                throw new IOException("Данные не в двоичном формате");
+            }
+            buffer = ByteBuffer.wrap(data);
+            buffer.get();
+            byte version = buffer.get();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Неподдерживаемая версия формата: " + version);
+            }
+            byte type = buffer.get();
+            if (type != expectedType) {
+                throw new IOException("Неожиданный тип записи: " + type);
+            }
+
+            try {
+                int count = (int) readUnsignedVarLong();
+                if (count < 0 || count > buffer.remaining()) {
+                    throw new IOException("Поврежденная таблица строк");
+                }
+                strings = new String[count];
+                for (int i = 0; i < count; i++) {
+                    int length = (int) readUnsignedVarLong();
+                    if (length < 0 || length > buffer.remaining()) {
+                        throw new IOException("Поврежденная таблица строк");
+                    }
+                    strings[i] = new String(data, buffer.position(), length, StandardCharsets.UTF_8);
+                    buffer.position(buffer.position() + length);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Таблица строк обрезана", e);
+            }
+        }
+
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() throws IOException {
+            long raw = readUnsignedVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        double readDouble() {
+            return buffer.getDouble();
+        }
+
+        String readString() throws IOException {
+            int index = (int) readUnsignedVarLong();
+            if (index == 0) {
+                return null;
+            }
+            if (index < 0 || index > strings.length) {
+                throw new IOException("Неверный индекс строки: " + index);
+            }
+            return strings[index - 1];
+        }
+
+        Date readDate() throws IOException {
+            return buffer.get() != 0 ? new Date(readVarLong()) : null;
+        }
+
+        AngleValue readAngle() throws IOException {
+            byte tag = buffer.get();
+            switch (tag) {
+                case ANGLE_NULL:
+                    return null;
+                case ANGLE_SHORT: {
+                    int degrees = buffer.getShort();
+                    int minutes = buffer.get() & 0xFF;
+                    return new AngleValue(degrees, minutes, buffer.getDouble());
+                }
+                case ANGLE_WIDE: {
+                    int degrees = buffer.getInt();
+                    int minutes = buffer.getInt();
+                    return new AngleValue(degrees, minutes, buffer.getDouble());
+                }
+                default:
+                    throw new IOException("Неверный признак угла: " + tag);
+            }
+        }
+
+        /**
+         * Читает угол сразу в ячейку измерения, не создавая объект угла
+         */
+        void readAngle(GyroscopicMeasurement measurement, Angle slot) throws IOException {
+            byte tag = buffer.get();
+            switch (tag) {
+                case ANGLE_NULL:
+                    measurement.clearAngle(slot);
+                    break;
+                case ANGLE_SHORT: {
+                    int degrees = buffer.getShort();
+                    int minutes = buffer.get() & 0xFF;
+                    measurement.setAngle(slot, Angles.of(degrees, minutes, buffer.getDouble()));
+                    break;
+                }
+                case ANGLE_WIDE: {
+                    int degrees = buffer.getInt();
+                    int minutes = buffer.getInt();
+                    measurement.setAngle(slot, Angles.of(degrees, minutes, buffer.getDouble()));
+                    break;
+                }
+                default:
+                    throw new IOException("Неверный признак угла: " + tag);
+            }
+        }
+
+        private long readUnsignedVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Слишком длинное число varint");
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.javamark.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Холодный уровень хранилища записей. Записи, которые давно не изменялись,
+ * и самые давние записи сверх заданного количества переносятся из основного хранилища
+ * в отдельное, где каждая запись сжата deflate. Основное хранилище остается небольшим
+ * и быстро открывается, а холодное открывается только при обращении к нему.
+ * Списки и поиск объединяют заголовки обоих уровней, поэтому перенесенные записи
+ * показываются как обычные. Запись читается с холодного уровня по требованию
+ * и при открытии возвращается в основное хранилище.
+ * Заголовки записей на холодном уровне те же, что были в основном хранилище.
+ * Все изменения уровней выполняются в потоке записи {@link StorageExecutor}
+ */
+final class ColdTier {
+    // Записи, не изменявшиеся дольше этого срока, переносятся на холодный уровень
+    static final long DEFAULT_MAX_AGE_MS = 180L * 24 * 60 * 60 * 1000;
+    // Наибольшее количество записей в основном хранилище
+    static final int DEFAULT_MAX_HOT_RECORDS = 500;
+
+    private static final Comparator<RecordHeader> OLDEST_FIRST = (a, b) -> {
+        int byDate = Long.compare(a.getCreatedAtMillis(), b.getCreatedAtMillis());
+        return byDate != 0 ? byDate : Integer.compare(a.getId(), b.getId());
+    };
+    private static final Comparator<RecordHeader> NEWEST_FIRST = OLDEST_FIRST.reversed();
+    private static final Comparator<RecordHeader> LEAST_RECENTLY_MODIFIED = (a, b) -> {
+        int byTime = Long.compare(a.getModifiedAtMillis(), b.getModifiedAtMillis());
+        return byTime != 0 ? byTime : Integer.compare(a.getId(), b.getId());
+    };
+
+    private final RecordStore hot;
+    private final RecordStore cold;
+    private boolean reconciled;
+
+    /**
+     * Преобразует запись основного хранилища в самодостаточный вид для холодного уровня
+     * (например, со встроенными пунктами вместо ссылок на каталог)
+     */
+    interface Encoder {
+        byte[] encode(int id, byte[] data) throws IOException;
+    }
+
+    ColdTier(RecordStore hot, RecordStore cold) {
+        this.hot = hot;
+        this.cold = cold;
+    }
+
+    /**
+     * Строит заголовки записей холодного уровня по сжатым данным, если файл заголовков утерян
+     */
+    static RecordStore.HeaderExtractor extractor(RecordStore.HeaderExtractor plain) {
+        return (id, data) -> {
+            try {
+                return plain.extract(id, decompress(data));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return new RecordHeader(id, null, null, data.length, 0, null);
+            }
+        };
+    }
+
+    static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] decompress(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Сжатая запись обрывается");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Сжатая запись повреждена", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Выбирает записи основного хранилища для переноса на холодный уровень:
+     * не изменявшиеся дольше maxAgeMillis и самые давние сверх maxHotRecords
+     * @return ID записей, начиная с давно не изменявшихся
+     */
+    List<Integer> selectCold(long now, long maxAgeMillis, int maxHotRecords) throws IOException {
+        List<RecordHeader> headers = hot.getHeaders();
+        headers.sort(LEAST_RECENTLY_MODIFIED);
+        int excess = headers.size() - Math.max(0, maxHotRecords);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < headers.size(); i++) {
+            RecordHeader header = headers.get(i);
+            if (i >= excess && now - header.getModifiedAtMillis() < maxAgeMillis) {
+                break;
+            }
+            ids.add(header.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Переносит записи на холодный уровень одним набором изменений. Запись удаляется
+     * из основного хранилища только после того, как сжатая копия сброшена на диск
+     * @return ID перенесенных записей
+     */
+    synchronized List<Integer> demote(Collection<Integer> ids, Encoder encoder) throws IOException {
+        ensureReconciled();
+        RecordStore.Batch moved = new RecordStore.Batch();
+        RecordStore.Batch removed = new RecordStore.Batch();
+        List<Integer> demoted = new ArrayList<>();
+        for (int id : ids) {
+            RecordHeader header;
+            byte[] data;
+            synchronized (hot) {
+                header = hot.getHeader(id);
+                data = hot.get(id);
+            }
+            if (data == null) {
+                continue;
+            }
+            moved.put(id, compress(encoder.encode(id, data)), header);
+            removed.delete(id);
+            demoted.add(id);
+        }
+        if (demoted.isEmpty()) {
+            return demoted;
+        }
+        cold.apply(moved);
+        cold.sync();
+        hot.apply(removed);
+        return demoted;
+    }
+
+    /**
+     * Читает запись холодного уровня
+     * @return Распакованные данные или null, если записи на холодном уровне нет
+     */
+    synchronized byte[] get(int id) throws IOException {
+        ensureReconciled();
+        byte[] data = cold.get(id);
+        return data != null ? decompress(data) : null;
+    }
+
+    synchronized boolean contains(int id) throws IOException {
+        ensureReconciled();
+        return cold.contains(id);
+    }
+
+    /**
+     * Возвращает ID, под которым нужно сохранить запись: прежний, если запись
+     * есть на холодном уровне, иначе как {@link RecordStore#resolveId}. Перезаписанная запись
+     * холодного уровня остается под своим ID, а не сохраняется рядом с ним новой
+     */
+    synchronized int resolveId(int id) throws IOException {
+        ensureReconciled();
+        return cold.contains(id) ? id : hot.resolveId(id);
+    }
+
+    synchronized int size() throws IOException {
+        ensureReconciled();
+        return cold.size();
+    }
+
+    /**
+     * Удаляет записи с холодного уровня: после удаления записи из основного хранилища
+     * или после того, как ее копия записана в основное хранилище
+     * @return Количество удаленных записей
+     */
+    synchronized int delete(Collection<Integer> ids) throws IOException {
+        ensureReconciled();
+        RecordStore.Batch batch = new RecordStore.Batch();
+        for (int id : ids) {
+            batch.delete(id);
+        }
+        return cold.apply(batch);
+    }
+
+    /**
+     * Страница заголовков обоих уровней, упорядоченных по дате создания
+     */
+    List<RecordHeader> queryHeaders(SortOrder order, int offset, int limit) throws IOException {
+        if (size() == 0) {
+            return hot.queryHeaders(order, offset, limit);
+        }
+        // Каждый уровень уже упорядочен: достаточно слить их начала до конца страницы
+        int end = (int) Math.min(Integer.MAX_VALUE, (long) Math.max(0, offset) + Math.max(0, limit));
+        return merge(hot.queryHeaders(order, 0, end), cold.queryHeaders(order, 0, end),
+                order == SortOrder.NEWEST_FIRST ? NEWEST_FIRST : OLDEST_FIRST, offset, limit);
+    }
+
+    /**
+     * Поиск по заголовкам обоих уровней; результаты упорядочены от новых к старым
+     */
+    List<RecordHeader> search(String query, int offset, int limit) throws IOException {
+        if (size() == 0) {
+            return hot.search(query, offset, limit);
+        }
+        int end = (int) Math.min(Integer.MAX_VALUE, (long) Math.max(0, offset) + Math.max(0, limit));
+        return merge(hot.search(query, 0, end), cold.search(query, 0, end), NEWEST_FIRST, offset, limit);
+    }
+
+    /**
+     * Записи обоих уровней, ссылающиеся на общий объект, по возрастанию ID
+     */
+    List<RecordHeader> findReferences(String reference) throws IOException {
+        List<RecordHeader> headers = hot.findReferences(reference);
+        if (size() > 0) {
+            headers.addAll(cold.findReferences(reference));
+            headers.sort(Comparator.comparingInt(RecordHeader::getId));
+        }
+        return headers;
+    }
+
+    /**
+     * Заголовки всех записей: сначала основного хранилища, затем холодного уровня
+     */
+    List<RecordHeader> getHeaders() throws IOException {
+        List<RecordHeader> headers = hot.getHeaders();
+        if (size() > 0) {
+            headers.addAll(cold.getHeaders());
+        }
+        return headers;
+    }
+
+    /**
+     * Сливает два упорядоченных списка и возвращает страницу результата.
+     * Запись, которая в момент переноса оказалась на обоих уровнях, показывается один раз
+     */
+    private static List<RecordHeader> merge(List<RecordHeader> first, List<RecordHeader> second,
+                                            Comparator<RecordHeader> order, int offset, int limit) {
+        List<RecordHeader> page = new ArrayList<>(Math.max(0, Math.min(limit, first.size() + second.size())));
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        RecordHeader previous = null;
+        while ((i < first.size() || j < second.size()) && page.size() < limit) {
+            RecordHeader next;
+            if (j >= second.size() || (i < first.size() && order.compare(first.get(i), second.get(j)) <= 0)) {
+                next = first.get(i++);
+            } else {
+                next = second.get(j++);
+            }
+            if (previous != null && previous.getId() == next.getId()) {
+                continue;
+            }
+            previous = next;
+            if (position++ >= offset) {
+                page.add(next);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * После сбоя между записью копии и удалением оригинала запись может оказаться
+     * на обоих уровнях. Копия основного хранилища новее, поэтому копия холодного уровня удаляется
+     */
+    private void ensureReconciled() throws IOException {
+        if (reconciled) {
+            return;
+        }
+        RecordStore.Batch stale = new RecordStore.Batch();
+        for (RecordHeader header : cold.getHeaders()) {
+            if (hot.contains(header.getId())) {
+                stale.delete(header.getId());
+            }
+        }
+        if (stale.size() > 0) {
+            cold.apply(stale);
+        }
+        reconciled = true;
+    }
+}
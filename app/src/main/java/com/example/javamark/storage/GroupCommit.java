@@ -0,0 +1,126 @@
+package com.example.javamark.storage;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Групповая фиксация записей на диске. Хранилища отмечают здесь файлы,
+ * измененные текущей группой записей, а поток записи {@link StorageExecutor}
+ * после выполнения всей группы сбрасывает каждый из них на диск одним fsync
+ * и только после этого подтверждает сохранения.
+ * Действия, которые можно выполнить только после фиксации (например, удаление
+ * файла изменений, свернутого в новый снимок), откладываются до нее.
+ */
+final class GroupCommit {
+    private static final String TAG = "GroupCommit";
+
+    /**
+     * Файл или хранилище, которое нужно сбросить на диск
+     */
+    interface Syncable {
+        void sync() throws IOException;
+    }
+
+    private static final Set<Syncable> pendingSyncs = new LinkedHashSet<>();
+    private static final List<Runnable> afterCommit = new ArrayList<>();
+
+    private GroupCommit() {
+    }
+
+    /**
+     * Отмечает, что объект изменен и должен быть сброшен на диск при фиксации
+     */
+    static void register(Syncable target) {
+        synchronized (pendingSyncs) {
+            pendingSyncs.add(target);
+        }
+    }
+
+    /**
+     * Откладывает действие до успешной фиксации текущей группы
+     */
+    static void afterCommit(Runnable action) {
+        synchronized (pendingSyncs) {
+            afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск все отмеченные объекты, затем выполняет отложенные действия
+     * @return количество сброшенных объектов
+     */
+    static int commit() throws IOException {
+        List<Syncable> targets;
+        List<Runnable> actions;
+        synchronized (pendingSyncs) {
+            targets = new ArrayList<>(pendingSyncs);
+            actions = new ArrayList<>(afterCommit);
+            pendingSyncs.clear();
+            afterCommit.clear();
+        }
+
+        IOException failure = null;
+        for (Syncable target : targets) {
+            try {
+                target.sync();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            // Отложенные действия выполнятся со следующей успешной фиксацией
+            synchronized (pendingSyncs) {
+                pendingSyncs.addAll(targets);
+                afterCommit.addAll(0, actions);
+            }
+            throw failure;
+        }
+
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Ошибка отложенного действия: " + e.getMessage());
+            }
+        }
+        return targets.size();
+    }
+
+    /**
+     * Сброс на диск файла, который записывается через собственный дескриптор
+     */
+    static final class FileSync implements Syncable {
+        private final File file;
+
+        FileSync(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void sync() throws IOException {
+            if (!file.exists()) {
+                return;
+            }
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.getFD().sync();
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FileSync && ((FileSync) o).file.equals(file);
+        }
+
+        @Override
+        public int hashCode() {
+            return file.hashCode();
+        }
+    }
+}
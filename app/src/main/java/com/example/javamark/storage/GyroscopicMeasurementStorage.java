@@ -3,60 +3,70 @@ package com.example.javamark.storage;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import com.example.javamark.model.AngleValue;
 import com.example.javamark.model.GyroscopicMeasurement;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Класс для сохранения и загрузки измерений гироскопического ориентирования
+ * Класс для сохранения и загрузки измерений гироскопического ориентирования.
+ * Каждое измерение хранится отдельной записью в журнальном хранилище {@link RecordStore}
+ * в двоичном формате {@link BinaryCodec}. Записи в JSON, сохраненные прежними версиями,
+ * переводятся в текущую схему ({@link RecordSchema}) при чтении и перезаписываются в фоне.
+ * Прочитанные измерения держатся в общем кеше {@link ObjectCache}.
+ * Операции над несколькими измерениями (удаление, копирование, перенос в архив, сохранение)
+ * записываются одним набором изменений ({@link RecordStore.Batch}). Архивные измерения
+ * хранятся в отдельном хранилище и не показываются в основном списке.
+ * Давно не изменявшиеся измерения переносятся на сжатый холодный уровень ({@link ColdTier});
+ * в списках и поиске они видны как обычные и возвращаются в основное хранилище при открытии.
+ * Измерение, измененное или удаленное после чтения, не перезаписывается молча:
+ * сохранение завершается {@link WriteConflictException}
  */
 public class GyroscopicMeasurementStorage {
     private static final String PREFS_NAME = "gyroscopic_measurements";
     private static final String MEASUREMENTS_KEY = "saved_measurements";
-    private final SharedPreferences preferences;
+    private static final String ARCHIVE_NAME = PREFS_NAME + "_archive";
+    private static final String COLD_NAME = PREFS_NAME + "_cold";
+    private final RecordStore store;
+    private final RecordStore archive;
+    private final ColdTier coldTier;
+    private final StorageExecutor executor;
+    private final ObjectCache cache;
     private final Gson gson;
+    private final RecordSchema schema;
 
     public GyroscopicMeasurementStorage(Context context) {
-        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+        gson = JsonCodec.gson();
+        schema = new RecordSchema(this::fillPsiTDirectValue);
+        store = RecordStore.open(context, PREFS_NAME, this::extractHeader);
+        archive = RecordStore.open(context, ARCHIVE_NAME, this::extractHeader);
+        coldTier = new ColdTier(store, RecordStore.open(context, COLD_NAME, ColdTier.extractor(this::extractHeader)));
+        executor = StorageExecutor.getInstance();
+        cache = ObjectCache.getInstance();
+        cache.register(context);
+        migrateFromPreferences(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
     }
 
     /**
-     * Сохраняет измерение в хранилище
+     * Сохраняет измерение в хранилище, дожидаясь завершения записи
      * @param measurement Измерение для сохранения
      * @return true, если сохранение прошло успешно
      */
     public boolean saveMeasurement(GyroscopicMeasurement measurement) {
         try {
-            List<GyroscopicMeasurement> measurements = getAllMeasurements();
-
-            // Проверяем, существует ли измерение с таким ID
-            boolean exists = false;
-            for (int i = 0; i < measurements.size(); i++) {
-                if (measurements.get(i).getId() == measurement.getId()) {
-                    // Обновляем существующее измерение
-                    measurements.set(i, measurement);
-                    exists = true;
-                    break;
-                }
-            }
-
-            // Если измерение новое, присваиваем ему ID и добавляем в список
-            if (!exists) {
-                measurement.setId(generateMeasurementId(measurements));
-                measurements.add(measurement);
-            }
-
-            // Сохраняем обновленный список измерений
-            String json = gson.toJson(measurements);
-            SharedPreferences.Editor editor = preferences.edit();
-            editor.putString(MEASUREMENTS_KEY, json);
-            editor.apply();
-            return true;
+            return enqueueSave(measurement, true, false).get();
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -64,17 +74,90 @@ public class GyroscopicMeasurementStorage {
     }
 
     /**
-     * Получает все сохраненные измерения
+     * Ставит сохранение в очередь потока записи, не блокируя вызывающий поток.
+     * ID новому объекту присваивается сразу, а сериализация выполняется в фоне.
+     * Несколько сохранений подряд объединяются в одну запись
+     * @param measurement Измерение для сохранения
+     * @return Future с результатом сохранения; завершается {@link WriteConflictException},
+     *         если измерение изменено или удалено после чтения
+     */
+    public CompletableFuture<Boolean> saveMeasurementAsync(GyroscopicMeasurement measurement) {
+        return enqueueSave(measurement, false, false);
+    }
+
+    /**
+     * Сохраняет измерение без проверки версии, заменяя изменения, сделанные после его чтения
+     * @param measurement Измерение для сохранения
+     * @return Future с результатом сохранения
+     */
+    public CompletableFuture<Boolean> overwriteMeasurementAsync(GyroscopicMeasurement measurement) {
+        return enqueueSave(measurement, false, true);
+    }
+
+    /**
+     * Получает все измерения основного хранилища; измерения холодного уровня не загружаются
      * @return Список измерений
      */
     public List<GyroscopicMeasurement> getAllMeasurements() {
-        String json = preferences.getString(MEASUREMENTS_KEY, "");
-        if (json.isEmpty()) {
+        List<GyroscopicMeasurement> measurements = new ArrayList<>();
+        try {
+            synchronized (store) {
+                for (byte[] data : store.getAll()) {
+                    GyroscopicMeasurement measurement = read(data);
+                    measurement.setVersion(store.getVersion(measurement.getId()));
+                    measurements.add(measurement);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return measurements;
+    }
+
+    /**
+     * Получает заголовки сохраненных измерений без загрузки самих объектов
+     * @return Список заголовков
+     */
+    public List<RecordHeader> getMeasurementHeaders() {
+        try {
+            return coldTier.getHeaders();
+        } catch (Exception e) {
+            e.printStackTrace();
             return new ArrayList<>();
         }
+    }
 
-        Type type = new TypeToken<List<GyroscopicMeasurement>>() {}.getType();
-        return gson.fromJson(json, type);
+    /**
+     * Получает страницу заголовков сохраненных измерений, упорядоченных по дате создания
+     * @param order Порядок сортировки
+     * @param offset Номер первой записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков страницы
+     */
+    public List<RecordHeader> queryMeasurementHeaders(SortOrder order, int offset, int limit) {
+        try {
+            return coldTier.queryHeaders(order, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Ищет сохраненные измерения по началам слов в названии измерения,
+     * не загружая сами объекты. Найденные записи упорядочены от новых к старым
+     * @param query Строка поиска
+     * @param offset Номер первой найденной записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков найденных записей
+     */
+    public List<RecordHeader> searchMeasurementHeaders(String query, int offset, int limit) {
+        try {
+            return coldTier.search(query, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
     }
 
     /**
@@ -83,52 +166,511 @@ public class GyroscopicMeasurementStorage {
      * @return Измерение или null, если не найдено
      */
     public GyroscopicMeasurement getMeasurementById(int measurementId) {
-        List<GyroscopicMeasurement> measurements = getAllMeasurements();
-        for (GyroscopicMeasurement measurement : measurements) {
-            if (measurement.getId() == measurementId) {
-                return measurement;
+        try {
+            String key = writeKey(measurementId);
+            Object cached = cache.get(key);
+            if (cached != null) {
+                return ModelCopier.copy((GyroscopicMeasurement) cached);
+            }
+            long stamp = cache.stamp();
+            if (!store.contains(measurementId)) {
+                GyroscopicMeasurement cold = readCold(measurementId);
+                // Измерение могло вернуться в основное хранилище между проверкой и чтением холодного уровня
+                if (cold != null || !store.contains(measurementId)) {
+                    return cold;
+                }
             }
+            long version;
+            byte[] data;
+            synchronized (store) {
+                version = store.getVersion(measurementId);
+                data = store.get(measurementId);
+            }
+            if (data == null) {
+                return null;
+            }
+            GyroscopicMeasurement measurement = read(data);
+            measurement.setVersion(version);
+            cache.put(key, stamp, ModelCopier.copy(measurement), data.length);
+            return measurement;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
         }
-        return null;
     }
 
     /**
-     * Удаляет измерение из хранилища
+     * Удаляет измерение из хранилища, дожидаясь завершения записи
      * @param measurementId ID измерения для удаления
      * @return true, если удаление прошло успешно
      */
     public boolean deleteMeasurement(int measurementId) {
         try {
-            List<GyroscopicMeasurement> measurements = getAllMeasurements();
-            for (int i = 0; i < measurements.size(); i++) {
-                if (measurements.get(i).getId() == measurementId) {
-                    measurements.remove(i);
-                    String json = gson.toJson(measurements);
-                    SharedPreferences.Editor editor = preferences.edit();
-                    editor.putString(MEASUREMENTS_KEY, json);
-                    editor.apply();
-                    return true;
+            return enqueueDelete(measurementId, true).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Ставит удаление в очередь потока записи
+     * @param measurementId ID измерения для удаления
+     * @return Future с результатом удаления
+     */
+    public CompletableFuture<Boolean> deleteMeasurementAsync(int measurementId) {
+        return enqueueDelete(measurementId, false);
+    }
+
+    /**
+     * Удаляет несколько измерений одной записью в хранилище
+     * @param measurementIds ID измерений для удаления
+     * @return Future с количеством удаленных измерений
+     */
+    public CompletableFuture<Integer> deleteMeasurementsAsync(Collection<Integer> measurementIds) {
+        List<Integer> ids = new ArrayList<>(measurementIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            for (int id : ids) {
+                batch.delete(id);
+            }
+            int deleted = store.apply(batch) + coldTier.delete(ids);
+            for (int id : ids) {
+                cache.invalidate(writeKey(id));
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Создает копии нескольких измерений одной записью в хранилище.
+     * Копия получает новый ID, текущую дату и название с указанным окончанием
+     * @param measurementIds ID копируемых измерений
+     * @param nameSuffix Окончание названия копии
+     * @return Future с количеством созданных копий
+     */
+    public CompletableFuture<Integer> duplicateMeasurementsAsync(Collection<Integer> measurementIds,
+                                                                String nameSuffix) {
+        List<Integer> ids = new ArrayList<>(measurementIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            long now = System.currentTimeMillis();
+            for (int id : ids) {
+                byte[] data = load(id);
+                if (data == null) {
+                    continue;
                 }
+                GyroscopicMeasurement copy = decode(data);
+                copy.setId(store.resolveId(0));
+                copy.setName(copy.getName() != null ? copy.getName() + nameSuffix : null);
+                copy.setCreatedAt(new Date(now));
+                byte[] encoded = encode(copy);
+                batch.put(copy.getId(), encoded, header(copy, encoded.length));
             }
-            return false;
+            return store.apply(batch);
+        });
+    }
+
+    /**
+     * Сохраняет несколько измерений одной записью в хранилище.
+     * ID новым измерениям присваиваются сразу, а сериализация выполняется в фоне.
+     * Если хоть одно измерение изменено после чтения, не сохраняется ни одно
+     * @param measurements Измерения для сохранения
+     * @return Future с количеством сохраненных измерений; завершается
+     *         {@link WriteConflictException} при конфликте версий
+     */
+    public CompletableFuture<Integer> saveMeasurementsAsync(List<GyroscopicMeasurement> measurements) {
+        try {
+            for (GyroscopicMeasurement measurement : measurements) {
+                measurement.setId(coldTier.resolveId(measurement.getId()));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(0);
+        }
+
+        List<GyroscopicMeasurement> items = new ArrayList<>(measurements);
+        // Копии снимаются в вызывающем потоке: экран может изменять измерения, пока они ждут записи
+        List<GyroscopicMeasurement> snapshots = new ArrayList<>(items.size());
+        for (GyroscopicMeasurement measurement : items) {
+            snapshots.add(ModelCopier.copy(measurement));
+        }
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            for (int i = 0; i < items.size(); i++) {
+                GyroscopicMeasurement snapshot = snapshots.get(i);
+                byte[] data = encode(snapshot);
+                batch.put(snapshot.getId(), data, header(snapshot, data.length))
+                        .expect(snapshot.getId(), items.get(i).getVersion());
+            }
+            int saved = store.apply(batch);
+            for (GyroscopicMeasurement measurement : items) {
+                measurement.setVersion(store.getVersion(measurement.getId()));
+                cache.invalidate(writeKey(measurement.getId()));
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Переносит несколько измерений в архив, сохраняя их ID. Измерение удаляется
+     * из основного хранилища только после того, как архивная копия сброшена на диск;
+     * после сбоя между этими шагами измерение остается в обоих хранилищах
+     * @param measurementIds ID измерений
+     * @return Future с количеством перенесенных измерений
+     */
+    public CompletableFuture<Integer> archiveMeasurementsAsync(Collection<Integer> measurementIds) {
+        List<Integer> ids = new ArrayList<>(measurementIds);
+        return executor.submitBulk(() -> {
+            // Измерения холодного уровня переносятся в архив через основное хранилище
+            for (int id : ids) {
+                promoteCold(id);
+            }
+            int moved = move(ids, store, archive);
+            for (int id : ids) {
+                cache.invalidate(writeKey(id));
+            }
+            return moved;
+        });
+    }
+
+    /**
+     * Возвращает измерения из архива в основное хранилище
+     * @param measurementIds ID архивных измерений
+     * @return Future с количеством возвращенных измерений
+     */
+    public CompletableFuture<Integer> restoreArchivedMeasurementsAsync(Collection<Integer> measurementIds) {
+        List<Integer> ids = new ArrayList<>(measurementIds);
+        return executor.submitBulk(() -> {
+            int moved = move(ids, archive, store);
+            for (int id : ids) {
+                cache.invalidate(writeKey(id));
+            }
+            return moved;
+        });
+    }
+
+    /**
+     * Удаляет несколько измерений из архива одной записью
+     * @param measurementIds ID архивных измерений
+     * @return Future с количеством удаленных измерений
+     */
+    public CompletableFuture<Integer> deleteArchivedMeasurementsAsync(Collection<Integer> measurementIds) {
+        List<Integer> ids = new ArrayList<>(measurementIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            for (int id : ids) {
+                batch.delete(id);
+            }
+            return archive.apply(batch);
+        });
+    }
+
+    /**
+     * Получает страницу заголовков архивных измерений, упорядоченных по дате создания
+     * @param order Порядок сортировки
+     * @param offset Номер первой записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков страницы
+     */
+    public List<RecordHeader> queryArchivedMeasurementHeaders(SortOrder order, int offset, int limit) {
+        try {
+            return archive.queryHeaders(order, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Ищет архивные измерения по началам слов в названии измерения
+     * @param query Строка поиска
+     * @param offset Номер первой найденной записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков найденных записей
+     */
+    public List<RecordHeader> searchArchivedMeasurementHeaders(String query, int offset, int limit) {
+        try {
+            return archive.search(query, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Переносит записи из одного хранилища в другое как есть: запись измерения
+     * не зависит от хранилища. Из исходного хранилища записи удаляются только после того,
+     * как они сброшены на диск в целевом
+     * @return Количество перенесенных записей
+     */
+    private int move(List<Integer> ids, RecordStore from, RecordStore to) throws IOException {
+        RecordStore.Batch copied = new RecordStore.Batch();
+        RecordStore.Batch removed = new RecordStore.Batch();
+        for (int id : ids) {
+            byte[] data = from.get(id);
+            RecordHeader header = from.getHeader(id);
+            if (data == null) {
+                continue;
+            }
+            copied.put(id, data, header != null ? header : extractHeader(id, data));
+            removed.delete(id);
+        }
+        if (copied.size() == 0) {
+            return 0;
+        }
+        int moved = to.apply(copied);
+        to.sync();
+        from.apply(removed);
+        return moved;
+    }
+
+    /**
+     * @param overwrite true, чтобы сохранить измерение без проверки версии
+     */
+    private CompletableFuture<Boolean> enqueueSave(GyroscopicMeasurement measurement, boolean immediate,
+                                                   boolean overwrite) {
+        try {
+            // Если измерение новое, присваиваем ему ID
+            measurement.setId(coldTier.resolveId(measurement.getId()));
         } catch (Exception e) {
             e.printStackTrace();
+            return CompletableFuture.completedFuture(false);
+        }
+
+        int id = measurement.getId();
+        // Копия снимается в вызывающем потоке: экран может изменять измерение, пока оно ждет записи.
+        // Версия читается в потоке записи: после предыдущего сохранения она уже обновлена
+        GyroscopicMeasurement snapshot = ModelCopier.copy(measurement);
+        return executor.submit(writeKey(id), () -> {
+            byte[] data = encode(snapshot);
+            long expected = overwrite ? store.getVersion(id) : measurement.getVersion();
+            long version = store.compareAndPut(id, expected, data, header(snapshot, data.length));
+            if (version == RecordStore.CONFLICT) {
+                throw new WriteConflictException(id);
+            }
+            measurement.setVersion(version);
+            if (overwrite) {
+                dropColdCopy(id);
+            }
+            cache.invalidate(writeKey(id));
+            return true;
+        }, immediate);
+    }
+
+    private CompletableFuture<Boolean> enqueueDelete(int measurementId, boolean immediate) {
+        // Отдельный ключ: последующее сохранение не заменяет удаление, а выполняется после него
+        return executor.submit(deleteKey(measurementId), () -> {
+            boolean deleted = store.delete(measurementId)
+                    | coldTier.delete(Collections.singletonList(measurementId)) > 0;
+            cache.invalidate(writeKey(measurementId));
+            return deleted;
+        }, immediate);
+    }
+
+    /**
+     * Переносит на холодный уровень измерения, не изменявшиеся дольше указанного срока,
+     * и самые давние измерения сверх указанного количества. Записи в JSON
+     * при переносе переводятся в двоичный формат
+     * @param maxAgeMillis Срок, после которого неизменявшееся измерение переносится
+     * @param maxHotRecords Наибольшее количество измерений в основном хранилище
+     * @return Future с количеством перенесенных измерений
+     */
+    public CompletableFuture<Integer> demoteColdMeasurementsAsync(long maxAgeMillis, int maxHotRecords) {
+        return executor.submitBulk(() -> {
+            List<Integer> ids = coldTier.selectCold(System.currentTimeMillis(), maxAgeMillis, maxHotRecords);
+            List<Integer> moved = coldTier.demote(ids, (id, data) -> encode(decode(data)));
+            for (int id : moved) {
+                cache.invalidate(writeKey(id));
+            }
+            return moved.size();
+        });
+    }
+
+    /**
+     * Читает измерение прямо с холодного уровня, а возвращение в основное хранилище
+     * ставит в очередь потока записи, не дожидаясь его. Версия записи при возвращении
+     * не меняется, поэтому прочитанное измерение сохраняется без конфликта
+     * @return Измерение или null, если на холодном уровне его нет
+     */
+    private GyroscopicMeasurement readCold(int measurementId) throws IOException {
+        // Версия читается раньше данных: изменение между чтениями приведет к конфликту при сохранении
+        long version = store.getVersion(measurementId);
+        byte[] data = coldTier.get(measurementId);
+        if (data == null) {
+            return null;
+        }
+        executor.submit(promoteKey(measurementId), () -> promoteCold(measurementId), false);
+        GyroscopicMeasurement measurement = decode(data);
+        measurement.setVersion(version);
+        return measurement;
+    }
+
+    /**
+     * Записывает измерение с холодного уровня в основное хранилище и удаляет его копию
+     * с холодного уровня. Выполняется в потоке записи
+     * @return false, если измерения на холодном уровне нет
+     */
+    private boolean promoteCold(int measurementId) throws IOException {
+        byte[] data = coldTier.get(measurementId);
+        if (data == null) {
             return false;
         }
+        if (!store.contains(measurementId)) {
+            store.restore(measurementId, data, header(decode(data), data.length));
+            store.sync();
+        }
+        coldTier.delete(Collections.singletonList(measurementId));
+        cache.invalidate(writeKey(measurementId));
+        return true;
+    }
+
+    /**
+     * Удаляет копию измерения с холодного уровня, если измерение перезаписано после переноса туда.
+     * Новая запись сначала сбрасывается на диск, чтобы сбой не оставил измерение без обеих копий
+     */
+    private void dropColdCopy(int measurementId) throws IOException {
+        if (coldTier.contains(measurementId)) {
+            store.sync();
+            coldTier.delete(Collections.singletonList(measurementId));
+        }
     }
 
     /**
-     * Генерирует уникальный ID для нового измерения
-     * @param measurements Список существующих измерений
-     * @return Уникальный ID
+     * Данные измерения из основного хранилища или с холодного уровня
      */
-    private int generateMeasurementId(List<GyroscopicMeasurement> measurements) {
-        int maxId = 0;
-        for (GyroscopicMeasurement measurement : measurements) {
-            if (measurement.getId() > maxId) {
-                maxId = measurement.getId();
+    private byte[] load(int measurementId) throws IOException {
+        byte[] data = store.get(measurementId);
+        return data != null ? data : coldTier.get(measurementId);
+    }
+
+    private String writeKey(int id) {
+        return PREFS_NAME + "#" + id;
+    }
+
+    private byte[] encode(GyroscopicMeasurement measurement) {
+        return BinaryCodec.encodeGyroscopic(measurement);
+    }
+
+    private String deleteKey(int id) {
+        return writeKey(id) + "#delete";
+    }
+
+    private String promoteKey(int id) {
+        return writeKey(id) + "#promote";
+    }
+
+    private String upgradeKey(int id) {
+        return writeKey(id) + "#upgrade";
+    }
+
+    /**
+     * Читает запись в двоичном формате или в JSON, если она сохранена прежней версией.
+     * JSON-записи переводятся в текущую схему
+     */
+    private GyroscopicMeasurement decode(byte[] data) throws IOException {
+        if (BinaryCodec.isBinary(data)) {
+            return BinaryCodec.decodeGyroscopic(data);
+        }
+        return gson.fromJson(schema.upgrade(data), GyroscopicMeasurement.class);
+    }
+
+    /**
+     * Читает измерение; если запись сохранена в прежней версии схемы, перезаписывает ее в фоне
+     */
+    private GyroscopicMeasurement read(byte[] data) throws IOException {
+        GyroscopicMeasurement measurement = decode(data);
+        if (schema.isStale(data)) {
+            scheduleUpgrade(measurement.getId());
+        }
+        return measurement;
+    }
+
+    /**
+     * Ставит в очередь перезапись измерения в двоичном формате. Ключ отличается от ключа
+     * сохранения, чтобы не заменить ожидающее сохранение; к моменту выполнения
+     * запись перечитывается и не трогается, если ее уже перезаписали.
+     * Версия записи при этом не меняется
+     */
+    private void scheduleUpgrade(int measurementId) {
+        executor.submit(upgradeKey(measurementId), () -> {
+            long version;
+            byte[] data;
+            synchronized (store) {
+                version = store.getVersion(measurementId);
+                data = store.get(measurementId);
             }
+            if (data == null || !schema.isStale(data)) {
+                return true;
+            }
+            GyroscopicMeasurement measurement = decode(data);
+            byte[] upgraded = encode(measurement);
+            store.rewrite(measurementId, version, upgraded, header(measurement, upgraded.length));
+            cache.invalidate(writeKey(measurementId));
+            return true;
+        }, false);
+    }
+
+    /**
+     * Схема 2: прямое значение ψt = t × (n₀ - nₖ). В записях, сохраненных до появления поля,
+     * оно вычисляется из сохраненных t, n₀ и nₖ
+     */
+    private void fillPsiTDirectValue(JsonObject record) {
+        if (record.has("psiTDirectValue") || !(record.get("psiT") instanceof JsonObject)
+                || !(record.get("t") instanceof JsonObject)) {
+            return;
+        }
+        AngleValue t = gson.fromJson(record.get("t"), AngleValue.class);
+        double n0 = record.has("n0Value") ? record.get("n0Value").getAsDouble() : 0.0;
+        // Без сохраненного nₖ при чтении будет взято значение по умолчанию модели
+        double nk = record.has("nkValue") ? record.get("nkValue").getAsDouble()
+                : new GyroscopicMeasurement().getNkValue();
+        record.addProperty("psiTDirectValue", t.toDecimalDegrees() * (n0 - nk));
+    }
+
+    private RecordHeader header(GyroscopicMeasurement measurement, int size) {
+        return new RecordHeader(measurement.getId(), measurement.getName(), measurement.getCreatedAt(), size, 0,
+                measurement.getGyroscopicAzimuth() != null ? measurement.getGyroscopicAzimuth().toString() : null);
+    }
+
+    private RecordHeader extractHeader(int id, byte[] data) {
+        try {
+            return header(decode(data), data.length);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new RecordHeader(id, null, null, data.length, 0, null);
+        }
+    }
+
+    /**
+     * Переносит измерения, сохраненные прежними версиями приложения одним JSON-списком
+     * в SharedPreferences, в журнальное хранилище
+     */
+    private void migrateFromPreferences(SharedPreferences preferences) {
+        String json = preferences.getString(MEASUREMENTS_KEY, "");
+        if (json.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Измерения прежних версий приложения переводятся в текущую схему до записи
+            JsonArray items = JsonParser.parseString(json).getAsJsonArray();
+            for (int i = 0; i < items.size(); i++) {
+                items.set(i, schema.upgrade(items.get(i), RecordSchema.LEGACY_VERSION));
+            }
+            Type type = new TypeToken<List<GyroscopicMeasurement>>() {}.getType();
+            List<GyroscopicMeasurement> measurements = gson.fromJson(items, type);
+            synchronized (store) {
+                for (GyroscopicMeasurement measurement : measurements) {
+                    byte[] data = encode(measurement);
+                    store.put(measurement.getId(), data, header(measurement, data.length));
+                }
+            }
+            // Старый список удаляется только после того, как записи сброшены на диск
+            GroupCommit.commit();
+            preferences.edit().remove(MEASUREMENTS_KEY).commit();
+        } catch (Exception e) {
+            e.printStackTrace();
         }
-        return maxId + 1;
     }
-}
\ No newline at end of file
+}
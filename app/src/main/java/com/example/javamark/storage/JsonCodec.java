@@ -0,0 +1,701 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.Angles;
+import com.example.javamark.model.CalculationResult;
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.GyroscopicMeasurement.Angle;
+import com.example.javamark.model.Project;
+import com.example.javamark.model.ReferencePoint;
+import com.example.javamark.model.StationColumns;
+import com.example.javamark.model.StationMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Общий для процесса экземпляр Gson с написанными вручную адаптерами моделей.
+ * Адаптеры не используют отражение и пишут JSON в том же виде, что и
+ * стандартный Gson (имена и порядок полей, пропуск null), поэтому записи,
+ * сохраненные прежними версиями, читаются без изменений.
+ * Даты сериализуются стандартным адаптером Gson.
+ */
+public final class JsonCodec {
+    private static final Gson GSON = create();
+
+    private JsonCodec() {
+    }
+
+    /**
+     * Возвращает общий экземпляр Gson
+     */
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /**
+     * Каталог пунктов, в котором хранятся названия и координаты пунктов проектов.
+     * Запись проекта тогда содержит только ссылку на пункт каталога и измеренный угол
+     */
+    interface PointCatalog {
+        /**
+         * Находит пункт с таким содержимым или добавляет его в каталог
+         * @return Ссылка на пункт каталога
+         */
+        int intern(String name, double x, double y) throws IOException;
+
+        /**
+         * Пункт каталога по ссылке: заполнены название и координаты
+         */
+        ReferencePoint resolve(int ref) throws IOException;
+    }
+
+    /**
+     * Создает новый экземпляр Gson с адаптерами моделей
+     */
+    static Gson create() {
+        return create(null);
+    }
+
+    /**
+     * Создает экземпляр Gson, который пишет пункты проектов ссылками на каталог.
+     * Пункты, записанные целиком, читаются как и прежде
+     */
+    static Gson create(PointCatalog catalog) {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new ModelAdapterFactory(catalog))
+                .create();
+    }
+
+    private static final class ModelAdapterFactory implements TypeAdapterFactory {
+        private final TypeAdapter<ReferencePoint> pointAdapter;
+
+        ModelAdapterFactory(PointCatalog catalog) {
+            pointAdapter = catalog != null ? new CatalogPointAdapter(catalog) : ReferencePointAdapter.INSTANCE;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> rawType = type.getRawType();
+            TypeAdapter<?> adapter;
+            if (rawType == AngleValue.class) {
+                adapter = AngleAdapter.INSTANCE;
+            } else if (rawType == StationMeasurement.class) {
+                adapter = StationAdapter.INSTANCE;
+            } else if (rawType == ReferencePoint.class) {
+                adapter = pointAdapter;
+            } else if (rawType == CalculationResult.DirectionalAngle.class) {
+                adapter = DirectionalAngleAdapter.INSTANCE;
+            } else if (rawType == CalculationResult.class) {
+                adapter = CalculationResultAdapter.INSTANCE;
+            } else if (rawType == Project.class) {
+                adapter = new ProjectAdapter(gson.getAdapter(Date.class), pointAdapter);
+            } else if (rawType == TheodoliteJournal.class) {
+                adapter = new JournalAdapter(gson.getAdapter(Date.class));
+            } else if (rawType == GyroscopicMeasurement.class) {
+                adapter = new GyroscopicAdapter(gson.getAdapter(Date.class));
+            } else {
+                return null;
+            }
+            return (TypeAdapter<T>) adapter.nullSafe();
+        }
+    }
+
+    private static final class AngleAdapter extends TypeAdapter<AngleValue> {
+        static final AngleAdapter INSTANCE = new AngleAdapter();
+
+        @Override
+        public void write(JsonWriter out, AngleValue angle) throws IOException {
+            out.beginObject();
+            out.name("degrees").value(angle.getDegrees());
+            out.name("minutes").value(angle.getMinutes());
+            out.name("seconds").value(angle.getSeconds());
+            out.endObject();
+        }
+
+        @Override
+        public AngleValue read(JsonReader in) throws IOException {
+            int degrees = 0;
+            int minutes = 0;
+            double seconds = 0.0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "degrees": degrees = nextInt(in, degrees); break;
+                    case "minutes": minutes = nextInt(in, minutes); break;
+                    case "seconds": seconds = nextDouble(in, seconds); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            // Конструктор, в отличие от сеттеров, не проверяет диапазоны — как и чтение через отражение
+            return new AngleValue(degrees, minutes, seconds);
+        }
+    }
+
+    private static final class StationAdapter extends TypeAdapter<StationMeasurement> {
+        static final StationAdapter INSTANCE = new StationAdapter();
+
+        @Override
+        public void write(JsonWriter out, StationMeasurement station) throws IOException {
+            out.beginObject();
+            out.name("stationNumber").value(station.getStationNumber());
+            out.name("pointNumber1").value(station.getPointNumber1());
+            out.name("pointNumber2").value(station.getPointNumber2());
+            out.name("distance").value(station.getDistance());
+            writeAngle(out, "slopeAngle", station.getSlopeAngle());
+            out.name("horizontalDistance").value(station.getHorizontalDistance());
+            writeAngle(out, "leftCirclePoint1", station.getLeftCirclePoint1());
+            writeAngle(out, "rightCirclePoint1", station.getRightCirclePoint1());
+            writeAngle(out, "leftCirclePoint2", station.getLeftCirclePoint2());
+            writeAngle(out, "rightCirclePoint2", station.getRightCirclePoint2());
+            writeAngle(out, "angleLeftDifference", station.getAngleLeftDifference());
+            writeAngle(out, "angleRightDifference", station.getAngleRightDifference());
+            writeAngle(out, "averageAngle", station.getAverageAngle());
+            out.endObject();
+        }
+
+        @Override
+        public StationMeasurement read(JsonReader in) throws IOException {
+            StationMeasurement station = new StationMeasurement();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "stationNumber": station.setStationNumber(nextInt(in, station.getStationNumber())); break;
+                    case "pointNumber1": station.setPointNumber1(nextInt(in, station.getPointNumber1())); break;
+                    case "pointNumber2": station.setPointNumber2(nextInt(in, station.getPointNumber2())); break;
+                    case "distance": station.setDistance(nextDouble(in, station.getDistance())); break;
+                    case "slopeAngle": station.setSlopeAngle(readAngle(in)); break;
+                    case "horizontalDistance":
+                        station.setHorizontalDistance(nextDouble(in, station.getHorizontalDistance()));
+                        break;
+                    case "leftCirclePoint1": station.setLeftCirclePoint1(readAngle(in)); break;
+                    case "rightCirclePoint1": station.setRightCirclePoint1(readAngle(in)); break;
+                    case "leftCirclePoint2": station.setLeftCirclePoint2(readAngle(in)); break;
+                    case "rightCirclePoint2": station.setRightCirclePoint2(readAngle(in)); break;
+                    case "angleLeftDifference": station.setAngleLeftDifference(readAngle(in)); break;
+                    case "angleRightDifference": station.setAngleRightDifference(readAngle(in)); break;
+                    case "averageAngle": station.setAverageAngle(readAngle(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return station;
+        }
+    }
+
+    private static final class ReferencePointAdapter extends TypeAdapter<ReferencePoint> {
+        static final ReferencePointAdapter INSTANCE = new ReferencePointAdapter();
+
+        @Override
+        public void write(JsonWriter out, ReferencePoint point) throws IOException {
+            out.beginObject();
+            out.name("id").value(point.getId());
+            out.name("name").value(point.getName());
+            out.name("x").value(point.getX());
+            out.name("y").value(point.getY());
+            out.name("beta").value(point.getBeta());
+            out.endObject();
+        }
+
+        @Override
+        public ReferencePoint read(JsonReader in) throws IOException {
+            ReferencePoint point = new ReferencePoint();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": point.setId(nextInt(in, point.getId())); break;
+                    case "name": point.setName(nextString(in)); break;
+                    case "x": point.setX(nextDouble(in, point.getX())); break;
+                    case "y": point.setY(nextDouble(in, point.getY())); break;
+                    case "beta": point.setBeta(nextDouble(in, point.getBeta())); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return point;
+        }
+    }
+
+    /**
+     * Пишет пункт ссылкой на каталог: {"id", "ref", "beta"}. Название и координаты
+     * берутся из каталога при чтении; пункт, записанный целиком, читается как есть
+     */
+    private static final class CatalogPointAdapter extends TypeAdapter<ReferencePoint> {
+        private final PointCatalog catalog;
+
+        CatalogPointAdapter(PointCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        @Override
+        public void write(JsonWriter out, ReferencePoint point) throws IOException {
+            out.beginObject();
+            out.name("id").value(point.getId());
+            out.name("ref").value(catalog.intern(point.getName(), point.getX(), point.getY()));
+            out.name("beta").value(point.getBeta());
+            out.endObject();
+        }
+
+        @Override
+        public ReferencePoint read(JsonReader in) throws IOException {
+            ReferencePoint point = new ReferencePoint();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": point.setId(nextInt(in, point.getId())); break;
+                    case "ref":
+                        ReferencePoint shared = catalog.resolve(in.nextInt());
+                        point.setName(shared.getName());
+                        point.setX(shared.getX());
+                        point.setY(shared.getY());
+                        break;
+                    case "name": point.setName(nextString(in)); break;
+                    case "x": point.setX(nextDouble(in, point.getX())); break;
+                    case "y": point.setY(nextDouble(in, point.getY())); break;
+                    case "beta": point.setBeta(nextDouble(in, point.getBeta())); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return point;
+        }
+    }
+
+    private static final class DirectionalAngleAdapter extends TypeAdapter<CalculationResult.DirectionalAngle> {
+        static final DirectionalAngleAdapter INSTANCE = new DirectionalAngleAdapter();
+
+        @Override
+        public void write(JsonWriter out, CalculationResult.DirectionalAngle angle) throws IOException {
+            out.beginObject();
+            out.name("pointName").value(angle.getPointName());
+            out.name("angleInRadians").value(angle.getAngleInRadians());
+            out.name("angleInDegrees").value(angle.getAngleInDegrees());
+            out.endObject();
+        }
+
+        @Override
+        public CalculationResult.DirectionalAngle read(JsonReader in) throws IOException {
+            String pointName = null;
+            double angleInRadians = 0.0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "pointName": pointName = nextString(in); break;
+                    case "angleInRadians": angleInRadians = nextDouble(in, angleInRadians); break;
+                    // Угол в градусах вычисляется конструктором из угла в радианах
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return new CalculationResult.DirectionalAngle(pointName, angleInRadians);
+        }
+    }
+
+    private static final class CalculationResultAdapter extends TypeAdapter<CalculationResult> {
+        static final CalculationResultAdapter INSTANCE = new CalculationResultAdapter();
+
+        @Override
+        public void write(JsonWriter out, CalculationResult result) throws IOException {
+            out.beginObject();
+            List<CalculationResult.DirectionalAngle> angles = result.getDirectionalAngles();
+            if (angles != null) {
+                out.name("directionalAngles").beginArray();
+                for (CalculationResult.DirectionalAngle angle : angles) {
+                    writeElement(out, DirectionalAngleAdapter.INSTANCE, angle);
+                }
+                out.endArray();
+            }
+            out.name("x1").value(result.getX1());
+            out.name("y1").value(result.getY1());
+            out.name("x2").value(result.getX2());
+            out.name("y2").value(result.getY2());
+            out.name("discrepancyMeters").value(result.getDiscrepancyMeters());
+            out.name("finalX").value(result.getFinalX());
+            out.name("finalY").value(result.getFinalY());
+            out.name("isInsideDangerCircle").value(result.isInsideDangerCircle());
+            out.name("combinationInfo1").value(result.getCombinationInfo1());
+            out.name("combinationInfo2").value(result.getCombinationInfo2());
+            out.endObject();
+        }
+
+        @Override
+        public CalculationResult read(JsonReader in) throws IOException {
+            CalculationResult result = new CalculationResult();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "directionalAngles":
+                        result.setDirectionalAngles(readList(in, DirectionalAngleAdapter.INSTANCE));
+                        break;
+                    case "x1": result.setX1(nextDouble(in, result.getX1())); break;
+                    case "y1": result.setY1(nextDouble(in, result.getY1())); break;
+                    case "x2": result.setX2(nextDouble(in, result.getX2())); break;
+                    case "y2": result.setY2(nextDouble(in, result.getY2())); break;
+                    case "discrepancyMeters":
+                        result.setDiscrepancyMeters(nextDouble(in, result.getDiscrepancyMeters()));
+                        break;
+                    case "finalX": result.setFinalX(nextDouble(in, result.getFinalX())); break;
+                    case "finalY": result.setFinalY(nextDouble(in, result.getFinalY())); break;
+                    case "isInsideDangerCircle":
+                        result.setInsideDangerCircle(nextBoolean(in, result.isInsideDangerCircle()));
+                        break;
+                    case "combinationInfo1": result.setCombinationInfo1(nextString(in)); break;
+                    case "combinationInfo2": result.setCombinationInfo2(nextString(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+    }
+
+    private static final class ProjectAdapter extends TypeAdapter<Project> {
+        private final TypeAdapter<Date> dateAdapter;
+        private final TypeAdapter<ReferencePoint> pointAdapter;
+
+        ProjectAdapter(TypeAdapter<Date> dateAdapter, TypeAdapter<ReferencePoint> pointAdapter) {
+            this.dateAdapter = dateAdapter;
+            this.pointAdapter = pointAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, Project project) throws IOException {
+            out.beginObject();
+            out.name("id").value(project.getId());
+            out.name("name").value(project.getName());
+            writeDate(out, dateAdapter, project.getCreatedAt());
+            List<ReferencePoint> points = project.getReferencePoints();
+            if (points != null) {
+                out.name("referencePoints").beginArray();
+                for (ReferencePoint point : points) {
+                    writeElement(out, pointAdapter, point);
+                }
+                out.endArray();
+            }
+            out.name("maxAllowableError").value(project.getMaxAllowableError());
+            if (project.getResult() != null) {
+                out.name("result");
+                CalculationResultAdapter.INSTANCE.write(out, project.getResult());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Project read(JsonReader in) throws IOException {
+            Project project = new Project();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": project.setId(nextInt(in, project.getId())); break;
+                    case "name": project.setName(nextString(in)); break;
+                    case "createdAt": project.setCreatedAt(dateAdapter.read(in)); break;
+                    case "referencePoints":
+                        project.setReferencePoints(readList(in, pointAdapter));
+                        break;
+                    case "maxAllowableError":
+                        project.setMaxAllowableError(nextDouble(in, project.getMaxAllowableError()));
+                        break;
+                    case "result": project.setResult(readElement(in, CalculationResultAdapter.INSTANCE)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return project;
+        }
+    }
+
+    private static final class JournalAdapter extends TypeAdapter<TheodoliteJournal> {
+        private final TypeAdapter<Date> dateAdapter;
+
+        JournalAdapter(TypeAdapter<Date> dateAdapter) {
+            this.dateAdapter = dateAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, TheodoliteJournal journal) throws IOException {
+            out.beginObject();
+            out.name("id").value(journal.getId());
+            out.name("name").value(journal.getName());
+            List<StationMeasurement> measurements = journal.getMeasurements();
+            if (measurements != null) {
+                out.name("measurements").beginArray();
+                for (StationMeasurement station : measurements) {
+                    writeElement(out, StationAdapter.INSTANCE, station);
+                }
+                out.endArray();
+            }
+            writeDate(out, dateAdapter, journal.getCreatedAt());
+            out.endObject();
+        }
+
+        @Override
+        public TheodoliteJournal read(JsonReader in) throws IOException {
+            TheodoliteJournal journal = new TheodoliteJournal();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": journal.setId(nextInt(in, journal.getId())); break;
+                    case "name": journal.setName(nextString(in)); break;
+                    case "measurements": journal.setMeasurements(readStations(in)); break;
+                    case "createdAt": journal.setCreatedAt(dateAdapter.read(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            // Только что прочитанный журнал совпадает с сохраненным
+            journal.clearPendingChanges();
+            return journal;
+        }
+    }
+
+    private static final class GyroscopicAdapter extends TypeAdapter<GyroscopicMeasurement> {
+        private final TypeAdapter<Date> dateAdapter;
+
+        GyroscopicAdapter(TypeAdapter<Date> dateAdapter) {
+            this.dateAdapter = dateAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, GyroscopicMeasurement m) throws IOException {
+            out.beginObject();
+            out.name("id").value(m.getId());
+            out.name("name").value(m.getName());
+            writeDate(out, dateAdapter, m.getCreatedAt());
+            out.name("n1Value").value(m.getN1Value());
+            out.name("n2Value").value(m.getN2Value());
+            out.name("n3Value").value(m.getN3Value());
+            out.name("n4Value").value(m.getN4Value());
+            out.name("n0PrimeValue").value(m.getN0PrimeValue());
+            out.name("n0DoublePrimeValue").value(m.getN0DoublePrimeValue());
+            out.name("n0Value").value(m.getN0Value());
+            writeAngle(out, "N1", m, Angle.N1);
+            writeAngle(out, "N2", m, Angle.N2);
+            writeAngle(out, "N3", m, Angle.N3);
+            writeAngle(out, "N4", m, Angle.N4);
+            writeAngle(out, "N0Prime", m, Angle.N0_PRIME);
+            writeAngle(out, "N0DoublePrime", m, Angle.N0_DOUBLE_PRIME);
+            writeAngle(out, "N0", m, Angle.N0);
+            writeAngle(out, "KL1", m, Angle.KL1);
+            writeAngle(out, "KP1", m, Angle.KP1);
+            writeAngle(out, "KL2", m, Angle.KL2);
+            writeAngle(out, "KP2", m, Angle.KP2);
+            writeAngle(out, "NPrime", m, Angle.N_PRIME);
+            writeAngle(out, "NDoublePrime", m, Angle.N_DOUBLE_PRIME);
+            writeAngle(out, "N", m, Angle.N);
+            out.name("nkValue").value(m.getNkValue());
+            writeAngle(out, "t", m, Angle.T);
+            writeAngle(out, "NkPrime", m, Angle.NK_PRIME);
+            writeAngle(out, "NkDoublePrime", m, Angle.NK_DOUBLE_PRIME);
+            writeAngle(out, "Nk", m, Angle.NK);
+            writeAngle(out, "psiT", m, Angle.PSI_T);
+            writeAngle(out, "psiK", m, Angle.PSI_K);
+            out.name("D").value(m.getD());
+            writeAngle(out, "epsilon", m, Angle.EPSILON);
+            writeAngle(out, "gyroscopicAzimuth", m, Angle.GYROSCOPIC_AZIMUTH);
+            out.name("psiTDirectValue").value(m.getPsiTDirectValue());
+            out.endObject();
+        }
+
+        @Override
+        public GyroscopicMeasurement read(JsonReader in) throws IOException {
+            GyroscopicMeasurement m = new GyroscopicMeasurement();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": m.setId(nextInt(in, m.getId())); break;
+                    case "name": m.setName(nextString(in)); break;
+                    case "createdAt": m.setCreatedAt(dateAdapter.read(in)); break;
+                    case "n1Value": m.setN1(nextDouble(in, m.getN1Value())); break;
+                    case "n2Value": m.setN2(nextDouble(in, m.getN2Value())); break;
+                    case "n3Value": m.setN3(nextDouble(in, m.getN3Value())); break;
+                    case "n4Value": m.setN4(nextDouble(in, m.getN4Value())); break;
+                    case "n0PrimeValue": m.setN0Prime(nextDouble(in, m.getN0PrimeValue())); break;
+                    case "n0DoublePrimeValue": m.setN0DoublePrime(nextDouble(in, m.getN0DoublePrimeValue())); break;
+                    case "n0Value": m.setN0(nextDouble(in, m.getN0Value())); break;
+                    case "N1": readAngle(in, m, Angle.N1); break;
+                    case "N2": readAngle(in, m, Angle.N2); break;
+                    case "N3": readAngle(in, m, Angle.N3); break;
+                    case "N4": readAngle(in, m, Angle.N4); break;
+                    case "N0Prime": readAngle(in, m, Angle.N0_PRIME); break;
+                    case "N0DoublePrime": readAngle(in, m, Angle.N0_DOUBLE_PRIME); break;
+                    case "N0": readAngle(in, m, Angle.N0); break;
+                    case "KL1": readAngle(in, m, Angle.KL1); break;
+                    case "KP1": readAngle(in, m, Angle.KP1); break;
+                    case "KL2": readAngle(in, m, Angle.KL2); break;
+                    case "KP2": readAngle(in, m, Angle.KP2); break;
+                    case "NPrime": readAngle(in, m, Angle.N_PRIME); break;
+                    case "NDoublePrime": readAngle(in, m, Angle.N_DOUBLE_PRIME); break;
+                    case "N": readAngle(in, m, Angle.N); break;
+                    case "nkValue": m.setNk(nextDouble(in, m.getNkValue())); break;
+                    case "t": readAngle(in, m, Angle.T); break;
+                    case "NkPrime": readAngle(in, m, Angle.NK_PRIME); break;
+                    case "NkDoublePrime": readAngle(in, m, Angle.NK_DOUBLE_PRIME); break;
+                    case "Nk": readAngle(in, m, Angle.NK); break;
+                    case "psiT": readAngle(in, m, Angle.PSI_T); break;
+                    case "psiK": readAngle(in, m, Angle.PSI_K); break;
+                    case "D": m.setD(nextDouble(in, m.getD())); break;
+                    case "epsilon": readAngle(in, m, Angle.EPSILON); break;
+                    case "gyroscopicAzimuth": readAngle(in, m, Angle.GYROSCOPIC_AZIMUTH); break;
+                    case "psiTDirectValue": m.setPsiTDirectValue(nextDouble(in, m.getPsiTDirectValue())); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return m;
+        }
+    }
+
+    private static void writeAngle(JsonWriter out, String name, AngleValue angle) throws IOException {
+        // Как и при сериализации через отражение, поля со значением null пропускаются
+        if (angle != null) {
+            out.name(name);
+            AngleAdapter.INSTANCE.write(out, angle);
+        }
+    }
+
+    private static AngleValue readAngle(JsonReader in) throws IOException {
+        return readElement(in, AngleAdapter.INSTANCE);
+    }
+
+    /**
+     * Пишет угол измерения из ячейки в том же виде, что и {@link AngleAdapter}, не создавая объект угла
+     */
+    private static void writeAngle(JsonWriter out, String name, GyroscopicMeasurement m, Angle slot)
+            throws IOException {
+        if (m.hasAngle(slot)) {
+            long angle = m.getAngle(slot);
+            out.name(name);
+            out.beginObject();
+            out.name("degrees").value(Angles.signedDegrees(angle));
+            out.name("minutes").value(Angles.signedMinutes(angle));
+            out.name("seconds").value(Angles.signedSeconds(angle));
+            out.endObject();
+        }
+    }
+
+    /**
+     * Читает угол сразу в ячейку измерения; секунды округляются до 0,1″
+     */
+    private static void readAngle(JsonReader in, GyroscopicMeasurement m, Angle slot) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            m.clearAngle(slot);
+            return;
+        }
+        int degrees = 0;
+        int minutes = 0;
+        double seconds = 0.0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "degrees": degrees = nextInt(in, degrees); break;
+                case "minutes": minutes = nextInt(in, minutes); break;
+                case "seconds": seconds = nextDouble(in, seconds); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        m.setAngle(slot, Angles.of(degrees, minutes, seconds));
+    }
+
+    private static <T> void writeElement(JsonWriter out, TypeAdapter<T> adapter, T value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            adapter.write(out, value);
+        }
+    }
+
+    private static <T> T readElement(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return adapter.read(in);
+    }
+
+    private static void writeDate(JsonWriter out, TypeAdapter<Date> dateAdapter, Date date) throws IOException {
+        if (date != null) {
+            out.name("createdAt");
+            dateAdapter.write(out, date);
+        }
+    }
+
+    private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readElement(in, adapter));
+        }
+        in.endArray();
+        return list;
+    }
+
+    /**
+     * Читает станции журнала в столбцы ({@link StationColumns})
+     */
+    private static List<StationMeasurement> readStations(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        StationColumns stations = new StationColumns();
+        in.beginArray();
+        while (in.hasNext()) {
+            stations.add(readElement(in, StationAdapter.INSTANCE));
+        }
+        in.endArray();
+        return stations;
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    // Для примитивных полей null в JSON оставляет значение по умолчанию, как и чтение через отражение
+
+    private static int nextInt(JsonReader in, int fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+        return in.nextInt();
+    }
+
+    private static double nextDouble(JsonReader in, double fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+        return in.nextDouble();
+    }
+
+    private static boolean nextBoolean(JsonReader in, boolean fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+        return in.nextBoolean();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.javamark.storage;
+
+import android.util.Log;
+
+import com.example.javamark.model.StationMeasurement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Список измерений журнала, который заполняется из потока JSON порциями
+ * по мере обращения к элементам. При открытии длинного журнала в памяти
+ * оказывается только первая порция станций, а не весь журнал целиком.
+ * Любое изменение списка сначала дочитывает его до конца. Методы синхронизированы,
+ * так как журнал может сериализоваться в потоке записи {@link StorageExecutor}.
+ * Целостность массива проверяется до создания списка ({@link #isComplete}), поэтому
+ * обращение к элементам не бросает исключений из-за оборванного или поврежденного JSON.
+ */
+final class LazyMeasurementList extends AbstractList<StationMeasurement> implements RandomAccess, Serializable {
+    private static final String TAG = "LazyMeasurementList";
+    static final int CHUNK_SIZE = 256;
+
+    private final List<StationMeasurement> loaded;
+    private final transient TypeAdapter<StationMeasurement> adapter;
+    private transient JsonReader reader;
+    private int expectedSize;
+
+    /**
+     * @param reader Поток, установленный перед массивом измерений
+     * @param adapter Адаптер для чтения одного измерения
+     * @param expectedSize Количество измерений из заголовка записи
+     */
+    LazyMeasurementList(JsonReader reader, TypeAdapter<StationMeasurement> adapter, int expectedSize) throws IOException {
+        this.loaded = new ArrayList<>(Math.min(expectedSize, CHUNK_SIZE));
+        this.adapter = adapter;
+        this.expectedSize = expectedSize;
+        this.reader = reader;
+        reader.beginArray();
+    }
+
+    @Override
+    public synchronized StationMeasurement get(int index) {
+        if (index >= loaded.size() && reader != null) {
+            fillTo(index);
+        }
+        return loaded.get(index);
+    }
+
+    @Override
+    public synchronized int size() {
+        return reader != null ? Math.max(expectedSize, loaded.size()) : loaded.size();
+    }
+
+    @Override
+    public synchronized StationMeasurement set(int index, StationMeasurement element) {
+        loadAll();
+        return loaded.set(index, element);
+    }
+
+    @Override
+    public synchronized void add(int index, StationMeasurement element) {
+        loadAll();
+        loaded.add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public synchronized StationMeasurement remove(int index) {
+        loadAll();
+        modCount++;
+        return loaded.remove(index);
+    }
+
+    /**
+     * Проверяет, что массив измерений в потоке не оборван и содержит expectedSize элементов.
+     * Элементы пропускаются без создания объектов станций, поэтому проверка не держит журнал в памяти
+     * @param reader Поток, установленный перед массивом измерений
+     * @throws IOException если JSON оборван или поврежден
+     */
+    static boolean isComplete(JsonReader reader, int expectedSize) throws IOException {
+        reader.beginArray();
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.skipValue();
+            count++;
+        }
+        reader.endArray();
+        return count == expectedSize;
+    }
+
+    private void loadAll() {
+        if (reader != null) {
+            fillTo(Integer.MAX_VALUE - 1);
+        }
+    }
+
+    private void fillTo(int index) {
+        try {
+            while (reader != null && loaded.size() <= index) {
+                readChunk();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Массив проверен при открытии, сюда приводит только ошибка чтения файла.
+            // Список укорачивается до прочитанных станций, а не роняет экран, который его перебирает
+            Log.e(TAG, "Ошибка при чтении измерений журнала: " + e.getMessage(), e);
+            close();
+            expectedSize = loaded.size();
+        }
+    }
+
+    private void readChunk() throws IOException {
+        for (int i = 0; i < CHUNK_SIZE && reader.hasNext(); i++) {
+            loaded.add(adapter.read(reader));
+        }
+        if (!reader.hasNext()) {
+            reader.endArray();
+            if (loaded.size() != expectedSize) {
+                Log.w(TAG, "Прочитано " + loaded.size() + " измерений вместо " + expectedSize);
+            }
+            close();
+        }
+    }
+
+    private void close() {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Ошибка при закрытии потока журнала: " + e.getMessage());
+        }
+        reader = null;
+    }
+
+    /**
+     * При стандартной сериализации сохраняется обычный список
+     */
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+}
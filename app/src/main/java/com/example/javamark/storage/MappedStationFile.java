@@ -0,0 +1,315 @@
+package com.example.javamark.storage;
+
+import android.util.Log;
+
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.StationMeasurement;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Станции одного журнала в виде записей фиксированного размера в файле,
+ * отображенном в память. Станция с номером i лежит по смещению
+ * HEADER_SIZE + i * RECORD_SIZE, поэтому чтение и перезапись одной станции
+ * не требуют разбора и повторной записи остального журнала.
+ * Файл изменяется только в потоке записи. Станции перезаписываются на месте,
+ * а список, в который станции добавлялись или из которого удалялись, записывается
+ * новым файлом, заменяющим прежний переименованием ({@link #rewrite}): после сбоя
+ * на диске остается либо прежний список, либо новый, но не сдвинутый наполовину.
+ */
+final class MappedStationFile implements GroupCommit.Syncable {
+    private static final String TAG = "MappedStationFile";
+
+    // Заголовок файла: сигнатура "JMST", версия, количество станций, размер записи
+    private static final int MAGIC = 0x4A4D5354;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+
+    // Угол: признак наличия, градусы, минуты, секунды
+    private static final int ANGLE_SIZE = 1 + 4 + 4 + 8;
+    // Станция: три номера, расстояние, горизонтальное проложение и восемь углов
+    static final int RECORD_SIZE = 3 * 4 + 2 * 8 + 8 * ANGLE_SIZE;
+
+    private static final int MIN_CAPACITY = 64;
+
+    private static final Map<String, MappedStationFile> openFiles = new HashMap<>();
+
+    private final File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int count;
+    private int capacity;
+    // true, если файл заменен новым: отображение остается доступным только для чтения
+    private boolean retired;
+
+    private MappedStationFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Возвращает общий для процесса объект файла станций, создавая файл при необходимости
+     */
+    static synchronized MappedStationFile open(File file) throws IOException {
+        MappedStationFile stations = openFiles.get(file.getPath());
+        if (stations == null) {
+            stations = new MappedStationFile(file);
+            stations.map();
+            openFiles.put(file.getPath(), stations);
+        }
+        return stations;
+    }
+
+    /**
+     * Записывает станции во временный файл, сбрасывает его на диск и заменяет им файл станций.
+     * Прежний объект файла остается доступным для чтения: списки, которые из него читают,
+     * видят станции такими, какими они были до замены
+     * @return Новый общий для процесса объект файла станций
+     */
+    static synchronized MappedStationFile rewrite(File file, List<StationMeasurement> stations) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        if (tmp.exists() && !tmp.delete()) {
+            throw new IOException("Не удалось удалить временный файл станций " + tmp.getName());
+        }
+        MappedStationFile written = new MappedStationFile(tmp);
+        try {
+            written.map();
+            written.replaceAll(stations);
+        } finally {
+            written.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Не удалось заменить файл станций " + file.getName());
+        }
+
+        MappedStationFile previous = openFiles.remove(file.getPath());
+        if (previous != null) {
+            previous.retire();
+        }
+        MappedStationFile current = new MappedStationFile(file);
+        current.map();
+        openFiles.put(file.getPath(), current);
+        return current;
+    }
+
+    /**
+     * Удаляет файл станций. Списки, которые из него читают, продолжают видеть прежние станции
+     */
+    static synchronized void delete(File file) {
+        MappedStationFile stations = openFiles.remove(file.getPath());
+        if (stations != null) {
+            stations.retire();
+        }
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Не удалось удалить файл станций " + file.getName());
+        }
+    }
+
+    private void map() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Не удалось создать каталог " + dir);
+        }
+
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        long length = randomAccessFile.length();
+
+        if (length < HEADER_SIZE) {
+            remap(MIN_CAPACITY);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(COUNT_OFFSET, 0);
+            buffer.putInt(12, RECORD_SIZE);
+            count = 0;
+            return;
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(12) != RECORD_SIZE) {
+            close();
+            throw new IOException("Неподдерживаемый формат файла станций " + file.getName());
+        }
+        capacity = (int) ((length - HEADER_SIZE) / RECORD_SIZE);
+        count = buffer.getInt(COUNT_OFFSET);
+        if (count < 0 || count > capacity) {
+            Log.w(TAG, "Неверное количество станций " + count + " в " + file.getName());
+            count = Math.max(0, Math.min(count, capacity));
+            buffer.putInt(COUNT_OFFSET, count);
+        }
+    }
+
+    private void remap(int newCapacity) throws IOException {
+        long length = HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+        randomAccessFile.setLength(length);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = newCapacity;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if (buffer == null) {
+            throw new IOException("Файл станций " + file.getName() + " закрыт");
+        }
+        if (required > capacity) {
+            remap(Math.max(required, Math.max(capacity * 2, MIN_CAPACITY)));
+        }
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Читает станцию из ее записи
+     */
+    synchronized StationMeasurement read(int index) {
+        checkIndex(index, count);
+        int position = offset(index);
+        StationMeasurement station = new StationMeasurement(buffer.getInt(position),
+                buffer.getInt(position + 4), buffer.getInt(position + 8));
+        station.setDistance(buffer.getDouble(position + 12));
+        station.setHorizontalDistance(buffer.getDouble(position + 20));
+        position += 28;
+        station.setSlopeAngle(readAngle(position));
+        station.setLeftCirclePoint1(readAngle(position += ANGLE_SIZE));
+        station.setRightCirclePoint1(readAngle(position += ANGLE_SIZE));
+        station.setLeftCirclePoint2(readAngle(position += ANGLE_SIZE));
+        station.setRightCirclePoint2(readAngle(position += ANGLE_SIZE));
+        station.setAngleLeftDifference(readAngle(position += ANGLE_SIZE));
+        station.setAngleRightDifference(readAngle(position += ANGLE_SIZE));
+        station.setAverageAngle(readAngle(position + ANGLE_SIZE));
+        return station;
+    }
+
+    /**
+     * Перезаписывает на месте запись одной станции
+     */
+    synchronized void write(int index, StationMeasurement station) throws IOException {
+        checkIndex(index, count);
+        if (retired) {
+            throw new IOException("Файл станций " + file.getName() + " заменен");
+        }
+        writeRecord(index, station);
+    }
+
+    /**
+     * Заменяет все станции файла на месте; используется только для нового файла ({@link #rewrite})
+     */
+    private synchronized void replaceAll(List<StationMeasurement> stations) throws IOException {
+        int size = stations.size();
+        ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            writeRecord(i, stations.get(i));
+        }
+        setCount(size);
+    }
+
+    /**
+     * Сбрасывает измененные страницы отображения на диск
+     */
+    @Override
+    public synchronized void sync() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    private void setCount(int newCount) {
+        count = newCount;
+        buffer.putInt(COUNT_OFFSET, newCount);
+    }
+
+    private void writeRecord(int index, StationMeasurement station) {
+        int position = offset(index);
+        buffer.putInt(position, station.getStationNumber());
+        buffer.putInt(position + 4, station.getPointNumber1());
+        buffer.putInt(position + 8, station.getPointNumber2());
+        buffer.putDouble(position + 12, station.getDistance());
+        buffer.putDouble(position + 20, station.getHorizontalDistance());
+        position += 28;
+        writeAngle(position, station.getSlopeAngle());
+        writeAngle(position += ANGLE_SIZE, station.getLeftCirclePoint1());
+        writeAngle(position += ANGLE_SIZE, station.getRightCirclePoint1());
+        writeAngle(position += ANGLE_SIZE, station.getLeftCirclePoint2());
+        writeAngle(position += ANGLE_SIZE, station.getRightCirclePoint2());
+        writeAngle(position += ANGLE_SIZE, station.getAngleLeftDifference());
+        writeAngle(position += ANGLE_SIZE, station.getAngleRightDifference());
+        writeAngle(position + ANGLE_SIZE, station.getAverageAngle());
+    }
+
+    private AngleValue readAngle(int position) {
+        if (buffer.get(position) == 0) {
+            return null;
+        }
+        return new AngleValue(buffer.getInt(position + 1), buffer.getInt(position + 5), buffer.getDouble(position + 9));
+    }
+
+    private void writeAngle(int position, AngleValue angle) {
+        if (angle == null) {
+            buffer.put(position, (byte) 0);
+            buffer.putInt(position + 1, 0);
+            buffer.putInt(position + 5, 0);
+            buffer.putDouble(position + 9, 0.0);
+        } else {
+            buffer.put(position, (byte) 1);
+            buffer.putInt(position + 1, angle.getDegrees());
+            buffer.putInt(position + 5, angle.getMinutes());
+            buffer.putDouble(position + 9, angle.getSeconds());
+        }
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Закрывает файл, оставляя отображение для чтения: отображение не зависит от закрытого канала,
+     * а после замены или удаления файла продолжает показывать прежние станции
+     */
+    private synchronized void retire() {
+        sync();
+        try {
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Ошибка при закрытии файла станций: " + e.getMessage());
+        }
+        randomAccessFile = null;
+        channel = null;
+        retired = true;
+    }
+
+    private synchronized void close() {
+        try {
+            if (buffer != null) {
+                buffer.force();
+            }
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Ошибка при закрытии файла станций: " + e.getMessage());
+        }
+        buffer = null;
+        channel = null;
+        randomAccessFile = null;
+        count = 0;
+        capacity = 0;
+    }
+}
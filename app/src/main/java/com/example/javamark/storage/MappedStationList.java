@@ -0,0 +1,180 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.StationMeasurement;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Список станций журнала, читающий станции из файла {@link MappedStationFile}.
+ * Изменения списка держатся в памяти поверх файла: другие списки того же файла
+ * их не видят, а несохраненные изменения пропадают вместе со списком.
+ * В файл они записываются только при сохранении журнала в потоке записи ({@link #writeTo}).
+ * Неизмененные станции читаются из файла, и каждый вызов get возвращает для них новый объект,
+ * поэтому измененную станцию нужно вернуть в список через set.
+ */
+final class MappedStationList extends AbstractList<StationMeasurement> implements RandomAccess, Serializable {
+    private static final int MIN_ROWS = 16;
+
+    private transient MappedStationFile stations;
+    // Строки списка: номер записи в файле или -(номер в edited + 1); null, пока список не изменялся
+    private transient int[] rows;
+    private transient int size;
+    private final transient List<StationMeasurement> edited = new ArrayList<>();
+    // true, если станции добавлялись или удалялись: тогда файл переписывается целиком
+    private transient boolean structural;
+    // Количество изменений списка; по нему видно, изменялся ли список после снимка
+    private transient int edits;
+    // Для снимка — список, с которого он снят
+    private transient MappedStationList origin;
+
+    MappedStationList(MappedStationFile stations) {
+        this.stations = stations;
+    }
+
+    @Override
+    public synchronized StationMeasurement get(int index) {
+        if (rows == null) {
+            return stations.read(index);
+        }
+        checkIndex(index, size);
+        int row = rows[index];
+        return row >= 0 ? stations.read(row) : edited.get(-row - 1);
+    }
+
+    @Override
+    public synchronized int size() {
+        return rows == null ? stations.size() : size;
+    }
+
+    @Override
+    public synchronized StationMeasurement set(int index, StationMeasurement element) {
+        StationMeasurement previous = get(index);
+        ensureRows();
+        if (rows[index] >= 0) {
+            edited.add(element);
+            rows[index] = -edited.size();
+        } else {
+            edited.set(-rows[index] - 1, element);
+        }
+        edits++;
+        return previous;
+    }
+
+    @Override
+    public synchronized void add(int index, StationMeasurement element) {
+        ensureRows();
+        checkIndex(index, size + 1);
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(MIN_ROWS, rows.length * 2));
+        }
+        System.arraycopy(rows, index, rows, index + 1, size - index);
+        edited.add(element);
+        rows[index] = -edited.size();
+        size++;
+        structural = true;
+        edits++;
+        modCount++;
+    }
+
+    @Override
+    public synchronized StationMeasurement remove(int index) {
+        StationMeasurement previous = get(index);
+        ensureRows();
+        System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+        size--;
+        structural = true;
+        edits++;
+        modCount++;
+        return previous;
+    }
+
+    /**
+     * Снимок списка для записи в потоке записи: строки и копии измененных станций.
+     * Станции из файла не копируются
+     */
+    synchronized MappedStationList snapshot() {
+        MappedStationList copy = new MappedStationList(stations);
+        copy.origin = this;
+        copy.edits = edits;
+        if (rows != null) {
+            copy.rows = Arrays.copyOf(rows, size);
+            copy.size = size;
+            copy.structural = structural;
+            for (int i = 0; i < size; i++) {
+                if (rows[i] < 0) {
+                    copy.edited.add(ModelCopier.copy(edited.get(-rows[i] - 1)));
+                    copy.rows[i] = -copy.edited.size();
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Записывает список в файл станций. Измененные станции перезаписываются на месте;
+     * если станции добавлялись или удалялись или список читается из замененного файла,
+     * файл переписывается целиком через временный ({@link MappedStationFile#rewrite}).
+     * Выполняется в потоке записи
+     * @return Файл станций, в котором теперь хранится список
+     */
+    synchronized MappedStationFile writeTo(File file) throws IOException {
+        MappedStationFile current = MappedStationFile.open(file);
+        if (stations != current || structural) {
+            return MappedStationFile.rewrite(file, this);
+        }
+        if (rows != null) {
+            for (int i = 0; i < size; i++) {
+                if (rows[i] < 0) {
+                    current.write(i, edited.get(-rows[i] - 1));
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Отмечает, что снимок этого списка записан в file. Если после снимка список
+     * не изменялся, он дальше читает станции из записанного файла без изменений в памяти
+     */
+    synchronized void saved(MappedStationList snapshot, MappedStationFile file) {
+        if (snapshot.origin != this || snapshot.edits != edits) {
+            return;
+        }
+        stations = file;
+        rows = null;
+        size = 0;
+        edited.clear();
+        structural = false;
+    }
+
+    private void ensureRows() {
+        if (rows != null) {
+            return;
+        }
+        size = stations.size();
+        rows = new int[Math.max(MIN_ROWS, size)];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * При стандартной сериализации сохраняется обычный список
+     */
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+}
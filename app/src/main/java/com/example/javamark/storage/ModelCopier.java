@@ -0,0 +1,171 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.CalculationResult;
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.Project;
+import com.example.javamark.model.ReferencePoint;
+import com.example.javamark.model.StationColumns;
+import com.example.javamark.model.StationMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Глубокое копирование моделей для {@link ObjectCache}.
+ * Экран изменяет загруженный объект на месте, поэтому кешированный экземпляр
+ * никогда не отдается наружу. Копия повторяет состояние объекта так же,
+ * как его повторило бы повторное чтение записи, но без разбора JSON
+ */
+final class ModelCopier {
+
+    private ModelCopier() {
+    }
+
+    static Project copy(Project source) {
+        Project project = new Project();
+        project.setId(source.getId());
+        project.setVersion(source.getVersion());
+        project.setName(source.getName());
+        project.setCreatedAt(copy(source.getCreatedAt()));
+        project.setMaxAllowableError(source.getMaxAllowableError());
+        if (source.getReferencePoints() == null) {
+            project.setReferencePoints(null);
+        } else {
+            List<ReferencePoint> points = new ArrayList<>(source.getReferencePoints().size());
+            for (ReferencePoint point : source.getReferencePoints()) {
+                points.add(point != null ? new ReferencePoint(point.getId(), point.getName(),
+                        point.getX(), point.getY(), point.getBeta()) : null);
+            }
+            project.setReferencePoints(points);
+        }
+        project.setResult(source.getResult() != null ? copy(source.getResult()) : null);
+        return project;
+    }
+
+    private static CalculationResult copy(CalculationResult source) {
+        CalculationResult result = new CalculationResult();
+        // Дирекционные углы не изменяются после создания, поэтому копируется только список
+        result.setDirectionalAngles(source.getDirectionalAngles() != null
+                ? new ArrayList<>(source.getDirectionalAngles()) : null);
+        result.setX1(source.getX1());
+        result.setY1(source.getY1());
+        result.setX2(source.getX2());
+        result.setY2(source.getY2());
+        result.setDiscrepancyMeters(source.getDiscrepancyMeters());
+        result.setFinalX(source.getFinalX());
+        result.setFinalY(source.getFinalY());
+        result.setInsideDangerCircle(source.isInsideDangerCircle());
+        result.setCombinationInfo1(source.getCombinationInfo1());
+        result.setCombinationInfo2(source.getCombinationInfo2());
+        return result;
+    }
+
+    static GyroscopicMeasurement copy(GyroscopicMeasurement source) {
+        GyroscopicMeasurement m = new GyroscopicMeasurement();
+        m.setId(source.getId());
+        m.setVersion(source.getVersion());
+        m.setName(source.getName());
+        m.setCreatedAt(copy(source.getCreatedAt()));
+        m.setN1(source.getN1Value());
+        m.setN2(source.getN2Value());
+        m.setN3(source.getN3Value());
+        m.setN4(source.getN4Value());
+        m.setN0Prime(source.getN0PrimeValue());
+        m.setN0DoublePrime(source.getN0DoublePrimeValue());
+        m.setN0(source.getN0Value());
+        // Углы хранятся в массиве примитивов и копируются целиком
+        m.copyAnglesFrom(source);
+        m.setNk(source.getNkValue());
+        m.setD(source.getD());
+        m.setPsiTDirectValue(source.getPsiTDirectValue());
+        return m;
+    }
+
+    /**
+     * Копирует журнал вместе со станциями. Отслеживание изменений у копии сброшено,
+     * как у только что прочитанного журнала
+     */
+    static TheodoliteJournal copy(TheodoliteJournal source) {
+        TheodoliteJournal journal = new TheodoliteJournal();
+        journal.setId(source.getId());
+        journal.setVersion(source.getVersion());
+        journal.setName(source.getName());
+        journal.setCreatedAt(copy(source.getCreatedAt()));
+        if (source.getMeasurements() == null) {
+            journal.setMeasurements(null);
+        } else if (source.getMeasurements() instanceof StationColumns) {
+            // Столбцы копируются массивами, без создания объектов станций
+            journal.setMeasurements(new StationColumns((StationColumns) source.getMeasurements()));
+        } else {
+            List<StationMeasurement> stations = new ArrayList<>(source.getMeasurements().size());
+            for (StationMeasurement station : source.getMeasurements()) {
+                stations.add(station != null ? copy(station) : null);
+            }
+            journal.setMeasurements(stations);
+        }
+        journal.clearPendingChanges();
+        return journal;
+    }
+
+    /**
+     * Снимок журнала для сохранения в потоке записи. У журнала с построчным хранением
+     * копируются только станции, измененные после чтения из файла станций
+     */
+    static TheodoliteJournal snapshot(TheodoliteJournal source) {
+        if (!(source.getMeasurements() instanceof MappedStationList)) {
+            return copy(source);
+        }
+        TheodoliteJournal journal = new TheodoliteJournal();
+        journal.setId(source.getId());
+        journal.setVersion(source.getVersion());
+        journal.setName(source.getName());
+        journal.setCreatedAt(copy(source.getCreatedAt()));
+        journal.setMeasurements(((MappedStationList) source.getMeasurements()).snapshot());
+        journal.clearPendingChanges();
+        return journal;
+    }
+
+    /**
+     * Копирует изменения станций вместе со станциями
+     * @return Копия или null, если журнал нужно сохранить целиком
+     */
+    static List<TheodoliteJournal.StationChange> copy(List<TheodoliteJournal.StationChange> source) {
+        if (source == null) {
+            return null;
+        }
+        List<TheodoliteJournal.StationChange> changes = new ArrayList<>(source.size());
+        for (TheodoliteJournal.StationChange change : source) {
+            StationMeasurement station = change.getStation();
+            changes.add(new TheodoliteJournal.StationChange(change.getType(), change.getPosition(),
+                    station != null ? copy(station) : null));
+        }
+        return changes;
+    }
+
+    static StationMeasurement copy(StationMeasurement source) {
+        StationMeasurement station = new StationMeasurement(source.getStationNumber(),
+                source.getPointNumber1(), source.getPointNumber2());
+        station.setDistance(source.getDistance());
+        station.setSlopeAngle(copy(source.getSlopeAngle()));
+        station.setHorizontalDistance(source.getHorizontalDistance());
+        station.setLeftCirclePoint1(copy(source.getLeftCirclePoint1()));
+        station.setRightCirclePoint1(copy(source.getRightCirclePoint1()));
+        station.setLeftCirclePoint2(copy(source.getLeftCirclePoint2()));
+        station.setRightCirclePoint2(copy(source.getRightCirclePoint2()));
+        station.setAngleLeftDifference(copy(source.getAngleLeftDifference()));
+        station.setAngleRightDifference(copy(source.getAngleRightDifference()));
+        station.setAverageAngle(copy(source.getAverageAngle()));
+        return station;
+    }
+
+    private static AngleValue copy(AngleValue angle) {
+        return angle != null ? new AngleValue(angle.getDegrees(), angle.getMinutes(), angle.getSeconds()) : null;
+    }
+
+    private static Date copy(Date date) {
+        return date != null ? new Date(date.getTime()) : null;
+    }
+}
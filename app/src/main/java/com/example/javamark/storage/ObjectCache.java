@@ -0,0 +1,177 @@
+package com.example.javamark.storage;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Общий для всех хранилищ кеш прочитанных объектов.
+ * Ключ — хранилище и ID записи, вес записи — размер ее сериализованных данных.
+ * При превышении объема вытесняются давно не использованные записи.
+ * Запись удаляется из кеша, когда объект сохраняется или удаляется,
+ * а при нехватке памяти ({@link ComponentCallbacks2#onTrimMemory}) кеш сокращается или очищается.
+ * Кешированные объекты изменяемы, поэтому хранилища кладут в кеш и отдают из него копии
+ */
+public final class ObjectCache implements ComponentCallbacks2 {
+    // Доля памяти приложения под кеш и верхняя граница объема, байт
+    private static final int MEMORY_FRACTION = 32;
+    private static final long MAX_SIZE = 8L * 1024 * 1024;
+
+    private static final ObjectCache instance = new ObjectCache(
+            Math.min(Runtime.getRuntime().maxMemory() / MEMORY_FRACTION, MAX_SIZE));
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxSize;
+    private long size;
+    // Увеличивается при каждой инвалидации; объект, прочитанный до нее, в кеш не попадает
+    private long stamp;
+    private long hitCount;
+    private long missCount;
+    private boolean registered;
+
+    private static final class Entry {
+        final Object value;
+        final int size;
+
+        Entry(Object value, int size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    ObjectCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public static ObjectCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Подписывает кеш на уведомления о нехватке памяти. Повторные вызовы ничего не делают
+     */
+    public synchronized void register(Context context) {
+        if (!registered) {
+            context.getApplicationContext().registerComponentCallbacks(this);
+            registered = true;
+        }
+    }
+
+    /**
+     * Текущая отметка инвалидаций. Снимается до чтения записи из хранилища
+     * и передается в {@link #put}
+     */
+    synchronized long stamp() {
+        return stamp;
+    }
+
+    /**
+     * Получает объект из кеша и учитывает попадание или промах
+     * @return Кешированный объект или null
+     */
+    synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * Кладет объект в кеш, если с момента снятия отметки не было инвалидаций:
+     * иначе объект мог быть прочитан до сохранения и устареть
+     * @param stamp Отметка {@link #stamp()}, снятая до чтения записи
+     * @param size Размер сериализованной записи, байт
+     */
+    synchronized void put(String key, long stamp, Object value, int size) {
+        if (stamp != this.stamp || size > maxSize) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(value, size));
+        if (previous != null) {
+            this.size -= previous.size;
+        }
+        this.size += size;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Удаляет запись из кеша. Вызывается после записи или удаления объекта в хранилище
+     */
+    synchronized void invalidate(String key) {
+        stamp++;
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.size;
+        }
+    }
+
+    /**
+     * Очищает кеш
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(long targetSize) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > targetSize && iterator.hasNext()) {
+            size -= iterator.next().size;
+            iterator.remove();
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Доля обращений, обслуженных из кеша
+     * @return Значение от 0 до 1 или 0, если обращений еще не было
+     */
+    public synchronized double getHitRate() {
+        long total = hitCount + missCount;
+        return total > 0 ? (double) hitCount / total : 0;
+    }
+
+    /**
+     * Суммарный размер кешированных записей, байт
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public long maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            synchronized (this) {
+                trimToSize(maxSize / 2);
+            }
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Конфигурация на содержимое кеша не влияет
+    }
+}
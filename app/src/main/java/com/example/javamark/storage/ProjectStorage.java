@@ -4,77 +4,296 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import com.example.javamark.model.Project;
+import com.example.javamark.model.ReferencePoint;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Класс для сохранения и загрузки проектов с использованием SharedPreferences и Gson
+ * Класс для сохранения и загрузки проектов.
+ * Каждый проект хранится отдельной записью в журнальном хранилище {@link RecordStore},
+ * а каждое сохранение добавляет версию в историю проекта ({@link VersionHistory}).
+ * Записи, сохраненные в прежней версии схемы ({@link RecordSchema}), обновляются при чтении.
+ * Прочитанные проекты держатся в общем кеше {@link ObjectCache}.
+ * Заголовок проекта содержит ключи его пунктов (название и координаты),
+ * поэтому проекты, использующие пункт, находятся без загрузки всех проектов.
+ * Названия и координаты пунктов хранятся один раз в общем каталоге ({@link ReferencePointCatalog}),
+ * а запись проекта ссылается на пункты каталога.
+ * Операции над несколькими проектами (удаление, копирование, перенос в архив, сохранение)
+ * записываются одним набором изменений ({@link RecordStore.Batch}). Архивные проекты
+ * хранятся в отдельном хранилище и не показываются в основном списке.
+ * Давно не изменявшиеся проекты переносятся на сжатый холодный уровень ({@link ColdTier});
+ * в списках и поиске они видны как обычные и возвращаются в основное хранилище при открытии.
+ * Проект помнит версию записи, с которой он прочитан ({@link Project#getVersion()}).
+ * Сохранение не выполняется, если запись с тех пор изменена или удалена: Future
+ * сохранения завершается {@link WriteConflictException}, и пользователь может
+ * перезаписать проект явно ({@link #overwriteProjectAsync})
  */
 public class ProjectStorage {
     private static final String PREFS_NAME = "geodesic_projects";
     private static final String PROJECTS_KEY = "saved_projects";
-    private final SharedPreferences preferences;
+    // Списки проекта, элементы которых хранятся в истории версий отдельными узлами
+    private static final String[] VERSIONED_LISTS = {"referencePoints", "result.directionalAngles"};
+    // Последовательность узлов истории, элементы которой — пункты проекта
+    private static final int POINTS_SEQUENCE = 1;
+    // Префиксы ключей пунктов в заголовках проектов
+    private static final String POINT_NAME_PREFIX = "name:";
+    private static final String POINT_COORDINATES_PREFIX = "xy:";
+    private static final String CATALOG_POINT_PREFIX = "pt:";
+    private static final String CATALOG_CLEANUP_KEY = PREFS_NAME + "#catalog";
+    private static final String ARCHIVE_NAME = PREFS_NAME + "_archive";
+    private static final String COLD_NAME = PREFS_NAME + "_cold";
+    // Координаты пунктов сравниваются с точностью до миллиметра
+    private static final double COORDINATE_UNITS_PER_METER = 1000.0;
+    // Схема 2: пункты хранятся ссылками на каталог. Встроенные пункты записей версии 1
+    // читаются как есть и переносятся в каталог, когда запись перезаписывается в фоне
+    private static final RecordSchema schema = new RecordSchema(record -> { });
+    // Каталог очищается от пунктов без ссылок один раз за запуск приложения
+    private static final AtomicBoolean catalogCleanupScheduled = new AtomicBoolean();
+    private final RecordStore store;
+    private final RecordStore archive;
+    private final ColdTier coldTier;
+    private final ReferencePointCatalog catalog;
+    private final StorageExecutor executor;
+    private final ObjectCache cache;
     private final Gson gson;
 
     public ProjectStorage(Context context) {
-        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+        gson = JsonCodec.gson();
+        // Каталог открывается первым: заголовки проектов строятся по записям, ссылающимся на него
+        catalog = ReferencePointCatalog.open(context);
+        store = RecordStore.open(context, PREFS_NAME, this::extractHeader);
+        archive = RecordStore.open(context, ARCHIVE_NAME, this::extractHeader);
+        coldTier = new ColdTier(store, RecordStore.open(context, COLD_NAME, ColdTier.extractor(this::extractHeader)));
+        executor = StorageExecutor.getInstance();
+        cache = ObjectCache.getInstance();
+        cache.register(context);
+        migrateFromPreferences(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+        if (catalogCleanupScheduled.compareAndSet(false, true)) {
+            scheduleCatalogCleanup();
+        }
     }
 
     /**
-     * Сохраняет проект в хранилище
+     * Сохраняет проект в хранилище, дожидаясь завершения записи
      * @param project Проект для сохранения
      * @return true, если сохранение прошло успешно
      */
     public boolean saveProject(Project project) {
         try {
-            List<Project> projects = getAllProjects();
+            return enqueueSave(project, true, false).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Ставит сохранение в очередь потока записи, не блокируя вызывающий поток.
+     * ID новому объекту присваивается сразу, а сериализация выполняется в фоне.
+     * Несколько сохранений подряд объединяются в одну запись
+     * @param project Проект для сохранения
+     * @return Future с результатом сохранения; завершается {@link WriteConflictException},
+     *         если проект изменен или удален после чтения
+     */
+    public CompletableFuture<Boolean> saveProjectAsync(Project project) {
+        return enqueueSave(project, false, false);
+    }
+
+    /**
+     * Сохраняет проект без проверки версии, заменяя изменения, сделанные после его чтения.
+     * Используется, когда пользователь решил перезаписать проект после конфликта
+     * @param project Проект для сохранения
+     * @return Future с результатом сохранения
+     */
+    public CompletableFuture<Boolean> overwriteProjectAsync(Project project) {
+        return enqueueSave(project, false, true);
+    }
 
-            // Проверяем, существует ли проект с таким ID
-            boolean exists = false;
-            for (int i = 0; i < projects.size(); i++) {
-                if (projects.get(i).getId() == project.getId()) {
-                    // Обновляем существующий проект
-                    projects.set(i, project);
-                    exists = true;
-                    break;
+    /**
+     * Получает все проекты основного хранилища; проекты холодного уровня не загружаются
+     * @return Список проектов
+     */
+    public List<Project> getAllProjects() {
+        List<Project> projects = new ArrayList<>();
+        try {
+            synchronized (store) {
+                for (byte[] data : store.getAll()) {
+                    Project project = read(data);
+                    project.setVersion(store.getVersion(project.getId()));
+                    projects.add(project);
                 }
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return projects;
+    }
 
-            // Если проект новый, присваиваем ему ID и добавляем в список
-            if (!exists) {
-                project.setId(generateProjectId(projects));
-                projects.add(project);
-            }
+    /**
+     * Получает заголовки сохраненных проектов без загрузки самих объектов
+     * @return Список заголовков
+     */
+    public List<RecordHeader> getProjectHeaders() {
+        try {
+            return coldTier.getHeaders();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-            // Сохраняем обновленный список проектов
-            String json = gson.toJson(projects);
-            SharedPreferences.Editor editor = preferences.edit();
-            editor.putString(PROJECTS_KEY, json);
-            editor.apply();
-            return true;
+    /**
+     * Получает страницу заголовков сохраненных проектов, упорядоченных по дате создания
+     * @param order Порядок сортировки
+     * @param offset Номер первой записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков страницы
+     */
+    public List<RecordHeader> queryProjectHeaders(SortOrder order, int offset, int limit) {
+        try {
+            return coldTier.queryHeaders(order, offset, limit);
         } catch (Exception e) {
             e.printStackTrace();
-            return false;
+            return new ArrayList<>();
         }
     }
 
     /**
-     * Получает все сохраненные проекты
-     * @return Список проектов
+     * Ищет сохраненные проекты по началам слов в названии проекта и названиях его пунктов,
+     * не загружая сами объекты. Найденные записи упорядочены от новых к старым
+     * @param query Строка поиска
+     * @param offset Номер первой найденной записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков найденных записей
      */
-    public List<Project> getAllProjects() {
-        String json = preferences.getString(PROJECTS_KEY, "");
-        if (json.isEmpty()) {
+    public List<RecordHeader> searchProjectHeaders(String query, int offset, int limit) {
+        try {
+            return coldTier.search(query, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Находит проекты, в которых есть пункт с указанным названием.
+     * Регистр букв и пробелы по краям названия не учитываются; сами проекты не загружаются
+     * @param pointName Название пункта
+     * @return Заголовки найденных проектов
+     */
+    public List<RecordHeader> findProjectsByPointName(String pointName) {
+        try {
+            return coldTier.findReferences(pointNameKey(pointName));
+        } catch (Exception e) {
+            e.printStackTrace();
             return new ArrayList<>();
         }
+    }
 
-        Type type = new TypeToken<List<Project>>() {}.getType();
-        return gson.fromJson(json, type);
+    /**
+     * Находит проекты, в которых есть пункт с указанными координатами (с точностью до миллиметра).
+     * Сами проекты не загружаются
+     * @param x Координата X, м
+     * @param y Координата Y, м
+     * @return Заголовки найденных проектов
+     */
+    public List<RecordHeader> findProjectsByPointCoordinates(double x, double y) {
+        try {
+            return coldTier.findReferences(pointCoordinatesKey(x, y));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Находит использования нескольких пунктов сразу
+     * @param pointNames Названия пунктов
+     * @return Заголовки проектов для каждого названия в порядке запроса
+     */
+    public Map<String, List<RecordHeader>> findPointUsages(Collection<String> pointNames) {
+        Map<String, List<RecordHeader>> usages = new LinkedHashMap<>();
+        for (String pointName : pointNames) {
+            usages.put(pointName, findProjectsByPointName(pointName));
+        }
+        return usages;
+    }
+
+    /**
+     * Записывает исправленные координаты пункта во все проекты, где есть пункт с этим названием.
+     * Читаются и перезаписываются только найденные по индексу проекты. Результат расчета
+     * такого проекта сбрасывается, так как он получен по прежним координатам;
+     * прежнее состояние остается в истории версий. Проект, открытый до исправления,
+     * при сохранении получит конфликт версий
+     * @param pointName Название пункта
+     * @param x Исправленная координата X, м
+     * @param y Исправленная координата Y, м
+     * @return Future с количеством измененных проектов
+     */
+    public CompletableFuture<Integer> propagatePointCoordinates(String pointName, double x, double y) {
+        String key = pointNameKey(pointName);
+        List<CompletableFuture<Boolean>> updates = new ArrayList<>();
+        for (RecordHeader header : findProjectsByPointName(pointName)) {
+            int id = header.getId();
+            // Проект перечитывается в потоке записи, поэтому ожидающее сохранение
+            // того же проекта не заменяется и выполняется раньше
+            updates.add(executor.submit(pointsKey(id), () -> {
+                promoteCold(id);
+                byte[] data = store.get(id);
+                if (data == null) {
+                    return false;
+                }
+                Project project = decode(data);
+                if (project.getReferencePoints() == null) {
+                    return false;
+                }
+                boolean changed = false;
+                for (ReferencePoint point : project.getReferencePoints()) {
+                    if (point != null && key.equals(pointNameKey(point.getName()))
+                            && (point.getX() != x || point.getY() != y)) {
+                        point.setX(x);
+                        point.setY(y);
+                        changed = true;
+                    }
+                }
+                if (!changed) {
+                    return false;
+                }
+                project.setResult(null);
+                byte[] updated = encode(project);
+                store.put(id, updated, header(project, updated.length));
+                cache.invalidate(writeKey(id));
+                commitVersion(project);
+                return true;
+            }, false));
+        }
+        return CompletableFuture.allOf(updates.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            int count = 0;
+            for (CompletableFuture<Boolean> update : updates) {
+                if (update.join()) {
+                    count++;
+                }
+            }
+            return count;
+        });
     }
 
     /**
@@ -83,52 +302,671 @@ public class ProjectStorage {
      * @return Проект или null, если не найден
      */
     public Project getProjectById(int projectId) {
-        List<Project> projects = getAllProjects();
-        for (Project project : projects) {
-            if (project.getId() == projectId) {
-                return project;
+        try {
+            String key = writeKey(projectId);
+            Object cached = cache.get(key);
+            if (cached != null) {
+                return ModelCopier.copy((Project) cached);
+            }
+            long stamp = cache.stamp();
+            if (!store.contains(projectId)) {
+                Project cold = readCold(projectId);
+                // Проект мог вернуться в основное хранилище между проверкой и чтением холодного уровня
+                if (cold != null || !store.contains(projectId)) {
+                    return cold;
+                }
+            }
+            long version;
+            byte[] data;
+            synchronized (store) {
+                version = store.getVersion(projectId);
+                data = store.get(projectId);
             }
+            if (data == null) {
+                return null;
+            }
+            Project project = read(data);
+            project.setVersion(version);
+            cache.put(key, stamp, ModelCopier.copy(project), data.length);
+            return project;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
         }
-        return null;
     }
 
     /**
-     * Удаляет проект из хранилища
+     * Удаляет проект из хранилища, дожидаясь завершения записи
      * @param projectId ID проекта для удаления
      * @return true, если удаление прошло успешно
      */
     public boolean deleteProject(int projectId) {
         try {
-            List<Project> projects = getAllProjects();
-            for (int i = 0; i < projects.size(); i++) {
-                if (projects.get(i).getId() == projectId) {
-                    projects.remove(i);
-                    String json = gson.toJson(projects);
-                    SharedPreferences.Editor editor = preferences.edit();
-                    editor.putString(PROJECTS_KEY, json);
-                    editor.apply();
-                    return true;
+            return enqueueDelete(projectId, true).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Ставит удаление в очередь потока записи
+     * @param projectId ID проекта для удаления
+     * @return Future с результатом удаления
+     */
+    public CompletableFuture<Boolean> deleteProjectAsync(int projectId) {
+        return enqueueDelete(projectId, false);
+    }
+
+    /**
+     * Удаляет несколько проектов одной записью в хранилище
+     * @param projectIds ID проектов для удаления
+     * @return Future с количеством удаленных проектов
+     */
+    public CompletableFuture<Integer> deleteProjectsAsync(Collection<Integer> projectIds) {
+        List<Integer> ids = new ArrayList<>(projectIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            for (int id : ids) {
+                batch.delete(id);
+            }
+            int deleted = store.apply(batch) + coldTier.delete(ids);
+            for (int id : ids) {
+                cache.invalidate(writeKey(id));
+                File historyFile = historyFile(id);
+                GroupCommit.afterCommit(() -> VersionHistory.delete(historyFile));
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Создает копии нескольких проектов одной записью в хранилище.
+     * Копия получает новый ID, текущую дату и название с указанным окончанием
+     * @param projectIds ID копируемых проектов
+     * @param nameSuffix Окончание названия копии
+     * @return Future с количеством созданных копий
+     */
+    public CompletableFuture<Integer> duplicateProjectsAsync(Collection<Integer> projectIds, String nameSuffix) {
+        List<Integer> ids = new ArrayList<>(projectIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            List<Project> copies = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (int id : ids) {
+                byte[] data = load(id);
+                if (data == null) {
+                    continue;
                 }
+                Project copy = decode(data);
+                copy.setId(store.resolveId(0));
+                copy.setName(copy.getName() != null ? copy.getName() + nameSuffix : null);
+                copy.setCreatedAt(new Date(now));
+                byte[] encoded = encode(copy);
+                batch.put(copy.getId(), encoded, header(copy, encoded.length));
+                copies.add(copy);
             }
-            return false;
+            int created = store.apply(batch);
+            for (Project copy : copies) {
+                commitVersion(copy);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Сохраняет несколько проектов одной записью в хранилище.
+     * ID новым проектам присваиваются сразу, а сериализация выполняется в фоне.
+     * Если хоть один проект изменен после чтения, не сохраняется ни один
+     * @param projects Проекты для сохранения
+     * @return Future с количеством сохраненных проектов; завершается
+     *         {@link WriteConflictException} при конфликте версий
+     */
+    public CompletableFuture<Integer> saveProjectsAsync(List<Project> projects) {
+        try {
+            for (Project project : projects) {
+                project.setId(coldTier.resolveId(project.getId()));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(0);
+        }
+
+        List<Project> items = new ArrayList<>(projects);
+        // Копии снимаются в вызывающем потоке: экран может изменять проекты, пока они ждут записи
+        List<Project> snapshots = new ArrayList<>(items.size());
+        for (Project project : items) {
+            snapshots.add(ModelCopier.copy(project));
+        }
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            for (int i = 0; i < items.size(); i++) {
+                Project snapshot = snapshots.get(i);
+                byte[] data = encode(snapshot);
+                batch.put(snapshot.getId(), data, header(snapshot, data.length))
+                        .expect(snapshot.getId(), items.get(i).getVersion());
+            }
+            int saved = store.apply(batch);
+            for (int i = 0; i < items.size(); i++) {
+                int id = items.get(i).getId();
+                items.get(i).setVersion(store.getVersion(id));
+                cache.invalidate(writeKey(id));
+                commitVersion(snapshots.get(i));
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Переносит несколько проектов в архив. Проекты сохраняют свои ID и историю версий.
+     * Проект удаляется из основного хранилища только после того, как архивная копия
+     * сброшена на диск; после сбоя между этими шагами проект остается в обоих хранилищах
+     * @param projectIds ID проектов
+     * @return Future с количеством перенесенных проектов
+     */
+    public CompletableFuture<Integer> archiveProjectsAsync(Collection<Integer> projectIds) {
+        List<Integer> ids = new ArrayList<>(projectIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch archived = new RecordStore.Batch();
+            RecordStore.Batch removed = new RecordStore.Batch();
+            for (int id : ids) {
+                byte[] data = load(id);
+                if (data == null) {
+                    continue;
+                }
+                Project project = decode(data);
+                byte[] embedded = encodeArchived(project);
+                archived.put(id, embedded, header(project, embedded.length));
+                removed.delete(id);
+            }
+            if (archived.size() == 0) {
+                return 0;
+            }
+            archive.apply(archived);
+            archive.sync();
+            int moved = store.apply(removed) + coldTier.delete(ids);
+            for (int id : ids) {
+                cache.invalidate(writeKey(id));
+            }
+            return moved;
+        });
+    }
+
+    /**
+     * Возвращает проекты из архива в основное хранилище
+     * @param projectIds ID архивных проектов
+     * @return Future с количеством возвращенных проектов
+     */
+    public CompletableFuture<Integer> restoreArchivedProjectsAsync(Collection<Integer> projectIds) {
+        List<Integer> ids = new ArrayList<>(projectIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch restored = new RecordStore.Batch();
+            RecordStore.Batch removed = new RecordStore.Batch();
+            for (int id : ids) {
+                byte[] data = archive.get(id);
+                if (data == null) {
+                    continue;
+                }
+                // Пункты архивного проекта снова заносятся в каталог
+                Project project = decode(data);
+                byte[] encoded = encode(project);
+                restored.put(id, encoded, header(project, encoded.length));
+                removed.delete(id);
+            }
+            if (restored.size() == 0) {
+                return 0;
+            }
+            int moved = store.apply(restored);
+            store.sync();
+            archive.apply(removed);
+            for (int id : ids) {
+                cache.invalidate(writeKey(id));
+            }
+            return moved;
+        });
+    }
+
+    /**
+     * Удаляет несколько проектов из архива одной записью
+     * @param projectIds ID архивных проектов
+     * @return Future с количеством удаленных проектов
+     */
+    public CompletableFuture<Integer> deleteArchivedProjectsAsync(Collection<Integer> projectIds) {
+        List<Integer> ids = new ArrayList<>(projectIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            for (int id : ids) {
+                batch.delete(id);
+            }
+            int deleted = archive.apply(batch);
+            for (int id : ids) {
+                File historyFile = historyFile(id);
+                GroupCommit.afterCommit(() -> VersionHistory.delete(historyFile));
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Получает страницу заголовков архивных проектов, упорядоченных по дате создания
+     * @param order Порядок сортировки
+     * @param offset Номер первой записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков страницы
+     */
+    public List<RecordHeader> queryArchivedProjectHeaders(SortOrder order, int offset, int limit) {
+        try {
+            return archive.queryHeaders(order, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Ищет архивные проекты по началам слов в названии проекта и названиях его пунктов
+     * @param query Строка поиска
+     * @param offset Номер первой найденной записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков найденных записей
+     */
+    public List<RecordHeader> searchArchivedProjectHeaders(String query, int offset, int limit) {
+        try {
+            return archive.search(query, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Получает версии проекта от новых к старым
+     * @param projectId ID проекта
+     * @return Список версий или пустой список, если проект еще не сохранялся
+     */
+    public List<VersionInfo> getProjectVersions(int projectId) {
+        try {
+            return VersionHistory.read(historyFile(projectId)).list(POINTS_SEQUENCE);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Получает проект в состоянии указанной версии
+     * @param projectId ID проекта
+     * @param number Номер версии
+     * @return Проект или null, если версия не найдена
+     */
+    public Project getProjectVersion(int projectId, int number) {
+        try {
+            List<List<byte[]>> sequences = VersionHistory.read(historyFile(projectId)).sequences(number);
+            if (sequences == null) {
+                return null;
+            }
+            Project project = gson.fromJson(VersionHistory.join(sequences, VERSIONED_LISTS), Project.class);
+            project.setId(projectId);
+            return project;
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Сравнивает две версии проекта
+     * @param projectId ID проекта
+     * @param from Номер исходной версии
+     * @param to Номер версии, с которой сравнивается исходная
+     * @return Разница или null, если одной из версий нет
+     */
+    public VersionDiff diffProjectVersions(int projectId, int from, int to) {
+        try {
+            return VersionHistory.read(historyFile(projectId)).diff(from, to, POINTS_SEQUENCE);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Восстанавливает проект в состоянии указанной версии. Восстановленное состояние
+     * сохраняется как новая версия, поэтому более поздние версии остаются в истории
+     * @param projectId ID проекта
+     * @param number Номер версии
+     * @return Future с результатом сохранения
+     */
+    public CompletableFuture<Boolean> restoreProjectVersionAsync(int projectId, int number) {
+        Project project = getProjectVersion(projectId, number);
+        if (project == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return enqueueSave(project, false, true);
+    }
+
+    /**
+     * @param overwrite true, чтобы сохранить проект без проверки версии
+     */
+    private CompletableFuture<Boolean> enqueueSave(Project project, boolean immediate, boolean overwrite) {
+        try {
+            // Если проект новый, присваиваем ему ID
+            project.setId(coldTier.resolveId(project.getId()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(false);
+        }
+
+        int id = project.getId();
+        // Копия снимается в вызывающем потоке: экран может изменять проект, пока он ждет записи
+        Project snapshot = ModelCopier.copy(project);
+        return executor.submit(writeKey(id), () -> {
+            byte[] data = encode(snapshot);
+            // Версия читается в потоке записи: после предыдущего сохранения того же объекта она уже обновлена
+            long expected = overwrite ? store.getVersion(id) : project.getVersion();
+            long version = store.compareAndPut(id, expected, data, header(snapshot, data.length));
+            if (version == RecordStore.CONFLICT) {
+                throw new WriteConflictException(id);
+            }
+            project.setVersion(version);
+            if (overwrite) {
+                dropColdCopy(id);
+            }
+            cache.invalidate(writeKey(id));
+            commitVersion(snapshot);
+            return true;
+        }, immediate);
+    }
+
+    private CompletableFuture<Boolean> enqueueDelete(int projectId, boolean immediate) {
+        // Отдельный ключ: последующее сохранение не заменяет удаление, а выполняется после него
+        // и получает конфликт, если проект был прочитан до удаления
+        return executor.submit(deleteKey(projectId), () -> {
+            boolean deleted = store.delete(projectId) | coldTier.delete(Collections.singletonList(projectId)) > 0;
+            cache.invalidate(writeKey(projectId));
+            File historyFile = historyFile(projectId);
+            GroupCommit.afterCommit(() -> VersionHistory.delete(historyFile));
+            return deleted;
+        }, immediate);
+    }
+
+    /**
+     * Переносит на холодный уровень проекты, не изменявшиеся дольше указанного срока,
+     * и самые давние проекты сверх указанного количества. На холодном уровне проекты
+     * хранятся сжатыми, со встроенными пунктами
+     * @param maxAgeMillis Срок, после которого неизменявшийся проект переносится
+     * @param maxHotRecords Наибольшее количество проектов в основном хранилище
+     * @return Future с количеством перенесенных проектов
+     */
+    public CompletableFuture<Integer> demoteColdProjectsAsync(long maxAgeMillis, int maxHotRecords) {
+        return executor.submitBulk(() -> {
+            List<Integer> ids = coldTier.selectCold(System.currentTimeMillis(), maxAgeMillis, maxHotRecords);
+            List<Integer> moved = coldTier.demote(ids, (id, data) -> encodeArchived(decode(data)));
+            for (int id : moved) {
+                cache.invalidate(writeKey(id));
+            }
+            return moved.size();
+        });
+    }
+
+    /**
+     * Читает проект прямо с холодного уровня, а возвращение в основное хранилище
+     * ставит в очередь потока записи, не дожидаясь его. Версия записи при возвращении
+     * не меняется, поэтому прочитанный проект сохраняется без конфликта
+     * @return Проект или null, если на холодном уровне его нет
+     */
+    private Project readCold(int projectId) throws IOException {
+        // Версия читается раньше данных: изменение между чтениями приведет к конфликту при сохранении
+        long version = store.getVersion(projectId);
+        byte[] data = coldTier.get(projectId);
+        if (data == null) {
+            return null;
+        }
+        executor.submit(promoteKey(projectId), () -> promoteCold(projectId), false);
+        Project project = decode(data);
+        project.setVersion(version);
+        return project;
+    }
+
+    /**
+     * Записывает проект с холодного уровня в основное хранилище и удаляет его копию
+     * с холодного уровня. Пункты проекта снова заносятся в каталог. Выполняется в потоке записи
+     * @return false, если проекта на холодном уровне нет
+     */
+    private boolean promoteCold(int projectId) throws IOException {
+        byte[] data = coldTier.get(projectId);
+        if (data == null) {
             return false;
         }
+        if (!store.contains(projectId)) {
+            Project project = decode(data);
+            byte[] encoded = encode(project);
+            store.restore(projectId, encoded, header(project, encoded.length));
+            store.sync();
+        }
+        coldTier.delete(Collections.singletonList(projectId));
+        cache.invalidate(writeKey(projectId));
+        return true;
+    }
+
+    /**
+     * Удаляет копию проекта с холодного уровня, если проект перезаписан после переноса туда.
+     * Новая запись сначала сбрасывается на диск, чтобы сбой не оставил проект без обеих копий
+     */
+    private void dropColdCopy(int projectId) throws IOException {
+        if (coldTier.contains(projectId)) {
+            store.sync();
+            coldTier.delete(Collections.singletonList(projectId));
+        }
+    }
+
+    /**
+     * Данные проекта из основного хранилища или с холодного уровня
+     */
+    private byte[] load(int projectId) throws IOException {
+        byte[] data = store.get(projectId);
+        return data != null ? data : coldTier.get(projectId);
+    }
+
+    /**
+     * Добавляет сохраняемое состояние проекта в его историю. Ошибка записи истории
+     * не отменяет сохранение самого проекта
+     */
+    private void commitVersion(Project project) {
+        try {
+            VersionHistory.commit(historyFile(project.getId()),
+                    VersionHistory.split(gson.toJsonTree(project).getAsJsonObject(), VERSIONED_LISTS),
+                    System.currentTimeMillis());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private File historyFile(int projectId) {
+        return store.auxiliaryFile(projectId + ".history");
+    }
+
+    private String writeKey(int id) {
+        return PREFS_NAME + "#" + id;
+    }
+
+    private String deleteKey(int id) {
+        return writeKey(id) + "#delete";
+    }
+
+    private String promoteKey(int id) {
+        return writeKey(id) + "#promote";
+    }
+
+    private String upgradeKey(int id) {
+        return writeKey(id) + "#upgrade";
+    }
+
+    private String pointsKey(int id) {
+        return writeKey(id) + "#points";
+    }
+
+    private byte[] encode(Project project) {
+        return schema.wrap(catalog.gson().toJson(project));
+    }
+
+    /**
+     * Запись архивного проекта: пункты хранятся целиком, так как очистка каталога
+     * учитывает только проекты основного хранилища
+     */
+    private byte[] encodeArchived(Project project) {
+        return schema.wrap(gson.toJson(project));
+    }
+
+    private Project decode(byte[] data) {
+        if (schema.isStale(data)) {
+            return catalog.gson().fromJson(schema.upgrade(data), Project.class);
+        }
+        return catalog.gson().fromJson(RecordSchema.json(data), Project.class);
+    }
+
+    /**
+     * Читает проект; если запись сохранена в прежней версии схемы, перезаписывает ее в фоне
+     */
+    private Project read(byte[] data) {
+        Project project = decode(data);
+        if (schema.isStale(data)) {
+            scheduleUpgrade(project.getId());
+        }
+        return project;
+    }
+
+    /**
+     * Ставит в очередь перезапись проекта в текущей версии схемы. Ключ отличается от ключа
+     * сохранения, чтобы не заменить ожидающее сохранение; к моменту выполнения
+     * запись перечитывается и не трогается, если ее уже перезаписали.
+     * Содержимое проекта не меняется, поэтому версия записи остается прежней
+     */
+    private void scheduleUpgrade(int projectId) {
+        executor.submit(upgradeKey(projectId), () -> {
+            long version;
+            byte[] data;
+            synchronized (store) {
+                version = store.getVersion(projectId);
+                data = store.get(projectId);
+            }
+            if (data == null || !schema.isStale(data)) {
+                return true;
+            }
+            Project project = decode(data);
+            byte[] upgraded = encode(project);
+            store.rewrite(projectId, version, upgraded, header(project, upgraded.length));
+            cache.invalidate(writeKey(projectId));
+            return true;
+        }, false);
     }
 
     /**
-     * Генерирует уникальный ID для нового проекта
-     * @param projects Список существующих проектов
-     * @return Уникальный ID
+     * Удаляет из каталога пункты, на которые больше не ссылается ни один проект
      */
-    private int generateProjectId(List<Project> projects) {
-        int maxId = 0;
-        for (Project project : projects) {
-            if (project.getId() > maxId) {
-                maxId = project.getId();
+    private void scheduleCatalogCleanup() {
+        executor.submit(CATALOG_CLEANUP_KEY, () -> {
+            // Блокировки берутся в том же порядке, что и при чтении проекта: хранилище, затем каталог
+            synchronized (store) {
+                catalog.retain(ref -> !store.findReferences(CATALOG_POINT_PREFIX + ref).isEmpty());
             }
+            return true;
+        }, false);
+    }
+
+    private RecordHeader header(Project project, int size) throws IOException {
+        return new RecordHeader(project.getId(), project.getName(), project.getCreatedAt(), size,
+                project.getReferencePoints() != null ? project.getReferencePoints().size() : 0, null,
+                keywords(project), references(project));
+    }
+
+    /**
+     * Ключи пунктов проекта для обратного индекса: названия, координаты и пункты каталога
+     */
+    private String[] references(Project project) throws IOException {
+        if (project.getReferencePoints() == null) {
+            return null;
+        }
+        Set<String> references = new LinkedHashSet<>();
+        for (ReferencePoint point : project.getReferencePoints()) {
+            if (point == null) {
+                continue;
+            }
+            if (point.getName() != null && !point.getName().trim().isEmpty()) {
+                references.add(pointNameKey(point.getName()));
+            }
+            references.add(pointCoordinatesKey(point.getX(), point.getY()));
+            int ref = catalog.find(point.getName(), point.getX(), point.getY());
+            if (ref >= 0) {
+                references.add(CATALOG_POINT_PREFIX + ref);
+            }
+        }
+        return references.toArray(new String[0]);
+    }
+
+    private static String pointNameKey(String pointName) {
+        return POINT_NAME_PREFIX + (pointName != null ? pointName.trim().toLowerCase(Locale.ROOT) : "");
+    }
+
+    private static String pointCoordinatesKey(double x, double y) {
+        return POINT_COORDINATES_PREFIX + Math.round(x * COORDINATE_UNITS_PER_METER)
+                + ":" + Math.round(y * COORDINATE_UNITS_PER_METER);
+    }
+
+    /**
+     * Названия пунктов проекта, по которым проект находится поиском
+     */
+    private String keywords(Project project) {
+        if (project.getReferencePoints() == null) {
+            return null;
+        }
+        StringBuilder keywords = new StringBuilder();
+        for (ReferencePoint point : project.getReferencePoints()) {
+            if (point != null && point.getName() != null) {
+                keywords.append(point.getName()).append(' ');
+            }
+        }
+        return keywords.toString().trim();
+    }
+
+    private RecordHeader extractHeader(int id, byte[] data) {
+        try {
+            return header(decode(data), data.length);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new RecordHeader(id, null, null, data.length, 0, null);
+        }
+    }
+
+    /**
+     * Переносит проекты, сохраненные прежними версиями приложения одним JSON-списком
+     * в SharedPreferences, в журнальное хранилище
+     */
+    private void migrateFromPreferences(SharedPreferences preferences) {
+        String json = preferences.getString(PROJECTS_KEY, "");
+        if (json.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Проекты прежних версий приложения переводятся в текущую схему до записи
+            JsonArray items = JsonParser.parseString(json).getAsJsonArray();
+            for (int i = 0; i < items.size(); i++) {
+                items.set(i, schema.upgrade(items.get(i), RecordSchema.LEGACY_VERSION));
+            }
+            Type type = new TypeToken<List<Project>>() {}.getType();
+            List<Project> projects = gson.fromJson(items, type);
+            synchronized (store) {
+                for (Project project : projects) {
+                    byte[] data = encode(project);
+                    store.put(project.getId(), data, header(project, data.length));
+                }
+            }
+            // Старый список удаляется только после того, как записи сброшены на диск
+            GroupCommit.commit();
+            preferences.edit().remove(PROJECTS_KEY).commit();
+        } catch (Exception e) {
+            e.printStackTrace();
         }
-        return maxId + 1;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package com.example.javamark.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Краткие сведения о сохраненной записи для списков сохраненных проектов,
+ * журналов и измерений. Позволяют показать список, не загружая сами объекты
+ */
+public final class RecordHeader {
+    private static final String[] NO_REFERENCES = new String[0];
+
+    private final int id;
+    private final String name;
+    private final long createdAt;
+    private final int size;
+    private final int itemCount;
+    private final String summary;
+    private final String keywords;
+    private final String[] references;
+    // Время последнего изменения записи; у заголовков прежних версий — дата создания
+    private final long modifiedAt;
+    // Заголовок записан версией без ключевых слов или ссылок и должен быть построен заново
+    private final boolean legacy;
+
+    /**
+     * @param id ID записи
+     * @param name Название
+     * @param createdAt Дата создания
+     * @param size Размер записи в байтах
+     * @param itemCount Количество пунктов или станций
+     * @param summary Краткий итог (например, азимут) или null
+     */
+    public RecordHeader(int id, String name, Date createdAt, int size, int itemCount, String summary) {
+        this(id, name, createdAt, size, itemCount, summary, null);
+    }
+
+    /**
+     * @param keywords Дополнительный текст для поиска (например, названия пунктов) или null
+     */
+    public RecordHeader(int id, String name, Date createdAt, int size, int itemCount, String summary,
+                        String keywords) {
+        this(id, name, createdAt, size, itemCount, summary, keywords, null);
+    }
+
+    /**
+     * @param references Ключи общих объектов, на которые ссылается запись (например, пунктов проекта), или null
+     */
+    public RecordHeader(int id, String name, Date createdAt, int size, int itemCount, String summary,
+                        String keywords, String[] references) {
+        this(id, name, createdAt != null ? createdAt.getTime() : 0L, size, itemCount, summary, keywords,
+                references != null ? references.clone() : NO_REFERENCES,
+                createdAt != null ? createdAt.getTime() : 0L, false);
+    }
+
+    private RecordHeader(int id, String name, long createdAt, int size, int itemCount, String summary,
+                         String keywords, String[] references, long modifiedAt, boolean legacy) {
+        this.id = id;
+        this.name = name;
+        this.createdAt = createdAt;
+        this.size = size;
+        this.itemCount = itemCount;
+        this.summary = summary;
+        this.keywords = keywords;
+        this.references = references;
+        this.modifiedAt = modifiedAt;
+        this.legacy = legacy;
+    }
+
+    /**
+     * Копия заголовка с другим временем последнего изменения.
+     * Время проставляет хранилище при записи
+     */
+    RecordHeader modifiedAt(long time) {
+        return new RecordHeader(id, name, createdAt, size, itemCount, summary, keywords, references, time, legacy);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Date getCreatedAt() {
+        return new Date(createdAt);
+    }
+
+    long getCreatedAtMillis() {
+        return createdAt;
+    }
+
+    /**
+     * Время последнего изменения записи. По нему давно не изменявшиеся записи
+     * переносятся на холодный уровень хранилища ({@link ColdTier})
+     */
+    long getModifiedAtMillis() {
+        return modifiedAt;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public String getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * Ключи общих объектов, на которые ссылается запись. По ним хранилище находит записи,
+     * использующие объект, не читая сами записи
+     */
+    String[] getReferences() {
+        return references;
+    }
+
+    boolean isLegacy() {
+        return legacy;
+    }
+
+    public String getFormattedDate() {
+        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("dd.MM.yyyy HH:mm");
+        return sdf.format(new Date(createdAt));
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        writeNullableString(out, name);
+        out.writeLong(createdAt);
+        out.writeInt(size);
+        out.writeInt(itemCount);
+        writeNullableString(out, summary);
+        writeNullableString(out, keywords);
+        out.writeInt(references.length);
+        for (String reference : references) {
+            out.writeUTF(reference);
+        }
+        out.writeLong(modifiedAt);
+    }
+
+    /**
+     * Читает заголовок из потока, ограниченного одной записью файла заголовков.
+     * Если ключевых слов или ссылок в записи нет, она сохранена прежней версией.
+     * Время изменения записи, отсутствующее в заголовках прежних версий, принимается равным дате создания
+     */
+    static RecordHeader readFrom(int id, DataInputStream in) throws IOException {
+        String name = readNullableString(in);
+        long createdAt = in.readLong();
+        int size = in.readInt();
+        int itemCount = in.readInt();
+        String summary = readNullableString(in);
+        String keywords = in.available() > 0 ? readNullableString(in) : null;
+        boolean legacy = in.available() == 0;
+        String[] references = NO_REFERENCES;
+        if (!legacy) {
+            references = new String[in.readInt()];
+            for (int i = 0; i < references.length; i++) {
+                references[i] = in.readUTF();
+            }
+        }
+        long modifiedAt = in.available() >= 8 ? in.readLong() : createdAt;
+        return new RecordHeader(id, name, createdAt, size, itemCount, summary, keywords, references, modifiedAt,
+                legacy);
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
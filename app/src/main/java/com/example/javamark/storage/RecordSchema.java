@@ -0,0 +1,119 @@
+package com.example.javamark.storage;
+
+import android.util.Log;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Версия схемы JSON-записей одного хранилища и переходы между версиями.
+ * Запись в JSON сохраняется с префиксом [признак][версия схемы]; записи без префикса
+ * сохранены до появления версий и считаются версией 1. Двоичные записи {@link BinaryCodec}
+ * имеют собственную версию формата и всегда соответствуют текущей схеме.
+ * Устаревшая запись переводится в текущую схему при чтении, а хранилище
+ * перезаписывает ее в фоне, поэтому обновление приложения не требует
+ * переписывать все записи при запуске
+ */
+final class RecordSchema {
+    private static final String TAG = "RecordSchema";
+
+    // Признак записи с версией схемы: не может быть началом JSON или двоичной записи
+    static final byte MARK = (byte) 0xA5;
+    private static final int PREFIX_SIZE = 2;
+    static final int LEGACY_VERSION = 1;
+
+    /**
+     * Переход записи на следующую версию схемы. Изменяет JSON записи на месте.
+     * Записи без префикса могли быть сохранены и после появления поля,
+     * поэтому переход не должен менять уже заполненные поля
+     */
+    interface Migration {
+        void migrate(JsonObject record);
+    }
+
+    private final Migration[] migrations;
+
+    /**
+     * @param migrations Переходы по порядку: первый переводит запись из версии 1 в 2 и т. д.
+     */
+    RecordSchema(Migration... migrations) {
+        this.migrations = migrations;
+    }
+
+    /**
+     * Текущая версия схемы, в которой сохраняются новые записи
+     */
+    int currentVersion() {
+        return migrations.length + LEGACY_VERSION;
+    }
+
+    /**
+     * Версия схемы, в которой сохранена запись
+     */
+    int versionOf(byte[] data) {
+        if (BinaryCodec.isBinary(data)) {
+            return currentVersion();
+        }
+        if (isMarked(data)) {
+            return data[1] & 0xFF;
+        }
+        return LEGACY_VERSION;
+    }
+
+    /**
+     * true, если запись сохранена в прежней версии схемы и должна быть перезаписана
+     */
+    boolean isStale(byte[] data) {
+        return versionOf(data) < currentVersion();
+    }
+
+    /**
+     * Добавляет к JSON записи префикс текущей версии схемы
+     */
+    byte[] wrap(String json) {
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[payload.length + PREFIX_SIZE];
+        data[0] = MARK;
+        data[1] = (byte) currentVersion();
+        System.arraycopy(payload, 0, data, PREFIX_SIZE, payload.length);
+        return data;
+    }
+
+    /**
+     * JSON записи без префикса версии
+     */
+    static String json(byte[] data) {
+        int offset = isMarked(data) ? PREFIX_SIZE : 0;
+        return new String(data, offset, data.length - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Читает JSON записи и переводит его в текущую версию схемы
+     */
+    JsonElement upgrade(byte[] data) {
+        return upgrade(JsonParser.parseString(json(data)), versionOf(data));
+    }
+
+    /**
+     * Переводит JSON записи из указанной версии схемы в текущую
+     */
+    JsonElement upgrade(JsonElement record, int version) {
+        if (version > currentVersion()) {
+            Log.w(TAG, "Запись сохранена более новой версией схемы: " + version);
+        }
+        if (!(record instanceof JsonObject)) {
+            return record;
+        }
+        for (int v = Math.max(version, LEGACY_VERSION); v < currentVersion(); v++) {
+            migrations[v - LEGACY_VERSION].migrate((JsonObject) record);
+        }
+        return record;
+    }
+
+    private static boolean isMarked(byte[] data) {
+        return data.length >= PREFIX_SIZE && data[0] == MARK;
+    }
+}
@@ -0,0 +1,1080 @@
+package com.example.javamark.storage;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Журнальное хранилище записей: каждая запись (проект, журнал, измерение)
+ * дописывается в конец файла, а индекс id → смещение держится в памяти.
+ * Стоимость сохранения и удаления зависит только от размера одной записи.
+ * Устаревшие версии записей периодически удаляются фоновым уплотнением.
+ * Рядом с данными ведется отдельный файл заголовков ({@link RecordHeader}),
+ * по которому строятся списки без чтения самих записей. Для постраничных запросов
+ * ID записей дополнительно упорядочены по дате создания ({@link SortedIdIndex}),
+ * а слова из названий и ключевых слов заголовков собраны в префиксный индекс для поиска
+ * ({@link SearchIndex}).
+ * Несколько изменений можно записать одним набором ({@link Batch}): набор
+ * дописывается одной записью журнала и после сбоя применяется целиком или не применяется вовсе.
+ * Каждая запись имеет версию ({@link #getVersion}), которая меняется при каждом изменении
+ * записи. Сохранение с проверкой версии ({@link #compareAndPut}) не затирает изменения,
+ * сделанные после того, как объект был прочитан: конфликт определяется для каждой записи
+ * отдельно, поэтому сохранения разных записей друг другу не мешают.
+ * Файл данных служит журналом упреждающей записи: каждая запись снабжена
+ * контрольной суммой, при открытии журнал проигрывается заново и обрывается
+ * на первой поврежденной записи. Сброс на диск выполняется один раз на группу
+ * записей (см. {@link GroupCommit}).
+ * Последовательность ID хранится в самом журнале: последний выданный ID
+ * восстанавливается из записей и меток удаления, а при уплотнении
+ * сохраняется отдельной меткой, поэтому ID удаленных записей не переиспользуются.
+ */
+public final class RecordStore implements GroupCommit.Syncable {
+    private static final String TAG = "RecordStore";
+    private static final String STORAGE_DIR = "storage";
+
+    // Заголовок файла: сигнатура "JMRS" и версия формата
+    private static final int MAGIC = 0x4A4D5253;
+    private static final byte FORMAT_VERSION = 2;
+    // Версия 1: записи без контрольной суммы, при открытии переписывается в текущий формат
+    private static final byte FORMAT_VERSION_NO_CHECKSUM = 1;
+    private static final int FILE_HEADER_SIZE = 5;
+
+    // Заголовок записи: длина данных, id, тип операции, CRC32 от id, типа и данных
+    private static final int RECORD_HEADER_SIZE = 13;
+    private static final int RECORD_HEADER_SIZE_NO_CHECKSUM = 9;
+    // Заголовок записи в файле заголовков: длина, id, тип операции
+    private static final int INDEX_ENTRY_HEADER_SIZE = 9;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    // Отметка последовательности ID: id записи равен последнему выданному ID, данных нет.
+    // Пишется при перезаписи файла, чтобы ID удаленных записей не выдавались повторно
+    private static final byte OP_SEQUENCE = 3;
+    // Набор изменений: данные записи — подряд идущие записи OP_PUT и OP_DELETE
+    // с собственными заголовками. Общая контрольная сумма делает набор атомарным
+    private static final byte OP_BATCH = 4;
+
+    // Уплотнение запускается, когда мусора больше, чем живых данных, и не меньше 64 КБ
+    private static final long COMPACTION_MIN_DEAD_BYTES = 64 * 1024;
+
+    /**
+     * Версия записи, которой нет и которая не менялась с открытия хранилища
+     */
+    public static final long NO_VERSION = 0;
+    /**
+     * Версия записи, прочитанной при открытии и с тех пор не менявшейся
+     */
+    public static final long INITIAL_VERSION = 1;
+    /**
+     * Результат {@link #compareAndPut}, если запись изменена после чтения
+     */
+    public static final long CONFLICT = -1;
+
+    private static final Map<String, RecordStore> openStores = new HashMap<>();
+    private static final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "RecordStore-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Строит заголовок по данным записи, если он отсутствует в файле заголовков
+     */
+    public interface HeaderExtractor {
+        RecordHeader extract(int id, byte[] data);
+    }
+
+    private final File file;
+    private final File headerFile;
+    private final HeaderExtractor headerExtractor;
+    private RandomAccessFile raf;
+    private RandomAccessFile headerRaf;
+    private final Map<Integer, Slot> index = new LinkedHashMap<>();
+    private final SortedIdIndex byCreatedAt = new SortedIdIndex();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final ReferenceIndex referenceIndex = new ReferenceIndex();
+    private final Set<Integer> reservedIds = new HashSet<>();
+    private long liveBytes;
+    private long deadBytes;
+    private int maxId;
+    private boolean compactionScheduled;
+    // Есть записи, еще не сброшенные на диск
+    private boolean unsynced;
+    // Версии записей, измененных с открытия хранилища, в том числе удаленных.
+    // Версии не хранятся в файле: объекты, прочитанные до перезапуска, в памяти не остаются
+    private final Map<Integer, Long> versions = new HashMap<>();
+    private long lastVersion = INITIAL_VERSION;
+
+    /**
+     * Положение записи в файле
+     */
+    private static final class Slot {
+        final long offset;
+        final int length;
+        RecordHeader header;
+
+        Slot(long offset, int length, RecordHeader header) {
+            this.offset = offset;
+            this.length = length;
+            this.header = header;
+        }
+
+        long size() {
+            return RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * Набор изменений, записываемых в журнал одной записью
+     */
+    public static final class Batch {
+        private final List<Integer> ids = new ArrayList<>();
+        // null — удаление записи
+        private final List<byte[]> data = new ArrayList<>();
+        private final List<RecordHeader> headers = new ArrayList<>();
+        private final Map<Integer, Long> expected = new HashMap<>();
+
+        /**
+         * Добавляет в набор новую версию записи
+         */
+        public Batch put(int id, byte[] data, RecordHeader header) {
+            this.ids.add(id);
+            this.data.add(data);
+            this.headers.add(header);
+            return this;
+        }
+
+        /**
+         * Добавляет в набор удаление записи
+         */
+        public Batch delete(int id) {
+            ids.add(id);
+            data.add(null);
+            headers.add(null);
+            return this;
+        }
+
+        /**
+         * Набор применяется, только если запись по-прежнему имеет указанную версию
+         */
+        public Batch expect(int id, long version) {
+            expected.put(id, version);
+            return this;
+        }
+
+        public int size() {
+            return ids.size();
+        }
+    }
+
+    /**
+     * Поток, ограниченный областью одной записи
+     */
+    private static final class RegionInputStream extends FilterInputStream {
+        private long remaining;
+
+        RegionInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = super.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = super.read(b, off, (int) Math.min(len, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private RecordStore(File file, File headerFile, HeaderExtractor headerExtractor) {
+        this.file = file;
+        this.headerFile = headerFile;
+        this.headerExtractor = headerExtractor;
+    }
+
+    /**
+     * Возвращает общее для процесса хранилище с указанным именем.
+     * Все экземпляры ProjectStorage и т.п. работают с одним объектом,
+     * поэтому индекс в памяти всегда согласован с файлом.
+     */
+    public static synchronized RecordStore open(Context context, String name, HeaderExtractor headerExtractor) {
+        RecordStore store = openStores.get(name);
+        if (store == null) {
+            File dir = new File(context.getApplicationContext().getFilesDir(), STORAGE_DIR);
+            store = openFile(dir, name, headerExtractor);
+            openStores.put(name, store);
+        }
+        return store;
+    }
+
+    /**
+     * Создает отдельный, не разделяемый с другими объект хранилища в каталоге.
+     * Используется для проверки восстановления после сбоя
+     */
+    static RecordStore openFile(File dir, String name, HeaderExtractor headerExtractor) {
+        return new RecordStore(new File(dir, name + ".log"), new File(dir, name + ".idx"), headerExtractor);
+    }
+
+    /**
+     * Файл для дополнительных данных хранилища, лежащий рядом с файлом записей
+     * @param suffix Окончание имени файла
+     */
+    public File auxiliaryFile(String suffix) {
+        String name = file.getName();
+        return new File(file.getParentFile(), name.substring(0, name.lastIndexOf('.')) + "." + suffix);
+    }
+
+    /**
+     * Сбрасывает дописанные записи на диск. Вызывается один раз на группу записей
+     */
+    @Override
+    public synchronized void sync() throws IOException {
+        if (raf != null && unsynced) {
+            raf.getFD().sync();
+            unsynced = false;
+        }
+    }
+
+    /**
+     * Закрывает файлы хранилища. Следующее обращение откроет их заново
+     */
+    synchronized void close() throws IOException {
+        sync();
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+        if (headerRaf != null) {
+            headerRaf.close();
+            headerRaf = null;
+        }
+    }
+
+    /**
+     * Проверяет, есть ли запись с указанным ID
+     */
+    public synchronized boolean contains(int id) throws IOException {
+        ensureLoaded();
+        return index.containsKey(id);
+    }
+
+    /**
+     * Возвращает ID, под которым нужно сохранить запись: прежний, если запись
+     * уже есть в хранилище или ожидает записи в очереди, иначе новый.
+     * Новый ID резервируется сразу, поэтому две новые записи, поставленные
+     * в очередь до сброса, не получат одинаковый ID
+     */
+    public synchronized int resolveId(int id) throws IOException {
+        ensureLoaded();
+        if (index.containsKey(id) || reservedIds.contains(id)) {
+            return id;
+        }
+        int newId = ++maxId;
+        reservedIds.add(newId);
+        return newId;
+    }
+
+    /**
+     * Количество живых записей
+     */
+    public synchronized int size() throws IOException {
+        ensureLoaded();
+        return index.size();
+    }
+
+    /**
+     * Записывает новую версию записи в конец файла
+     */
+    public synchronized void put(int id, byte[] data, RecordHeader header) throws IOException {
+        ensureLoaded();
+        write(id, data, modifiedNow(header));
+        touch(id);
+    }
+
+    /**
+     * Записывает новую версию записи, только если запись не изменялась
+     * с тех пор, как была прочитана версия expectedVersion
+     * @param expectedVersion Версия, с которой был прочитан объект, или {@link #NO_VERSION} для новой записи
+     * @return Новая версия записи или {@link #CONFLICT}, если запись изменена или удалена
+     */
+    public synchronized long compareAndPut(int id, long expectedVersion, byte[] data, RecordHeader header)
+            throws IOException {
+        ensureLoaded();
+        if (getVersion(id) != expectedVersion) {
+            return CONFLICT;
+        }
+        write(id, data, modifiedNow(header));
+        return touch(id);
+    }
+
+    /**
+     * Записывает запись, вернувшуюся с холодного уровня, сохраняя ее текущую версию:
+     * объект, прочитанный с холодного уровня до записи, сохраняется без конфликта
+     * @return false, если запись уже есть в хранилище
+     */
+    public synchronized boolean restore(int id, byte[] data, RecordHeader header) throws IOException {
+        ensureLoaded();
+        if (index.containsKey(id)) {
+            return false;
+        }
+        long version = getVersion(id);
+        write(id, data, modifiedNow(header));
+        versions.put(id, version);
+        return true;
+    }
+
+    /**
+     * Переписывает запись в другом представлении (новая версия схемы, другой формат),
+     * не меняя ее версию: содержимое записи остается прежним, поэтому объекты,
+     * прочитанные до перезаписи, можно сохранять без конфликта
+     * @return false, если запись изменилась после чтения версии expectedVersion
+     */
+    public synchronized boolean rewrite(int id, long expectedVersion, byte[] data, RecordHeader header)
+            throws IOException {
+        ensureLoaded();
+        Slot slot = index.get(id);
+        if (slot == null || getVersion(id) != expectedVersion) {
+            return false;
+        }
+        // Время изменения остается прежним: запись не изменилась по содержанию
+        write(id, data, header != null && slot.header != null
+                ? header.modifiedAt(slot.header.getModifiedAtMillis()) : header);
+        return true;
+    }
+
+    /**
+     * Текущая версия записи. Версию нужно читать до данных записи:
+     * тогда изменение, сделанное между двумя чтениями, приведет к конфликту, а не потеряется
+     */
+    public synchronized long getVersion(int id) throws IOException {
+        ensureLoaded();
+        Long version = versions.get(id);
+        if (version != null) {
+            return version;
+        }
+        return index.containsKey(id) ? INITIAL_VERSION : NO_VERSION;
+    }
+
+    private void write(int id, byte[] data, RecordHeader header) throws IOException {
+        long offset = append(id, OP_PUT, data);
+        appendHeader(id, OP_PUT, header);
+        indexPut(id, offset, data.length, header);
+        maybeScheduleCompaction();
+    }
+
+    private static RecordHeader modifiedNow(RecordHeader header) {
+        return header != null ? header.modifiedAt(System.currentTimeMillis()) : null;
+    }
+
+    /**
+     * Присваивает измененной записи новую версию
+     */
+    private long touch(int id) {
+        long version = ++lastVersion;
+        versions.put(id, version);
+        return version;
+    }
+
+    /**
+     * Записывает набор изменений одной записью журнала и одной записью в файл заголовков.
+     * Удаления отсутствующих записей пропускаются
+     * @return Количество примененных изменений
+     * @throws WriteConflictException если запись набора изменена после чтения
+     *         ожидаемой версии ({@link Batch#expect}); в этом случае ничего не записывается
+     */
+    public synchronized int apply(Batch batch) throws IOException {
+        ensureLoaded();
+        for (Map.Entry<Integer, Long> expected : batch.expected.entrySet()) {
+            if (getVersion(expected.getKey()) != expected.getValue()) {
+                throw new WriteConflictException(expected.getKey());
+            }
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        // Смещение каждого изменения внутри набора или -1, если изменение пропущено
+        long[] positions = new long[batch.size()];
+        // Наличие записей с учетом уже добавленных в набор изменений
+        Map<Integer, Boolean> present = new HashMap<>();
+        RecordHeader[] stamped = new RecordHeader[batch.size()];
+        int applied = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            int id = batch.ids.get(i);
+            byte[] data = batch.data.get(i);
+            Boolean exists = present.get(id);
+            if (data == null && !(exists != null ? exists : index.containsKey(id))) {
+                positions[i] = -1;
+                continue;
+            }
+            byte op = data != null ? OP_PUT : OP_DELETE;
+            positions[i] = payload.size();
+            payload.write(encodeRecord(id, op, data != null ? data : new byte[0]));
+            stamped[i] = data != null ? modifiedNow(batch.headers.get(i)) : null;
+            headers.write(encodeHeader(id, op, stamped[i]));
+            present.put(id, data != null);
+            applied++;
+        }
+        if (applied == 0) {
+            return 0;
+        }
+
+        long offset = append(0, OP_BATCH, payload.toByteArray());
+        headerRaf.seek(headerRaf.length());
+        headerRaf.write(headers.toByteArray());
+        deadBytes += RECORD_HEADER_SIZE;
+        for (int i = 0; i < batch.size(); i++) {
+            if (positions[i] < 0) {
+                continue;
+            }
+            int id = batch.ids.get(i);
+            byte[] data = batch.data.get(i);
+            if (data != null) {
+                indexPut(id, offset + RECORD_HEADER_SIZE + positions[i], data.length, stamped[i]);
+            } else {
+                reservedIds.remove(id);
+                indexDelete(index.remove(id), id);
+            }
+            touch(id);
+        }
+        maybeScheduleCompaction();
+        return applied;
+    }
+
+    private void indexPut(int id, long offset, int length, RecordHeader header) {
+        Slot previous = index.put(id, new Slot(offset, length, header));
+        if (previous != null) {
+            liveBytes -= previous.size();
+            deadBytes += previous.size();
+            unindexHeader(id, previous.header);
+        }
+        indexHeader(id, header);
+        liveBytes += RECORD_HEADER_SIZE + length;
+        reservedIds.remove(id);
+        maxId = Math.max(maxId, id);
+    }
+
+    /**
+     * Учитывает удаление записи, уже убранной из индекса
+     */
+    private void indexDelete(Slot previous, int id) {
+        unindexHeader(id, previous.header);
+        liveBytes -= previous.size();
+        deadBytes += previous.size() + RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Обновляет только заголовок записи, не переписывая ее данные.
+     * Нужен, когда изменения записи хранятся отдельно от нее
+     * @return false, если записи нет
+     */
+    public synchronized boolean putHeader(int id, RecordHeader header) throws IOException {
+        ensureLoaded();
+        Slot slot = index.get(id);
+        if (slot == null) {
+            return false;
+        }
+        header = modifiedNow(header);
+        appendHeader(id, OP_PUT, header);
+        unindexHeader(id, slot.header);
+        indexHeader(id, header);
+        slot.header = header;
+        touch(id);
+        return true;
+    }
+
+    /**
+     * Обновляет только заголовок записи, если запись не изменялась с версии expectedVersion
+     * @return Новая версия записи или {@link #CONFLICT}, если запись изменена или удалена
+     */
+    public synchronized long compareAndPutHeader(int id, long expectedVersion, RecordHeader header)
+            throws IOException {
+        ensureLoaded();
+        if (!index.containsKey(id) || getVersion(id) != expectedVersion) {
+            return CONFLICT;
+        }
+        putHeader(id, header);
+        return versions.get(id);
+    }
+
+    /**
+     * Читает последнюю версию записи
+     * @return данные записи или null, если запись не найдена
+     */
+    public synchronized byte[] get(int id) throws IOException {
+        ensureLoaded();
+        Slot slot = index.get(id);
+        return slot != null ? read(slot) : null;
+    }
+
+    /**
+     * Открывает поток для последовательного чтения последней версии записи.
+     * Поток читает из собственного дескриптора файла, поэтому остается
+     * корректным и после фонового уплотнения
+     * @return поток или null, если запись не найдена
+     */
+    public synchronized InputStream openStream(int id) throws IOException {
+        ensureLoaded();
+        Slot slot = index.get(id);
+        if (slot == null) {
+            return null;
+        }
+        FileInputStream in = new FileInputStream(file);
+        in.getChannel().position(slot.offset + RECORD_HEADER_SIZE);
+        return new RegionInputStream(in, slot.length);
+    }
+
+    /**
+     * Возвращает заголовок записи
+     * @return заголовок или null, если запись не найдена
+     */
+    public synchronized RecordHeader getHeader(int id) throws IOException {
+        ensureLoaded();
+        Slot slot = index.get(id);
+        return slot != null ? slot.header : null;
+    }
+
+    /**
+     * Читает все живые записи в порядке их добавления
+     */
+    public synchronized List<byte[]> getAll() throws IOException {
+        ensureLoaded();
+        List<byte[]> records = new ArrayList<>(index.size());
+        for (Slot slot : index.values()) {
+            records.add(read(slot));
+        }
+        return records;
+    }
+
+    /**
+     * Возвращает заголовки всех живых записей, не читая сами записи
+     */
+    public synchronized List<RecordHeader> getHeaders() throws IOException {
+        ensureLoaded();
+        List<RecordHeader> headers = new ArrayList<>(index.size());
+        for (Slot slot : index.values()) {
+            headers.add(slot.header);
+        }
+        return headers;
+    }
+
+    /**
+     * Возвращает страницу заголовков, упорядоченных по дате создания.
+     * Читается только запрошенная страница индекса, а не все записи
+     * @param order Порядок сортировки
+     * @param offset Номер первой записи страницы
+     * @param limit Наибольшее количество записей на странице
+     */
+    public synchronized List<RecordHeader> queryHeaders(SortOrder order, int offset, int limit) throws IOException {
+        ensureLoaded();
+        int size = byCreatedAt.size();
+        int from = Math.max(0, offset);
+        int to = (int) Math.min(size, (long) from + Math.max(0, limit));
+        List<RecordHeader> page = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            int position = order == SortOrder.NEWEST_FIRST ? size - 1 - i : i;
+            page.add(index.get(byCreatedAt.idAt(position)).header);
+        }
+        return page;
+    }
+
+    /**
+     * Ищет записи по началам слов в названии и ключевых словах заголовка.
+     * Результаты упорядочены от новых к старым; сами записи не читаются
+     * @param query Строка поиска; каждое ее слово должно быть началом какого-либо слова записи
+     * @param offset Номер первой найденной записи страницы
+     * @param limit Наибольшее количество записей на странице
+     */
+    public synchronized List<RecordHeader> search(String query, int offset, int limit) throws IOException {
+        ensureLoaded();
+        List<RecordHeader> page = new ArrayList<>();
+        BitSet matches = searchIndex.match(query);
+        if (matches == null || matches.isEmpty()) {
+            return page;
+        }
+        int skipped = 0;
+        for (int i = byCreatedAt.size() - 1; i >= 0 && page.size() < limit; i--) {
+            int id = byCreatedAt.idAt(i);
+            if (id >= 0 && matches.get(id)) {
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    page.add(index.get(id).header);
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Находит записи, ссылающиеся на общий объект ({@link RecordHeader#getReferences()}).
+     * Сами записи не читаются
+     * @param reference Ключ объекта
+     * @return Заголовки найденных записей по возрастанию ID
+     */
+    public synchronized List<RecordHeader> findReferences(String reference) throws IOException {
+        ensureLoaded();
+        int[] ids = referenceIndex.find(reference);
+        List<RecordHeader> headers = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            headers.add(index.get(id).header);
+        }
+        return headers;
+    }
+
+    /**
+     * Удаляет запись, дописывая в файл метку удаления
+     * @return true, если запись существовала
+     */
+    public synchronized boolean delete(int id) throws IOException {
+        ensureLoaded();
+        reservedIds.remove(id);
+        Slot previous = index.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        append(id, OP_DELETE, new byte[0]);
+        appendHeader(id, OP_DELETE, null);
+        indexDelete(previous, id);
+        touch(id);
+        maybeScheduleCompaction();
+        return true;
+    }
+
+    /**
+     * Открывает файл и восстанавливает индекс, читая только заголовки записей
+     */
+    private void ensureLoaded() throws IOException {
+        if (raf != null) {
+            return;
+        }
+
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Не удалось создать каталог " + dir);
+        }
+
+        index.clear();
+        liveBytes = 0;
+        deadBytes = 0;
+
+        raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < FILE_HEADER_SIZE) {
+            writeFileHeader(raf);
+            raf.getFD().sync();
+        } else {
+            raf.seek(0);
+            int magic = raf.readInt();
+            byte version = raf.readByte();
+            if (magic != MAGIC || (version != FORMAT_VERSION && version != FORMAT_VERSION_NO_CHECKSUM)) {
+                raf.close();
+                raf = null;
+                throw new IOException("Неизвестный формат файла " + file);
+            }
+            if (version == FORMAT_VERSION_NO_CHECKSUM) {
+                upgradeFormat();
+            }
+            scanRecords();
+        }
+        loadHeaders();
+    }
+
+    /**
+     * Проигрывает журнал: последовательно читает записи, проверяет их контрольные
+     * суммы и строит индекс id → смещение. Чтение останавливается на первой
+     * неполной или поврежденной записи — это хвост, дописанный до сбоя и не сброшенный на диск
+     */
+    private void scanRecords() throws IOException {
+        long position = FILE_HEADER_SIZE;
+        long fileLength = raf.length();
+        byte[] headerBytes = new byte[RECORD_HEADER_SIZE];
+        ByteBuffer header = ByteBuffer.wrap(headerBytes);
+        byte[] data = new byte[4096];
+        CRC32 crc = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            in.skipBytes(FILE_HEADER_SIZE);
+            while (position + RECORD_HEADER_SIZE <= fileLength) {
+                in.readFully(headerBytes);
+                header.rewind();
+                int length = header.getInt();
+                int id = header.getInt();
+                byte op = header.get();
+                int checksum = header.getInt();
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > fileLength
+                        || (op != OP_PUT && op != OP_DELETE && op != OP_SEQUENCE && op != OP_BATCH)) {
+                    break;
+                }
+                if (data.length < length) {
+                    data = new byte[Math.max(length, data.length * 2)];
+                }
+                in.readFully(data, 0, length);
+                crc.reset();
+                crc.update(headerBytes, 4, 5);
+                crc.update(data, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    Log.w(TAG, "Неверная контрольная сумма записи " + id + " в " + file);
+                    break;
+                }
+
+                if (op == OP_BATCH) {
+                    deadBytes += RECORD_HEADER_SIZE;
+                    replayBatch(position + RECORD_HEADER_SIZE, ByteBuffer.wrap(data, 0, length));
+                } else {
+                    replay(position, id, op, length);
+                }
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+
+        // Обрезаем недописанный хвост, оставшийся после аварийного завершения
+        if (position < fileLength) {
+            Log.w(TAG, "Обрезан поврежденный хвост файла " + file + ": " + (fileLength - position) + " байт");
+            raf.setLength(position);
+            raf.getFD().sync();
+        }
+    }
+
+    /**
+     * Применяет к индексу одну запись журнала
+     * @param position Смещение заголовка записи в файле
+     */
+    private void replay(long position, int id, byte op, int length) {
+        Slot previous;
+        if (op == OP_PUT) {
+            // Повторная запись сохраняет исходную позицию в списке
+            previous = index.put(id, new Slot(position, length, null));
+            liveBytes += RECORD_HEADER_SIZE + length;
+        } else if (op == OP_SEQUENCE) {
+            previous = null;
+            deadBytes += RECORD_HEADER_SIZE;
+        } else {
+            previous = index.remove(id);
+            deadBytes += RECORD_HEADER_SIZE;
+        }
+        if (previous != null) {
+            liveBytes -= previous.size();
+            deadBytes += previous.size();
+        }
+        maxId = Math.max(maxId, id);
+    }
+
+    /**
+     * Применяет к индексу записи набора изменений, контрольная сумма которого уже проверена
+     * @param position Смещение данных набора в файле
+     */
+    private void replayBatch(long position, ByteBuffer records) {
+        while (records.remaining() >= RECORD_HEADER_SIZE) {
+            int start = records.position();
+            int length = records.getInt();
+            int id = records.getInt();
+            byte op = records.get();
+            records.getInt();
+            if (length < 0 || length > records.remaining() || (op != OP_PUT && op != OP_DELETE)) {
+                Log.w(TAG, "Неверная запись в наборе изменений " + file);
+                return;
+            }
+            replay(position + start, id, op, length);
+            records.position(records.position() + length);
+        }
+    }
+
+    /**
+     * Переписывает файл формата 1 (без контрольных сумм) в текущий формат
+     */
+    private void upgradeFormat() throws IOException {
+        Map<Integer, byte[]> records = new LinkedHashMap<>();
+        int lastId = 0;
+        long position = FILE_HEADER_SIZE;
+        long fileLength = raf.length();
+        while (position + RECORD_HEADER_SIZE_NO_CHECKSUM <= fileLength) {
+            raf.seek(position);
+            int length = raf.readInt();
+            int id = raf.readInt();
+            byte op = raf.readByte();
+            if (length < 0 || position + RECORD_HEADER_SIZE_NO_CHECKSUM + length > fileLength
+                    || (op != OP_PUT && op != OP_DELETE)) {
+                break;
+            }
+            if (op == OP_PUT) {
+                byte[] data = new byte[length];
+                raf.readFully(data);
+                records.put(id, data);
+            } else {
+                records.remove(id);
+            }
+            lastId = Math.max(lastId, id);
+            position += RECORD_HEADER_SIZE_NO_CHECKSUM + length;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            writeFileHeader(out);
+            out.write(encodeRecord(lastId, OP_SEQUENCE, new byte[0]));
+            for (Map.Entry<Integer, byte[]> entry : records.entrySet()) {
+                out.write(encodeRecord(entry.getKey(), OP_PUT, entry.getValue()));
+            }
+            out.getFD().sync();
+        }
+        raf.close();
+        raf = null;
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Не удалось заменить " + file);
+        }
+        raf = new RandomAccessFile(file, "rw");
+        Log.d(TAG, "Файл " + file + " переведен в формат с контрольными суммами: " + records.size() + " записей");
+    }
+
+    /**
+     * Читает файл заголовков. Заголовки, которых в нем нет (файл создан старой
+     * версией или запись не успела попасть в него), строятся по самим записям
+     */
+    private void loadHeaders() throws IOException {
+        headerRaf = new RandomAccessFile(headerFile, "rw");
+        byte[] content = new byte[(int) headerRaf.length()];
+        headerRaf.readFully(content);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        int position = 0;
+        while (position + INDEX_ENTRY_HEADER_SIZE <= content.length) {
+            int length = in.readInt();
+            int id = in.readInt();
+            byte op = in.readByte();
+            if (length < 0 || position + INDEX_ENTRY_HEADER_SIZE + length > content.length) {
+                break;
+            }
+            if (op == OP_PUT) {
+                RecordHeader header = RecordHeader.readFrom(id, new DataInputStream(
+                        new ByteArrayInputStream(content, position + INDEX_ENTRY_HEADER_SIZE, length)));
+                Slot slot = index.get(id);
+                if (slot != null) {
+                    slot.header = header;
+                }
+            } else if (op != OP_DELETE) {
+                break;
+            }
+            in.skipBytes(length);
+            position += INDEX_ENTRY_HEADER_SIZE + length;
+        }
+        if (position < content.length) {
+            headerRaf.setLength(position);
+        }
+
+        // Заголовок мог устареть, если запись обновлена, а заголовок не дописан
+        int rebuilt = 0;
+        for (Map.Entry<Integer, Slot> entry : index.entrySet()) {
+            Slot slot = entry.getValue();
+            // Заголовки прежней версии строятся заново, чтобы в них появились ключевые слова и ссылки
+            if (slot.header == null || slot.header.getSize() != slot.length || slot.header.isLegacy()) {
+                slot.header = headerExtractor.extract(entry.getKey(), read(slot));
+                appendHeader(entry.getKey(), OP_PUT, slot.header);
+                rebuilt++;
+            }
+        }
+        if (rebuilt > 0) {
+            Log.d(TAG, "Восстановлено заголовков для " + file + ": " + rebuilt);
+        }
+
+        long[] keys = new long[index.size()];
+        int[] ids = new int[index.size()];
+        int count = 0;
+        searchIndex.clear();
+        referenceIndex.clear();
+        for (Map.Entry<Integer, Slot> entry : index.entrySet()) {
+            keys[count] = sortKey(entry.getValue().header);
+            ids[count++] = entry.getKey();
+            searchIndex.add(entry.getKey(), entry.getValue().header);
+            referenceIndex.add(entry.getKey(), entry.getValue().header);
+        }
+        byCreatedAt.rebuild(keys, ids, count);
+    }
+
+    private void indexHeader(int id, RecordHeader header) {
+        byCreatedAt.add(sortKey(header), id);
+        searchIndex.add(id, header);
+        referenceIndex.add(id, header);
+    }
+
+    private void unindexHeader(int id, RecordHeader header) {
+        byCreatedAt.remove(sortKey(header), id);
+        searchIndex.remove(id, header);
+        referenceIndex.remove(id, header);
+    }
+
+    private static long sortKey(RecordHeader header) {
+        return header != null ? header.getCreatedAtMillis() : 0L;
+    }
+
+    private long append(int id, byte op, byte[] data) throws IOException {
+        long offset = raf.length();
+        raf.seek(offset);
+        raf.write(encodeRecord(id, op, data));
+        if (!unsynced) {
+            unsynced = true;
+            GroupCommit.register(this);
+        }
+        return offset;
+    }
+
+    private static byte[] encodeRecord(int id, byte op, byte[] data) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + data.length);
+        buffer.putInt(data.length).putInt(id).put(op).putInt(0).put(data);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, 5);
+        crc.update(data, 0, data.length);
+        buffer.putInt(9, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    private void appendHeader(int id, byte op, RecordHeader header) throws IOException {
+        headerRaf.seek(headerRaf.length());
+        headerRaf.write(encodeHeader(id, op, header));
+    }
+
+    private static byte[] encodeHeader(int id, byte op, RecordHeader header) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (header != null) {
+            header.writeTo(new DataOutputStream(body));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_HEADER_SIZE + body.size());
+        buffer.putInt(body.size()).putInt(id).put(op).put(body.toByteArray());
+        return buffer.array();
+    }
+
+    private byte[] read(Slot slot) throws IOException {
+        byte[] data = new byte[slot.length];
+        raf.seek(slot.offset + RECORD_HEADER_SIZE);
+        raf.readFully(data);
+        return data;
+    }
+
+    private static void writeFileHeader(RandomAccessFile target) throws IOException {
+        target.setLength(0);
+        target.seek(0);
+        target.writeInt(MAGIC);
+        target.writeByte(FORMAT_VERSION);
+    }
+
+    private void maybeScheduleCompaction() {
+        if (compactionScheduled || deadBytes < COMPACTION_MIN_DEAD_BYTES || deadBytes < liveBytes) {
+            return;
+        }
+        compactionScheduled = true;
+        compactionExecutor.execute(() -> {
+            synchronized (RecordStore.this) {
+                compactionScheduled = false;
+                try {
+                    compact();
+                } catch (IOException e) {
+                    Log.e(TAG, "Ошибка при уплотнении " + file + ": " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Переписывает живые записи в новый файл и атомарно подменяет им старый
+     */
+    private void compact() throws IOException {
+        if (raf == null) {
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        File headerTmp = new File(headerFile.getPath() + ".tmp");
+        Map<Integer, Slot> compacted = new LinkedHashMap<>();
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            writeFileHeader(out);
+            out.write(encodeRecord(maxId, OP_SEQUENCE, new byte[0]));
+            for (Map.Entry<Integer, Slot> entry : index.entrySet()) {
+                Slot slot = entry.getValue();
+                byte[] record = new byte[(int) slot.size()];
+                raf.seek(slot.offset);
+                raf.readFully(record);
+                compacted.put(entry.getKey(), new Slot(out.getFilePointer(), slot.length, slot.header));
+                out.write(record);
+            }
+            out.getFD().sync();
+        }
+        try (RandomAccessFile out = new RandomAccessFile(headerTmp, "rw")) {
+            out.setLength(0);
+            for (Map.Entry<Integer, Slot> entry : index.entrySet()) {
+                out.write(encodeHeader(entry.getKey(), OP_PUT, entry.getValue().header));
+            }
+            out.getFD().sync();
+        }
+
+        raf.close();
+        raf = null;
+        headerRaf.close();
+        headerRaf = null;
+        // Файл заголовков самовосстанавливается при открытии, поэтому
+        // порядок переименования важен только для файла данных
+        if (!tmp.renameTo(file) || !headerTmp.renameTo(headerFile)) {
+            throw new IOException("Не удалось заменить " + file);
+        }
+        raf = new RandomAccessFile(file, "rw");
+        headerRaf = new RandomAccessFile(headerFile, "rw");
+
+        index.clear();
+        index.putAll(compacted);
+        deadBytes = 0;
+        // Новый файл уже сброшен на диск целиком
+        unsynced = false;
+        Log.d(TAG, "Уплотнено " + file + ": " + index.size() + " записей, " + liveBytes + " байт");
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.javamark.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Обратный индекс от ключа общего объекта ({@link RecordHeader#getReferences()})
+ * к упорядоченному массиву ID записей, которые на него ссылаются.
+ * Как и {@link SearchIndex}, строится из заголовков, поэтому записи при поиске не читаются
+ */
+final class ReferenceIndex {
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, int[]> postings = new HashMap<>();
+
+    void add(int id, RecordHeader header) {
+        if (header == null || id < 0) {
+            return;
+        }
+        for (String reference : header.getReferences()) {
+            int[] ids = postings.get(reference);
+            if (ids == null) {
+                postings.put(reference, new int[]{id});
+                continue;
+            }
+            int position = Arrays.binarySearch(ids, id);
+            if (position < 0) {
+                position = -position - 1;
+                int[] grown = new int[ids.length + 1];
+                System.arraycopy(ids, 0, grown, 0, position);
+                grown[position] = id;
+                System.arraycopy(ids, position, grown, position + 1, ids.length - position);
+                postings.put(reference, grown);
+            }
+        }
+    }
+
+    void remove(int id, RecordHeader header) {
+        if (header == null || id < 0) {
+            return;
+        }
+        for (String reference : header.getReferences()) {
+            int[] ids = postings.get(reference);
+            int position = ids != null ? Arrays.binarySearch(ids, id) : -1;
+            if (position < 0) {
+                continue;
+            }
+            if (ids.length == 1) {
+                postings.remove(reference);
+                continue;
+            }
+            int[] shrunk = new int[ids.length - 1];
+            System.arraycopy(ids, 0, shrunk, 0, position);
+            System.arraycopy(ids, position + 1, shrunk, position, ids.length - position - 1);
+            postings.put(reference, shrunk);
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * ID записей, ссылающихся на объект, по возрастанию. Массив не должен изменяться
+     */
+    int[] find(String reference) {
+        int[] ids = postings.get(reference);
+        return ids != null ? ids : NONE;
+    }
+}
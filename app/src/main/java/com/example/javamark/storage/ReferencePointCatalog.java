@@ -0,0 +1,180 @@
+package com.example.javamark.storage;
+
+import android.content.Context;
+
+import com.example.javamark.model.ReferencePoint;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Общий каталог пунктов проектов с адресацией по содержимому.
+ * Пункт каталога — название и координаты; одинаковые пункты разных проектов
+ * хранятся один раз, а запись проекта содержит ссылку на пункт и измеренный угол β,
+ * который у каждого проекта свой. Каталог хранится в отдельном журнальном хранилище
+ * {@link RecordStore} и целиком держится в памяти: ссылка разрешается без чтения файла.
+ * Пункты, на которые больше не ссылается ни один проект, удаляются {@link #retain}
+ */
+final class ReferencePointCatalog implements JsonCodec.PointCatalog {
+    private static final String NAME = "reference_points";
+
+    private static ReferencePointCatalog instance;
+
+    private final RecordStore store;
+    private final Map<Integer, ReferencePoint> points = new HashMap<>();
+    private final Map<ByteBuffer, Integer> byContent = new HashMap<>();
+    private final Gson gson = JsonCodec.create(this);
+    private boolean loaded;
+
+    ReferencePointCatalog(RecordStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Возвращает общий для процесса каталог
+     */
+    static synchronized ReferencePointCatalog open(Context context) {
+        if (instance == null) {
+            instance = new ReferencePointCatalog(RecordStore.open(context, NAME, ReferencePointCatalog::extractHeader));
+        }
+        return instance;
+    }
+
+    /**
+     * Gson, который пишет пункты проектов ссылками на этот каталог
+     */
+    Gson gson() {
+        return gson;
+    }
+
+    @Override
+    public synchronized int intern(String name, double x, double y) throws IOException {
+        ensureLoaded();
+        byte[] content = encode(name, x, y);
+        Integer ref = byContent.get(ByteBuffer.wrap(content));
+        if (ref != null) {
+            return ref;
+        }
+        int id = store.resolveId(0);
+        store.put(id, content, new RecordHeader(id, name, null, content.length, 0, null));
+        // Новый пункт сбрасывается на диск раньше, чем проект, который на него ссылается
+        store.sync();
+        add(id, content);
+        return id;
+    }
+
+    @Override
+    public synchronized ReferencePoint resolve(int ref) throws IOException {
+        ensureLoaded();
+        ReferencePoint point = points.get(ref);
+        if (point == null) {
+            throw new IOException("Пункт каталога не найден: " + ref);
+        }
+        return point;
+    }
+
+    /**
+     * Ссылка на пункт с таким содержимым, не добавляя его в каталог
+     * @return Ссылка или -1, если такого пункта в каталоге нет
+     */
+    synchronized int find(String name, double x, double y) throws IOException {
+        ensureLoaded();
+        Integer ref = byContent.get(ByteBuffer.wrap(encode(name, x, y)));
+        return ref != null ? ref : -1;
+    }
+
+    /**
+     * Количество пунктов в каталоге
+     */
+    synchronized int size() throws IOException {
+        ensureLoaded();
+        return points.size();
+    }
+
+    /**
+     * Удаляет пункты, на которые больше нет ссылок. Выполняется в потоке записи
+     * @param referenced Проверяет, ссылается ли на пункт хоть одна запись
+     * @return Количество удаленных пунктов
+     */
+    synchronized int retain(Referenced referenced) throws IOException {
+        ensureLoaded();
+        List<Integer> unused = new ArrayList<>();
+        for (int ref : points.keySet()) {
+            if (!referenced.test(ref)) {
+                unused.add(ref);
+            }
+        }
+        for (int ref : unused) {
+            store.delete(ref);
+            ReferencePoint point = points.remove(ref);
+            byContent.remove(ByteBuffer.wrap(encode(point.getName(), point.getX(), point.getY())));
+        }
+        return unused.size();
+    }
+
+    /**
+     * Проверка наличия ссылок на пункт каталога
+     */
+    interface Referenced {
+        boolean test(int ref) throws IOException;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        for (RecordHeader header : store.getHeaders()) {
+            byte[] content = store.get(header.getId());
+            if (content != null) {
+                add(header.getId(), content);
+            }
+        }
+        loaded = true;
+    }
+
+    private void add(int id, byte[] content) throws IOException {
+        points.put(id, decode(content));
+        byContent.put(ByteBuffer.wrap(content), id);
+    }
+
+    /**
+     * Содержимое пункта: [есть название][название UTF][x][y]
+     */
+    private static byte[] encode(String name, double x, double y) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(name != null);
+        if (name != null) {
+            out.writeUTF(name);
+        }
+        out.writeDouble(x);
+        out.writeDouble(y);
+        return bytes.toByteArray();
+    }
+
+    private static ReferencePoint decode(byte[] content) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        String name = in.readBoolean() ? in.readUTF() : null;
+        double x = in.readDouble();
+        double y = in.readDouble();
+        return new ReferencePoint(0, name, x, y, 0);
+    }
+
+    private static RecordHeader extractHeader(int id, byte[] data) {
+        try {
+            return new RecordHeader(id, decode(data).getName(), null, data.length, 0, null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new RecordHeader(id, null, null, data.length, 0, null);
+        }
+    }
+}
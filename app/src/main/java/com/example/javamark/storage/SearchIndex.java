@@ -0,0 +1,133 @@
+package com.example.javamark.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Префиксный индекс слов из названий записей и их ключевых слов
+ * ({@link RecordHeader#getKeywords()}). Для каждого слова хранится
+ * упорядоченный массив ID записей. Запрос разбивается на слова, каждое ищется
+ * как префикс, а результаты объединяются по «И». Индекс строится из заголовков,
+ * которые сохраняются в файле заголовков, поэтому сами записи при поиске не читаются
+ */
+final class SearchIndex {
+    private final TreeMap<String, int[]> postings = new TreeMap<>();
+
+    void add(int id, RecordHeader header) {
+        if (header == null || id < 0) {
+            return;
+        }
+        for (String token : tokens(header)) {
+            int[] ids = postings.get(token);
+            if (ids == null) {
+                postings.put(token, new int[]{id});
+                continue;
+            }
+            int position = Arrays.binarySearch(ids, id);
+            if (position < 0) {
+                position = -position - 1;
+                int[] grown = new int[ids.length + 1];
+                System.arraycopy(ids, 0, grown, 0, position);
+                grown[position] = id;
+                System.arraycopy(ids, position, grown, position + 1, ids.length - position);
+                postings.put(token, grown);
+            }
+        }
+    }
+
+    void remove(int id, RecordHeader header) {
+        if (header == null || id < 0) {
+            return;
+        }
+        for (String token : tokens(header)) {
+            int[] ids = postings.get(token);
+            int position = ids != null ? Arrays.binarySearch(ids, id) : -1;
+            if (position < 0) {
+                continue;
+            }
+            if (ids.length == 1) {
+                postings.remove(token);
+                continue;
+            }
+            int[] shrunk = new int[ids.length - 1];
+            System.arraycopy(ids, 0, shrunk, 0, position);
+            System.arraycopy(ids, position + 1, shrunk, position, ids.length - position - 1);
+            postings.put(token, shrunk);
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Находит записи, в которых для каждого слова запроса есть слово с таким началом
+     * @return множество ID или null, если в запросе нет ни одного слова
+     */
+    BitSet match(String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return null;
+        }
+        BitSet result = null;
+        for (String word : words) {
+            BitSet matches = new BitSet();
+            // Все слова с этим началом лежат в TreeMap подряд
+            for (Map.Entry<String, int[]> entry
+                    : postings.subMap(word, true, word + Character.MAX_VALUE, true).entrySet()) {
+                for (int id : entry.getValue()) {
+                    matches.set(id);
+                }
+            }
+            if (result == null) {
+                result = matches;
+            } else {
+                result.and(matches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static List<String> tokens(RecordHeader header) {
+        List<String> tokens = tokenize(header.getName());
+        for (String token : tokenize(header.getKeywords())) {
+            if (!tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Разбивает текст на слова из букв и цифр в нижнем регистре; «ё» приводится к «е»
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                String token = normalized.substring(start, i);
+                if (!tokens.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.javamark.storage;
+
+/**
+ * Порядок записей в постраничных запросах к хранилищу
+ */
+public enum SortOrder {
+    /** Сначала новые (по дате создания) */
+    NEWEST_FIRST,
+    /** Сначала старые (по дате создания) */
+    OLDEST_FIRST
+}
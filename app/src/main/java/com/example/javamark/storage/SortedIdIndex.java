@@ -0,0 +1,105 @@
+package com.example.javamark.storage;
+
+import java.util.Arrays;
+
+/**
+ * Упорядоченный по ключу (дате создания) индекс ID записей на двух массивах примитивов.
+ * Доступ по номеру позиции выполняется за O(1), поэтому страница списка читается
+ * без обхода всех записей. Новые записи обычно имеют наибольшую дату
+ * и добавляются в конец без сдвига остальных
+ */
+final class SortedIdIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private int[] ids = new int[MIN_CAPACITY];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * ID записи на указанной позиции в порядке возрастания ключа
+     */
+    int idAt(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size);
+        }
+        return ids[position];
+    }
+
+    void add(long key, int id) {
+        int position = search(key, id);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        keys[position] = key;
+        ids[position] = id;
+        size++;
+    }
+
+    boolean remove(long key, int id) {
+        int position = search(key, id);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Заполняет индекс заново; пары сортируются один раз, а не вставляются по одной
+     */
+    void rebuild(long[] newKeys, int[] newIds, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(newKeys[a], newIds[a], newKeys[b], newIds[b]));
+
+        keys = new long[Math.max(count, MIN_CAPACITY)];
+        ids = new int[keys.length];
+        for (int i = 0; i < count; i++) {
+            keys[i] = newKeys[order[i]];
+            ids[i] = newIds[order[i]];
+        }
+        size = count;
+    }
+
+    private int search(long key, int id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(keys[mid], ids[mid], key, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > keys.length) {
+            int capacity = Math.max(required, keys.length * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+    }
+
+    private static int compare(long key1, int id1, long key2, int id2) {
+        int cmp = Long.compare(key1, key2);
+        return cmp != 0 ? cmp : Integer.compare(id1, id2);
+    }
+}
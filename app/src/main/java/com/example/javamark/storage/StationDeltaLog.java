@@ -0,0 +1,245 @@
+package com.example.javamark.storage;
+
+import android.util.Log;
+
+import com.example.javamark.model.StationMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений станций одного теодолитного журнала, сохраненных
+ * после последнего полного снимка. Изменения дописываются в конец файла,
+ * поэтому стоимость сохранения зависит от числа измененных станций, а не от длины журнала.
+ * В заголовке файла хранится контрольная сумма снимка, к которому относятся изменения:
+ * если снимок был переписан, а файл изменений не успел удалиться, изменения не применяются.
+ * Каждая запись снабжена контрольной суммой, файл сбрасывается на диск при фиксации группы записей.
+ */
+final class StationDeltaLog {
+    private static final String TAG = "StationDeltaLog";
+
+    // Заголовок файла: сигнатура "JMDL", версия, контрольная сумма снимка
+    private static final int MAGIC = 0x4A4D444C;
+    private static final byte FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 1 + 8;
+    // Заголовок записи: длина и CRC32 данных
+    private static final int ENTRY_HEADER_SIZE = 8;
+    // Изменения сворачиваются в новый снимок, когда файл изменений больше этой доли снимка
+    private static final int FOLD_DIVISOR = 2;
+
+    private StationDeltaLog() {
+    }
+
+    /**
+     * Контрольная сумма данных снимка журнала
+     */
+    static long checksum(byte[] snapshot) {
+        CRC32 crc = new CRC32();
+        crc.update(snapshot, 0, snapshot.length);
+        return crc.getValue();
+    }
+
+    private static int checksum(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
+    }
+
+
+    /**
+     * Размер файла изменений, относящихся к снимку с указанной контрольной суммой,
+     * или 0, если таких изменений нет
+     */
+    static long length(File file, long snapshotChecksum) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC || raf.readByte() != FORMAT_VERSION
+                    || raf.readLong() != snapshotChecksum) {
+                return 0;
+            }
+            return raf.length();
+        }
+    }
+
+    /**
+     * Нужно ли вместо дописывания изменений сохранить журнал целиком новым снимком:
+     * изменений накопилось больше доли снимка, и читать их при открытии дольше, чем снимок
+     * @param snapshotSize Размер снимка в байтах
+     */
+    static boolean shouldFold(File file, long snapshotChecksum, long snapshotSize) throws IOException {
+        return length(file, snapshotChecksum) > snapshotSize / FOLD_DIVISOR;
+    }
+
+    /**
+     * Дописывает изменения к файлу. Если файл относится к другому снимку, он создается заново
+     * @return новый размер файла
+     */
+    static long append(File file, long snapshotChecksum, List<TheodoliteJournal.StationChange> changes)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (TheodoliteJournal.StationChange change : changes) {
+            byte[] entry = BinaryCodec.encodeStationChange(change);
+            out.writeInt(entry.length);
+            out.writeInt(checksum(entry, entry.length));
+            out.write(entry);
+        }
+
+        boolean fresh = length(file, snapshotChecksum) == 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (fresh) {
+                raf.setLength(0);
+                raf.writeInt(MAGIC);
+                raf.writeByte(FORMAT_VERSION);
+                raf.writeLong(snapshotChecksum);
+            } else {
+                // Оборванную или поврежденную при сбое последнюю запись отрезаем, иначе она поглотит новые
+                long valid = validLength(raf);
+                if (valid < raf.length()) {
+                    Log.w(TAG, "Отрезан оборванный хвост " + file.getName());
+                    raf.setLength(valid);
+                }
+            }
+            raf.seek(raf.length());
+            raf.write(bytes.toByteArray());
+            GroupCommit.register(new GroupCommit.FileSync(file));
+            return raf.length();
+        }
+    }
+
+    /**
+     * Длина файла до конца последней целой записи с верной контрольной суммой
+     */
+    private static long validLength(RandomAccessFile raf) throws IOException {
+        long length = raf.length();
+        long position = HEADER_SIZE;
+        byte[] entry = new byte[256];
+        while (position + ENTRY_HEADER_SIZE <= length) {
+            raf.seek(position);
+            int entryLength = raf.readInt();
+            int entryChecksum = raf.readInt();
+            if (entryLength <= 0 || position + ENTRY_HEADER_SIZE + entryLength > length) {
+                break;
+            }
+            if (entry.length < entryLength) {
+                entry = new byte[entryLength];
+            }
+            raf.readFully(entry, 0, entryLength);
+            if (checksum(entry, entryLength) != entryChecksum) {
+                break;
+            }
+            position += ENTRY_HEADER_SIZE + entryLength;
+        }
+        return position;
+    }
+
+    /**
+     * Читает изменения, относящиеся к снимку с указанной контрольной суммой.
+     * Оборванная последняя запись (сбой во время дописывания) отбрасывается
+     * @return изменения или пустой список, если их нет
+     */
+    static List<TheodoliteJournal.StationChange> read(File file, long snapshotChecksum) throws IOException {
+        List<TheodoliteJournal.StationChange> changes = new ArrayList<>();
+        if (length(file, snapshotChecksum) == 0) {
+            return changes;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.skipBytes(HEADER_SIZE);
+            while (true) {
+                int length;
+                int entryChecksum;
+                try {
+                    length = in.readInt();
+                    entryChecksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0) {
+                    Log.w(TAG, "Поврежденная запись в " + file.getName());
+                    break;
+                }
+                byte[] entry = new byte[length];
+                try {
+                    in.readFully(entry);
+                } catch (EOFException e) {
+                    Log.w(TAG, "Оборванная запись в конце " + file.getName());
+                    break;
+                }
+                if (checksum(entry, length) != entryChecksum) {
+                    Log.w(TAG, "Неверная контрольная сумма записи в " + file.getName());
+                    break;
+                }
+                changes.add(BinaryCodec.decodeStationChange(entry));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Применяет изменения к списку станций по порядку
+     */
+    static void apply(List<StationMeasurement> measurements, List<TheodoliteJournal.StationChange> changes) {
+        for (TheodoliteJournal.StationChange change : changes) {
+            int position = change.getPosition();
+            switch (change.getType()) {
+                case TheodoliteJournal.StationChange.ADD:
+                    if (position < 0 || position > measurements.size()) {
+                        Log.w(TAG, "Неверный номер добавляемой станции: " + position);
+                        return;
+                    }
+                    measurements.add(position, change.getStation());
+                    break;
+                case TheodoliteJournal.StationChange.UPDATE:
+                    if (position < 0 || position >= measurements.size()) {
+                        Log.w(TAG, "Неверный номер изменяемой станции: " + position);
+                        return;
+                    }
+                    measurements.set(position, change.getStation());
+                    break;
+                case TheodoliteJournal.StationChange.REMOVE:
+                    if (position < 0 || position >= measurements.size()) {
+                        Log.w(TAG, "Неверный номер удаляемой станции: " + position);
+                        return;
+                    }
+                    measurements.remove(position);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Удаляет файл изменений, если он не относится к снимку с указанной контрольной суммой
+     */
+    static void deleteStale(File file, long snapshotChecksum) {
+        try {
+            if (length(file, snapshotChecksum) > 0) {
+                return;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Не удалось прочитать файл изменений " + file.getName(), e);
+        }
+        delete(file);
+    }
+
+    static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Не удалось удалить файл изменений " + file.getName());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.javamark.storage;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Единственный поток записи для всех хранилищ.
+ * Сериализация и запись выполняются вне UI-потока. Несколько сохранений
+ * одной и той же записи, поставленных в очередь до сброса, объединяются
+ * в одну физическую запись последней версии объекта.
+ * Очередь сбрасывается группами: все накопленные за окно записи выполняются подряд,
+ * затем измененные файлы один раз сбрасываются на диск ({@link GroupCommit}),
+ * и только после этого ожидающие получают подтверждение. Поэтому несколько
+ * синхронных сохранений из разных потоков обходятся одним fsync на файл.
+ * Конфликт версий ({@link WriteConflictException}) не считается ошибкой записи:
+ * ожидающие получают его как исключение и могут предложить пользователю выход.
+ */
+public final class StorageExecutor {
+    private static final String TAG = "StorageExecutor";
+
+    // Окно накопления записей перед сбросом группы, мс
+    private static final long FLUSH_DELAY_MS = 100;
+
+    private static final StorageExecutor instance = new StorageExecutor();
+    private static volatile Executor mainThreadExecutor;
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "StorageExecutor-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private final AtomicLong bulkSequence = new AtomicLong();
+    private boolean flushScheduled;
+    private boolean immediateFlushScheduled;
+
+    /**
+     * Отложенная запись и все ожидающие ее результата
+     */
+    private static final class PendingWrite {
+        Callable<Boolean> write;
+        final List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+
+        PendingWrite(Callable<Boolean> write) {
+            this.write = write;
+        }
+    }
+
+    private StorageExecutor() {
+    }
+
+    public static StorageExecutor getInstance() {
+        return instance;
+    }
+
+    /**
+     * Исполнитель, выполняющий задачи в главном потоке.
+     * Используется для доставки результатов записи в UI
+     */
+    public static Executor mainThread() {
+        if (mainThreadExecutor == null) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            mainThreadExecutor = handler::post;
+        }
+        return mainThreadExecutor;
+    }
+
+    /**
+     * Ставит запись в очередь. Если для того же ключа уже есть ожидающая запись,
+     * она заменяется новой, а все ожидающие получат результат последней записи.
+     * Замененная запись переносится в конец очереди, чтобы выполниться после
+     * поставленных раньше нее операций над той же записью (например, удаления)
+     * @param key Ключ записи (хранилище и ID)
+     * @param write Выполняемая в потоке записи операция
+     * @param immediate true, чтобы сбросить очередь без ожидания окна накопления
+     * @return Future с результатом записи
+     */
+    public CompletableFuture<Boolean> submit(String key, Callable<Boolean> write, boolean immediate) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        synchronized (pending) {
+            PendingWrite existing = pending.remove(key);
+            if (existing != null) {
+                existing.write = write;
+                existing.waiters.add(future);
+                pending.put(key, existing);
+            } else {
+                PendingWrite pendingWrite = new PendingWrite(write);
+                pendingWrite.waiters.add(future);
+                pending.put(key, pendingWrite);
+            }
+            scheduleFlush(immediate);
+        }
+        return future;
+    }
+
+    /**
+     * Ставит в очередь операцию над несколькими записями. Такие операции
+     * не объединяются ни друг с другом, ни с сохранениями отдельных записей
+     * @param write Выполняемая в потоке записи операция, возвращающая количество измененных записей
+     * @return Future с количеством измененных записей или 0, если запись не удалась.
+     *         При конфликте версий завершается {@link WriteConflictException}
+     */
+    public CompletableFuture<Integer> submitBulk(Callable<Integer> write) {
+        int[] count = new int[1];
+        return submit("#bulk" + bulkSequence.incrementAndGet(), () -> {
+            count[0] = write.call();
+            return true;
+        }, false).thenApply(written -> written ? count[0] : 0);
+    }
+
+    /**
+     * Сбрасывает очередь без ожидания окна накопления
+     * @return Future, завершающийся после записи всех поставленных ранее операций
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (pending) {
+            scheduleFlush(true);
+        }
+        writer.execute(() -> done.complete(null));
+        return done;
+    }
+
+    private void scheduleFlush(boolean immediate) {
+        if (immediate && !immediateFlushScheduled) {
+            immediateFlushScheduled = true;
+            writer.execute(this::flushPending);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            writer.schedule(this::flushPending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Выполняет в потоке записи все накопленные операции одной группой
+     */
+    private void flushPending() {
+        List<PendingWrite> batch;
+        synchronized (pending) {
+            flushScheduled = false;
+            immediateFlushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        boolean[] results = new boolean[batch.size()];
+        WriteConflictException[] conflicts = new WriteConflictException[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                results[i] = batch.get(i).write.call();
+            } catch (WriteConflictException e) {
+                Log.w(TAG, e.getMessage());
+                conflicts[i] = e;
+            } catch (Exception e) {
+                Log.e(TAG, "Ошибка при записи: " + e.getMessage(), e);
+                results[i] = false;
+            }
+        }
+
+        // Подтверждаем записи только после того, как они сброшены на диск
+        boolean committed;
+        int synced = 0;
+        try {
+            synced = GroupCommit.commit();
+            committed = true;
+        } catch (IOException e) {
+            Log.e(TAG, "Ошибка при сбросе записей на диск: " + e.getMessage(), e);
+            committed = false;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            for (CompletableFuture<Boolean> waiter : batch.get(i).waiters) {
+                if (conflicts[i] != null) {
+                    waiter.completeExceptionally(conflicts[i]);
+                } else {
+                    waiter.complete(committed && results[i]);
+                }
+            }
+        }
+        Log.d(TAG, "Записана группа из " + batch.size() + " операций, сброшено файлов: " + synced);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.javamark.storage;
+
+import android.content.Context;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Обслуживание хранилищ, которое запускается явно, а не при создании хранилища:
+ * перенос давно не изменявшихся записей на холодный уровень ({@link ColdTier}).
+ * Вызывается со стартового экрана один раз при запуске приложения; перенос
+ * выполняется в потоке записи {@link StorageExecutor} и не задерживает открытие экранов
+ */
+public final class StorageMaintenance {
+
+    private StorageMaintenance() {
+    }
+
+    /**
+     * Ставит в очередь потока записи перенос на холодный уровень журналов, проектов
+     * и гироскопических измерений с настройками по умолчанию
+     * @return Future с общим количеством перенесенных записей
+     */
+    public static CompletableFuture<Integer> demoteColdRecordsAsync(Context context) {
+        Context application = context.getApplicationContext();
+        CompletableFuture<Integer> journals = new TheodoliteJournalStorage(application)
+                .demoteColdJournalsAsync(ColdTier.DEFAULT_MAX_AGE_MS, ColdTier.DEFAULT_MAX_HOT_RECORDS);
+        CompletableFuture<Integer> projects = new ProjectStorage(application)
+                .demoteColdProjectsAsync(ColdTier.DEFAULT_MAX_AGE_MS, ColdTier.DEFAULT_MAX_HOT_RECORDS);
+        CompletableFuture<Integer> measurements = new GyroscopicMeasurementStorage(application)
+                .demoteColdMeasurementsAsync(ColdTier.DEFAULT_MAX_AGE_MS, ColdTier.DEFAULT_MAX_HOT_RECORDS);
+        return journals.thenCombine(projects, Integer::sum).thenCombine(measurements, Integer::sum);
+    }
+}
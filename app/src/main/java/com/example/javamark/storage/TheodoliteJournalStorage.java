@@ -3,132 +3,1245 @@ package com.example.javamark.storage;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.StationMeasurement;
 import com.example.javamark.model.TheodoliteJournal;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Класс для сохранения и загрузки журналов теодолитного хода
+ * Класс для сохранения и загрузки журналов теодолитного хода.
+ * Каждый журнал хранится отдельной записью в журнальном хранилище {@link RecordStore}.
+ * Станции длинных журналов хранятся построчно в отдельном файле, отображенном в память
+ * ({@link MappedStationFile}), а запись журнала содержит только его название и дату.
+ * Изменения отдельных станций остальных журналов дописываются в файл изменений
+ * ({@link StationDeltaLog}) и время от времени сворачиваются в новый снимок журнала.
+ * Каждое сохранение добавляет версию в историю журнала ({@link VersionHistory}).
+ * Записи, сохраненные в прежней версии схемы ({@link RecordSchema}), обновляются при чтении.
+ * Журналы, прочитанные целиком, держатся в общем кеше {@link ObjectCache}.
+ * Операции над несколькими журналами (удаление, копирование, перенос в архив, сохранение)
+ * записываются одним набором изменений ({@link RecordStore.Batch}). Архивные журналы
+ * хранятся целиком в отдельном хранилище и не показываются в основном списке.
+ * Давно не изменявшиеся журналы переносятся целиком на сжатый холодный уровень ({@link ColdTier});
+ * в списках и поиске они видны как обычные и возвращаются в основное хранилище при открытии.
+ * Журнал, измененный или удаленный после чтения, не перезаписывается молча:
+ * сохранение завершается {@link WriteConflictException}
  */
 public class TheodoliteJournalStorage {
     private static final String PREFS_NAME = "theodolite_journals";
     private static final String JOURNALS_KEY = "saved_journals";
-    private final SharedPreferences preferences;
+    // Журналы с таким количеством станций и больше хранятся построчно
+    static final int MAPPED_STATIONS_THRESHOLD = 2000;
+    // Списки журнала, элементы которых хранятся в истории версий отдельными узлами
+    private static final String[] VERSIONED_LISTS = {"measurements"};
+    // Последовательность узлов истории, элементы которой — станции журнала
+    private static final int STATIONS_SEQUENCE = 1;
+    private static final String ARCHIVE_NAME = PREFS_NAME + "_archive";
+    private static final String COLD_NAME = PREFS_NAME + "_cold";
+
+    // Контрольные суммы снимков журналов, к которым дописываются изменения
+    private static final Map<Integer, Long> snapshotChecksums = new ConcurrentHashMap<>();
+    // Сохранения журналов, ожидающие потока записи, по ID журнала
+    private static final Map<Integer, PendingSave> pendingSaves = new HashMap<>();
+    private final RecordStore store;
+    private final RecordStore archive;
+    private final ColdTier coldTier;
+    private final StorageExecutor executor;
+    private final ObjectCache cache;
     private final Gson gson;
+    private final RecordSchema schema;
+
+    /**
+     * Сохранение журнала, ожидающее потока записи. Снимок журнала и его изменения станций
+     * берутся в вызывающем потоке. Сохранения одного журнала, поставленные до записи,
+     * объединяются: остается последний снимок и все изменения по порядку
+     */
+    private static final class PendingSave {
+        TheodoliteJournal snapshot;
+        // null — журнал записывается целиком
+        List<TheodoliteJournal.StationChange> changes;
+        boolean overwrite;
+        // Результат записи, который получат и объединенные с ней сохранения
+        boolean written;
+        Exception error;
+    }
 
     public TheodoliteJournalStorage(Context context) {
-        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+        gson = JsonCodec.gson();
+        schema = new RecordSchema(this::fillHorizontalDistances);
+        store = RecordStore.open(context, PREFS_NAME, this::extractHeader);
+        archive = RecordStore.open(context, ARCHIVE_NAME, this::extractHeader);
+        coldTier = new ColdTier(store, RecordStore.open(context, COLD_NAME, ColdTier.extractor(this::extractHeader)));
+        executor = StorageExecutor.getInstance();
+        cache = ObjectCache.getInstance();
+        cache.register(context);
+        migrateFromPreferences(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
     }
 
     /**
-     * Сохраняет журнал в хранилище
+     * Сохраняет журнал в хранилище, дожидаясь завершения записи
      * @param journal Журнал для сохранения
      * @return true, если сохранение прошло успешно
      */
     public boolean saveJournal(TheodoliteJournal journal) {
         try {
-            List<TheodoliteJournal> journals = getAllJournals();
+            return enqueueSave(journal, true, false).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-            // Проверяем, существует ли журнал с таким ID
-            boolean exists = false;
-            for (int i = 0; i < journals.size(); i++) {
-                if (journals.get(i).getId() == journal.getId()) {
-                    // Обновляем существующий журнал
-                    journals.set(i, journal);
-                    exists = true;
-                    break;
-                }
-            }
+    /**
+     * Ставит сохранение в очередь потока записи, не блокируя вызывающий поток.
+     * ID новому объекту присваивается сразу, а сериализация выполняется в фоне.
+     * Несколько сохранений подряд объединяются в одну запись
+     * @param journal Журнал для сохранения
+     * @return Future с результатом сохранения; завершается {@link WriteConflictException},
+     *         если журнал изменен или удален после чтения
+     */
+    public CompletableFuture<Boolean> saveJournalAsync(TheodoliteJournal journal) {
+        return enqueueSave(journal, false, false);
+    }
 
-            // Если журнал новый, присваиваем ему ID и добавляем в список
-            if (!exists) {
-                journal.setId(generateJournalId(journals));
-                journals.add(journal);
+    /**
+     * Сохраняет журнал целиком без проверки версии, заменяя изменения, сделанные после его чтения
+     * @param journal Журнал для сохранения
+     * @return Future с результатом сохранения
+     */
+    public CompletableFuture<Boolean> overwriteJournalAsync(TheodoliteJournal journal) {
+        return enqueueSave(journal, false, true);
+    }
+
+    /**
+     * Получает все журналы основного хранилища; журналы холодного уровня не загружаются
+     * @return Список журналов
+     */
+    public List<TheodoliteJournal> getAllJournals() {
+        List<TheodoliteJournal> journals = new ArrayList<>();
+        try {
+            synchronized (store) {
+                for (byte[] data : store.getAll()) {
+                    TheodoliteJournal journal = read(data);
+                    journal.setVersion(store.getVersion(journal.getId()));
+                    journals.add(journal);
+                }
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return journals;
+    }
 
-            // Сохраняем обновленный список журналов
-            String json = gson.toJson(journals);
-            SharedPreferences.Editor editor = preferences.edit();
-            editor.putString(JOURNALS_KEY, json);
-            editor.apply();
-            return true;
+    /**
+     * Получает заголовки сохраненных журналов без загрузки самих объектов
+     * @return Список заголовков
+     */
+    public List<RecordHeader> getJournalHeaders() {
+        try {
+            return coldTier.getHeaders();
         } catch (Exception e) {
             e.printStackTrace();
-            return false;
+            return new ArrayList<>();
         }
     }
 
     /**
-     * Получает все сохраненные журналы
-     * @return Список журналов
+     * Получает страницу заголовков сохраненных журналов, упорядоченных по дате создания
+     * @param order Порядок сортировки
+     * @param offset Номер первой записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков страницы
      */
-    public List<TheodoliteJournal> getAllJournals() {
-        String json = preferences.getString(JOURNALS_KEY, "");
-        if (json.isEmpty()) {
+    public List<RecordHeader> queryJournalHeaders(SortOrder order, int offset, int limit) {
+        try {
+            return coldTier.queryHeaders(order, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
             return new ArrayList<>();
         }
+    }
 
-        Type type = new TypeToken<List<TheodoliteJournal>>() {}.getType();
-        return gson.fromJson(json, type);
+    /**
+     * Ищет сохраненные журналы по началам слов в названии журнала,
+     * не загружая сами объекты. Найденные записи упорядочены от новых к старым
+     * @param query Строка поиска
+     * @param offset Номер первой найденной записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков найденных записей
+     */
+    public List<RecordHeader> searchJournalHeaders(String query, int offset, int limit) {
+        try {
+            return coldTier.search(query, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
     }
 
     /**
-     * Получает журнал по ID
+     * Получает журнал по ID.
+     * Название и дата берутся из заголовка, а измерения читаются из потока
+     * порциями по мере обращения к ним (см. {@link LazyMeasurementList}).
+     * Если есть несвернутые изменения станций, журнал читается целиком и они применяются к нему.
+     * Короткие журналы читаются целиком и кешируются; станции длинных журналов
+     * и журналов с построчным хранением в кеш не попадают
      * @param journalId ID журнала
      * @return Журнал или null, если не найден
      */
     public TheodoliteJournal getJournalById(int journalId) {
-        List<TheodoliteJournal> journals = getAllJournals();
-        for (TheodoliteJournal journal : journals) {
-            if (journal.getId() == journalId) {
-                return journal;
+        try {
+            String key = writeKey(journalId);
+            Object cached = cache.get(key);
+            if (cached != null) {
+                return ModelCopier.copy((TheodoliteJournal) cached);
+            }
+            long stamp = cache.stamp();
+            if (!store.contains(journalId)) {
+                TheodoliteJournal cold = readCold(journalId);
+                // Журнал мог вернуться в основное хранилище между проверкой и чтением холодного уровня
+                if (cold != null || !store.contains(journalId)) {
+                    return cold;
+                }
+            }
+            // Версия читается раньше данных: изменение между чтениями приведет к конфликту при сохранении
+            long recordVersion = store.getVersion(journalId);
+
+            if (deltaFile(journalId).exists()) {
+                return readCached(key, stamp, recordVersion, store.get(journalId));
+            }
+
+            RecordHeader header = store.getHeader(journalId);
+            InputStream in = store.openStream(journalId);
+            if (header == null || in == null) {
+                return null;
+            }
+
+            TheodoliteJournal journal = new TheodoliteJournal(header.getName());
+            journal.setId(journalId);
+            journal.setVersion(recordVersion);
+            journal.setCreatedAt(header.getCreatedAt());
+
+            // Журнал с построчным хранением станций записан в двоичном формате
+            BufferedInputStream buffered = new BufferedInputStream(in);
+            buffered.mark(1);
+            int first = buffered.read();
+            if (first == (BinaryCodec.MAGIC & 0xFF)) {
+                buffered.close();
+                TheodoliteJournal mapped = decode(store.get(journalId));
+                mapped.setVersion(recordVersion);
+                return mapped;
+            }
+            int version = RecordSchema.LEGACY_VERSION;
+            if (first == (RecordSchema.MARK & 0xFF)) {
+                version = buffered.read();
+            } else {
+                buffered.reset();
+            }
+            // Журнал в прежней версии схемы читается целиком, чтобы перевести его в текущую.
+            // Короткий журнал и так был бы прочитан одной порцией
+            if (version < schema.currentVersion() || header.getItemCount() <= LazyMeasurementList.CHUNK_SIZE) {
+                buffered.close();
+                return readCached(key, stamp, recordVersion, store.get(journalId));
+            }
+
+            // Оборванный или поврежденный журнал обнаруживается до того, как экран начнет читать станции:
+            // такой журнал читается целиком и, как при полном разборе, не открывается
+            if (!hasCompleteMeasurements(journalId, header.getItemCount())) {
+                buffered.close();
+                return readCached(key, stamp, recordVersion, store.get(journalId));
+            }
+
+            JsonReader reader = new JsonReader(new InputStreamReader(buffered, StandardCharsets.UTF_8));
+            if (seekToMeasurements(reader)) {
+                journal.setMeasurements(new LazyMeasurementList(reader,
+                        gson.getAdapter(StationMeasurement.class), header.getItemCount()));
+            } else {
+                reader.close();
+            }
+            journal.clearPendingChanges();
+            return journal;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Читает журнал целиком и кладет его копию в кеш
+     * @param stamp Отметка кеша, снятая до чтения записи
+     * @param version Версия записи, прочитанная до чтения записи
+     */
+    private TheodoliteJournal readCached(String key, long stamp, long version, byte[] data) throws IOException {
+        if (data == null) {
+            return null;
+        }
+        TheodoliteJournal journal = read(data);
+        journal.setVersion(version);
+        if (!(journal.getMeasurements() instanceof MappedStationList)) {
+            cache.put(key, stamp, ModelCopier.copy(journal), data.length);
+        }
+        return journal;
+    }
+
+    /**
+     * Проверяет потоком, не разбирая станций, что запись журнала не оборвана
+     * и массив измерений содержит столько станций, сколько указано в заголовке
+     */
+    private boolean hasCompleteMeasurements(int journalId, int expectedSize) {
+        try {
+            InputStream in = store.openStream(journalId);
+            if (in == null) {
+                return false;
             }
+            BufferedInputStream buffered = new BufferedInputStream(in);
+            buffered.mark(1);
+            if (buffered.read() == (RecordSchema.MARK & 0xFF)) {
+                buffered.read();
+            } else {
+                buffered.reset();
+            }
+            try (JsonReader reader = new JsonReader(new InputStreamReader(buffered, StandardCharsets.UTF_8))) {
+                if (!seekToMeasurements(reader) || !LazyMeasurementList.isComplete(reader, expectedSize)) {
+                    return false;
+                }
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    reader.skipValue();
+                }
+                reader.endObject();
+                return true;
+            }
+        } catch (IOException | IllegalStateException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Пропускает поля журнала до массива измерений
+     * @return true, если массив измерений найден
+     */
+    private boolean seekToMeasurements(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("measurements".equals(reader.nextName())) {
+                return true;
+            }
+            reader.skipValue();
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает измененную станцию в список журнала, станции которого хранятся построчно.
+     * Список держит изменение в памяти, а в файл станций оно записывается при сохранении журнала.
+     * Для остальных журналов изменения станции сохраняются вместе со всем журналом
+     * @param journal Журнал
+     * @param position Номер станции в списке
+     * @param measurement Измененная станция
+     * @return true, если станция возвращена в список построчного хранения
+     */
+    public boolean updateStation(TheodoliteJournal journal, int position, StationMeasurement measurement) {
+        List<StationMeasurement> measurements = journal.getMeasurements();
+        if (!(measurements instanceof MappedStationList) || position < 0 || position >= measurements.size()) {
+            return false;
+        }
+        try {
+            measurements.set(position, measurement);
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
         }
-        return null;
     }
 
     /**
-     * Удаляет журнал из хранилища
+     * Удаляет журнал из хранилища, дожидаясь завершения записи
      * @param journalId ID журнала для удаления
      * @return true, если удаление прошло успешно
      */
     public boolean deleteJournal(int journalId) {
         try {
-            List<TheodoliteJournal> journals = getAllJournals();
-            for (int i = 0; i < journals.size(); i++) {
-                if (journals.get(i).getId() == journalId) {
-                    journals.remove(i);
-                    String json = gson.toJson(journals);
-                    SharedPreferences.Editor editor = preferences.edit();
-                    editor.putString(JOURNALS_KEY, json);
-                    editor.apply();
-                    return true;
+            return enqueueDelete(journalId, true).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Ставит удаление в очередь потока записи
+     * @param journalId ID журнала для удаления
+     * @return Future с результатом удаления
+     */
+    public CompletableFuture<Boolean> deleteJournalAsync(int journalId) {
+        return enqueueDelete(journalId, false);
+    }
+
+    /**
+     * Удаляет несколько журналов одной записью в хранилище
+     * @param journalIds ID журналов для удаления
+     * @return Future с количеством удаленных журналов
+     */
+    public CompletableFuture<Integer> deleteJournalsAsync(Collection<Integer> journalIds) {
+        List<Integer> ids = new ArrayList<>(journalIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            for (int id : ids) {
+                batch.delete(id);
+            }
+            int deleted = store.apply(batch) + coldTier.delete(ids);
+            for (int id : ids) {
+                forgetJournal(id);
+                File historyFile = historyFile(id);
+                GroupCommit.afterCommit(() -> VersionHistory.delete(historyFile));
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Создает копии нескольких журналов одной записью в хранилище.
+     * Копия получает новый ID, текущую дату и название с указанным окончанием
+     * @param journalIds ID копируемых журналов
+     * @param nameSuffix Окончание названия копии
+     * @return Future с количеством созданных копий
+     */
+    public CompletableFuture<Integer> duplicateJournalsAsync(Collection<Integer> journalIds, String nameSuffix) {
+        List<Integer> ids = new ArrayList<>(journalIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            List<TheodoliteJournal> copies = new ArrayList<>();
+            List<byte[]> written = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (int id : ids) {
+                byte[] data = load(id);
+                if (data == null) {
+                    continue;
                 }
+                // Станции копируются в память, в том числе станции из файла построчного хранения
+                TheodoliteJournal copy = ModelCopier.copy(decode(data));
+                copy.setId(store.resolveId(0));
+                copy.setName(copy.getName() != null ? copy.getName() + nameSuffix : null);
+                copy.setCreatedAt(new Date(now));
+                byte[] encoded = encodeSnapshot(copy);
+                batch.put(copy.getId(), encoded, header(copy, encoded.length));
+                copies.add(copy);
+                written.add(encoded);
+            }
+            int created = store.apply(batch);
+            for (int i = 0; i < copies.size(); i++) {
+                snapshotWritten(copies.get(i).getId(), written.get(i));
+                commitVersion(copies.get(i));
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Сохраняет несколько журналов целиком одной записью в хранилище.
+     * ID новым журналам присваиваются сразу, а сериализация выполняется в фоне.
+     * Если хоть один журнал изменен после чтения, не сохраняется ни один
+     * @param journals Журналы для сохранения
+     * @return Future с количеством сохраненных журналов; завершается
+     *         {@link WriteConflictException} при конфликте версий
+     */
+    public CompletableFuture<Integer> saveJournalsAsync(List<TheodoliteJournal> journals) {
+        try {
+            for (TheodoliteJournal journal : journals) {
+                journal.setId(coldTier.resolveId(journal.getId()));
             }
-            return false;
         } catch (Exception e) {
             e.printStackTrace();
+            return CompletableFuture.completedFuture(0);
+        }
+
+        List<TheodoliteJournal> items = new ArrayList<>(journals);
+        List<TheodoliteJournal> snapshots = new ArrayList<>(items.size());
+        synchronized (pendingSaves) {
+            for (TheodoliteJournal journal : items) {
+                // Журналы записываются целиком, поэтому накопленные изменения станций не нужны
+                journal.drainPendingChanges();
+                snapshots.add(ModelCopier.snapshot(journal));
+                // Изменения ожидающего сохранения уже вошли в этот снимок: оно запишет журнал
+                // целиком, а не допишет их к снимку повторно
+                PendingSave pending = pendingSaves.get(journal.getId());
+                if (pending != null) {
+                    pending.changes = null;
+                }
+            }
+        }
+        return executor.submitBulk(() -> {
+            // Версии проверяются до кодирования: файлы станций длинных журналов пишутся при кодировании
+            for (TheodoliteJournal journal : items) {
+                checkVersion(journal.getId(), journal.getVersion());
+            }
+            RecordStore.Batch batch = new RecordStore.Batch();
+            List<byte[]> written = new ArrayList<>();
+            for (TheodoliteJournal snapshot : snapshots) {
+                byte[] data = encodeSnapshot(snapshot);
+                batch.put(snapshot.getId(), data, header(snapshot, data.length));
+                written.add(data);
+            }
+            int saved;
+            try {
+                saved = store.apply(batch);
+            } catch (Exception e) {
+                // Изменения уже забраны из журналов, поэтому следующие сохранения будут полными
+                for (TheodoliteJournal journal : items) {
+                    journal.resetChangeTracking();
+                }
+                throw e;
+            }
+            for (int i = 0; i < items.size(); i++) {
+                int id = items.get(i).getId();
+                items.get(i).setVersion(store.getVersion(id));
+                cache.invalidate(writeKey(id));
+                snapshotWritten(id, written.get(i));
+                commitVersion(snapshots.get(i));
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Переносит несколько журналов в архив. Журнал записывается в архив целиком,
+     * вместе с несвернутыми изменениями и станциями построчного хранения,
+     * и сохраняет свои ID и историю версий. Журнал удаляется из основного хранилища
+     * только после того, как архивная копия сброшена на диск
+     * @param journalIds ID журналов
+     * @return Future с количеством перенесенных журналов
+     */
+    public CompletableFuture<Integer> archiveJournalsAsync(Collection<Integer> journalIds) {
+        List<Integer> ids = new ArrayList<>(journalIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch archived = new RecordStore.Batch();
+            RecordStore.Batch removed = new RecordStore.Batch();
+            for (int id : ids) {
+                byte[] data = load(id);
+                if (data == null) {
+                    continue;
+                }
+                TheodoliteJournal journal = decode(data);
+                if (journal.getMeasurements() instanceof MappedStationList) {
+                    journal = ModelCopier.copy(journal);
+                }
+                byte[] full = encode(journal);
+                archived.put(id, full, header(journal, full.length));
+                removed.delete(id);
+            }
+            if (archived.size() == 0) {
+                return 0;
+            }
+            archive.apply(archived);
+            archive.sync();
+            int moved = store.apply(removed) + coldTier.delete(ids);
+            for (int id : ids) {
+                forgetJournal(id);
+            }
+            return moved;
+        });
+    }
+
+    /**
+     * Возвращает журналы из архива в основное хранилище
+     * @param journalIds ID архивных журналов
+     * @return Future с количеством возвращенных журналов
+     */
+    public CompletableFuture<Integer> restoreArchivedJournalsAsync(Collection<Integer> journalIds) {
+        List<Integer> ids = new ArrayList<>(journalIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch restored = new RecordStore.Batch();
+            RecordStore.Batch removed = new RecordStore.Batch();
+            List<byte[]> written = new ArrayList<>();
+            List<Integer> restoredIds = new ArrayList<>();
+            for (int id : ids) {
+                byte[] data = archive.get(id);
+                if (data == null) {
+                    continue;
+                }
+                TheodoliteJournal journal = decode(data);
+                byte[] encoded = encodeSnapshot(journal);
+                restored.put(id, encoded, header(journal, encoded.length));
+                removed.delete(id);
+                written.add(encoded);
+                restoredIds.add(id);
+            }
+            if (restored.size() == 0) {
+                return 0;
+            }
+            int moved = store.apply(restored);
+            for (int i = 0; i < restoredIds.size(); i++) {
+                cache.invalidate(writeKey(restoredIds.get(i)));
+                snapshotWritten(restoredIds.get(i), written.get(i));
+            }
+            // Вместе с записями сбрасываются и файлы станций длинных журналов
+            GroupCommit.commit();
+            archive.apply(removed);
+            return moved;
+        });
+    }
+
+    /**
+     * Удаляет несколько журналов из архива одной записью
+     * @param journalIds ID архивных журналов
+     * @return Future с количеством удаленных журналов
+     */
+    public CompletableFuture<Integer> deleteArchivedJournalsAsync(Collection<Integer> journalIds) {
+        List<Integer> ids = new ArrayList<>(journalIds);
+        return executor.submitBulk(() -> {
+            RecordStore.Batch batch = new RecordStore.Batch();
+            for (int id : ids) {
+                batch.delete(id);
+            }
+            int deleted = archive.apply(batch);
+            for (int id : ids) {
+                File historyFile = historyFile(id);
+                GroupCommit.afterCommit(() -> VersionHistory.delete(historyFile));
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Получает страницу заголовков архивных журналов, упорядоченных по дате создания
+     * @param order Порядок сортировки
+     * @param offset Номер первой записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков страницы
+     */
+    public List<RecordHeader> queryArchivedJournalHeaders(SortOrder order, int offset, int limit) {
+        try {
+            return archive.queryHeaders(order, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Ищет архивные журналы по началам слов в названии журнала
+     * @param query Строка поиска
+     * @param offset Номер первой найденной записи страницы
+     * @param limit Наибольшее количество записей на странице
+     * @return Список заголовков найденных записей
+     */
+    public List<RecordHeader> searchArchivedJournalHeaders(String query, int offset, int limit) {
+        try {
+            return archive.search(query, offset, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Получает версии журнала от новых к старым
+     * @param journalId ID журнала
+     * @return Список версий или пустой список, если журнал еще не сохранялся
+     */
+    public List<VersionInfo> getJournalVersions(int journalId) {
+        try {
+            return VersionHistory.read(historyFile(journalId)).list(STATIONS_SEQUENCE);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Получает журнал в состоянии указанной версии
+     * @param journalId ID журнала
+     * @param number Номер версии
+     * @return Журнал или null, если версия не найдена
+     */
+    public TheodoliteJournal getJournalVersion(int journalId, int number) {
+        try {
+            List<List<byte[]>> sequences = VersionHistory.read(historyFile(journalId)).sequences(number);
+            if (sequences == null) {
+                return null;
+            }
+            TheodoliteJournal journal = gson.fromJson(VersionHistory.join(sequences, VERSIONED_LISTS),
+                    TheodoliteJournal.class);
+            journal.setId(journalId);
+            return journal;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Сравнивает две версии журнала
+     * @param journalId ID журнала
+     * @param from Номер исходной версии
+     * @param to Номер версии, с которой сравнивается исходная
+     * @return Разница или null, если одной из версий нет
+     */
+    public VersionDiff diffJournalVersions(int journalId, int from, int to) {
+        try {
+            return VersionHistory.read(historyFile(journalId)).diff(from, to, STATIONS_SEQUENCE);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Восстанавливает журнал в состоянии указанной версии. Восстановленное состояние
+     * сохраняется как новая версия, поэтому более поздние версии остаются в истории
+     * @param journalId ID журнала
+     * @param number Номер версии
+     * @return Future с результатом сохранения
+     */
+    public CompletableFuture<Boolean> restoreJournalVersionAsync(int journalId, int number) {
+        TheodoliteJournal journal = getJournalVersion(journalId, number);
+        if (journal == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        // Восстановленный журнал записывается целиком, а не изменениями станций
+        journal.resetChangeTracking();
+        return enqueueSave(journal, false, true);
+    }
+
+    /**
+     * @param overwrite true, чтобы записать журнал целиком без проверки версии
+     */
+    private CompletableFuture<Boolean> enqueueSave(TheodoliteJournal journal, boolean immediate,
+                                                   boolean overwrite) {
+        try {
+            // Если журнал новый, присваиваем ему ID
+            journal.setId(coldTier.resolveId(journal.getId()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(false);
+        }
+
+        PendingSave save = stage(journal, overwrite);
+        return executor.submit(writeKey(journal.getId()), () -> writePending(journal, save), immediate);
+    }
+
+    /**
+     * Снимает журнал и забирает его изменения станций в вызывающем потоке: экран продолжает
+     * изменять журнал, пока сохранение ждет потока записи
+     */
+    private static PendingSave stage(TheodoliteJournal journal, boolean overwrite) {
+        synchronized (pendingSaves) {
+            if (overwrite) {
+                // Изменения станций отсчитаны от прочитанного снимка, а не от записанного позже
+                journal.resetChangeTracking();
+            }
+            List<TheodoliteJournal.StationChange> changes = ModelCopier.copy(journal.drainPendingChanges());
+            PendingSave save = pendingSaves.get(journal.getId());
+            if (save == null) {
+                save = new PendingSave();
+                save.changes = changes;
+                pendingSaves.put(journal.getId(), save);
+            } else if (save.changes != null && changes != null) {
+                save.changes.addAll(changes);
+            } else {
+                save.changes = null;
+            }
+            save.snapshot = ModelCopier.snapshot(journal);
+            save.overwrite |= overwrite;
+            return save;
+        }
+    }
+
+    /**
+     * Записывает ожидающее сохранение журнала. Выполняется в потоке записи
+     * @param journal Сохраняемый журнал: ему присваивается новая версия записи
+     */
+    private boolean writePending(TheodoliteJournal journal, PendingSave save) throws Exception {
+        synchronized (pendingSaves) {
+            if (pendingSaves.get(journal.getId()) != save) {
+                // Сохранение объединено с уже выполненной записью
+                if (save.error != null) {
+                    throw save.error;
+                }
+                return save.written;
+            }
+            pendingSaves.remove(journal.getId());
+        }
+        try {
+            save.written = write(journal, save);
+            return save.written;
+        } catch (Exception e) {
+            save.error = e;
+            throw e;
+        }
+    }
+
+    private boolean write(TheodoliteJournal journal, PendingSave save) throws IOException {
+        TheodoliteJournal snapshot = save.snapshot;
+        int id = snapshot.getId();
+        if (!save.overwrite) {
+            // Журнал пишется несколькими файлами, поэтому версия проверяется до первой записи.
+            // Записи журналов изменяются только в потоке записи, так что до конца сохранения версия та же
+            checkVersion(id, journal.getVersion());
+        }
+
+        if (isMapped(snapshot)) {
+            // Станции длинного журнала записываются построчно, журнал изменений не нужен
+            byte[] data = encodeMapped(snapshot);
+            store.put(id, data, header(snapshot, data.length));
+            journal.setVersion(store.getVersion(id));
+            if (journal.getMeasurements() instanceof MappedStationList
+                    && snapshot.getMeasurements() instanceof MappedStationList) {
+                // Записанные изменения больше не нужно держать в памяти
+                ((MappedStationList) journal.getMeasurements()).saved(
+                        (MappedStationList) snapshot.getMeasurements(), MappedStationFile.open(stationsFile(id)));
+            }
+            cache.invalidate(writeKey(id));
+            forgetSnapshot(id);
+            if (save.overwrite) {
+                dropColdCopy(id);
+            }
+            commitVersion(snapshot);
+            return true;
+        }
+
+        try {
+            if (save.changes == null || !saveChanges(snapshot, save.changes)) {
+                saveSnapshot(snapshot);
+            }
+            journal.setVersion(store.getVersion(id));
+            if (save.overwrite) {
+                dropColdCopy(id);
+            }
+            commitVersion(snapshot);
+            return true;
+        } catch (Exception e) {
+            // Изменения уже забраны из журнала, поэтому следующее сохранение будет полным
+            journal.resetChangeTracking();
+            throw e;
+        } finally {
+            // Снимок или файл изменений могли быть записаны и при ошибке
+            cache.invalidate(writeKey(id));
+        }
+    }
+
+    /**
+     * Проверяет, что журнал не изменялся с версии, с которой он прочитан
+     */
+    private void checkVersion(int id, long expectedVersion) throws IOException {
+        if (store.getVersion(id) != expectedVersion) {
+            throw new WriteConflictException(id);
+        }
+    }
+
+    /**
+     * Записывает журнал целиком как новый снимок и удаляет свернутые в него изменения
+     */
+    private void saveSnapshot(TheodoliteJournal journal) throws IOException {
+        byte[] data = encode(journal);
+        store.put(journal.getId(), data, header(journal, data.length));
+        snapshotWritten(journal.getId(), data);
+    }
+
+    /**
+     * Кодирует журнал целиком для записи набором изменений.
+     * Станции длинных журналов записываются построчно, как при обычном сохранении
+     */
+    private byte[] encodeSnapshot(TheodoliteJournal journal) throws IOException {
+        journal.drainPendingChanges();
+        return isMapped(journal) ? encodeMapped(journal) : encode(journal);
+    }
+
+    /**
+     * Отмечает, что журнал записан целиком: свернутые в снимок изменения станций больше не нужны
+     */
+    private void snapshotWritten(int id, byte[] data) {
+        if (BinaryCodec.isBinary(data)) {
+            forgetSnapshot(id);
+            return;
+        }
+        long checksum = StationDeltaLog.checksum(data);
+        snapshotChecksums.put(id, checksum);
+        // Изменения удаляются только после того, как новый снимок сброшен на диск.
+        // Изменения, дописанные к новому снимку в той же группе записей, остаются
+        File deltaFile = deltaFile(id);
+        GroupCommit.afterCommit(() -> StationDeltaLog.deleteStale(deltaFile, checksum));
+    }
+
+    /**
+     * Дописывает изменения станций в файл изменений, не переписывая журнал
+     * @return false, если журнал нужно сохранить целиком: его еще нет в хранилище,
+     * изменилось название или изменений накопилось слишком много
+     */
+    private boolean saveChanges(TheodoliteJournal journal, List<TheodoliteJournal.StationChange> changes)
+            throws IOException {
+        int id = journal.getId();
+        RecordHeader stored = store.getHeader(id);
+        if (stored == null || !Objects.equals(stored.getName(), journal.getName())) {
             return false;
         }
+        if (changes.isEmpty()) {
+            return true;
+        }
+
+        long checksum = snapshotChecksum(id);
+        File deltaFile = deltaFile(id);
+        if (StationDeltaLog.shouldFold(deltaFile, checksum, stored.getSize())) {
+            return false;
+        }
+        StationDeltaLog.append(deltaFile, checksum, changes);
+        // Размер в заголовке остается размером снимка, количество станций — текущее
+        store.putHeader(id, header(journal, stored.getSize()));
+        return true;
+    }
+
+    private long snapshotChecksum(int id) throws IOException {
+        Long checksum = snapshotChecksums.get(id);
+        if (checksum == null) {
+            byte[] data = store.get(id);
+            checksum = StationDeltaLog.checksum(data != null ? data : new byte[0]);
+            snapshotChecksums.put(id, checksum);
+        }
+        return checksum;
+    }
+
+    private void forgetSnapshot(int id) {
+        snapshotChecksums.remove(id);
+        File deltaFile = deltaFile(id);
+        GroupCommit.afterCommit(() -> StationDeltaLog.delete(deltaFile));
+    }
+
+    private CompletableFuture<Boolean> enqueueDelete(int journalId, boolean immediate) {
+        // Отдельный ключ: последующее сохранение не заменяет удаление, а выполняется после него
+        return executor.submit(deleteKey(journalId), () -> {
+            boolean deleted = store.delete(journalId) | coldTier.delete(Collections.singletonList(journalId)) > 0;
+            forgetJournal(journalId);
+            File historyFile = historyFile(journalId);
+            GroupCommit.afterCommit(() -> VersionHistory.delete(historyFile));
+            return deleted;
+        }, immediate);
     }
 
     /**
-     * Генерирует уникальный ID для нового журнала
-     * @param journals Список существующих журналов
-     * @return Уникальный ID
+     * Переносит на холодный уровень журналы, не изменявшиеся дольше указанного срока,
+     * и самые давние журналы сверх указанного количества. Журнал переносится целиком,
+     * как в архив: вместе с несвернутыми изменениями и станциями построчного хранения.
+     * История версий журнала остается на месте
+     * @param maxAgeMillis Срок, после которого неизменявшийся журнал переносится
+     * @param maxHotRecords Наибольшее количество журналов в основном хранилище
+     * @return Future с количеством перенесенных журналов
      */
-    private int generateJournalId(List<TheodoliteJournal> journals) {
-        int maxId = 0;
-        for (TheodoliteJournal journal : journals) {
-            if (journal.getId() > maxId) {
-                maxId = journal.getId();
+    public CompletableFuture<Integer> demoteColdJournalsAsync(long maxAgeMillis, int maxHotRecords) {
+        return executor.submitBulk(() -> {
+            List<Integer> ids = coldTier.selectCold(System.currentTimeMillis(), maxAgeMillis, maxHotRecords);
+            List<Integer> moved = coldTier.demote(ids, (id, data) -> {
+                TheodoliteJournal journal = decode(data);
+                if (journal.getMeasurements() instanceof MappedStationList) {
+                    journal = ModelCopier.copy(journal);
+                }
+                return encode(journal);
+            });
+            for (int id : moved) {
+                forgetJournal(id);
             }
+            return moved.size();
+        });
+    }
+
+    /**
+     * Читает журнал прямо с холодного уровня целиком, а возвращение в основное хранилище
+     * ставит в очередь потока записи, не дожидаясь его. Версия записи при возвращении
+     * не меняется, поэтому прочитанный журнал сохраняется без конфликта
+     * @return Журнал или null, если на холодном уровне его нет
+     */
+    private TheodoliteJournal readCold(int journalId) throws IOException {
+        // Версия читается раньше данных: изменение между чтениями приведет к конфликту при сохранении
+        long version = store.getVersion(journalId);
+        byte[] data = coldTier.get(journalId);
+        if (data == null) {
+            return null;
+        }
+        executor.submit(promoteKey(journalId), () -> promoteCold(journalId), false);
+        TheodoliteJournal journal = decode(data);
+        journal.setVersion(version);
+        return journal;
+    }
+
+    /**
+     * Записывает журнал с холодного уровня в основное хранилище и удаляет его копию
+     * с холодного уровня. Станции длинного журнала снова записываются построчно.
+     * Выполняется в потоке записи
+     * @return false, если журнала на холодном уровне нет
+     */
+    private boolean promoteCold(int journalId) throws IOException {
+        byte[] data = coldTier.get(journalId);
+        if (data == null) {
+            return false;
+        }
+        if (!store.contains(journalId)) {
+            TheodoliteJournal journal = decode(data);
+            byte[] encoded = encodeSnapshot(journal);
+            store.restore(journalId, encoded, header(journal, encoded.length));
+            snapshotWritten(journalId, encoded);
+            // Вместе с записью сбрасывается и файл станций длинного журнала
+            GroupCommit.commit();
+        }
+        coldTier.delete(Collections.singletonList(journalId));
+        cache.invalidate(writeKey(journalId));
+        return true;
+    }
+
+    /**
+     * Удаляет копию журнала с холодного уровня, если журнал перезаписан после переноса туда.
+     * Новая запись сначала сбрасывается на диск, чтобы сбой не оставил журнал без обеих копий
+     */
+    private void dropColdCopy(int journalId) throws IOException {
+        if (coldTier.contains(journalId)) {
+            GroupCommit.commit();
+            coldTier.delete(Collections.singletonList(journalId));
+        }
+    }
+
+    /**
+     * Данные журнала из основного хранилища или с холодного уровня
+     */
+    private byte[] load(int journalId) throws IOException {
+        byte[] data = store.get(journalId);
+        return data != null ? data : coldTier.get(journalId);
+    }
+
+    /**
+     * Забывает журнал, удаленный из основного хранилища: кеш, файл станций и файл изменений
+     */
+    private void forgetJournal(int journalId) {
+        cache.invalidate(writeKey(journalId));
+        File stationsFile = stationsFile(journalId);
+        GroupCommit.afterCommit(() -> MappedStationFile.delete(stationsFile));
+        forgetSnapshot(journalId);
+    }
+
+    /**
+     * Добавляет сохраняемое состояние журнала в его историю. Ошибка записи истории
+     * не отменяет сохранение самого журнала
+     */
+    private void commitVersion(TheodoliteJournal journal) {
+        try {
+            VersionHistory.commit(historyFile(journal.getId()),
+                    VersionHistory.split(gson.toJsonTree(journal).getAsJsonObject(), VERSIONED_LISTS),
+                    System.currentTimeMillis());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private File stationsFile(int journalId) {
+        return store.auxiliaryFile(journalId + ".stations");
+    }
+
+    private File deltaFile(int journalId) {
+        return store.auxiliaryFile(journalId + ".delta");
+    }
+
+    private File historyFile(int journalId) {
+        return store.auxiliaryFile(journalId + ".history");
+    }
+
+    /**
+     * Журнал хранится построчно, если он уже был так сохранен или достаточно длинный
+     */
+    private boolean isMapped(TheodoliteJournal journal) {
+        List<StationMeasurement> measurements = journal.getMeasurements();
+        return measurements instanceof MappedStationList
+                || (measurements != null && measurements.size() >= MAPPED_STATIONS_THRESHOLD)
+                || stationsFile(journal.getId()).exists();
+    }
+
+    /**
+     * Записывает станции в файл станций журнала и возвращает запись журнала без станций.
+     * Если станции читаются из этого файла, в нем перезаписываются только измененные станции,
+     * иначе файл заменяется целиком
+     */
+    private byte[] encodeMapped(TheodoliteJournal journal) throws IOException {
+        File file = stationsFile(journal.getId());
+        List<StationMeasurement> measurements = journal.getMeasurements();
+        MappedStationFile stations = measurements instanceof MappedStationList
+                ? ((MappedStationList) measurements).writeTo(file)
+                : MappedStationFile.rewrite(file, measurements != null ? measurements : new ArrayList<>());
+        GroupCommit.register(stations);
+        return BinaryCodec.encodeJournalInfo(journal);
+    }
+
+    private String writeKey(int id) {
+        return PREFS_NAME + "#" + id;
+    }
+
+    private String deleteKey(int id) {
+        return writeKey(id) + "#delete";
+    }
+
+    private String promoteKey(int id) {
+        return writeKey(id) + "#promote";
+    }
+
+    private String upgradeKey(int id) {
+        return writeKey(id) + "#upgrade";
+    }
+
+    private byte[] encode(TheodoliteJournal journal) {
+        return schema.wrap(gson.toJson(journal));
+    }
+
+    /**
+     * Читает журнал из записи и применяет к нему несвернутые изменения станций
+     */
+    private TheodoliteJournal decode(byte[] data) throws IOException {
+        if (BinaryCodec.isBinary(data)) {
+            TheodoliteJournal journal = BinaryCodec.decodeJournalInfo(data);
+            journal.setMeasurements(new MappedStationList(MappedStationFile.open(stationsFile(journal.getId()))));
+            journal.clearPendingChanges();
+            return journal;
+        }
+
+        TheodoliteJournal journal = schema.isStale(data)
+                ? gson.fromJson(schema.upgrade(data), TheodoliteJournal.class)
+                : gson.fromJson(RecordSchema.json(data), TheodoliteJournal.class);
+        File deltaFile = deltaFile(journal.getId());
+        if (deltaFile.exists() && journal.getMeasurements() != null) {
+            long checksum = StationDeltaLog.checksum(data);
+            snapshotChecksums.put(journal.getId(), checksum);
+            StationDeltaLog.apply(journal.getMeasurements(), StationDeltaLog.read(deltaFile, checksum));
+        }
+        return journal;
+    }
+
+    /**
+     * Читает журнал; если запись сохранена в прежней версии схемы, перезаписывает ее в фоне
+     */
+    private TheodoliteJournal read(byte[] data) throws IOException {
+        TheodoliteJournal journal = decode(data);
+        if (schema.isStale(data)) {
+            scheduleUpgrade(journal.getId());
+        }
+        return journal;
+    }
+
+    /**
+     * Ставит в очередь перезапись журнала в текущей версии схемы новым снимком,
+     * в который сворачиваются и накопленные изменения станций. Ключ отличается от ключа
+     * сохранения, чтобы не заменить ожидающее сохранение; к моменту выполнения
+     * запись перечитывается и не трогается, если ее уже перезаписали.
+     * Содержимое журнала не меняется, поэтому версия записи остается прежней
+     */
+    private void scheduleUpgrade(int journalId) {
+        executor.submit(upgradeKey(journalId), () -> {
+            long version;
+            byte[] data;
+            synchronized (store) {
+                version = store.getVersion(journalId);
+                data = store.get(journalId);
+            }
+            if (data == null || !schema.isStale(data)) {
+                return true;
+            }
+            TheodoliteJournal journal = decode(data);
+            byte[] upgraded = encode(journal);
+            if (store.rewrite(journalId, version, upgraded, header(journal, upgraded.length))) {
+                snapshotWritten(journalId, upgraded);
+            }
+            cache.invalidate(writeKey(journalId));
+            return true;
+        }, false);
+    }
+
+    /**
+     * Схема 2: горизонтальное проложение станций. В записях, сохраненных до появления поля,
+     * оно вычисляется из сохраненных расстояния и угла наклона
+     */
+    private void fillHorizontalDistances(JsonObject record) {
+        if (!(record.get("measurements") instanceof JsonArray)) {
+            return;
+        }
+        for (JsonElement element : record.getAsJsonArray("measurements")) {
+            if (!(element instanceof JsonObject)) {
+                continue;
+            }
+            JsonObject station = (JsonObject) element;
+            if (station.has("horizontalDistance") || !station.has("distance")
+                    || !(station.get("slopeAngle") instanceof JsonObject)) {
+                continue;
+            }
+            StationMeasurement measurement = new StationMeasurement();
+            measurement.setDistance(station.get("distance").getAsDouble());
+            measurement.setSlopeAngle(gson.fromJson(station.get("slopeAngle"), AngleValue.class));
+            measurement.calculateHorizontalDistance();
+            station.addProperty("horizontalDistance", measurement.getHorizontalDistance());
+        }
+    }
+
+    private RecordHeader header(TheodoliteJournal journal, int size) {
+        return new RecordHeader(journal.getId(), journal.getName(), journal.getCreatedAt(), size,
+                journal.getMeasurements() != null ? journal.getMeasurements().size() : 0, null);
+    }
+
+    private RecordHeader extractHeader(int id, byte[] data) {
+        try {
+            return header(decode(data), data.length);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new RecordHeader(id, null, null, data.length, 0, null);
+        }
+    }
+
+    /**
+     * Переносит журналы, сохраненные прежними версиями приложения одним JSON-списком
+     * в SharedPreferences, в журнальное хранилище
+     */
+    private void migrateFromPreferences(SharedPreferences preferences) {
+        String json = preferences.getString(JOURNALS_KEY, "");
+        if (json.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Журналы прежних версий приложения переводятся в текущую схему до записи
+            JsonArray items = JsonParser.parseString(json).getAsJsonArray();
+            for (int i = 0; i < items.size(); i++) {
+                items.set(i, schema.upgrade(items.get(i), RecordSchema.LEGACY_VERSION));
+            }
+            Type type = new TypeToken<List<TheodoliteJournal>>() {}.getType();
+            List<TheodoliteJournal> journals = gson.fromJson(items, type);
+            synchronized (store) {
+                for (TheodoliteJournal journal : journals) {
+                    byte[] data = encode(journal);
+                    store.put(journal.getId(), data, header(journal, data.length));
+                    forgetSnapshot(journal.getId());
+                }
+            }
+            // Старый список удаляется только после того, как записи сброшены на диск
+            GroupCommit.commit();
+            preferences.edit().remove(JOURNALS_KEY).commit();
+        } catch (Exception e) {
+            e.printStackTrace();
         }
-        return maxId + 1;
     }
-}
\ No newline at end of file
+}
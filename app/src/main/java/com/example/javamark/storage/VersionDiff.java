@@ -0,0 +1,45 @@
+package com.example.javamark.storage;
+
+/**
+ * Разница между двумя версиями проекта или журнала: сколько пунктов или станций
+ * добавлено, удалено и изменено, и изменились ли остальные данные
+ */
+public final class VersionDiff {
+    private final int added;
+    private final int removed;
+    private final int changed;
+    private final boolean metadataChanged;
+
+    VersionDiff(int added, int removed, int changed, boolean metadataChanged) {
+        this.added = added;
+        this.removed = removed;
+        this.changed = changed;
+        this.metadataChanged = metadataChanged;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    /**
+     * true, если изменились название, параметры или результаты вычислений
+     */
+    public boolean isMetadataChanged() {
+        return metadataChanged;
+    }
+
+    /**
+     * true, если версии совпадают
+     */
+    public boolean isEmpty() {
+        return added == 0 && removed == 0 && changed == 0 && !metadataChanged;
+    }
+}
@@ -0,0 +1,501 @@
+package com.example.javamark.storage;
+
+import android.util.Log;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * История версий одного сохраненного объекта (проекта или журнала).
+ * Объект раскладывается на последовательности узлов: нулевая последовательность — поля
+ * самого объекта без списков, остальные — элементы его списков (пункты, станции и т. п.).
+ * Каждый узел хранится в файле один раз и переиспользуется всеми версиями, в которых он не менялся.
+ * Версия содержит только ссылки на узлы: для каждой последовательности записывается
+ * одна замена отрезка между общими с предыдущей версией началом и концом.
+ * Поэтому сотня версий проекта, в каждой из которых изменилось несколько пунктов,
+ * занимает немногим больше одной версии.
+ * Файл только дописывается; каждая запись снабжена контрольной суммой,
+ * оборванная при сбое последняя запись отбрасывается
+ */
+final class VersionHistory {
+    private static final String TAG = "VersionHistory";
+
+    // Заголовок файла: сигнатура "JMVH" и версия формата
+    private static final int MAGIC = 0x4A4D5648;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1;
+    // Заголовок записи: длина и CRC32 данных. Первый байт данных — тип записи
+    private static final int ENTRY_HEADER_SIZE = 8;
+    private static final byte ENTRY_NODE = 1;
+    private static final byte ENTRY_VERSION = 2;
+    // Наибольший размер таблицы при поиске общей подпоследовательности для сравнения версий
+    private static final long MAX_DIFF_CELLS = 250_000L;
+
+    /**
+     * Версия: время сохранения и по одной замене отрезка на каждую последовательность
+     */
+    private static final class Version {
+        final long savedAt;
+        final int[] starts;
+        final int[] removed;
+        final int[][] inserted;
+
+        Version(long savedAt, int sequences) {
+            this.savedAt = savedAt;
+            this.starts = new int[sequences];
+            this.removed = new int[sequences];
+            this.inserted = new int[sequences][];
+        }
+    }
+
+    private final List<byte[]> nodes = new ArrayList<>();
+    private final Map<ByteBuffer, Integer> nodeIds = new HashMap<>();
+    private final List<Version> versions = new ArrayList<>();
+    // Длина файла до конца последней целой записи; 0, если заголовок файла неверен
+    private long validLength;
+
+    private VersionHistory() {
+    }
+
+    /**
+     * Читает историю из файла. Если файла нет, история пуста
+     */
+    static VersionHistory read(File file) throws IOException {
+        VersionHistory history = new VersionHistory();
+        if (!file.exists()) {
+            return history;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+                Log.w(TAG, "Неизвестный формат истории " + file.getName());
+                return history;
+            }
+            long position = HEADER_SIZE;
+            while (true) {
+                int length;
+                int entryChecksum;
+                byte[] entry;
+                try {
+                    length = in.readInt();
+                    entryChecksum = in.readInt();
+                    if (length <= 0 || position + ENTRY_HEADER_SIZE + length > file.length()) {
+                        break;
+                    }
+                    entry = new byte[length];
+                    in.readFully(entry);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (checksum(entry) != entryChecksum || !history.apply(entry)) {
+                    Log.w(TAG, "Поврежденная запись в " + file.getName());
+                    break;
+                }
+                position += ENTRY_HEADER_SIZE + length;
+            }
+            history.validLength = position;
+        }
+        return history;
+    }
+
+    /**
+     * Сохраняет новую версию объекта, дописывая в файл только новые узлы и ссылки на них
+     * @param sequences Последовательности узлов объекта (см. {@link #split})
+     * @param savedAt Время сохранения
+     * @return номер версии, начиная с 1; если объект не изменился, новая версия
+     * не создается и возвращается номер последней
+     */
+    static int commit(File file, List<List<byte[]>> sequences, long savedAt) throws IOException {
+        VersionHistory history = read(file);
+        int[][] current = history.ids(history.versions.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Version version = new Version(savedAt, sequences.size());
+        boolean changed = history.versions.isEmpty() || current.length != sequences.size();
+        for (int s = 0; s < sequences.size(); s++) {
+            List<byte[]> sequence = sequences.get(s);
+            int[] ids = new int[sequence.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = history.nodeId(sequence.get(i), out);
+            }
+
+            int[] previous = s < current.length ? current[s] : new int[0];
+            int prefix = 0;
+            while (prefix < previous.length && prefix < ids.length && previous[prefix] == ids[prefix]) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < previous.length - prefix && suffix < ids.length - prefix
+                    && previous[previous.length - 1 - suffix] == ids[ids.length - 1 - suffix]) {
+                suffix++;
+            }
+            version.starts[s] = prefix;
+            version.removed[s] = previous.length - prefix - suffix;
+            version.inserted[s] = Arrays.copyOfRange(ids, prefix, ids.length - suffix);
+            changed |= version.removed[s] > 0 || version.inserted[s].length > 0;
+        }
+        if (!changed) {
+            return history.versions.size();
+        }
+
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        DataOutputStream versionOut = new DataOutputStream(entry);
+        versionOut.writeByte(ENTRY_VERSION);
+        versionOut.writeLong(version.savedAt);
+        versionOut.writeInt(sequences.size());
+        for (int s = 0; s < sequences.size(); s++) {
+            versionOut.writeInt(version.starts[s]);
+            versionOut.writeInt(version.removed[s]);
+            versionOut.writeInt(version.inserted[s].length);
+            for (int id : version.inserted[s]) {
+                versionOut.writeInt(id);
+            }
+        }
+        writeEntry(out, entry.toByteArray());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (history.validLength == 0) {
+                raf.setLength(0);
+                raf.writeInt(MAGIC);
+                raf.writeByte(FORMAT_VERSION);
+            } else if (history.validLength < raf.length()) {
+                // Оборванную при сбое последнюю запись отрезаем, иначе она поглотит новые
+                Log.w(TAG, "Отрезан оборванный хвост " + file.getName());
+                raf.setLength(history.validLength);
+            }
+            raf.seek(raf.length());
+            raf.write(bytes.toByteArray());
+        }
+        GroupCommit.register(new GroupCommit.FileSync(file));
+        return history.versions.size() + 1;
+    }
+
+    static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Не удалось удалить историю " + file.getName());
+        }
+    }
+
+    /**
+     * Количество сохраненных версий
+     */
+    int size() {
+        return versions.size();
+    }
+
+    /**
+     * Описания всех версий от новых к старым
+     * @param itemSequence Последовательность, длина которой показывается как количество элементов версии
+     */
+    List<VersionInfo> list(int itemSequence) {
+        List<VersionInfo> infos = new ArrayList<>();
+        int[][] ids = new int[0][];
+        for (int i = 0; i < versions.size(); i++) {
+            ids = applyVersion(ids, versions.get(i));
+            int items = itemSequence < ids.length ? ids[itemSequence].length : 0;
+            infos.add(new VersionInfo(i + 1, new Date(versions.get(i).savedAt), items));
+        }
+        Collections.reverse(infos);
+        return infos;
+    }
+
+    /**
+     * Последовательности узлов объекта в указанной версии
+     * @param number Номер версии, начиная с 1
+     * @return последовательности или null, если такой версии нет
+     */
+    List<List<byte[]>> sequences(int number) {
+        if (number < 1 || number > versions.size()) {
+            return null;
+        }
+        List<List<byte[]>> sequences = new ArrayList<>();
+        for (int[] ids : ids(number)) {
+            List<byte[]> sequence = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                sequence.add(nodes.get(id));
+            }
+            sequences.add(sequence);
+        }
+        return sequences;
+    }
+
+    /**
+     * Сравнивает две версии. Элементы сопоставляются по общей подпоследовательности узлов,
+     * поэтому вставка в середину списка не считается изменением всех следующих элементов
+     * @param from Номер исходной версии
+     * @param to Номер версии, с которой сравнивается исходная
+     * @param itemSequence Последовательность, элементы которой подсчитываются;
+     * изменения остальных последовательностей отмечаются как изменение параметров
+     * @return разница или null, если одной из версий нет
+     */
+    VersionDiff diff(int from, int to, int itemSequence) {
+        if (from < 1 || from > versions.size() || to < 1 || to > versions.size()) {
+            return null;
+        }
+        int[][] a = ids(from);
+        int[][] b = ids(to);
+        int[] counts = new int[3];
+        boolean metadataChanged = a.length != b.length;
+        for (int s = 0; s < Math.max(a.length, b.length); s++) {
+            int[] before = s < a.length ? a[s] : new int[0];
+            int[] after = s < b.length ? b[s] : new int[0];
+            if (s == itemSequence) {
+                countChanges(before, after, counts);
+            } else if (!Arrays.equals(before, after)) {
+                metadataChanged = true;
+            }
+        }
+        return new VersionDiff(counts[0], counts[1], counts[2], metadataChanged);
+    }
+
+    /**
+     * Раскладывает JSON-представление объекта на последовательности узлов.
+     * Нулевая последовательность — сам объект, в котором указанные списки заменены номерами,
+     * следующие — элементы списков по порядку путей
+     * @param root JSON объекта; изменяется
+     * @param listPaths Пути к спискам через точку, например "result.directionalAngles"
+     */
+    static List<List<byte[]>> split(JsonObject root, String... listPaths) {
+        List<List<byte[]>> sequences = new ArrayList<>();
+        sequences.add(null);
+        for (int i = 0; i < listPaths.length; i++) {
+            List<byte[]> items = new ArrayList<>();
+            String name = lastSegment(listPaths[i]);
+            JsonObject parent = parent(root, listPaths[i]);
+            if (parent != null && parent.get(name) instanceof JsonArray) {
+                for (JsonElement element : parent.getAsJsonArray(name)) {
+                    items.add(element.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                parent.add(name, new JsonPrimitive(i + 1));
+            }
+            sequences.add(items);
+        }
+        sequences.set(0, Collections.singletonList(root.toString().getBytes(StandardCharsets.UTF_8)));
+        return sequences;
+    }
+
+    /**
+     * Собирает JSON-представление объекта из последовательностей узлов, разложенных {@link #split}
+     */
+    static JsonObject join(List<List<byte[]>> sequences, String... listPaths) {
+        JsonObject root = JsonParser.parseString(new String(sequences.get(0).get(0), StandardCharsets.UTF_8))
+                .getAsJsonObject();
+        for (int i = 0; i < listPaths.length; i++) {
+            String name = lastSegment(listPaths[i]);
+            JsonObject parent = parent(root, listPaths[i]);
+            if (parent == null || !(parent.get(name) instanceof JsonPrimitive)) {
+                continue;
+            }
+            JsonArray array = new JsonArray();
+            if (i + 1 < sequences.size()) {
+                for (byte[] node : sequences.get(i + 1)) {
+                    array.add(JsonParser.parseString(new String(node, StandardCharsets.UTF_8)));
+                }
+            }
+            parent.add(name, array);
+        }
+        return root;
+    }
+
+    private static JsonObject parent(JsonObject root, String path) {
+        String[] segments = path.split("\\.");
+        JsonObject parent = root;
+        for (int i = 0; i < segments.length - 1 && parent != null; i++) {
+            JsonElement child = parent.get(segments[i]);
+            parent = child instanceof JsonObject ? (JsonObject) child : null;
+        }
+        return parent;
+    }
+
+    private static String lastSegment(String path) {
+        return path.substring(path.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Находит узел с таким содержимым или дописывает новый в {@code out}
+     */
+    private int nodeId(byte[] node, DataOutputStream out) throws IOException {
+        Integer id = nodeIds.get(ByteBuffer.wrap(node));
+        if (id == null) {
+            id = addNode(node);
+            byte[] entry = new byte[node.length + 1];
+            entry[0] = ENTRY_NODE;
+            System.arraycopy(node, 0, entry, 1, node.length);
+            writeEntry(out, entry);
+        }
+        return id;
+    }
+
+    private int addNode(byte[] node) {
+        int id = nodes.size();
+        nodes.add(node);
+        nodeIds.put(ByteBuffer.wrap(node), id);
+        return id;
+    }
+
+    /**
+     * Применяет прочитанную запись к истории
+     * @return false, если запись не удалось разобрать
+     */
+    private boolean apply(byte[] entry) throws IOException {
+        if (entry[0] == ENTRY_NODE) {
+            addNode(Arrays.copyOfRange(entry, 1, entry.length));
+            return true;
+        }
+        if (entry[0] != ENTRY_VERSION) {
+            return false;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry, 1, entry.length - 1));
+        long savedAt = in.readLong();
+        int count = in.readInt();
+        if (count < 0 || count > entry.length) {
+            return false;
+        }
+        Version version = new Version(savedAt, count);
+        for (int s = 0; s < count; s++) {
+            version.starts[s] = in.readInt();
+            version.removed[s] = in.readInt();
+            int inserted = in.readInt();
+            if (inserted < 0 || inserted > entry.length) {
+                return false;
+            }
+            version.inserted[s] = new int[inserted];
+            for (int i = 0; i < inserted; i++) {
+                int id = in.readInt();
+                if (id < 0 || id >= nodes.size()) {
+                    return false;
+                }
+                version.inserted[s][i] = id;
+            }
+        }
+        versions.add(version);
+        return true;
+    }
+
+    /**
+     * Ссылки на узлы каждой последовательности в версии с указанным номером (0 — пустой объект)
+     */
+    private int[][] ids(int number) {
+        int[][] ids = new int[0][];
+        for (int i = 0; i < number; i++) {
+            ids = applyVersion(ids, versions.get(i));
+        }
+        return ids;
+    }
+
+    private static int[][] applyVersion(int[][] ids, Version version) {
+        int[][] result = new int[version.starts.length][];
+        for (int s = 0; s < result.length; s++) {
+            int[] previous = s < ids.length ? ids[s] : new int[0];
+            int start = Math.min(version.starts[s], previous.length);
+            int end = Math.min(start + version.removed[s], previous.length);
+            int[] inserted = version.inserted[s];
+            int[] next = new int[start + inserted.length + previous.length - end];
+            System.arraycopy(previous, 0, next, 0, start);
+            System.arraycopy(inserted, 0, next, start, inserted.length);
+            System.arraycopy(previous, end, next, start + inserted.length, previous.length - end);
+            result[s] = next;
+        }
+        return result;
+    }
+
+    /**
+     * Подсчитывает добавленные, удаленные и измененные элементы.
+     * Несовпавшие элементы между соседними общими считаются измененными попарно,
+     * оставшиеся — добавленными или удаленными
+     * @param counts Счетчики: добавлено, удалено, изменено
+     */
+    private static void countChanges(int[] before, int[] after, int[] counts) {
+        int prefix = 0;
+        while (prefix < before.length && prefix < after.length && before[prefix] == after[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < before.length - prefix && suffix < after.length - prefix
+                && before[before.length - 1 - suffix] == after[after.length - 1 - suffix]) {
+            suffix++;
+        }
+        int n = before.length - prefix - suffix;
+        int m = after.length - prefix - suffix;
+        if (n == 0 || m == 0 || (long) (n + 1) * (m + 1) > MAX_DIFF_CELLS) {
+            // Слишком длинный отличающийся отрезок сравнивается как одна замена
+            countGap(n, m, counts);
+            return;
+        }
+
+        // Длины общих подпоследовательностей концов отрезков
+        int[] common = new int[(n + 1) * (m + 1)];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = m - 1; j >= 0; j--) {
+                common[i * (m + 1) + j] = before[prefix + i] == after[prefix + j]
+                        ? common[(i + 1) * (m + 1) + j + 1] + 1
+                        : Math.max(common[(i + 1) * (m + 1) + j], common[i * (m + 1) + j + 1]);
+            }
+        }
+        int i = 0;
+        int j = 0;
+        int removedRun = 0;
+        int addedRun = 0;
+        while (i < n && j < m) {
+            if (before[prefix + i] == after[prefix + j]) {
+                countGap(removedRun, addedRun, counts);
+                removedRun = 0;
+                addedRun = 0;
+                i++;
+                j++;
+            } else if (common[(i + 1) * (m + 1) + j] >= common[i * (m + 1) + j + 1]) {
+                removedRun++;
+                i++;
+            } else {
+                addedRun++;
+                j++;
+            }
+        }
+        countGap(removedRun + n - i, addedRun + m - j, counts);
+    }
+
+    private static void countGap(int removed, int added, int[] counts) {
+        int changed = Math.min(removed, added);
+        counts[0] += added - changed;
+        counts[1] += removed - changed;
+        counts[2] += changed;
+    }
+
+    private static void writeEntry(DataOutputStream out, byte[] entry) throws IOException {
+        out.writeInt(entry.length);
+        out.writeInt(checksum(entry));
+        out.write(entry);
+    }
+
+    private static int checksum(byte[] entry) {
+        CRC32 crc = new CRC32();
+        crc.update(entry, 0, entry.length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.javamark.storage;
+
+import java.util.Date;
+
+/**
+ * Краткие сведения о сохраненной версии проекта или журнала для списка истории
+ */
+public final class VersionInfo {
+    private final int number;
+    private final long savedAt;
+    private final int itemCount;
+
+    VersionInfo(int number, Date savedAt, int itemCount) {
+        this.number = number;
+        this.savedAt = savedAt.getTime();
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * Номер версии, начиная с 1
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    public Date getSavedAt() {
+        return new Date(savedAt);
+    }
+
+    /**
+     * Количество пунктов или станций в версии
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public String getFormattedDate() {
+        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("dd.MM.yyyy HH:mm");
+        return sdf.format(new Date(savedAt));
+    }
+}
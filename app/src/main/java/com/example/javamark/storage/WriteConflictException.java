@@ -0,0 +1,36 @@
+package com.example.javamark.storage;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Запись изменена или удалена после того, как сохраняемый объект был прочитан.
+ * Сохранение в этом случае не выполняется, чтобы не затереть чужие изменения;
+ * пользователь может перезаписать запись явно или сохранить объект как новый
+ */
+public class WriteConflictException extends IOException {
+    private final int id;
+
+    public WriteConflictException(int id) {
+        super("Запись " + id + " изменена после чтения");
+        this.id = id;
+    }
+
+    /**
+     * ID записи, на которой обнаружен конфликт
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Проверяет, вызвана ли ошибка асинхронной записи конфликтом версий
+     */
+    public static boolean isConflict(Throwable error) {
+        while (error instanceof CompletionException || error instanceof ExecutionException) {
+            error = error.getCause();
+        }
+        return error instanceof WriteConflictException;
+    }
+}
@@ -16,6 +16,7 @@ import androidx.viewpager2.widget.ViewPager2;
 
 import com.example.javamark.R;
 import com.example.javamark.calculator.GyroscopicCalculator;
+import com.example.javamark.model.AngleParser;
 import com.example.javamark.model.AngleValue;
 import com.example.javamark.model.GyroscopicMeasurement;
 import com.google.android.material.textfield.TextInputEditText;
@@ -119,13 +120,10 @@ public class DirectionFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setKL1(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                // Пока ввод не разбирается как угол, прежнее значение остается
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.KL1, angle);
                 }
             }
         });
@@ -141,13 +139,9 @@ public class DirectionFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setKP1(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.KP1, angle);
                 }
             }
         });
@@ -163,13 +157,9 @@ public class DirectionFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setKL2(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.KL2, angle);
                 }
             }
         });
@@ -185,13 +175,9 @@ public class DirectionFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setKP2(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.KP2, angle);
                 }
             }
         });
@@ -16,7 +16,7 @@ import androidx.viewpager2.widget.ViewPager2;
 
 import com.example.javamark.R;
 import com.example.javamark.calculator.GyroscopicCalculator;
-import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.AngleParser;
 import com.example.javamark.model.GyroscopicMeasurement;
 import com.google.android.material.textfield.TextInputEditText;
 import android.widget.Toast;
@@ -118,13 +118,10 @@ public class EquilibriumFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setN1(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                // Пока ввод не разбирается как угол, прежнее значение остается
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.N1, angle);
                 }
             }
         });
@@ -140,13 +137,9 @@ public class EquilibriumFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setN2(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.N2, angle);
                 }
             }
         });
@@ -162,13 +155,9 @@ public class EquilibriumFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setN3(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.N3, angle);
                 }
             }
         });
@@ -184,13 +173,9 @@ public class EquilibriumFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setN4(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.N4, angle);
                 }
             }
         });
@@ -16,6 +16,7 @@ import androidx.fragment.app.Fragment;
 
 import com.example.javamark.R;
 import com.example.javamark.calculator.GyroscopicCalculator;
+import com.example.javamark.model.AngleFormatter;
 import com.example.javamark.model.AngleValue;
 import com.example.javamark.model.GyroscopicMeasurement;
 import com.example.javamark.storage.GyroscopicMeasurementStorage;
@@ -32,6 +33,8 @@ public class GyroscopicResultsFragment extends Fragment {
     private Button btnCalculate, btnSave, btnShowAllCalculations;
     private GyroscopicCalculator calculator;
     private GyroscopicMeasurementStorage storage;
+    // Запись углов в отчет без String.format
+    private final AngleFormatter angleFormatter = new AngleFormatter(AngleFormatter.Style.DMS, 1);
     private OnMeasurementSavedListener measurementSavedListener;
 
     public interface OnMeasurementSavedListener {
@@ -474,15 +477,26 @@ public class GyroscopicResultsFragment extends Fragment {
 
         measurement.setName(name);
 
-        boolean saved = storage.saveMeasurement(measurement);
-        if (saved) {
-            Toast.makeText(getContext(), "Измерение сохранено", Toast.LENGTH_SHORT).show();
+        GyroscopicMeasurement savedMeasurement = measurement;
+
+        // Сериализация и запись выполняются в потоке записи, результат приходит в главный поток.
+        // Если измерение изменено в другом месте после открытия, пользователь решает, перезаписать ли его
+        WriteConflictDialog.save(requireContext(),
+                () -> storage.saveMeasurementAsync(savedMeasurement),
+                () -> storage.overwriteMeasurementAsync(savedMeasurement),
+                "Измерение сохранено", "Ошибка при сохранении измерения", () -> {
+                    if (measurementSavedListener != null) {
+                        measurementSavedListener.onMeasurementSaved(savedMeasurement);
+                    }
+                });
+    }
 
-            if (measurementSavedListener != null) {
-                measurementSavedListener.onMeasurementSaved(measurement);
-            }
-        } else {
-            Toast.makeText(getContext(), "Ошибка при сохранении измерения", Toast.LENGTH_SHORT).show();
+    /**
+     * Дописывает в отчет подпись и угол измерения, если угол задан
+     */
+    private void appendAngle(StringBuilder out, String label, GyroscopicMeasurement.Angle angle, String suffix) {
+        if (measurement.hasAngle(angle)) {
+            angleFormatter.append(out.append(label), measurement.getAngle(angle)).append(suffix);
         }
     }
 
@@ -510,35 +524,23 @@ public class GyroscopicResultsFragment extends Fragment {
 
         // Раздел 2: Положение равновесия ЧЭ
         allInfo.append("=== 2. ПОЛОЖЕНИЕ РАВНОВЕСИЯ ЧЭ ===\n\n");
-        if (measurement.getN1() != null) allInfo.append("N₁ = ").append(measurement.getN1().toString()).append("\n");
-        if (measurement.getN2() != null) allInfo.append("N₂ = ").append(measurement.getN2().toString()).append("\n");
-        if (measurement.getN3() != null) allInfo.append("N₃ = ").append(measurement.getN3().toString()).append("\n");
-        if (measurement.getN4() != null) allInfo.append("N₄ = ").append(measurement.getN4().toString()).append("\n\n");
-
-        if (measurement.getN0Prime() != null)
-            allInfo.append("N₀' = ").append(measurement.getN0Prime().toString()).append("\n");
-
-        if (measurement.getN0DoublePrime() != null)
-            allInfo.append("N₀'' = ").append(measurement.getN0DoublePrime().toString()).append("\n");
-
-        if (measurement.getN0() != null)
-            allInfo.append("N₀ = ").append(measurement.getN0().toString()).append("\n\n");
+        appendAngle(allInfo, "N₁ = ", GyroscopicMeasurement.Angle.N1, "\n");
+        appendAngle(allInfo, "N₂ = ", GyroscopicMeasurement.Angle.N2, "\n");
+        appendAngle(allInfo, "N₃ = ", GyroscopicMeasurement.Angle.N3, "\n");
+        appendAngle(allInfo, "N₄ = ", GyroscopicMeasurement.Angle.N4, "\n\n");
+        appendAngle(allInfo, "N₀' = ", GyroscopicMeasurement.Angle.N0_PRIME, "\n");
+        appendAngle(allInfo, "N₀'' = ", GyroscopicMeasurement.Angle.N0_DOUBLE_PRIME, "\n");
+        appendAngle(allInfo, "N₀ = ", GyroscopicMeasurement.Angle.N0, "\n\n");
 
         // Раздел 3: Примычное направление
         allInfo.append("=== 3. ПРИМЫЧНОЕ НАПРАВЛЕНИЕ ===\n\n");
-        if (measurement.getKL1() != null) allInfo.append("КЛ₁ = ").append(measurement.getKL1().toString()).append("\n");
-        if (measurement.getKP1() != null) allInfo.append("КП₁ = ").append(measurement.getKP1().toString()).append("\n");
-        if (measurement.getKL2() != null) allInfo.append("КЛ₂ = ").append(measurement.getKL2().toString()).append("\n");
-        if (measurement.getKP2() != null) allInfo.append("КП₂ = ").append(measurement.getKP2().toString()).append("\n\n");
-
-        if (measurement.getNPrime() != null)
-            allInfo.append("N' = ").append(measurement.getNPrime().toString()).append("\n");
-
-        if (measurement.getNDoublePrime() != null)
-            allInfo.append("N'' = ").append(measurement.getNDoublePrime().toString()).append("\n");
-
-        if (measurement.getN() != null)
-            allInfo.append("N = ").append(measurement.getN().toString()).append(" (среднее между N' и N'')\n\n");
+        appendAngle(allInfo, "КЛ₁ = ", GyroscopicMeasurement.Angle.KL1, "\n");
+        appendAngle(allInfo, "КП₁ = ", GyroscopicMeasurement.Angle.KP1, "\n");
+        appendAngle(allInfo, "КЛ₂ = ", GyroscopicMeasurement.Angle.KL2, "\n");
+        appendAngle(allInfo, "КП₂ = ", GyroscopicMeasurement.Angle.KP2, "\n\n");
+        appendAngle(allInfo, "N' = ", GyroscopicMeasurement.Angle.N_PRIME, "\n");
+        appendAngle(allInfo, "N'' = ", GyroscopicMeasurement.Angle.N_DOUBLE_PRIME, "\n");
+        appendAngle(allInfo, "N = ", GyroscopicMeasurement.Angle.N, " (среднее между N' и N'')\n\n");
 
         // Раздел 4: Поправка за закручивание торсиона
         allInfo.append("=== 4. ПОПРАВКА ЗА ЗАКРУЧИВАНИЕ ТОРСИОНА ===\n\n");
@@ -551,7 +553,7 @@ public class GyroscopicResultsFragment extends Fragment {
                 measurement.getN0Value(), measurement.getNkValue(), sign, n0_minus_nk)).append("\n");
 
         if (measurement.getT() != null) {
-            allInfo.append("t = ").append(measurement.getT().toString())
+            angleFormatter.append(allInfo.append("t = "), measurement.getAngle(GyroscopicMeasurement.Angle.T))
                     .append(" (").append(String.format("%.6f", measurement.getT().toDecimalDegrees())).append("°)\n");
         }
 
@@ -564,17 +566,12 @@ public class GyroscopicResultsFragment extends Fragment {
             allInfo.append("ψt = t(n₀-nₖ) = ")
                     .append(String.format("%.6f × %.4f = %s%.6f° = ",
                             measurement.getT().toDecimalDegrees(), (measurement.getN0Value() - measurement.getNkValue()),
-                            psiTSign, Math.abs(psiTValue)))
-                    .append(measurement.getPsiT().toString()).append("\n");
+                            psiTSign, Math.abs(psiTValue)));
+            angleFormatter.append(allInfo, measurement.getAngle(GyroscopicMeasurement.Angle.PSI_T)).append("\n");
         }
-        if (measurement.getNkPrime() != null)
-            allInfo.append("Nₖ' = ").append(measurement.getNkPrime().toString()).append("\n");
-
-        if (measurement.getNkDoublePrime() != null)
-            allInfo.append("Nₖ'' = ").append(measurement.getNkDoublePrime().toString()).append("\n");
-
-        if (measurement.getNk() != null)
-            allInfo.append("Nₖ = ").append(measurement.getNk().toString()).append("\n\n");
+        appendAngle(allInfo, "Nₖ' = ", GyroscopicMeasurement.Angle.NK_PRIME, "\n");
+        appendAngle(allInfo, "Nₖ'' = ", GyroscopicMeasurement.Angle.NK_DOUBLE_PRIME, "\n");
+        appendAngle(allInfo, "Nₖ = ", GyroscopicMeasurement.Angle.NK, "\n\n");
 
         // Вычисление и отображение ψk с правильным знаком
         if (measurement.getPsiK() != null) {
@@ -585,8 +582,8 @@ public class GyroscopicResultsFragment extends Fragment {
 
             allInfo.append("ψk = Nₖ - N₀ = ")
                     .append(String.format("%.4f - %.4f = %s%.4f° = ",
-                            nkValue, n0Value, sign, psiKValue))
-                    .append(measurement.getPsiK().toString()).append("\n");
+                            nkValue, n0Value, sign, psiKValue));
+            angleFormatter.append(allInfo, measurement.getAngle(GyroscopicMeasurement.Angle.PSI_K)).append("\n");
         }
 
         // Сумма ψt + ψk с правильным знаком
@@ -614,8 +611,8 @@ public class GyroscopicResultsFragment extends Fragment {
 
             allInfo.append("ε = (ψt + ψk) / D = ")
                     .append(String.format("%.6f / %.1f = %s%.6f° = ",
-                            sum, D, sign, epsilonValue))
-                    .append(measurement.getEpsilon().toString()).append("\n\n");
+                            sum, D, sign, epsilonValue));
+            angleFormatter.append(allInfo, measurement.getAngle(GyroscopicMeasurement.Angle.EPSILON)).append("\n\n");
         }
 
         // Раздел 5: Результат - гироскопический азимут
@@ -640,7 +637,7 @@ public class GyroscopicResultsFragment extends Fragment {
         }
 
         if (measurement.getGyroscopicAzimuth() != null) {
-            allInfo.append(measurement.getGyroscopicAzimuth().toString()).append("\n");
+            angleFormatter.append(allInfo, measurement.getAngle(GyroscopicMeasurement.Angle.GYROSCOPIC_AZIMUTH)).append("\n");
         }
 
         // Добавляем раздел с проверкой допусков
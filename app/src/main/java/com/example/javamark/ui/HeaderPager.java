@@ -0,0 +1,123 @@
+package com.example.javamark.ui;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.javamark.storage.RecordHeader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Постраничная загрузка заголовков сохраненных записей для списков RecyclerView.
+ * Сначала загружается одна страница, следующие — по мере прокрутки к концу списка,
+ * поэтому время открытия экрана не зависит от количества сохраненных записей
+ */
+public final class HeaderPager {
+    static final int PAGE_SIZE = 50;
+    // Следующая страница подгружается, когда до конца списка остается столько строк
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+
+    /**
+     * Источник страниц заголовков
+     */
+    public interface PageSource {
+        List<RecordHeader> load(int offset, int limit);
+    }
+
+    private final PageSource source;
+    private final List<RecordHeader> headers = new ArrayList<>();
+    private RecyclerView.Adapter<?> adapter;
+    private boolean exhausted;
+    private boolean loadScheduled;
+
+    public HeaderPager(PageSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Загруженные заголовки; список общий с адаптером
+     */
+    public List<RecordHeader> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Подключает адаптер и подгрузку страниц при прокрутке списка
+     */
+    public void attach(RecyclerView recyclerView, RecyclerView.Adapter<?> adapter) {
+        this.adapter = adapter;
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                if (exhausted || loadScheduled || !(view.getLayoutManager() instanceof LinearLayoutManager)) {
+                    return;
+                }
+                int lastVisible = ((LinearLayoutManager) view.getLayoutManager()).findLastVisibleItemPosition();
+                if (lastVisible >= headers.size() - PREFETCH_DISTANCE) {
+                    // Адаптер нельзя изменять во время обработки прокрутки
+                    loadScheduled = true;
+                    view.post(() -> {
+                        loadScheduled = false;
+                        loadNextPage();
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Забывает загруженные строки, например при смене строки поиска:
+     * следующий {@link #reload()} загрузит только первую страницу
+     */
+    public void reset() {
+        headers.clear();
+        exhausted = false;
+    }
+
+    /**
+     * Загружает список заново с начала. Загружается не меньше строк, чем было,
+     * чтобы после удаления или возврата на экран позиция прокрутки сохранялась
+     */
+    public void reload() {
+        int count = Math.max(PAGE_SIZE, headers.size());
+        List<RecordHeader> page = source.load(0, count);
+        headers.clear();
+        headers.addAll(page);
+        exhausted = page.size() < count;
+        if (adapter != null) {
+            adapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Загружает все оставшиеся строки, например чтобы выбрать все записи списка.
+     * Загружаются только заголовки, поэтому это быстро и для тысяч записей
+     */
+    public void loadAll() {
+        if (exhausted) {
+            return;
+        }
+        int start = headers.size();
+        List<RecordHeader> rest = source.load(start, Integer.MAX_VALUE);
+        headers.addAll(rest);
+        exhausted = true;
+        if (adapter != null && !rest.isEmpty()) {
+            adapter.notifyItemRangeInserted(start, rest.size());
+        }
+    }
+
+    private void loadNextPage() {
+        if (exhausted) {
+            return;
+        }
+        int start = headers.size();
+        List<RecordHeader> page = source.load(start, PAGE_SIZE);
+        headers.addAll(page);
+        exhausted = page.size() < PAGE_SIZE;
+        if (adapter != null && !page.isEmpty()) {
+            adapter.notifyItemRangeInserted(start, page.size());
+        }
+    }
+}
@@ -149,17 +149,18 @@ public class ResultsFragment extends Fragment {
     private void saveProject() {
         if (currentProject != null && currentProject.getResult() != null) {
             ProjectStorage storage = new ProjectStorage(getContext());
-            boolean saved = storage.saveProject(currentProject);
-
-            if (saved) {
-                Toast.makeText(getContext(), "Проект сохранен", Toast.LENGTH_SHORT).show();
-
-                if (projectSavedListener != null) {
-                    projectSavedListener.onProjectSaved(currentProject);
-                }
-            } else {
-                Toast.makeText(getContext(), "Ошибка при сохранении проекта", Toast.LENGTH_SHORT).show();
-            }
+            Project project = currentProject;
+
+            // Сериализация и запись выполняются в потоке записи, результат приходит в главный поток.
+            // Если проект изменен в другом месте после открытия, пользователь решает, перезаписать ли его
+            WriteConflictDialog.save(requireContext(),
+                    () -> storage.saveProjectAsync(project),
+                    () -> storage.overwriteProjectAsync(project),
+                    "Проект сохранен", "Ошибка при сохранении проекта", () -> {
+                        if (projectSavedListener != null) {
+                            projectSavedListener.onProjectSaved(project);
+                        }
+                    });
         } else {
             Toast.makeText(getContext(), "Нет данных для сохранения", Toast.LENGTH_SHORT).show();
         }
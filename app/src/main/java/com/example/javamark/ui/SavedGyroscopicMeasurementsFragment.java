@@ -2,10 +2,13 @@ package com.example.javamark.ui.gyroscopic;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -18,8 +21,16 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.javamark.R;
 import com.example.javamark.model.GyroscopicMeasurement;
 import com.example.javamark.storage.GyroscopicMeasurementStorage;
+import com.example.javamark.storage.RecordHeader;
+import com.example.javamark.storage.SortOrder;
+import com.example.javamark.storage.StorageExecutor;
+import com.example.javamark.ui.HeaderPager;
+import com.example.javamark.ui.SelectionMode;
+import com.google.android.material.button.MaterialButtonToggleGroup;
+import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Фрагмент для отображения сохраненных измерений гироскопического ориентирования
@@ -29,6 +40,11 @@ public class SavedGyroscopicMeasurementsFragment extends Fragment {
     private RecyclerView recyclerView;
     private TextView noMeasurementsTextView;
     private MeasurementAdapter adapter;
+    private HeaderPager pager;
+    private SelectionMode selection;
+    private String searchQuery = "";
+    // Показывается архив вместо сохраненных измерений
+    private boolean showArchive;
     private GyroscopicMeasurementStorage storage;
     private OnMeasurementLoadedListener measurementLoadedListener;
 
@@ -68,6 +84,18 @@ public class SavedGyroscopicMeasurementsFragment extends Fragment {
 
         // Настраиваем RecyclerView
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        // Новые записи сверху; следующие страницы подгружаются при прокрутке
+        pager = new HeaderPager(this::loadPage);
+        adapter = new MeasurementAdapter(pager.getHeaders(), measurement -> {
+            if (measurementLoadedListener != null) {
+                measurementLoadedListener.onMeasurementLoaded(measurement);
+            }
+        });
+        recyclerView.setAdapter(adapter);
+        pager.attach(recyclerView, adapter);
+        setupSelection(view.findViewById(R.id.selection_bar));
+        setupSearch(view.findViewById(R.id.et_search_measurements));
+        setupSourceToggle(view.findViewById(R.id.toggle_saved_source));
         loadMeasurements();
 
         return view;
@@ -80,25 +108,104 @@ public class SavedGyroscopicMeasurementsFragment extends Fragment {
     }
 
     /**
-     * Загружает измерения из хранилища и обновляет UI
+     * Страница заголовков сохраненных или архивных измерений.
+     * Пока введена строка поиска, страницы берутся из результатов поиска
+     */
+    private List<RecordHeader> loadPage(int offset, int limit) {
+        if (showArchive) {
+            return searchQuery.isEmpty()
+                    ? storage.queryArchivedMeasurementHeaders(SortOrder.NEWEST_FIRST, offset, limit)
+                    : storage.searchArchivedMeasurementHeaders(searchQuery, offset, limit);
+        }
+        return searchQuery.isEmpty()
+                ? storage.queryMeasurementHeaders(SortOrder.NEWEST_FIRST, offset, limit)
+                : storage.searchMeasurementHeaders(searchQuery, offset, limit);
+    }
+
+    /**
+     * Загружает первую страницу заголовков измерений из хранилища и обновляет UI.
+     * Сами измерения загружаются только при нажатии на кнопку загрузки
      */
     private void loadMeasurements() {
-        List<GyroscopicMeasurement> measurements = storage.getAllMeasurements();
+        pager.reload();
 
-        if (measurements.isEmpty()) {
+        if (pager.getHeaders().isEmpty()) {
+            noMeasurementsTextView.setText(!searchQuery.isEmpty() ? R.string.nothing_found
+                    : showArchive ? R.string.no_archived_records : R.string.no_saved_measurements);
             noMeasurementsTextView.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
             noMeasurementsTextView.setVisibility(View.GONE);
             recyclerView.setVisibility(View.VISIBLE);
+        }
+    }
 
-            adapter = new MeasurementAdapter(measurements, measurement -> {
-                if (measurementLoadedListener != null) {
-                    measurementLoadedListener.onMeasurementLoaded(measurement);
+    /**
+     * Поиск по мере ввода: при каждом изменении строки список загружается заново
+     */
+    private void setupSearch(TextInputEditText searchEditText) {
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                String query = s.toString().trim();
+                if (!query.equals(searchQuery)) {
+                    searchQuery = query;
+                    pager.reset();
+                    loadMeasurements();
                 }
-            });
-            recyclerView.setAdapter(adapter);
-        }
+            }
+        });
+    }
+
+    /**
+     * Выбор нескольких измерений: операции над ними записываются в хранилище одной записью
+     */
+    private void setupSelection(View selectionBar) {
+        selection = new SelectionMode(selectionBar, pager, new SelectionMode.Actions() {
+            @Override
+            public CompletableFuture<Integer> duplicate(List<Integer> ids) {
+                return storage.duplicateMeasurementsAsync(ids, getString(R.string.copy_suffix));
+            }
+
+            @Override
+            public CompletableFuture<Integer> archive(List<Integer> ids) {
+                return storage.archiveMeasurementsAsync(ids);
+            }
+
+            @Override
+            public CompletableFuture<Integer> restore(List<Integer> ids) {
+                return storage.restoreArchivedMeasurementsAsync(ids);
+            }
+
+            @Override
+            public CompletableFuture<Integer> delete(List<Integer> ids, boolean archived) {
+                return archived ? storage.deleteArchivedMeasurementsAsync(ids)
+                        : storage.deleteMeasurementsAsync(ids);
+            }
+        }, this::refreshMeasurements);
+        selection.attach(adapter);
+    }
+
+    /**
+     * Переключение между сохраненными измерениями и архивом
+     */
+    private void setupSourceToggle(MaterialButtonToggleGroup toggle) {
+        toggle.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
+            if (isChecked && showArchive != (checkedId == R.id.btn_show_archive)) {
+                showArchive = checkedId == R.id.btn_show_archive;
+                selection.setArchived(showArchive);
+                pager.reset();
+                loadMeasurements();
+            }
+        });
     }
 
     /**
@@ -115,10 +222,10 @@ public class SavedGyroscopicMeasurementsFragment extends Fragment {
      */
     private class MeasurementAdapter extends RecyclerView.Adapter<MeasurementAdapter.ViewHolder> {
 
-        private final List<GyroscopicMeasurement> measurements;
+        private final List<RecordHeader> measurements;
         private final OnMeasurementClickListener listener;
 
-        MeasurementAdapter(List<GyroscopicMeasurement> measurements, OnMeasurementClickListener listener) {
+        MeasurementAdapter(List<RecordHeader> measurements, OnMeasurementClickListener listener) {
             this.measurements = measurements;
             this.listener = listener;
         }
@@ -133,7 +240,7 @@ public class SavedGyroscopicMeasurementsFragment extends Fragment {
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            GyroscopicMeasurement measurement = measurements.get(position);
+            RecordHeader measurement = measurements.get(position);
             holder.bind(measurement);
         }
 
@@ -148,6 +255,7 @@ public class SavedGyroscopicMeasurementsFragment extends Fragment {
             private final TextView measurementAzimuthTextView;
             private final Button loadButton;
             private final Button deleteButton;
+            private final CheckBox selectCheckBox;
 
             ViewHolder(@NonNull View itemView) {
                 super(itemView);
@@ -156,24 +264,38 @@ public class SavedGyroscopicMeasurementsFragment extends Fragment {
                 measurementAzimuthTextView = itemView.findViewById(R.id.tv_measurement_azimuth);
                 loadButton = itemView.findViewById(R.id.btn_load_measurement);
                 deleteButton = itemView.findViewById(R.id.btn_delete_measurement);
+                selectCheckBox = itemView.findViewById(R.id.cb_select_measurement);
             }
 
-            void bind(GyroscopicMeasurement measurement) {
+            void bind(RecordHeader measurement) {
                 measurementNameTextView.setText(measurement.getName());
                 measurementDateTextView.setText(measurement.getFormattedDate());
+                selection.bind(itemView, selectCheckBox, measurement.getId());
 
-                if (measurement.getGyroscopicAzimuth() != null) {
-                    measurementAzimuthTextView.setText("Азимут: " + measurement.getGyroscopicAzimuth().toString());
+                // Архивное измерение можно только вернуть из архива или удалить через выбор
+                int buttonsVisibility = showArchive ? View.GONE : View.VISIBLE;
+                loadButton.setVisibility(buttonsVisibility);
+                deleteButton.setVisibility(buttonsVisibility);
+
+                if (measurement.getSummary() != null) {
+                    measurementAzimuthTextView.setText("Азимут: " + measurement.getSummary());
                 } else {
                     measurementAzimuthTextView.setText("Азимут не вычислен");
                 }
 
-                loadButton.setOnClickListener(v -> listener.onMeasurementClick(measurement));
+                loadButton.setOnClickListener(v -> {
+                    GyroscopicMeasurement loadedMeasurement = storage.getMeasurementById(measurement.getId());
+                    if (loadedMeasurement != null) {
+                        listener.onMeasurementClick(loadedMeasurement);
+                    }
+                });
 
                 deleteButton.setOnClickListener(v -> {
-                    storage.deleteMeasurement(measurement.getId());
-                    refreshMeasurements();
-                    Toast.makeText(getContext(), "Измерение удалено", Toast.LENGTH_SHORT).show();
+                    Context appContext = requireContext().getApplicationContext();
+                    storage.deleteMeasurementAsync(measurement.getId()).thenRunAsync(() -> {
+                        refreshMeasurements();
+                        Toast.makeText(appContext, "Измерение удалено", Toast.LENGTH_SHORT).show();
+                    }, StorageExecutor.mainThread());
                 });
             }
         }
@@ -2,10 +2,13 @@ package com.example.javamark.ui;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
@@ -17,14 +20,26 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.javamark.R;
 import com.example.javamark.model.Project;
 import com.example.javamark.storage.ProjectStorage;
+import com.example.javamark.storage.RecordHeader;
+import com.example.javamark.storage.SortOrder;
+import com.example.javamark.storage.StorageExecutor;
+import com.example.javamark.storage.VersionDiff;
+import com.google.android.material.button.MaterialButtonToggleGroup;
+import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class SavedProjectsFragment extends Fragment {
 
     private RecyclerView recyclerView;
     private TextView noProjectsTextView;
     private ProjectAdapter adapter;
+    private HeaderPager pager;
+    private SelectionMode selection;
+    private String searchQuery = "";
+    // Показывается архив вместо сохраненных проектов
+    private boolean showArchive;
     private ProjectStorage projectStorage;
     private OnProjectLoadedListener projectLoadedListener;
 
@@ -66,6 +81,18 @@ public class SavedProjectsFragment extends Fragment {
 
         // Настраиваем RecyclerView
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        // Новые записи сверху; следующие страницы подгружаются при прокрутке
+        pager = new HeaderPager(this::loadPage);
+        adapter = new ProjectAdapter(pager.getHeaders(), project -> {
+            if (projectLoadedListener != null) {
+                projectLoadedListener.onProjectLoaded(project);
+            }
+        });
+        recyclerView.setAdapter(adapter);
+        pager.attach(recyclerView, adapter);
+        setupSelection(view.findViewById(R.id.selection_bar));
+        setupSearch(view.findViewById(R.id.et_search_projects));
+        setupSourceToggle(view.findViewById(R.id.toggle_saved_source));
         loadProjects();
 
         return view;
@@ -78,25 +105,104 @@ public class SavedProjectsFragment extends Fragment {
     }
 
     /**
-     * Загружает проекты из хранилища и обновляет UI
+     * Страница заголовков сохраненных или архивных проектов.
+     * Пока введена строка поиска, страницы берутся из результатов поиска
+     */
+    private List<RecordHeader> loadPage(int offset, int limit) {
+        if (showArchive) {
+            return searchQuery.isEmpty()
+                    ? projectStorage.queryArchivedProjectHeaders(SortOrder.NEWEST_FIRST, offset, limit)
+                    : projectStorage.searchArchivedProjectHeaders(searchQuery, offset, limit);
+        }
+        return searchQuery.isEmpty()
+                ? projectStorage.queryProjectHeaders(SortOrder.NEWEST_FIRST, offset, limit)
+                : projectStorage.searchProjectHeaders(searchQuery, offset, limit);
+    }
+
+    /**
+     * Загружает первую страницу заголовков проектов из хранилища и обновляет UI.
+     * Сами проекты загружаются только при нажатии на кнопку загрузки
      */
     private void loadProjects() {
-        List<Project> projects = projectStorage.getAllProjects();
+        pager.reload();
 
-        if (projects.isEmpty()) {
+        if (pager.getHeaders().isEmpty()) {
+            noProjectsTextView.setText(!searchQuery.isEmpty() ? R.string.nothing_found
+                    : showArchive ? R.string.no_archived_records : R.string.no_saved_projects);
             noProjectsTextView.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
             noProjectsTextView.setVisibility(View.GONE);
             recyclerView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Поиск по мере ввода: при каждом изменении строки список загружается заново
+     */
+    private void setupSearch(TextInputEditText searchEditText) {
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
 
-            adapter = new ProjectAdapter(projects, project -> {
-                if (projectLoadedListener != null) {
-                    projectLoadedListener.onProjectLoaded(project);
+            @Override
+            public void afterTextChanged(Editable s) {
+                String query = s.toString().trim();
+                if (!query.equals(searchQuery)) {
+                    searchQuery = query;
+                    pager.reset();
+                    loadProjects();
                 }
-            });
-            recyclerView.setAdapter(adapter);
-        }
+            }
+        });
+    }
+
+    /**
+     * Выбор нескольких проектов: операции над ними записываются в хранилище одной записью
+     */
+    private void setupSelection(View selectionBar) {
+        selection = new SelectionMode(selectionBar, pager, new SelectionMode.Actions() {
+            @Override
+            public CompletableFuture<Integer> duplicate(List<Integer> ids) {
+                return projectStorage.duplicateProjectsAsync(ids, getString(R.string.copy_suffix));
+            }
+
+            @Override
+            public CompletableFuture<Integer> archive(List<Integer> ids) {
+                return projectStorage.archiveProjectsAsync(ids);
+            }
+
+            @Override
+            public CompletableFuture<Integer> restore(List<Integer> ids) {
+                return projectStorage.restoreArchivedProjectsAsync(ids);
+            }
+
+            @Override
+            public CompletableFuture<Integer> delete(List<Integer> ids, boolean archived) {
+                return archived ? projectStorage.deleteArchivedProjectsAsync(ids)
+                        : projectStorage.deleteProjectsAsync(ids);
+            }
+        }, this::refreshProjects);
+        selection.attach(adapter);
+    }
+
+    /**
+     * Переключение между сохраненными проектами и архивом
+     */
+    private void setupSourceToggle(MaterialButtonToggleGroup toggle) {
+        toggle.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
+            if (isChecked && showArchive != (checkedId == R.id.btn_show_archive)) {
+                showArchive = checkedId == R.id.btn_show_archive;
+                selection.setArchived(showArchive);
+                pager.reset();
+                loadProjects();
+            }
+        });
     }
 
     /**
@@ -113,10 +219,10 @@ public class SavedProjectsFragment extends Fragment {
      */
     private class ProjectAdapter extends RecyclerView.Adapter<ProjectAdapter.ViewHolder> {
 
-        private final List<Project> projects;
+        private final List<RecordHeader> projects;
         private final OnProjectClickListener listener;
 
-        ProjectAdapter(List<Project> projects, OnProjectClickListener listener) {
+        ProjectAdapter(List<RecordHeader> projects, OnProjectClickListener listener) {
             this.projects = projects;
             this.listener = listener;
         }
@@ -131,7 +237,7 @@ public class SavedProjectsFragment extends Fragment {
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            Project project = projects.get(position);
+            RecordHeader project = projects.get(position);
             holder.bind(project);
         }
 
@@ -145,6 +251,8 @@ public class SavedProjectsFragment extends Fragment {
             private final TextView projectDateTextView;
             private final Button loadButton;
             private final Button deleteButton;
+            private final Button historyButton;
+            private final CheckBox selectCheckBox;
 
             ViewHolder(@NonNull View itemView) {
                 super(itemView);
@@ -152,18 +260,44 @@ public class SavedProjectsFragment extends Fragment {
                 projectDateTextView = itemView.findViewById(R.id.tv_project_date);
                 loadButton = itemView.findViewById(R.id.btn_load_project);
                 deleteButton = itemView.findViewById(R.id.btn_delete_project);
+                historyButton = itemView.findViewById(R.id.btn_history_project);
+                selectCheckBox = itemView.findViewById(R.id.cb_select_project);
             }
 
-            void bind(Project project) {
+            void bind(RecordHeader project) {
                 projectNameTextView.setText(project.getName());
                 projectDateTextView.setText(project.getFormattedDate());
+                selection.bind(itemView, selectCheckBox, project.getId());
 
-                loadButton.setOnClickListener(v -> listener.onProjectClick(project));
+                // Архивный проект можно только вернуть из архива или удалить через выбор
+                int buttonsVisibility = showArchive ? View.GONE : View.VISIBLE;
+                loadButton.setVisibility(buttonsVisibility);
+                deleteButton.setVisibility(buttonsVisibility);
+                historyButton.setVisibility(buttonsVisibility);
 
-                deleteButton.setOnClickListener(v -> {
-                    projectStorage.deleteProject(project.getId());
-                    refreshProjects();
+                loadButton.setOnClickListener(v -> {
+                    Project loadedProject = projectStorage.getProjectById(project.getId());
+                    if (loadedProject != null) {
+                        listener.onProjectClick(loadedProject);
+                    }
                 });
+
+                deleteButton.setOnClickListener(v -> projectStorage.deleteProjectAsync(project.getId())
+                        .thenRunAsync(SavedProjectsFragment.this::refreshProjects, StorageExecutor.mainThread()));
+
+                historyButton.setOnClickListener(v -> VersionHistoryDialog.show(requireContext(),
+                        projectStorage.getProjectVersions(project.getId()), R.string.version_item_project,
+                        new VersionHistoryDialog.Source() {
+                            @Override
+                            public VersionDiff diff(int from, int to) {
+                                return projectStorage.diffProjectVersions(project.getId(), from, to);
+                            }
+
+                            @Override
+                            public CompletableFuture<Boolean> restore(int number) {
+                                return projectStorage.restoreProjectVersionAsync(project.getId(), number);
+                            }
+                        }, SavedProjectsFragment.this::refreshProjects));
             }
         }
     }
@@ -2,10 +2,13 @@ package com.example.javamark.ui;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -17,9 +20,16 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.javamark.R;
 import com.example.javamark.model.TheodoliteJournal;
+import com.example.javamark.storage.RecordHeader;
+import com.example.javamark.storage.SortOrder;
+import com.example.javamark.storage.StorageExecutor;
 import com.example.javamark.storage.TheodoliteJournalStorage;
+import com.example.javamark.storage.VersionDiff;
+import com.google.android.material.button.MaterialButtonToggleGroup;
+import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Фрагмент для отображения сохраненных журналов теодолитного хода
@@ -39,6 +49,11 @@ public class SavedTheodoliteJournalsFragment extends Fragment {
     private RecyclerView recyclerView;
     private TextView noJournalsTextView;
     private TheodoliteJournalAdapter adapter;
+    private HeaderPager pager;
+    private SelectionMode selection;
+    private String searchQuery = "";
+    // Показывается архив вместо сохраненных журналов
+    private boolean showArchive;
     private TheodoliteJournalStorage storage;
     private OnJournalLoadedListener journalLoadedListener;
 
@@ -77,6 +92,18 @@ public class SavedTheodoliteJournalsFragment extends Fragment {
 
         // Настраиваем RecyclerView
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        // Новые записи сверху; следующие страницы подгружаются при прокрутке
+        pager = new HeaderPager(this::loadPage);
+        adapter = new TheodoliteJournalAdapter(pager.getHeaders(), journal -> {
+            if (journalLoadedListener != null) {
+                journalLoadedListener.onJournalLoaded(journal);
+            }
+        });
+        recyclerView.setAdapter(adapter);
+        pager.attach(recyclerView, adapter);
+        setupSelection(view.findViewById(R.id.selection_bar));
+        setupSearch(view.findViewById(R.id.et_search_journals));
+        setupSourceToggle(view.findViewById(R.id.toggle_saved_source));
         loadJournals();
 
         return view;
@@ -89,25 +116,104 @@ public class SavedTheodoliteJournalsFragment extends Fragment {
     }
 
     /**
-     * Загружает журналы из хранилища и обновляет UI
+     * Страница заголовков сохраненных или архивных журналов.
+     * Пока введена строка поиска, страницы берутся из результатов поиска
+     */
+    private List<RecordHeader> loadPage(int offset, int limit) {
+        if (showArchive) {
+            return searchQuery.isEmpty()
+                    ? storage.queryArchivedJournalHeaders(SortOrder.NEWEST_FIRST, offset, limit)
+                    : storage.searchArchivedJournalHeaders(searchQuery, offset, limit);
+        }
+        return searchQuery.isEmpty()
+                ? storage.queryJournalHeaders(SortOrder.NEWEST_FIRST, offset, limit)
+                : storage.searchJournalHeaders(searchQuery, offset, limit);
+    }
+
+    /**
+     * Загружает первую страницу заголовков журналов из хранилища и обновляет UI.
+     * Сами журналы загружаются только при нажатии на кнопку загрузки
      */
     private void loadJournals() {
-        List<TheodoliteJournal> journals = storage.getAllJournals();
+        pager.reload();
 
-        if (journals.isEmpty()) {
+        if (pager.getHeaders().isEmpty()) {
+            noJournalsTextView.setText(!searchQuery.isEmpty() ? R.string.nothing_found
+                    : showArchive ? R.string.no_archived_records : R.string.no_saved_journals);
             noJournalsTextView.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
             noJournalsTextView.setVisibility(View.GONE);
             recyclerView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Поиск по мере ввода: при каждом изменении строки список загружается заново
+     */
+    private void setupSearch(TextInputEditText searchEditText) {
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
 
-            adapter = new TheodoliteJournalAdapter(journals, journal -> {
-                if (journalLoadedListener != null) {
-                    journalLoadedListener.onJournalLoaded(journal);
+            @Override
+            public void afterTextChanged(Editable s) {
+                String query = s.toString().trim();
+                if (!query.equals(searchQuery)) {
+                    searchQuery = query;
+                    pager.reset();
+                    loadJournals();
                 }
-            });
-            recyclerView.setAdapter(adapter);
-        }
+            }
+        });
+    }
+
+    /**
+     * Выбор нескольких журналов: операции над ними записываются в хранилище одной записью
+     */
+    private void setupSelection(View selectionBar) {
+        selection = new SelectionMode(selectionBar, pager, new SelectionMode.Actions() {
+            @Override
+            public CompletableFuture<Integer> duplicate(List<Integer> ids) {
+                return storage.duplicateJournalsAsync(ids, getString(R.string.copy_suffix));
+            }
+
+            @Override
+            public CompletableFuture<Integer> archive(List<Integer> ids) {
+                return storage.archiveJournalsAsync(ids);
+            }
+
+            @Override
+            public CompletableFuture<Integer> restore(List<Integer> ids) {
+                return storage.restoreArchivedJournalsAsync(ids);
+            }
+
+            @Override
+            public CompletableFuture<Integer> delete(List<Integer> ids, boolean archived) {
+                return archived ? storage.deleteArchivedJournalsAsync(ids)
+                        : storage.deleteJournalsAsync(ids);
+            }
+        }, this::refreshJournals);
+        selection.attach(adapter);
+    }
+
+    /**
+     * Переключение между сохраненными журналами и архивом
+     */
+    private void setupSourceToggle(MaterialButtonToggleGroup toggle) {
+        toggle.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
+            if (isChecked && showArchive != (checkedId == R.id.btn_show_archive)) {
+                showArchive = checkedId == R.id.btn_show_archive;
+                selection.setArchived(showArchive);
+                pager.reset();
+                loadJournals();
+            }
+        });
     }
 
     /**
@@ -124,10 +230,10 @@ public class SavedTheodoliteJournalsFragment extends Fragment {
      */
     private class TheodoliteJournalAdapter extends RecyclerView.Adapter<TheodoliteJournalAdapter.ViewHolder> {
 
-        private final List<TheodoliteJournal> journals;
+        private final List<RecordHeader> journals;
         private final OnJournalClickListener listener;
 
-        TheodoliteJournalAdapter(List<TheodoliteJournal> journals, OnJournalClickListener listener) {
+        TheodoliteJournalAdapter(List<RecordHeader> journals, OnJournalClickListener listener) {
             this.journals = journals;
             this.listener = listener;
         }
@@ -142,7 +248,7 @@ public class SavedTheodoliteJournalsFragment extends Fragment {
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            TheodoliteJournal journal = journals.get(position);
+            RecordHeader journal = journals.get(position);
             holder.bind(journal);
         }
 
@@ -157,6 +263,8 @@ public class SavedTheodoliteJournalsFragment extends Fragment {
             private final TextView journalStationsTextView;
             private final Button loadButton;
             private final Button deleteButton;
+            private final Button historyButton;
+            private final CheckBox selectCheckBox;
 
             ViewHolder(@NonNull View itemView) {
                 super(itemView);
@@ -165,20 +273,50 @@ public class SavedTheodoliteJournalsFragment extends Fragment {
                 journalStationsTextView = itemView.findViewById(R.id.tv_journal_stations);
                 loadButton = itemView.findViewById(R.id.btn_load_journal);
                 deleteButton = itemView.findViewById(R.id.btn_delete_journal);
+                historyButton = itemView.findViewById(R.id.btn_history_journal);
+                selectCheckBox = itemView.findViewById(R.id.cb_select_journal);
             }
 
-            void bind(TheodoliteJournal journal) {
+            void bind(RecordHeader journal) {
                 journalNameTextView.setText(journal.getName());
                 journalDateTextView.setText(journal.getFormattedDate());
-                journalStationsTextView.setText(getString(R.string.stations_count, journal.getMeasurements().size()));
-
-                loadButton.setOnClickListener(v -> listener.onJournalClick(journal));
+                journalStationsTextView.setText(getString(R.string.stations_count, journal.getItemCount()));
+                selection.bind(itemView, selectCheckBox, journal.getId());
+
+                // Архивный журнал можно только вернуть из архива или удалить через выбор
+                int buttonsVisibility = showArchive ? View.GONE : View.VISIBLE;
+                loadButton.setVisibility(buttonsVisibility);
+                deleteButton.setVisibility(buttonsVisibility);
+                historyButton.setVisibility(buttonsVisibility);
+
+                loadButton.setOnClickListener(v -> {
+                    TheodoliteJournal loadedJournal = storage.getJournalById(journal.getId());
+                    if (loadedJournal != null) {
+                        listener.onJournalClick(loadedJournal);
+                    }
+                });
 
                 deleteButton.setOnClickListener(v -> {
-                    storage.deleteJournal(journal.getId());
-                    refreshJournals();
-                    Toast.makeText(getContext(), R.string.journal_deleted, Toast.LENGTH_SHORT).show();
+                    Context appContext = requireContext().getApplicationContext();
+                    storage.deleteJournalAsync(journal.getId()).thenRunAsync(() -> {
+                        refreshJournals();
+                        Toast.makeText(appContext, R.string.journal_deleted, Toast.LENGTH_SHORT).show();
+                    }, StorageExecutor.mainThread());
                 });
+
+                historyButton.setOnClickListener(v -> VersionHistoryDialog.show(requireContext(),
+                        storage.getJournalVersions(journal.getId()), R.string.version_item_journal,
+                        new VersionHistoryDialog.Source() {
+                            @Override
+                            public VersionDiff diff(int from, int to) {
+                                return storage.diffJournalVersions(journal.getId(), from, to);
+                            }
+
+                            @Override
+                            public CompletableFuture<Boolean> restore(int number) {
+                                return storage.restoreJournalVersionAsync(journal.getId(), number);
+                            }
+                        }, SavedTheodoliteJournalsFragment.this::refreshJournals));
             }
         }
     }
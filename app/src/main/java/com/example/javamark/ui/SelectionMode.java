@@ -0,0 +1,177 @@
+package com.example.javamark.ui;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.javamark.R;
+import com.example.javamark.storage.StorageExecutor;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Режим выбора нескольких записей в списках сохраненных записей.
+ * Долгое нажатие на строку включает режим и отмечает строку, после этого нажатие
+ * на строку отмечает ее или снимает отметку. Пока отмечена хоть одна строка,
+ * показывается панель действий ({@code view_selection_bar}): копирование, перенос в архив
+ * (или возврат из архива) и удаление. Каждое действие записывается в хранилище одной записью
+ */
+public final class SelectionMode {
+
+    /**
+     * Операции хранилища над выбранными записями
+     */
+    public interface Actions {
+        CompletableFuture<Integer> duplicate(List<Integer> ids);
+
+        CompletableFuture<Integer> archive(List<Integer> ids);
+
+        CompletableFuture<Integer> restore(List<Integer> ids);
+
+        CompletableFuture<Integer> delete(List<Integer> ids, boolean archived);
+    }
+
+    private final Set<Integer> selected = new LinkedHashSet<>();
+    private final View bar;
+    private final TextView countTextView;
+    private final Button duplicateButton;
+    private final Button archiveButton;
+    private final HeaderPager pager;
+    private final Actions actions;
+    private final Runnable onChanged;
+    private RecyclerView.Adapter<?> adapter;
+    private boolean archived;
+
+    /**
+     * @param bar Панель действий
+     * @param pager Список, записи которого выбираются
+     * @param actions Операции хранилища
+     * @param onChanged Вызывается в главном потоке после выполнения действия, чтобы обновить список
+     */
+    public SelectionMode(View bar, HeaderPager pager, Actions actions, Runnable onChanged) {
+        this.bar = bar;
+        this.pager = pager;
+        this.actions = actions;
+        this.onChanged = onChanged;
+        countTextView = bar.findViewById(R.id.tv_selection_count);
+        duplicateButton = bar.findViewById(R.id.btn_selection_duplicate);
+        archiveButton = bar.findViewById(R.id.btn_selection_archive);
+
+        bar.findViewById(R.id.btn_selection_cancel).setOnClickListener(v -> finish());
+        bar.findViewById(R.id.btn_selection_all).setOnClickListener(v -> {
+            // Загружаются только заголовки, поэтому выбрать можно и тысячи записей
+            pager.loadAll();
+            for (int i = 0; i < pager.getHeaders().size(); i++) {
+                selected.add(pager.getHeaders().get(i).getId());
+            }
+            update();
+        });
+        duplicateButton.setOnClickListener(v ->
+                run(actions.duplicate(getSelectedIds()), R.string.records_duplicated));
+        archiveButton.setOnClickListener(v -> run(archived
+                ? actions.restore(getSelectedIds())
+                : actions.archive(getSelectedIds()), archived ? R.string.records_restored : R.string.records_archived));
+        bar.findViewById(R.id.btn_selection_delete).setOnClickListener(v -> confirmDelete());
+    }
+
+    /**
+     * Подключает адаптер, строки которого обновляются при изменении выбора
+     */
+    public void attach(RecyclerView.Adapter<?> adapter) {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Переключает действия панели между основным списком и архивом. Выбор снимается
+     */
+    public void setArchived(boolean archived) {
+        this.archived = archived;
+        duplicateButton.setVisibility(archived ? View.GONE : View.VISIBLE);
+        archiveButton.setText(archived ? R.string.restore_from_archive : R.string.move_to_archive);
+        finish();
+    }
+
+    public boolean isActive() {
+        return !selected.isEmpty();
+    }
+
+    /**
+     * Настраивает строку списка: флажок выбора виден только в режиме выбора
+     */
+    public void bind(View itemView, CheckBox checkBox, int id) {
+        checkBox.setVisibility(isActive() ? View.VISIBLE : View.GONE);
+        checkBox.setChecked(selected.contains(id));
+        checkBox.setOnClickListener(v -> toggle(id));
+        itemView.setOnLongClickListener(v -> {
+            toggle(id);
+            return true;
+        });
+        itemView.setOnClickListener(v -> {
+            if (isActive()) {
+                toggle(id);
+            }
+        });
+    }
+
+    /**
+     * ID выбранных записей в порядке выбора
+     */
+    public List<Integer> getSelectedIds() {
+        return new ArrayList<>(selected);
+    }
+
+    /**
+     * Снимает все отметки и выходит из режима выбора
+     */
+    public void finish() {
+        selected.clear();
+        update();
+    }
+
+    private void confirmDelete() {
+        List<Integer> ids = getSelectedIds();
+        new MaterialAlertDialogBuilder(bar.getContext())
+                .setMessage(bar.getContext().getString(R.string.delete_selected_confirm, ids.size()))
+                .setPositiveButton(R.string.delete, (dialog, which) ->
+                        run(actions.delete(ids, archived), R.string.records_deleted))
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Выходит из режима выбора и по завершении действия обновляет список
+     */
+    private void run(CompletableFuture<Integer> operation, int messageId) {
+        Context appContext = bar.getContext().getApplicationContext();
+        finish();
+        operation.thenAcceptAsync(count -> {
+            onChanged.run();
+            Toast.makeText(appContext, appContext.getString(messageId, count), Toast.LENGTH_SHORT).show();
+        }, StorageExecutor.mainThread());
+    }
+
+    private void toggle(int id) {
+        if (!selected.remove(id)) {
+            selected.add(id);
+        }
+        update();
+    }
+
+    private void update() {
+        bar.setVisibility(selected.isEmpty() ? View.GONE : View.VISIBLE);
+        countTextView.setText(bar.getContext().getString(R.string.selected_count, selected.size()));
+        if (adapter != null) {
+            adapter.notifyDataSetChanged();
+        }
+    }
+}
@@ -21,21 +21,29 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.javamark.R;
 import com.example.javamark.adapter.TheodoliteMeasurementAdapter;
 import com.example.javamark.calculator.TheodoliteCalculator;
+import com.example.javamark.model.AngleFormatter;
 import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.StationColumns;
 import com.example.javamark.model.StationMeasurement;
 import com.example.javamark.model.TheodoliteJournal;
 import com.example.javamark.storage.TheodoliteJournalStorage;
 import com.google.android.material.button.MaterialButtonToggleGroup;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
-import com.google.gson.Gson;
 
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.List;
 
 public class TheodoliteFragment extends Fragment implements TheodoliteMeasurementAdapter.OnMeasurementChangeListener {
 
     private static final String TAG = "TheodoliteFragment";
-    private static final String ARG_JOURNAL = "journal";
+    private static final String ARG_JOURNAL_ID = "journal_id";
+    // Столбцы углов табличного представления в порядке вывода
+    private static final StationColumns.Angle[] TABLE_ANGLES = {
+            StationColumns.Angle.LEFT_CIRCLE_1, StationColumns.Angle.RIGHT_CIRCLE_1,
+            StationColumns.Angle.LEFT_CIRCLE_2, StationColumns.Angle.RIGHT_CIRCLE_2,
+            StationColumns.Angle.LEFT_DIFFERENCE, StationColumns.Angle.RIGHT_DIFFERENCE,
+            StationColumns.Angle.AVERAGE, StationColumns.Angle.SLOPE};
 
     private RecyclerView recyclerView;
     private TheodoliteMeasurementAdapter adapter;
@@ -67,9 +75,11 @@ public class TheodoliteFragment extends Fragment implements TheodoliteMeasuremen
     public static TheodoliteFragment newInstance(TheodoliteJournal journal) {
         TheodoliteFragment fragment = new TheodoliteFragment();
         Bundle args = new Bundle();
-        // Сериализуем журнал в JSON для передачи через Bundle
-        args.putString(ARG_JOURNAL, new Gson().toJson(journal));
+        // Передаем только ID: при пересоздании фрагмента журнал читается из хранилища,
+        // а измерения подгружаются порциями по мере прокрутки
+        args.putInt(ARG_JOURNAL_ID, journal.getId());
         fragment.setArguments(args);
+        fragment.currentJournal = journal;
         return fragment;
     }
 
@@ -81,17 +91,16 @@ public class TheodoliteFragment extends Fragment implements TheodoliteMeasuremen
         storage = new TheodoliteJournalStorage(getContext());
 
         // Проверка наличия аргументов
-        if (getArguments() != null && getArguments().containsKey(ARG_JOURNAL)) {
-            try {
-                // Десериализация журнала из JSON
-                String journalJson = getArguments().getString(ARG_JOURNAL);
-                currentJournal = new Gson().fromJson(journalJson, TheodoliteJournal.class);
-                Log.d(TAG, "Загружен журнал: " + currentJournal.getName() +
-                        " с " + currentJournal.getMeasurements().size() + " измерениями");
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка при загрузке журнала: " + e.getMessage());
-                currentJournal = new TheodoliteJournal("Новый журнал теодолитного хода");
+        if (currentJournal == null && getArguments() != null && getArguments().containsKey(ARG_JOURNAL_ID)) {
+            // Загрузка журнала из хранилища после пересоздания фрагмента
+            currentJournal = storage.getJournalById(getArguments().getInt(ARG_JOURNAL_ID));
+            if (currentJournal == null) {
+                Log.e(TAG, "Ошибка при загрузке журнала");
             }
+        }
+        if (currentJournal != null) {
+            Log.d(TAG, "Загружен журнал: " + currentJournal.getName() +
+                    " с " + currentJournal.getMeasurements().size() + " измерениями");
         } else {
             // Создание нового журнала, если нет аргументов
             currentJournal = new TheodoliteJournal("Новый журнал теодолитного хода");
@@ -120,7 +129,7 @@ public class TheodoliteFragment extends Fragment implements TheodoliteMeasuremen
         saveButton.setOnClickListener(v -> saveJournal());
 
         // Если журнал был загружен, отображаем сообщение
-        if (getArguments() != null && getArguments().containsKey(ARG_JOURNAL)) {
+        if (getArguments() != null && getArguments().containsKey(ARG_JOURNAL_ID)) {
             Toast.makeText(getContext(), "Журнал \"" + currentJournal.getName() + "\" загружен", Toast.LENGTH_SHORT).show();
         }
 
@@ -226,12 +235,14 @@ public class TheodoliteFragment extends Fragment implements TheodoliteMeasuremen
             String journalName = journalNameTextView.getText().toString();
             if (!journalName.isEmpty()) {
                 currentJournal.setName(journalName);
-                boolean saved = storage.saveJournal(currentJournal);
-                if (saved) {
-                    Toast.makeText(getContext(), R.string.journal_saved, Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(getContext(), R.string.save_error, Toast.LENGTH_SHORT).show();
-                }
+                TheodoliteJournal journal = currentJournal;
+
+                // Сериализация и запись выполняются в потоке записи, результат приходит в главный поток.
+                // Если журнал изменен в другом месте после открытия, пользователь решает, перезаписать ли его
+                WriteConflictDialog.save(requireContext(),
+                        () -> storage.saveJournalAsync(journal),
+                        () -> storage.overwriteJournalAsync(journal),
+                        getString(R.string.journal_saved), getString(R.string.save_error), () -> { });
             } else {
                 Toast.makeText(getContext(), R.string.enter_journal_name, Toast.LENGTH_SHORT).show();
             }
@@ -250,6 +261,10 @@ public class TheodoliteFragment extends Fragment implements TheodoliteMeasuremen
         DecimalFormat df = new DecimalFormat("#0.00");
 
         List<StationMeasurement> measurements = currentJournal.getMeasurements();
+        if (measurements instanceof StationColumns) {
+            updateTableView((StationColumns) measurements, df);
+            return;
+        }
         for (StationMeasurement measurement : measurements) {
             TableRow row = new TableRow(getContext());
 
@@ -325,6 +340,59 @@ public class TheodoliteFragment extends Fragment implements TheodoliteMeasuremen
         }
     }
 
+    /**
+     * Табличное представление журнала, хранящегося по столбцам: углы каждого столбца
+     * записываются одним проходом в общий буфер, ячейки показывают свой участок буфера
+     */
+    private void updateTableView(StationColumns columns, DecimalFormat df) {
+        int rows = columns.size();
+        AngleFormatter formatter = new AngleFormatter(AngleFormatter.Style.DMS, 1);
+        char[] buffer = new char[rows * AngleFormatter.MAX_LENGTH];
+        char[][] texts = new char[TABLE_ANGLES.length][];
+        int[][] ends = new int[TABLE_ANGLES.length][rows];
+        for (int column = 0; column < TABLE_ANGLES.length; column++) {
+            int length = formatter.formatColumn(columns, TABLE_ANGLES[column], "-", buffer, ends[column]);
+            // Ячейки ссылаются на текст столбца, пока таблица показана, поэтому у каждого столбца своя копия
+            texts[column] = Arrays.copyOf(buffer, length);
+        }
+
+        for (int i = 0; i < rows; i++) {
+            if (!columns.hasStation(i)) {
+                continue;
+            }
+            TableRow row = new TableRow(getContext());
+
+            // Номер станции и номера точек
+            row.addView(createTableCell(String.valueOf(columns.getStationNumber(i))));
+            row.addView(createTableCell(columns.getPointNumber1(i) + " → " + columns.getPointNumber2(i)));
+
+            // Длина
+            double distance = columns.getDistance(i);
+            row.addView(createTableCell(distance > 0 ? df.format(distance) : "-"));
+
+            // Отсчеты, разности КЛ и КП, средний угол и угол наклона
+            for (int column = 0; column < TABLE_ANGLES.length; column++) {
+                int start = i > 0 ? ends[column][i - 1] : 0;
+                row.addView(createTableCell(texts[column], start, ends[column][i]));
+            }
+
+            // Горизонтальное проложение
+            double horizontalDistance = columns.getHorizontalDistance(i);
+            row.addView(createTableCell(horizontalDistance > 0 ? df.format(horizontalDistance) : "-"));
+
+            tableContent.addView(row);
+        }
+    }
+
+    /**
+     * Создает ячейку таблицы с участком text[start, end); массив не должен меняться, пока ячейка показана
+     */
+    private TextView createTableCell(char[] text, int start, int end) {
+        TextView textView = createTableCell("");
+        textView.setText(text, start, end - start);
+        return textView;
+    }
+
     /**
      * Создает ячейку таблицы с текстом
      */
@@ -342,6 +410,13 @@ public class TheodoliteFragment extends Fragment implements TheodoliteMeasuremen
         measurement.calculateAngles();
         measurement.calculateHorizontalDistance();
 
+        if (position >= 0 && position < currentJournal.getMeasurements().size()) {
+            // Станция возвращается в журнал; при сохранении запишется только она
+            currentJournal.updateMeasurement(position, measurement);
+            // Длинный журнал читает станции из файла: измененная станция держится в его списке до сохранения
+            storage.updateStation(currentJournal, position, measurement);
+        }
+
         // Если включен режим таблицы, обновляем её
         if (toggleViewMode.getCheckedButtonId() == R.id.btn_table_mode) {
             updateTableView();
@@ -351,7 +426,7 @@ public class TheodoliteFragment extends Fragment implements TheodoliteMeasuremen
     @Override
     public void onMeasurementRemoved(int position) {
         if (position >= 0 && position < currentJournal.getMeasurements().size()) {
-            currentJournal.getMeasurements().remove(position);
+            currentJournal.removeMeasurement(position);
             adapter.notifyItemRemoved(position);
             adapter.notifyItemRangeChanged(position, currentJournal.getMeasurements().size());
 
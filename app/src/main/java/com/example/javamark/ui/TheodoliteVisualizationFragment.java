@@ -18,7 +18,7 @@ import androidx.fragment.app.DialogFragment;
 
 import com.example.javamark.R;
 import com.example.javamark.model.TheodoliteJournal;
-import com.google.gson.Gson;
+import com.example.javamark.storage.JsonCodec;
 
 /**
  * Диалоговый фрагмент для отображения визуализации теодолитного хода
@@ -36,7 +36,7 @@ public class TheodoliteVisualizationFragment extends DialogFragment {
         TheodoliteVisualizationFragment fragment = new TheodoliteVisualizationFragment();
         Bundle args = new Bundle();
         // Сериализуем журнал в JSON для передачи через Bundle
-        args.putString(ARG_JOURNAL, new Gson().toJson(journal));
+        args.putString(ARG_JOURNAL, JsonCodec.gson().toJson(journal));
         fragment.setArguments(args);
         return fragment;
     }
@@ -53,7 +53,7 @@ public class TheodoliteVisualizationFragment extends DialogFragment {
             try {
                 // Десериализация журнала из JSON
                 String journalJson = getArguments().getString(ARG_JOURNAL);
-                journal = new Gson().fromJson(journalJson, TheodoliteJournal.class);
+                journal = JsonCodec.gson().fromJson(journalJson, TheodoliteJournal.class);
             } catch (Exception e) {
                 e.printStackTrace();
                 journal = null;
@@ -13,6 +13,8 @@ import android.util.Log;
 import android.view.View;
 
 import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.Angles;
+import com.example.javamark.model.StationColumns;
 import com.example.javamark.model.StationMeasurement;
 import com.example.javamark.model.TheodoliteJournal;
 
@@ -111,21 +113,33 @@ public class TheodoliteVisualizationView extends View {
         double currentDirection = 0; // в радианах, 0 соответствует направлению вправо
 
         List<StationMeasurement> measurements = journal.getMeasurements();
-        for (StationMeasurement measurement : measurements) {
-            // Получаем горизонтальное проложение (расстояние)
-            float distance = (float) measurement.getHorizontalDistance();
-
-            // Получаем угол между направлениями
-            AngleValue averageAngle = measurement.getAverageAngle();
-            if (averageAngle == null) {
-                // Если угол не рассчитан, пропускаем точку
-                Log.d(TAG, "Пропускаем точку из-за отсутствия среднего угла");
-                continue;
+        // Станции, хранящиеся по столбцам, читаются без создания объектов
+        StationColumns columns = measurements instanceof StationColumns ? (StationColumns) measurements : null;
+        for (int i = 0; i < measurements.size(); i++) {
+            float distance;
+            double angleInRadians;
+            if (columns != null) {
+                if (!columns.hasStation(i) || !columns.hasAngle(i, StationColumns.Angle.AVERAGE)) {
+                    Log.d(TAG, "Пропускаем точку из-за отсутствия среднего угла");
+                    continue;
+                }
+                distance = (float) columns.getHorizontalDistance(i);
+                angleInRadians = Angles.toRadians(columns.getAngle(i, StationColumns.Angle.AVERAGE));
+            } else {
+                StationMeasurement measurement = measurements.get(i);
+                // Получаем угол между направлениями
+                AngleValue averageAngle = measurement != null ? measurement.getAverageAngle() : null;
+                if (averageAngle == null) {
+                    // Если угол не рассчитан, пропускаем точку
+                    Log.d(TAG, "Пропускаем точку из-за отсутствия среднего угла");
+                    continue;
+                }
+                // Получаем горизонтальное проложение (расстояние)
+                distance = (float) measurement.getHorizontalDistance();
+                // Конвертируем угол из градусов в радианы (против часовой стрелки)
+                angleInRadians = Math.toRadians(averageAngle.toDecimalDegrees());
             }
 
-            // Конвертируем угол из градусов в радианы (против часовой стрелки)
-            double angleInRadians = Math.toRadians(averageAngle.toDecimalDegrees());
-
             // Обновляем текущее направление
             currentDirection += angleInRadians;
 
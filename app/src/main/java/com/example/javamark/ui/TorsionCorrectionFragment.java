@@ -17,6 +17,7 @@ import androidx.viewpager2.widget.ViewPager2;
 
 import com.example.javamark.R;
 import com.example.javamark.calculator.GyroscopicCalculator;
+import com.example.javamark.model.AngleParser;
 import com.example.javamark.model.AngleValue;
 import com.example.javamark.model.GyroscopicMeasurement;
 import com.google.android.material.textfield.TextInputEditText;
@@ -160,13 +161,10 @@ public class TorsionCorrectionFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setT(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                // Пока ввод не разбирается как угол, прежнее значение остается
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.T, angle);
                 }
             }
         });
@@ -182,13 +180,9 @@ public class TorsionCorrectionFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setNkPrime(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.NK_PRIME, angle);
                 }
             }
         });
@@ -204,13 +198,9 @@ public class TorsionCorrectionFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable s) {
-                try {
-                    if (!s.toString().isEmpty()) {
-                        AngleValue angle = AngleValue.parseAngle(s.toString());
-                        measurement.setNkDoublePrime(angle);
-                    }
-                } catch (Exception e) {
-                    // Игнорируем ошибку парсинга
+                long angle = AngleParser.parse(s);
+                if (!AngleParser.isError(angle)) {
+                    measurement.setAngle(GyroscopicMeasurement.Angle.NK_DOUBLE_PRIME, angle);
                 }
             }
         });
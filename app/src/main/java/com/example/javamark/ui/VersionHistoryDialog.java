@@ -0,0 +1,94 @@
+package com.example.javamark.ui;
+
+import android.content.Context;
+import android.widget.Toast;
+
+import androidx.annotation.StringRes;
+
+import com.example.javamark.R;
+import com.example.javamark.storage.StorageExecutor;
+import com.example.javamark.storage.VersionDiff;
+import com.example.javamark.storage.VersionInfo;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Диалог истории версий сохраненного проекта или журнала: список версий,
+ * сравнение выбранной версии с текущей и восстановление выбранной версии
+ */
+final class VersionHistoryDialog {
+
+    /**
+     * Операции с историей одного объекта
+     */
+    interface Source {
+        VersionDiff diff(int from, int to);
+
+        CompletableFuture<Boolean> restore(int number);
+    }
+
+    private VersionHistoryDialog() {
+    }
+
+    /**
+     * Показывает список версий от новых к старым
+     * @param itemFormat Строка описания версии: номер, дата и количество элементов
+     * @param onRestored Вызывается в главном потоке после восстановления версии
+     */
+    static void show(Context context, List<VersionInfo> versions, @StringRes int itemFormat,
+                     Source source, Runnable onRestored) {
+        if (versions.isEmpty()) {
+            Toast.makeText(context, R.string.no_versions, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String[] items = new String[versions.size()];
+        for (int i = 0; i < items.length; i++) {
+            VersionInfo version = versions.get(i);
+            items[i] = context.getString(itemFormat, version.getNumber(), version.getFormattedDate(),
+                    version.getItemCount());
+        }
+
+        new MaterialAlertDialogBuilder(context)
+                .setTitle(R.string.version_history)
+                .setItems(items, (dialog, which) ->
+                        showVersion(context, versions.get(which).getNumber(), versions.get(0).getNumber(),
+                                source, onRestored))
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Показывает разницу между выбранной и текущей версиями и предлагает восстановить выбранную
+     */
+    private static void showVersion(Context context, int number, int current, Source source, Runnable onRestored) {
+        MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(context)
+                .setTitle(context.getString(R.string.version_history) + ": " + number);
+
+        VersionDiff diff = number != current ? source.diff(number, current) : null;
+        if (diff == null) {
+            builder.setMessage(R.string.version_current);
+        } else {
+            String message = context.getString(R.string.version_diff,
+                    diff.getAdded(), diff.getChanged(), diff.getRemoved());
+            if (diff.isMetadataChanged()) {
+                message += "\n" + context.getString(R.string.version_metadata_changed);
+            }
+            builder.setMessage(message);
+
+            Context appContext = context.getApplicationContext();
+            builder.setPositiveButton(R.string.restore_version, (dialog, which) ->
+                    source.restore(number).thenAcceptAsync(restored -> {
+                        Toast.makeText(appContext, restored ? R.string.version_restored : R.string.save_error,
+                                Toast.LENGTH_SHORT).show();
+                        if (restored) {
+                            onRestored.run();
+                        }
+                    }, StorageExecutor.mainThread()));
+        }
+
+        builder.setNegativeButton(android.R.string.cancel, null).show();
+    }
+}
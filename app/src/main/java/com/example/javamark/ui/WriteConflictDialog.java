@@ -0,0 +1,54 @@
+package com.example.javamark.ui;
+
+import android.app.Activity;
+import android.content.Context;
+import android.widget.Toast;
+
+import com.example.javamark.R;
+import com.example.javamark.storage.StorageExecutor;
+import com.example.javamark.storage.WriteConflictException;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Сохранение с проверкой версии: если запись изменена или удалена после того,
+ * как была открыта, пользователю предлагается перезаписать ее или отказаться от сохранения
+ */
+final class WriteConflictDialog {
+
+    private WriteConflictDialog() {
+    }
+
+    /**
+     * Выполняет сохранение и показывает его результат
+     * @param save Сохранение с проверкой версии
+     * @param overwrite Сохранение без проверки версии
+     * @param savedMessage Сообщение об успешном сохранении
+     * @param errorMessage Сообщение об ошибке сохранения
+     * @param onSaved Вызывается в главном потоке после сохранения
+     */
+    static void save(Context context, Supplier<CompletableFuture<Boolean>> save,
+                     Supplier<CompletableFuture<Boolean>> overwrite, String savedMessage,
+                     String errorMessage, Runnable onSaved) {
+        Context appContext = context.getApplicationContext();
+        save.get().whenCompleteAsync((saved, error) -> {
+            if (error != null && WriteConflictException.isConflict(error)
+                    && !(context instanceof Activity && ((Activity) context).isFinishing())) {
+                new MaterialAlertDialogBuilder(context)
+                        .setTitle(R.string.write_conflict_title)
+                        .setMessage(R.string.write_conflict_message)
+                        .setPositiveButton(R.string.overwrite, (dialog, which) ->
+                                save(context, overwrite, overwrite, savedMessage, errorMessage, onSaved))
+                        .setNegativeButton(android.R.string.cancel, null)
+                        .show();
+            } else if (error == null && saved) {
+                Toast.makeText(appContext, savedMessage, Toast.LENGTH_SHORT).show();
+                onSaved.run();
+            } else {
+                Toast.makeText(appContext, errorMessage, Toast.LENGTH_SHORT).show();
+            }
+        }, StorageExecutor.mainThread());
+    }
+}
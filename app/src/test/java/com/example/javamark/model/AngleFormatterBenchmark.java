@@ -0,0 +1,89 @@
+package com.example.javamark.model;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Текст угловых столбцов таблицы журнала: прежний String.format на каждую ячейку
+ * против записи столбцов в буфер {@link AngleFormatter}. Результаты выводятся в stdout при запуске unit-тестов
+ */
+public class AngleFormatterBenchmark {
+    private static final int STATIONS = 5_000;
+    private static final int WARMUP = 10;
+    private static final int ROUNDS = 10;
+    private static final StationColumns.Angle[] TABLE_ANGLES = StationColumns.Angle.values();
+
+    @Test
+    public void formatTableColumns() {
+        Random random = new Random(STATIONS);
+        StationColumns columns = new StationColumns(STATIONS);
+        for (int i = 0; i < STATIONS; i++) {
+            StationMeasurement station = new StationMeasurement(i, i, i + 1);
+            station.setDistance(50 + random.nextInt(10000) / 100.0);
+            station.setSlopeAngle(new AngleValue(random.nextInt(11) - 5, random.nextInt(60), random.nextInt(600) / 10.0));
+            station.setLeftCirclePoint1(new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0));
+            station.setRightCirclePoint1(new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0));
+            station.setLeftCirclePoint2(new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0));
+            station.setRightCirclePoint2(new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0));
+            columns.add(station);
+        }
+        columns.calculateAngles();
+
+        AngleFormatter formatter = new AngleFormatter(AngleFormatter.Style.DMS, 1);
+        char[] buffer = new char[STATIONS * AngleFormatter.MAX_LENGTH];
+        int[] ends = new int[STATIONS];
+        for (int i = 0; i < WARMUP; i++) {
+            formatLegacy(columns);
+            formatColumns(columns, formatter, buffer, ends);
+        }
+        long legacyChars = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            legacyChars += formatLegacy(columns);
+        }
+        long legacyTime = (System.nanoTime() - start) / ROUNDS;
+        long chars = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            chars += formatColumns(columns, formatter, buffer, ends);
+        }
+        long columnTime = (System.nanoTime() - start) / ROUNDS;
+
+        System.out.println(String.format(Locale.US,
+                "Текст %d угловых столбцов таблицы из %d станций: String.format %.2f мс, по столбцам %.2f мс (в %.1f раза быстрее)",
+                TABLE_ANGLES.length, STATIONS, legacyTime / 1e6, columnTime / 1e6, (double) legacyTime / columnTime));
+        assertEquals(legacyChars, chars);
+    }
+
+    /**
+     * Прежний путь: строка станции, затем AngleValue.toString через String.format на каждую ячейку
+     */
+    private static long formatLegacy(StationColumns columns) {
+        long chars = 0;
+        for (int row = 0; row < columns.size(); row++) {
+            for (StationColumns.Angle angle : TABLE_ANGLES) {
+                String text = "-";
+                if (columns.hasAngle(row, angle)) {
+                    AngleValue value = AngleValue.fromUnits(columns.getAngle(row, angle));
+                    boolean negative = columns.getAngle(row, angle) < 0;
+                    text = String.format(Locale.US, "%s%d°%d′%.1f″", negative ? "-" : "",
+                            Math.abs(value.getDegrees()), Math.abs(value.getMinutes()), Math.abs(value.getSeconds()));
+                }
+                chars += text.length();
+            }
+        }
+        return chars;
+    }
+
+    private static long formatColumns(StationColumns columns, AngleFormatter formatter, char[] buffer, int[] ends) {
+        long chars = 0;
+        for (StationColumns.Angle angle : TABLE_ANGLES) {
+            chars += formatter.formatColumn(columns, angle, "-", buffer, ends);
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.javamark.model;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Запись углов в градусах, минутах и секундах, десятичных градусах и гонах:
+ * совпадение с прежним String.format, знак, округление и запись столбца журнала
+ */
+public class AngleFormatterTest {
+
+    /**
+     * Прежний AngleValue.toString
+     */
+    private static String legacyDms(AngleValue value) {
+        boolean negative = value.getDegrees() < 0 || (value.getDegrees() == 0 && value.getMinutes() < 0)
+                || (value.getDegrees() == 0 && value.getMinutes() == 0 && value.getSeconds() < 0);
+        return String.format(Locale.US, "%s%d°%d′%.1f″", negative ? "-" : "",
+                Math.abs(value.getDegrees()), Math.abs(value.getMinutes()), Math.abs(value.getSeconds()));
+    }
+
+    @Test
+    public void dmsMatchesLegacyFormat() {
+        Random random = new Random(25);
+        AngleFormatter formatter = new AngleFormatter(AngleFormatter.Style.DMS, 1);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            long angle = random.nextInt((int) (4 * Angles.FULL_CIRCLE)) - 2 * Angles.FULL_CIRCLE;
+            AngleValue value = AngleValue.fromUnits(angle);
+            String expected = legacyDms(value);
+            assertEquals(expected, value.toString());
+            assertEquals(expected, formatter.format(angle));
+            out.setLength(0);
+            assertEquals("= " + expected, formatter.append(out.append("= "), angle).toString());
+        }
+        // Составляющие, заданные без нормализации, выводятся как есть
+        assertEquals(legacyDms(new AngleValue(0, -5, 3.0)), new AngleValue(0, -5, 3.0).toString());
+        assertEquals(legacyDms(new AngleValue(12, 75, 59.96)), new AngleValue(12, 75, 59.96).toString());
+        assertEquals("0°0′0.0″", new AngleValue().toString());
+    }
+
+    @Test
+    public void dmsPrecisionAndSign() {
+        long angle = -Angles.of(123, 59, 59.6);
+        assertEquals("-124°0′0″", new AngleFormatter(AngleFormatter.Style.DMS, 0).format(angle));
+        assertEquals("-123°59′59.600″", new AngleFormatter(AngleFormatter.Style.DMS, 3).format(angle));
+        assertEquals("0°0′0″", new AngleFormatter(AngleFormatter.Style.DMS, 0).format(-4));
+        assertEquals("-0°0′0.4″", new AngleFormatter(AngleFormatter.Style.DMS, 1).format(-4));
+
+        char[] buffer = new char[2 + AngleFormatter.MAX_LENGTH];
+        buffer[0] = '[';
+        int end = new AngleFormatter(AngleFormatter.Style.DMS, 1).format(Angles.of(1, 2, 3.4), buffer, 1);
+        buffer[end++] = ']';
+        assertEquals("[1°2′3.4″]", new String(buffer, 0, end));
+        assertTrue(new AngleFormatter(AngleFormatter.Style.DMS, AngleFormatter.MAX_DECIMALS)
+                .format(-Long.MAX_VALUE).length() <= AngleFormatter.MAX_LENGTH);
+    }
+
+    @Test
+    public void decimalDegreesAndGons() {
+        AngleFormatter degrees = new AngleFormatter(AngleFormatter.Style.DECIMAL_DEGREES, 6);
+        AngleFormatter gons = new AngleFormatter(AngleFormatter.Style.GONS, 4);
+        assertEquals("123.755000°", degrees.format(Angles.of(123, 45, 18)));
+        assertEquals("-0.000028°", degrees.format(-1));
+        assertEquals("0°", new AngleFormatter(AngleFormatter.Style.DECIMAL_DEGREES, 0).format(-Angles.UNITS_PER_DEGREE / 2 + 1));
+        assertEquals("-1°", new AngleFormatter(AngleFormatter.Style.DECIMAL_DEGREES, 0).format(-Angles.UNITS_PER_DEGREE / 2));
+        assertEquals("137.5000g", gons.format(Angles.of(123, 45, 0)));
+        assertEquals("400.0000g", gons.format(Angles.FULL_CIRCLE));
+        assertEquals("-50.0000g", gons.format(-Angles.of(45, 0, 0)));
+        assertEquals("0.0003g", gons.format(10));
+
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            long angle = random.nextInt((int) (2 * Angles.FULL_CIRCLE)) - Angles.FULL_CIRCLE;
+            String text = degrees.format(angle);
+            // Запись читается обратно без потерь: шесть знаков точнее 0,1″
+            assertEquals(text, angle, AngleParser.parse(text));
+        }
+    }
+
+    @Test
+    public void formatsJournalColumn() {
+        StationColumns columns = new StationColumns();
+        StationMeasurement station = new StationMeasurement(1, 0, 2);
+        station.setSlopeAngle(new AngleValue(-1, 30, 0.0));
+        columns.add(station);
+        columns.add(null);
+        StationMeasurement unmeasured = new StationMeasurement(2, 1, 3);
+        unmeasured.setSlopeAngle(null);
+        columns.add(unmeasured);
+        StationMeasurement last = new StationMeasurement(3, 2, 4);
+        last.setSlopeAngle(new AngleValue(0, 0, 5.5));
+        columns.add(last);
+
+        char[] buffer = new char[columns.size() * AngleFormatter.MAX_LENGTH];
+        int[] ends = new int[columns.size()];
+        AngleFormatter formatter = new AngleFormatter(AngleFormatter.Style.DMS, 1);
+        int length = formatter.formatColumn(columns, StationColumns.Angle.SLOPE, "-", buffer, ends);
+
+        assertEquals("-1°30′0.0″--0°0′5.5″", new String(buffer, 0, length));
+        assertEquals(length, ends[3]);
+        assertEquals("-", new String(buffer, ends[0], ends[1] - ends[0]));
+        assertEquals("0°0′5.5″", new String(buffer, ends[2], ends[3] - ends[2]));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.javamark.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Разбор введенных углов: прежний разбор через replace, split и parseInt
+ * против однопроходного {@link AngleParser}. Результаты выводятся в stdout при запуске unit-тестов
+ */
+public class AngleParserBenchmark {
+    private static final int ANGLES = 1000;
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 20;
+
+    // Длина сообщений, которые прежний разбор строил для лога (вместо Log.d, недоступного в unit-тестах)
+    private static long loggedChars;
+
+    private static void log(String message) {
+        loggedChars += message.length();
+    }
+
+    /**
+     * Прежний AngleValue.parseAngle; сообщения для лога строятся, как и раньше, но не выводятся
+     */
+    private static AngleValue legacyParse(String angleString) {
+        log("Парсинг угла: " + angleString);
+        String normalizedString = angleString
+                .replace("°", " ")
+                .replace("′", " ")
+                .replace("″", " ")
+                .replace(":", " ")
+                .replace(",", ".")
+                .trim();
+        String[] parts = normalizedString.split("\\s+");
+        int degrees = Integer.parseInt(parts[0]);
+        int minutes = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        double seconds = parts.length > 2 ? Double.parseDouble(parts[2]) : 0.0;
+        log("Распознано: " + degrees + "° " + minutes + "′ " + seconds + "″");
+        return new AngleValue(degrees, minutes, seconds);
+    }
+
+    @Test
+    public void parseTypedAngles() {
+        // Поле разбирается после каждого нажатия: входные строки — все начала набираемых углов
+        Random random = new Random(ANGLES);
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < ANGLES; i++) {
+            int degrees = random.nextInt(360);
+            int minutes = random.nextInt(60);
+            int tenths = random.nextInt(600);
+            String seconds = tenths / 10 + (random.nextBoolean() ? "." : ",") + tenths % 10;
+            String typed;
+            switch (i % 3) {
+                case 0: typed = degrees + "°" + minutes + "′" + seconds + "″"; break;
+                case 1: typed = degrees + " " + minutes + " " + seconds; break;
+                default: typed = degrees + ":" + minutes + ":" + seconds; break;
+            }
+            for (int length = 1; length <= typed.length(); length++) {
+                inputs.add(typed.substring(0, length));
+            }
+        }
+        String[] keystrokes = inputs.toArray(new String[0]);
+
+        for (int i = 0; i < WARMUP; i++) {
+            parseLegacy(keystrokes);
+            parseSinglePass(keystrokes);
+        }
+        long legacySum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            legacySum += parseLegacy(keystrokes);
+        }
+        long legacyTime = System.nanoTime() - start;
+        long sum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sum += parseSinglePass(keystrokes);
+        }
+        long singlePassTime = System.nanoTime() - start;
+
+        double parses = (double) keystrokes.length * ROUNDS;
+        System.out.println(String.format(Locale.US,
+                "Разбор угла при вводе: прежний %.0f нс, однопроходный %.0f нс (в %.1f раза быстрее)",
+                legacyTime / parses, singlePassTime / parses, (double) legacyTime / singlePassTime));
+        assertEquals(legacySum, sum);
+        assertTrue(loggedChars > 0);
+    }
+
+    private static long parseLegacy(String[] inputs) {
+        long sum = 0;
+        for (String input : inputs) {
+            sum += legacyParse(input).toUnits();
+        }
+        return sum;
+    }
+
+    private static long parseSinglePass(String[] inputs) {
+        long sum = 0;
+        for (String input : inputs) {
+            sum += AngleParser.parse(input);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.javamark.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Разбор углов во всех поддерживаемых форматах, округление до 0,1″ и коды ошибок
+ */
+public class AngleParserTest {
+
+    private static long dms(int degrees, int minutes, int tenthsOfSecond) {
+        return Angles.of(degrees, minutes, tenthsOfSecond / 10.0);
+    }
+
+    private static void assertError(int code, int position, String text) {
+        long result = AngleParser.parse(text);
+        assertTrue(text, AngleParser.isError(result));
+        assertEquals(text, code, AngleParser.errorCode(result));
+        assertEquals(text, position, AngleParser.errorPosition(result));
+    }
+
+    @Test
+    public void parsesDegreesMinutesSeconds() {
+        long expected = dms(123, 45, 78);
+        assertEquals(expected, AngleParser.parse("123°45′07.8″"));
+        assertEquals(expected, AngleParser.parse("123°45'07.8\""));
+        assertEquals(expected, AngleParser.parse("123° 45′ 7,8″"));
+        assertEquals(expected, AngleParser.parse("123 45 7.8"));
+        assertEquals(expected, AngleParser.parse("  123:45:07.8  "));
+        assertEquals(expected, AngleParser.parse("123 : 45 : 7.80"));
+        assertEquals(dms(123, 45, 0), AngleParser.parse("123°45′"));
+        assertEquals(dms(0, 45, 78), AngleParser.parse("45′7.8″"));
+        assertEquals(dms(0, 0, 78), AngleParser.parse("7.8''"));
+        assertEquals(dms(123, 0, 0), AngleParser.parse("123"));
+        // Ввод еще не закончен
+        assertEquals(dms(123, 0, 0), AngleParser.parse("123."));
+        assertEquals(dms(123, 45, 0), AngleParser.parse("123 45 "));
+        assertEquals(dms(123, 45, 0), AngleParser.parse("123:45:"));
+        assertEquals(0, AngleParser.parse("0 0 0"));
+    }
+
+    @Test
+    public void signAppliesToWholeAngle() {
+        assertEquals(-dms(0, 12, 305), AngleParser.parse("-0 12 30.5"));
+        assertEquals(-dms(1, 2, 30), AngleParser.parse("−1°02′03″"));
+        assertEquals(dms(1, 2, 30), AngleParser.parse("+ 1 2 3"));
+        assertEquals("-0°12′30.5″", AngleValue.parseAngle("-0 12 30.5").toString());
+    }
+
+    @Test
+    public void parsesDecimalDegreesAndGons() {
+        assertEquals(dms(123, 45, 180), AngleParser.parse("123.755"));
+        assertEquals(dms(123, 45, 180), AngleParser.parse("123,755°"));
+        assertEquals(dms(45, 0, 0), AngleParser.parse("50g"));
+        assertEquals(dms(90, 0, 0), AngleParser.parse("100gon"));
+        assertEquals(dms(123, 45, 0), AngleParser.parse("137.5ᵍ"));
+        assertEquals(-dms(0, 54, 0), AngleParser.parse("-1g"));
+        // Округление от нуля до 0,1″
+        assertEquals(Angles.fromDecimalDegrees(10.123456789), AngleParser.parse("10.123456789"));
+        assertEquals(-Angles.fromDecimalDegrees(10.123456789), AngleParser.parse("-10.123456789"));
+        assertEquals(dms(0, 0, 1), AngleParser.parse("0 0 0.05"));
+        assertEquals(0, AngleParser.parse("0 0 0.0499"));
+    }
+
+    @Test
+    public void parsesPackedDegrees() {
+        assertEquals(dms(123, 45, 70), AngleParser.parse("123.4507", true));
+        assertEquals(dms(123, 45, 78), AngleParser.parse("123.45078", true));
+        assertEquals(dms(123, 45, 0), AngleParser.parse("123.45", true));
+        assertEquals(dms(123, 50, 0), AngleParser.parse("123.5", true));
+        assertEquals(-dms(0, 5, 0), AngleParser.parse("-0.05", true));
+        // Составляющие и знаки единиц имеют прежний смысл
+        assertEquals(dms(123, 45, 78), AngleParser.parse("123 45 7.8", true));
+        assertEquals(dms(123, 30, 0), AngleParser.parse("123.5°", true));
+        long result = AngleParser.parse("123.7500", true);
+        assertEquals(AngleParser.ERROR_OUT_OF_RANGE, AngleParser.errorCode(result));
+    }
+
+    @Test
+    public void reportsErrorsWithPosition() {
+        assertError(AngleParser.ERROR_EMPTY, 0, "");
+        assertError(AngleParser.ERROR_EMPTY, 3, "   ");
+        assertError(AngleParser.ERROR_EMPTY, 1, "-");
+        assertError(AngleParser.ERROR_EMPTY, 0, ".");
+        assertError(AngleParser.ERROR_UNEXPECTED_CHARACTER, 3, "123x");
+        assertError(AngleParser.ERROR_UNEXPECTED_CHARACTER, 4, "12.5.3");
+        assertError(AngleParser.ERROR_UNEXPECTED_CHARACTER, 3, "12 -30");
+        assertError(AngleParser.ERROR_UNEXPECTED_CHARACTER, 5, "12.5 30");
+        assertError(AngleParser.ERROR_TOO_MANY_COMPONENTS, 6, "1 2 3 4");
+        assertError(AngleParser.ERROR_TOO_MANY_COMPONENTS, 4, "45′ 12°");
+        assertError(AngleParser.ERROR_TOO_MANY_COMPONENTS, 3, "12 5g");
+        assertError(AngleParser.ERROR_TOO_MANY_COMPONENTS, 4, "50g 12");
+        assertError(AngleParser.ERROR_OUT_OF_RANGE, 4, "123 60 00");
+        assertError(AngleParser.ERROR_OUT_OF_RANGE, 7, "123 45 67.8");
+        assertError(AngleParser.ERROR_TOO_LARGE, 0, "1234567890123");
+
+        assertFalse(AngleParser.isError(AngleParser.parse("999999999999")));
+        assertFalse(AngleParser.isError(AngleParser.parse("-999999999999 59 59.9")));
+        assertEquals(0, AngleParser.errorCode(AngleParser.parse("1 2 3")));
+        assertEquals(-1, AngleParser.errorPosition(AngleParser.parse("1 2 3")));
+    }
+
+    @Test
+    public void angleValueWrapperThrows() {
+        assertEquals("123°45′7.8″", AngleValue.parseAngle("123 45 7.8").toString());
+        try {
+            AngleValue.parseAngle("12 abc");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith(AngleParser.errorMessage(AngleParser.ERROR_UNEXPECTED_CHARACTER)));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.javamark.model;
+
+import com.example.javamark.calculator.GyroscopicCalculator;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Целочисленные углы: перевод из градусов, минут и секунд и обратно, округление средних
+ * и приведение к кругу, а также совпадение расчетов на них с прежними расчетами
+ * в десятичных градусах с точностью до 0,1″
+ */
+public class AnglesTest {
+    // Половина единицы округления и запас на погрешность вычислений в double
+    private static final double TOLERANCE = 0.05 / 3600 + 1e-9;
+
+    @Test
+    public void convertsDmsAndKeepsSign() {
+        assertEquals(123 * 36000 + 45 * 600 + 78, Angles.of(123, 45, 7.8));
+        assertEquals(-(5 * 600 + 30), Angles.of(0, -5, 3.0));
+        assertEquals(-25, Angles.of(0, 0, -2.5));
+        assertEquals(Angles.of(-10, 30, 0), -Angles.of(10, 30, 0));
+
+        long angle = -Angles.of(0, 5, 3.0);
+        AngleValue value = AngleValue.fromUnits(angle);
+        assertEquals("-0°5′3.0″", value.toString());
+        assertEquals(angle, value.toUnits());
+        assertEquals(-(5 / 60.0 + 3 / 3600.0), value.toDecimalDegrees(), 1e-12);
+
+        // Секунды, округлившиеся до 60, переходят в минуты и градусы
+        assertEquals("10°0′0.0″", AngleValue.fromDecimalDegrees(9.99999999).toString());
+        assertEquals("-10°0′0.0″", AngleValue.fromDecimalDegrees(-9.99999999).toString());
+    }
+
+    @Test
+    public void roundsHalfAwayFromZero() {
+        assertEquals(2, Angles.mean(1, 2));
+        assertEquals(-2, Angles.mean(-1, -2));
+        assertEquals(1, Angles.divide(5, 4));
+        assertEquals(2, Angles.divide(6, 4));
+        assertEquals(-2, Angles.divide(-6, 4));
+        assertEquals(3, Angles.round(2.5));
+        assertEquals(-3, Angles.round(-2.5));
+        assertEquals(0, Angles.normalize(Angles.FULL_CIRCLE));
+        assertEquals(Angles.FULL_CIRCLE - 1, Angles.normalize(-1));
+        assertEquals(5, Angles.normalize(3 * Angles.FULL_CIRCLE + 5));
+    }
+
+    @Test
+    public void stationAnglesMatchDecimalDegrees() {
+        Random random = new Random(21);
+        for (int i = 0; i < 1000; i++) {
+            StationMeasurement station = new StationMeasurement(i, i, i + 1);
+            station.setLeftCirclePoint1(randomReading(random));
+            station.setLeftCirclePoint2(randomReading(random));
+            station.setRightCirclePoint1(randomReading(random));
+            station.setRightCirclePoint2(randomReading(random));
+            AngleValue average = station.getAverageAngle();
+            station.calculateAngles();
+
+            double kl = Math.abs(station.getLeftCirclePoint2().toDecimalDegrees()
+                    - station.getLeftCirclePoint1().toDecimalDegrees());
+            double kp = 360.0 - Math.abs(station.getRightCirclePoint2().toDecimalDegrees()
+                    - station.getRightCirclePoint1().toDecimalDegrees());
+            assertEquals(kl, station.getAngleLeftDifference().toDecimalDegrees(), TOLERANCE);
+            assertEquals(kp, station.getAngleRightDifference().toDecimalDegrees(), TOLERANCE);
+            assertEquals((kl + kp) / 2, station.getAverageAngle().toDecimalDegrees(), TOLERANCE);
+            // Результат записан в существующий объект
+            assertSame(average, station.getAverageAngle());
+        }
+    }
+
+    @Test
+    public void gyroscopicAzimuthMatchesDecimalDegrees() {
+        Random random = new Random(22);
+        for (int i = 0; i < 1000; i++) {
+            GyroscopicMeasurement m = new GyroscopicMeasurement("g" + i);
+            m.setN1(randomReading(random));
+            m.setN2(randomReading(random));
+            m.setN3(randomReading(random));
+            m.setN4(randomReading(random));
+            m.setKL1(randomReading(random));
+            m.setKP1(randomReading(random));
+            m.setKL2(randomReading(random));
+            m.setKP2(randomReading(random));
+            m.setNkPrime(randomReading(random));
+            m.setNkDoublePrime(randomReading(random));
+            m.setN0(random.nextDouble() * 80);
+            m.setD(0.5 + random.nextDouble());
+            new GyroscopicCalculator(m).calculateAll();
+
+            double n1 = m.getN1().toDecimalDegrees();
+            double n2 = m.getN2().toDecimalDegrees();
+            double n3 = m.getN3().toDecimalDegrees();
+            double n4 = m.getN4().toDecimalDegrees();
+            double n0 = ((n1 + 2 * n2 + n3) / 4 + (n2 + 2 * n3 + n4) / 4) / 2;
+            assertEquals(n0, m.getN0().toDecimalDegrees(), TOLERANCE);
+
+            double nPrime = m.getNPrime().toDecimalDegrees();
+            double nDoublePrime = m.getNDoublePrime().toDecimalDegrees();
+            assertEquals((m.getKL1().toDecimalDegrees() + m.getKP1().toDecimalDegrees()) / 2, nPrime,
+                    TOLERANCE);
+            double n = (nPrime + nDoublePrime) / 2;
+            assertEquals(n, m.getN().toDecimalDegrees(), TOLERANCE);
+
+            double psiT = m.getT().toDecimalDegrees() * (m.getN0Value() - m.getNkValue());
+            double nk = (m.getNkPrime().toDecimalDegrees() + m.getNkDoublePrime().toDecimalDegrees()) / 2;
+            double psiK = nk - m.getN0().toDecimalDegrees();
+            double epsilon = (psiT + psiK) / m.getD();
+            assertEquals(psiT, m.getPsiT().toDecimalDegrees(), TOLERANCE);
+            assertEquals(psiK, m.getPsiK().toDecimalDegrees(), TOLERANCE);
+            assertEquals(epsilon, m.getEpsilon().toDecimalDegrees(), TOLERANCE);
+
+            double azimuth = m.getN().toDecimalDegrees() - m.getN0().toDecimalDegrees()
+                    + m.getEpsilon().toDecimalDegrees();
+            azimuth = ((azimuth % 360) + 360) % 360;
+            assertEquals(azimuth, m.getGyroscopicAzimuth().toDecimalDegrees(), TOLERANCE);
+        }
+    }
+
+    private static AngleValue randomReading(Random random) {
+        return new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.javamark.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Пересчет средних углов и горизонтальных проложений длинного хода:
+ * станции-объекты в списке против станций по столбцам.
+ * Результаты выводятся в stdout при запуске unit-тестов
+ */
+public class StationColumnsBenchmark {
+    private static final int STATIONS = 100_000;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void columnsRecomputeFaster() {
+        Random random = new Random(STATIONS);
+        List<StationMeasurement> objects = new ArrayList<>(STATIONS);
+        StationColumns columns = new StationColumns(STATIONS);
+        for (int i = 0; i < STATIONS; i++) {
+            StationMeasurement station = new StationMeasurement(i, i, i + 1);
+            station.setDistance(50 + random.nextInt(10000) / 100.0);
+            station.setSlopeAngle(new AngleValue(random.nextInt(11) - 5, random.nextInt(60), random.nextInt(600) / 10.0));
+            station.setLeftCirclePoint1(new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0));
+            station.setRightCirclePoint1(new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0));
+            station.setLeftCirclePoint2(new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0));
+            station.setRightCirclePoint2(new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0));
+            columns.add(station);
+            objects.add(columns.get(i));
+        }
+
+        for (int i = 0; i < WARMUP; i++) {
+            recomputeObjects(objects);
+            recomputeColumns(columns);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            recomputeObjects(objects);
+        }
+        long objectTime = (System.nanoTime() - start) / ROUNDS;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            recomputeColumns(columns);
+        }
+        long columnTime = (System.nanoTime() - start) / ROUNDS;
+
+        System.out.println(String.format(Locale.US,
+                "Пересчет хода из %d станций: объекты %.2f мс, столбцы %.2f мс (в %.1f раза быстрее)",
+                STATIONS, objectTime / 1e6, columnTime / 1e6, (double) objectTime / columnTime));
+        assertEquals(objects.get(STATIONS / 2).getAverageAngle().toUnits(),
+                columns.getAngle(STATIONS / 2, StationColumns.Angle.AVERAGE));
+        assertEquals(objects.get(STATIONS / 2).getHorizontalDistance(),
+                columns.getHorizontalDistance(STATIONS / 2), 0);
+    }
+
+    private static void recomputeObjects(List<StationMeasurement> stations) {
+        for (StationMeasurement station : stations) {
+            station.calculateAngles();
+            station.calculateHorizontalDistance();
+        }
+    }
+
+    private static void recomputeColumns(StationColumns columns) {
+        columns.calculateAngles();
+        columns.calculateHorizontalDistances();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.javamark.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Станции по столбцам: операции списка, строки без станций и незаданные углы,
+ * а также совпадение пересчета по столбцам с пересчетом каждой станции
+ */
+public class StationColumnsTest {
+
+    private static StationMeasurement station(int number, Random random) {
+        StationMeasurement station = new StationMeasurement(number, number - 1, number + 1);
+        station.setDistance(random.nextInt(4) == 0 ? 0 : 10 + random.nextInt(20000) / 100.0);
+        station.setSlopeAngle(random.nextInt(5) == 0 ? null
+                : new AngleValue(random.nextInt(21) - 10, random.nextInt(60), random.nextInt(600) / 10.0));
+        station.setLeftCirclePoint1(reading(random));
+        station.setRightCirclePoint1(reading(random));
+        station.setLeftCirclePoint2(reading(random));
+        station.setRightCirclePoint2(reading(random));
+        return station;
+    }
+
+    private static AngleValue reading(Random random) {
+        // Часть отсчетов не введена: нулевые или отрицательные
+        switch (random.nextInt(12)) {
+            case 0: return new AngleValue();
+            case 1: return new AngleValue(0, -5, 3.0);
+            default: return new AngleValue(random.nextInt(360), random.nextInt(60), random.nextInt(600) / 10.0);
+        }
+    }
+
+    private static List<Integer> numbers(List<StationMeasurement> stations) {
+        List<Integer> numbers = new ArrayList<>();
+        for (StationMeasurement station : stations) {
+            numbers.add(station != null ? station.getStationNumber() : null);
+        }
+        return numbers;
+    }
+
+    @Test
+    public void behavesAsList() {
+        Random random = new Random(23);
+        StationColumns columns = new StationColumns(2);
+        for (int i = 1; i <= 5; i++) {
+            columns.add(station(i, random));
+        }
+        columns.add(0, station(10, random));
+        columns.add(3, null);
+        assertEquals(Arrays.asList(10, 1, 2, null, 3, 4, 5), numbers(columns));
+
+        assertEquals(3, columns.remove(4).getStationNumber());
+        assertNull(columns.remove(3));
+        columns.subList(0, 2).clear();
+        assertEquals(Arrays.asList(2, 4, 5), numbers(columns));
+
+        // Строка — копия: изменения видны в списке только после set
+        StationMeasurement copy = columns.get(1);
+        copy.setDistance(77.5);
+        copy.setSlopeAngle(null);
+        assertTrue(columns.getDistance(1) != 77.5);
+        columns.set(1, copy);
+        assertEquals(77.5, columns.getDistance(1), 0);
+        assertFalse(columns.hasAngle(1, StationColumns.Angle.SLOPE));
+        assertNull(columns.get(1).getSlopeAngle());
+
+        StationColumns copied = new StationColumns(columns);
+        copied.set(0, null);
+        assertTrue(columns.hasStation(0));
+        assertFalse(copied.hasStation(0));
+        assertEquals(Arrays.asList(null, 4, 5), numbers(copied));
+    }
+
+    @Test
+    public void bulkKernelsMatchStationCalculations() {
+        Random random = new Random(42);
+        List<StationMeasurement> stations = new ArrayList<>();
+        StationColumns columns = new StationColumns();
+        for (int i = 0; i < 2000; i++) {
+            StationMeasurement station = station(i, random);
+            // Станции с одинаковыми отсчетами в обоих списках; углы станций — с точностью 0,1″
+            columns.add(station);
+            stations.add(columns.get(i));
+        }
+        columns.add(null);
+        columns.calculateAngles();
+        columns.calculateHorizontalDistances();
+
+        for (int i = 0; i < stations.size(); i++) {
+            StationMeasurement expected = stations.get(i);
+            expected.calculateAngles();
+            expected.calculateHorizontalDistance();
+            StationMeasurement actual = columns.get(i);
+            assertEquals(String.valueOf(expected.getAngleLeftDifference()), String.valueOf(actual.getAngleLeftDifference()));
+            assertEquals(String.valueOf(expected.getAngleRightDifference()), String.valueOf(actual.getAngleRightDifference()));
+            assertEquals(String.valueOf(expected.getAverageAngle()), String.valueOf(actual.getAverageAngle()));
+            assertEquals(expected.getHorizontalDistance(), actual.getHorizontalDistance(), 0);
+            assertEquals(expected.getAverageAngle().toUnits(), columns.getAngle(i, StationColumns.Angle.AVERAGE));
+        }
+        assertNull(columns.get(stations.size()));
+    }
+
+    @Test
+    public void journalKeepsEditedCopies() {
+        TheodoliteJournal journal = new TheodoliteJournal("Ход");
+        journal.addMeasurement(new StationMeasurement(1, 0, 2));
+        journal.clearPendingChanges();
+
+        StationMeasurement station = journal.getMeasurements().get(0);
+        station.setDistance(120.0);
+        station.setLeftCirclePoint1(new AngleValue(12, 30, 0.0));
+        journal.updateMeasurement(0, station);
+        journal.updateMeasurement(0, station);
+
+        assertEquals(120.0, journal.getMeasurements().get(0).getDistance(), 0);
+        assertEquals("12°30′0.0″", journal.getMeasurements().get(0).getLeftCirclePoint1().toString());
+        List<TheodoliteJournal.StationChange> changes = journal.drainPendingChanges();
+        assertEquals(1, changes.size());
+        assertSame(station, changes.get(0).getStation());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Сравнение двоичного формата с текущим JSON: время кодирования и чтения
+ * и размер записи. Результаты выводятся в stdout при запуске unit-тестов
+ */
+public class BinaryCodecBenchmark {
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 20000;
+    private static final int JOURNAL_ITERATIONS = 200;
+
+    private final Gson gson = JsonCodec.gson();
+
+    @Test
+    public void gyroscopicMeasurement() throws IOException {
+        GyroscopicMeasurement measurement = BinaryCodecTest.sampleGyroscopic(42);
+        byte[] json = gson.toJson(measurement).getBytes(StandardCharsets.UTF_8);
+        byte[] binary = BinaryCodec.encodeGyroscopic(measurement);
+
+        for (int i = 0; i < WARMUP; i++) {
+            gson.fromJson(new String(gson.toJson(measurement).getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8),
+                    GyroscopicMeasurement.class);
+            BinaryCodec.decodeGyroscopic(BinaryCodec.encodeGyroscopic(measurement));
+        }
+
+        long jsonEncode = time(() -> gson.toJson(measurement).getBytes(StandardCharsets.UTF_8), ITERATIONS);
+        long binaryEncode = time(() -> BinaryCodec.encodeGyroscopic(measurement), ITERATIONS);
+        long jsonDecode = time(() -> gson.fromJson(new String(json, StandardCharsets.UTF_8), GyroscopicMeasurement.class),
+                ITERATIONS);
+        long binaryDecode = time(() -> BinaryCodec.decodeGyroscopic(binary), ITERATIONS);
+
+        report("GyroscopicMeasurement", json.length, binary.length,
+                jsonEncode, binaryEncode, jsonDecode, binaryDecode, ITERATIONS);
+        assertTrue(binary.length < json.length);
+    }
+
+    @Test
+    public void theodoliteJournal() throws IOException {
+        TheodoliteJournal journal = BinaryCodecTest.sampleJournal(1, 500);
+        byte[] json = gson.toJson(journal).getBytes(StandardCharsets.UTF_8);
+        byte[] binary = BinaryCodec.encodeJournal(journal);
+
+        for (int i = 0; i < JOURNAL_ITERATIONS / 4; i++) {
+            gson.fromJson(gson.toJson(journal), TheodoliteJournal.class);
+            BinaryCodec.decodeJournal(BinaryCodec.encodeJournal(journal));
+        }
+
+        long jsonEncode = time(() -> gson.toJson(journal).getBytes(StandardCharsets.UTF_8), JOURNAL_ITERATIONS);
+        long binaryEncode = time(() -> BinaryCodec.encodeJournal(journal), JOURNAL_ITERATIONS);
+        long jsonDecode = time(() -> gson.fromJson(new String(json, StandardCharsets.UTF_8), TheodoliteJournal.class),
+                JOURNAL_ITERATIONS);
+        long binaryDecode = time(() -> BinaryCodec.decodeJournal(binary), JOURNAL_ITERATIONS);
+
+        report("TheodoliteJournal (500 станций)", json.length, binary.length,
+                jsonEncode, binaryEncode, jsonDecode, binaryDecode, JOURNAL_ITERATIONS);
+        assertTrue(binary.length < json.length);
+    }
+
+    private interface Task {
+        Object run() throws IOException;
+    }
+
+    private static long time(Task task, int iterations) throws IOException {
+        Object sink = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertNotNull(sink);
+        return elapsed;
+    }
+
+    private static void report(String name, int jsonBytes, int binaryBytes, long jsonEncode, long binaryEncode,
+                               long jsonDecode, long binaryDecode, int iterations) {
+        System.out.println(String.format(Locale.US,
+                "%s: размер JSON %d Б, двоичный %d Б (%.1fx); кодирование %.2f / %.2f мкс; чтение %.2f / %.2f мкс",
+                name, jsonBytes, binaryBytes, (double) jsonBytes / binaryBytes,
+                jsonEncode / 1000.0 / iterations, binaryEncode / 1000.0 / iterations,
+                jsonDecode / 1000.0 / iterations, binaryDecode / 1000.0 / iterations));
+    }
+}
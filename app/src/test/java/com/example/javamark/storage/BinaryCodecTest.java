@@ -0,0 +1,187 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.StationMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка двоичного формата: результат чтения должен совпадать с тем,
+ * что сейчас сохраняется через Gson
+ */
+public class BinaryCodecTest {
+    private final Gson gson = new Gson();
+
+    static GyroscopicMeasurement sampleGyroscopic(int id) {
+        GyroscopicMeasurement measurement = new GyroscopicMeasurement("Измерение №" + id);
+        measurement.setId(id);
+        measurement.setCreatedAt(new Date(1700000000000L + id * 1000L));
+        measurement.setN1(12.5);
+        measurement.setN2(-3.25);
+        measurement.setN3(7.0);
+        measurement.setN4(0.1);
+        measurement.setN0Prime(4.0875);
+        measurement.setN0DoublePrime(4.1);
+        measurement.setN0(4.09375);
+        measurement.setN1(new AngleValue(123, 45, 12.3));
+        measurement.setN2(new AngleValue(-5, 10, 0.5));
+        measurement.setN3(new AngleValue(359, 59, 59.9));
+        measurement.setN4(new AngleValue(0, 0, 0.1));
+        measurement.setKL1(new AngleValue(10, 20, 30.0));
+        measurement.setKP1(new AngleValue(190, 20, 31.2));
+        measurement.setNk(38.5);
+        measurement.setD(0.97);
+        measurement.setPsiTDirectValue(-1.0 / 3.0);
+        measurement.setGyroscopicAzimuth(new AngleValue(87, 13, 44.4));
+        return measurement;
+    }
+
+    static StationMeasurement sampleStation(int number) {
+        StationMeasurement station = new StationMeasurement(number, number - 1, number + 1);
+        station.setDistance(125.37 + number);
+        station.setSlopeAngle(new AngleValue(-2, 15, 30.0));
+        station.setHorizontalDistance(125.25 + number);
+        station.setLeftCirclePoint1(new AngleValue(0, 0, 12.0));
+        station.setRightCirclePoint1(new AngleValue(180, 0, 15.5));
+        station.setLeftCirclePoint2(new AngleValue(92, 14, 48.3));
+        station.setRightCirclePoint2(new AngleValue(272, 14, 51.1));
+        station.setAngleLeftDifference(new AngleValue(92, 14, 36.3));
+        station.setAngleRightDifference(new AngleValue(267, 45, 24.4));
+        station.setAverageAngle(new AngleValue(180, 0, 0.4));
+        return station;
+    }
+
+    static TheodoliteJournal sampleJournal(int id, int stations) {
+        TheodoliteJournal journal = new TheodoliteJournal("Ход " + id);
+        journal.setId(id);
+        journal.setCreatedAt(new Date(1700000000000L));
+        for (int i = 1; i <= stations; i++) {
+            journal.addMeasurement(sampleStation(i));
+        }
+        return journal;
+    }
+
+    @Test
+    public void gyroscopicRoundTripMatchesGson() throws IOException {
+        GyroscopicMeasurement measurement = sampleGyroscopic(42);
+        String json = gson.toJson(measurement);
+
+        GyroscopicMeasurement decoded = BinaryCodec.decodeGyroscopic(BinaryCodec.encodeGyroscopic(measurement));
+
+        assertEquals(json, gson.toJson(decoded));
+        assertEquals(json, gson.toJson(gson.fromJson(json, GyroscopicMeasurement.class)));
+    }
+
+    @Test
+    public void gyroscopicKeepsExactDate() throws IOException {
+        GyroscopicMeasurement measurement = sampleGyroscopic(1);
+        measurement.setCreatedAt(new Date(1700000000123L));
+
+        GyroscopicMeasurement decoded = BinaryCodec.decodeGyroscopic(BinaryCodec.encodeGyroscopic(measurement));
+
+        assertEquals(1700000000123L, decoded.getCreatedAt().getTime());
+    }
+
+    @Test
+    public void gyroscopicKeepsNullFields() throws IOException {
+        GyroscopicMeasurement measurement = sampleGyroscopic(7);
+        measurement.setName(null);
+        measurement.setCreatedAt(null);
+        measurement.setEpsilon(null);
+        measurement.setGyroscopicAzimuth(null);
+
+        GyroscopicMeasurement decoded = BinaryCodec.decodeGyroscopic(BinaryCodec.encodeGyroscopic(measurement));
+
+        assertNull(decoded.getName());
+        assertNull(decoded.getCreatedAt());
+        assertNull(decoded.getEpsilon());
+        assertNull(decoded.getGyroscopicAzimuth());
+        assertEquals(gson.toJson(measurement), gson.toJson(decoded));
+    }
+
+    @Test
+    public void wideAngleRoundTrip() throws IOException {
+        StationMeasurement station = sampleStation(3);
+        station.setSlopeAngle(new AngleValue(100000, -7, 1.5));
+        station.setAverageAngle(new AngleValue(Short.MIN_VALUE, 300, 59.99));
+
+        StationMeasurement decoded = BinaryCodec.decodeStation(BinaryCodec.encodeStation(station));
+
+        assertEquals(gson.toJson(station), gson.toJson(decoded));
+    }
+
+    @Test
+    public void stationRoundTripMatchesGson() throws IOException {
+        StationMeasurement station = sampleStation(5);
+        String json = gson.toJson(station);
+
+        StationMeasurement decoded = BinaryCodec.decodeStation(BinaryCodec.encodeStation(station));
+
+        assertEquals(json, gson.toJson(decoded));
+    }
+
+    @Test
+    public void journalRoundTripMatchesGson() throws IOException {
+        TheodoliteJournal journal = sampleJournal(9, 50);
+        String json = gson.toJson(journal);
+
+        TheodoliteJournal decoded = BinaryCodec.decodeJournal(BinaryCodec.encodeJournal(journal));
+
+        assertEquals(json, gson.toJson(decoded));
+        assertEquals(50, decoded.getMeasurements().size());
+    }
+
+    @Test
+    public void binaryIsSmallerThanJson() {
+        GyroscopicMeasurement measurement = sampleGyroscopic(42);
+        // Сохраненный JSON измерения пишется адаптером, а не через отражение
+        int jsonSize = JsonCodec.gson().toJson(measurement).getBytes(StandardCharsets.UTF_8).length;
+        int binarySize = BinaryCodec.encodeGyroscopic(measurement).length;
+
+        assertTrue("binary " + binarySize + " vs json " + jsonSize, binarySize * 2 < jsonSize);
+    }
+
+    @Test
+    public void jsonIsNotDetectedAsBinary() {
+        byte[] json = gson.toJson(sampleGyroscopic(1)).getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(BinaryCodec.isBinary(json));
+        assertTrue(BinaryCodec.isBinary(BinaryCodec.encodeGyroscopic(sampleGyroscopic(1))));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNewerVersion() throws IOException {
+        byte[] data = BinaryCodec.encodeGyroscopic(sampleGyroscopic(1));
+        data[1] = (byte) (BinaryCodec.VERSION + 1);
+
+        BinaryCodec.decodeGyroscopic(data);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsWrongType() throws IOException {
+        BinaryCodec.decodeJournal(BinaryCodec.encodeGyroscopic(sampleGyroscopic(1)));
+    }
+
+    @Test
+    public void rejectsTruncatedRecord() {
+        byte[] data = BinaryCodec.encodeGyroscopic(sampleGyroscopic(1));
+        for (int length = 3; length < data.length; length += 7) {
+            try {
+                BinaryCodec.decodeGyroscopic(Arrays.copyOf(data, length));
+                fail("Обрезанная запись длиной " + length + " прочитана без ошибки");
+            } catch (IOException expected) {
+                // ожидаемо
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.javamark.storage;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Место, которое освобождает перенос журналов на холодный уровень, время открытия
+ * основного хранилища до и после переноса и цена чтения журнала с холодного уровня
+ * по сравнению с основным хранилищем. Результаты выводятся в stdout при запуске unit-тестов
+ */
+public class ColdTierBenchmark {
+    private static final int JOURNALS = 400;
+    private static final int STATIONS = 60;
+    private static final int MAX_HOT_RECORDS = 50;
+    private static final int WARMUP = 500;
+    private static final int LOOKUPS = 2_000;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("cold-tier-benchmark").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private RecordStore openHot() {
+        return RecordStore.openFile(dir, "journals", ColdTierBenchmark::header);
+    }
+
+    private RecordStore openCold() {
+        return RecordStore.openFile(dir, "journals_cold", ColdTier.extractor(ColdTierBenchmark::header));
+    }
+
+    private static RecordHeader header(int id, byte[] data) {
+        return new RecordHeader(id, "Ход " + id, new Date(id * 1000L), data.length, STATIONS, null);
+    }
+
+    @Test
+    public void coldTierSavesSpaceAndLoadsOnDemand() throws IOException {
+        Gson gson = JsonCodec.gson();
+        RecordStore hot = openHot();
+        long plainBytes = 0;
+        for (int id = 1; id <= JOURNALS; id++) {
+            byte[] data = gson.toJson(BinaryCodecTest.sampleJournal(id, STATIONS)).getBytes(StandardCharsets.UTF_8);
+            hot.put(id, data, header(id, data));
+            plainBytes += data.length;
+        }
+        hot.sync();
+        hot.close();
+        long openAll = timeOpen();
+
+        hot = openHot();
+        ColdTier tier = new ColdTier(hot, openCold());
+        int demoted = tier.demote(tier.selectCold(System.currentTimeMillis(), Long.MAX_VALUE, MAX_HOT_RECORDS),
+                (id, data) -> data).size();
+        assertEquals(JOURNALS - MAX_HOT_RECORDS, demoted);
+        assertEquals(JOURNALS, tier.getHeaders().size());
+        long coldBytes = new File(dir, "journals_cold.log").length();
+        hot.close();
+        long openHotOnly = timeOpen();
+
+        hot = openHot();
+        tier = new ColdTier(hot, openCold());
+        Random random = new Random(JOURNALS);
+        for (int i = 0; i < WARMUP; i++) {
+            hot.get(JOURNALS - random.nextInt(MAX_HOT_RECORDS));
+            tier.get(1 + random.nextInt(demoted));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertNotNull(hot.get(JOURNALS - random.nextInt(MAX_HOT_RECORDS)));
+        }
+        long hotLoad = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertNotNull(tier.get(1 + random.nextInt(demoted)));
+        }
+        long coldLoad = System.nanoTime() - start;
+
+        long plainColdBytes = plainBytes * demoted / JOURNALS;
+        System.out.println(String.format(Locale.US,
+                "Холодный уровень, %d журналов по %d станций: %d байт вместо %d (%.1f%%)",
+                demoted, STATIONS, coldBytes, plainColdBytes, 100.0 * coldBytes / plainColdBytes));
+        System.out.println(String.format(Locale.US,
+                "Открытие основного хранилища: %d журналов %.2f мс, %d журналов %.2f мс",
+                JOURNALS, openAll / 1e6, MAX_HOT_RECORDS, openHotOnly / 1e6));
+        System.out.println(String.format(Locale.US,
+                "Чтение журнала: основное хранилище %.2f мкс, холодный уровень %.2f мкс",
+                hotLoad / 1000.0 / LOOKUPS, coldLoad / 1000.0 / LOOKUPS));
+        assertTrue(coldBytes < plainColdBytes / 2);
+        hot.close();
+    }
+
+    /**
+     * Время открытия основного хранилища вместе с чтением всех заголовков, как при показе списка
+     */
+    private long timeOpen() throws IOException {
+        long start = System.nanoTime();
+        RecordStore store = openHot();
+        store.queryHeaders(SortOrder.NEWEST_FIRST, 0, 20);
+        long elapsed = System.nanoTime() - start;
+        store.close();
+        return elapsed;
+    }
+}
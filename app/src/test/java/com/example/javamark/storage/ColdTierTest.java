@@ -0,0 +1,173 @@
+package com.example.javamark.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Холодный уровень: выбор записей для переноса по сроку и количеству, сжатие без потерь,
+ * слияние списков и поиска обоих уровней и удаление копий, оставшихся на обоих уровнях после сбоя
+ */
+public class ColdTierTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("cold-tier").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private RecordStore openHot() {
+        return RecordStore.openFile(dir, "hot", ColdTierTest::header);
+    }
+
+    private RecordStore openCold() {
+        return RecordStore.openFile(dir, "hot_cold", ColdTier.extractor(ColdTierTest::header));
+    }
+
+    private static RecordHeader header(int id, byte[] data) {
+        return new RecordHeader(id, "record " + id, new Date(id * 100L), data.length, 0, null);
+    }
+
+    private static void put(RecordStore store, int id) throws IOException {
+        byte[] data = RecordStoreRecoveryTest.payload(id);
+        store.put(id, data, header(id, data));
+    }
+
+    private static List<Integer> ids(List<RecordHeader> headers) {
+        List<Integer> ids = new ArrayList<>();
+        for (RecordHeader header : headers) {
+            ids.add(header.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void compressedRecordsReadBack() throws IOException {
+        byte[] data = RecordStoreRecoveryTest.payload(42);
+        assertArrayEquals(data, ColdTier.decompress(ColdTier.compress(data)));
+        assertArrayEquals(new byte[0], ColdTier.decompress(ColdTier.compress(new byte[0])));
+        try {
+            ColdTier.decompress(Arrays.copyOf(ColdTier.compress(data), 10));
+            fail("Ожидалась ошибка чтения оборванной записи");
+        } catch (IOException expected) {
+            // Оборванная запись не читается как пустая
+        }
+    }
+
+    @Test
+    public void selectsStaleAndExcessRecords() throws Exception {
+        RecordStore hot = openHot();
+        for (int id = 1; id <= 6; id++) {
+            put(hot, id);
+        }
+        ColdTier tier = new ColdTier(hot, openCold());
+        long now = System.currentTimeMillis();
+        long hour = 60 * 60 * 1000L;
+
+        assertTrue(tier.selectCold(now, hour, 10).isEmpty());
+        assertEquals(Arrays.asList(1, 2), tier.selectCold(now, hour, 4));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), tier.selectCold(now + 2 * hour, hour, 10));
+
+        // Измененная запись становится самой свежей, перезапись в другом виде срок не продлевает
+        Thread.sleep(5);
+        put(hot, 1);
+        byte[] data = RecordStoreRecoveryTest.payload(2);
+        assertTrue(hot.rewrite(2, hot.getVersion(2), data, header(2, data)));
+        assertEquals(Arrays.asList(2, 3), tier.selectCold(now, hour, 4));
+    }
+
+    @Test
+    public void listsAndSearchMergeBothTiers() throws IOException {
+        RecordStore hot = openHot();
+        for (int id = 1; id <= 10; id++) {
+            put(hot, id);
+        }
+        ColdTier tier = new ColdTier(hot, openCold());
+        List<Integer> demoted = tier.demote(tier.selectCold(System.currentTimeMillis(), Long.MAX_VALUE, 6),
+                (id, data) -> data);
+        assertEquals(Arrays.asList(1, 2, 3, 4), demoted);
+        assertEquals(6, hot.size());
+        assertEquals(4, tier.size());
+        assertNull(hot.get(2));
+        assertArrayEquals(RecordStoreRecoveryTest.payload(2), tier.get(2));
+
+        assertEquals(Arrays.asList(10, 9, 8, 7), ids(tier.queryHeaders(SortOrder.NEWEST_FIRST, 0, 4)));
+        assertEquals(Arrays.asList(6, 5, 4, 3), ids(tier.queryHeaders(SortOrder.NEWEST_FIRST, 4, 4)));
+        assertEquals(Arrays.asList(2, 1), ids(tier.queryHeaders(SortOrder.NEWEST_FIRST, 8, 4)));
+        assertEquals(Arrays.asList(3, 4, 5), ids(tier.queryHeaders(SortOrder.OLDEST_FIRST, 2, 3)));
+        assertEquals(Collections.singletonList(3), ids(tier.search("3", 0, 10)));
+        assertEquals(10, tier.search("record", 0, 20).size());
+        assertEquals(10, tier.getHeaders().size());
+
+        // Холодный уровень открывается заново со сжатыми записями и теми же заголовками
+        ColdTier reopened = new ColdTier(openHot(), openCold());
+        assertEquals(Arrays.asList(2, 1), ids(reopened.queryHeaders(SortOrder.NEWEST_FIRST, 8, 4)));
+        assertArrayEquals(RecordStoreRecoveryTest.payload(4), reopened.get(4));
+        assertEquals(2, reopened.delete(Arrays.asList(1, 4, 7)));
+        assertEquals(8, reopened.getHeaders().size());
+    }
+
+    @Test
+    public void copiesLeftOnBothTiersAreReconciled() throws IOException {
+        RecordStore hot = openHot();
+        RecordStore cold = openCold();
+        for (int id = 1; id <= 3; id++) {
+            put(hot, id);
+            byte[] data = RecordStoreRecoveryTest.payload(id);
+            // Сбой после записи холодной копии, но до удаления оригинала
+            cold.put(id, ColdTier.compress(data), header(id, data));
+        }
+        hot.delete(3);
+
+        ColdTier tier = new ColdTier(hot, cold);
+        assertEquals(Arrays.asList(3, 2, 1), ids(tier.queryHeaders(SortOrder.NEWEST_FIRST, 0, 10)));
+        assertEquals(1, tier.size());
+        assertTrue(tier.contains(3));
+        assertFalse(tier.contains(1));
+        assertEquals(1, openCold().size());
+    }
+
+    @Test
+    public void overwrittenColdRecordKeepsItsId() throws IOException {
+        RecordStore hot = openHot();
+        for (int id = 1; id <= 3; id++) {
+            put(hot, id);
+        }
+        ColdTier tier = new ColdTier(hot, openCold());
+        assertEquals(Arrays.asList(1, 2), tier.demote(Arrays.asList(1, 2), (id, data) -> data));
+
+        // Запись холодного уровня сохраняется под своим ID, новая получает следующий за всеми
+        assertEquals(2, tier.resolveId(2));
+        assertEquals(3, tier.resolveId(3));
+        assertEquals(4, tier.resolveId(0));
+
+        // Перезапись: новая копия в основном хранилище, холодная удаляется
+        put(hot, 2);
+        hot.sync();
+        assertEquals(1, tier.delete(Collections.singletonList(2)));
+        assertEquals(Arrays.asList(3, 2, 1), ids(tier.queryHeaders(SortOrder.NEWEST_FIRST, 0, 10)));
+        assertEquals(1, tier.size());
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.calculator.GyroscopicCalculator;
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.GyroscopicMeasurement;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Память, которую занимает история гироскопических измерений при прежнем устройстве
+ * (угол — отдельный объект) и при хранении углов в массиве long, а также время чтения
+ * и пересчета всей истории. Результаты выводятся в stdout при запуске unit-тестов
+ */
+public class GyroscopicMeasurementBenchmark {
+    private static final int MEASUREMENTS = 20_000;
+    private static final int WARMUP = 3;
+
+    /**
+     * Прежнее устройство измерения: 22 объекта AngleValue и объект Date на измерение
+     */
+    @SuppressWarnings("unused")
+    private static final class LegacyGyroscopicMeasurement {
+        int id;
+        String name;
+        Date createdAt;
+        long version;
+        double n1Value, n2Value, n3Value, n4Value;
+        double n0PrimeValue, n0DoublePrimeValue, n0Value;
+        AngleValue N1, N2, N3, N4, N0Prime, N0DoublePrime, N0;
+        AngleValue KL1, KP1, KL2, KP2, NPrime, NDoublePrime, N;
+        double nkValue;
+        AngleValue t, NkPrime, NkDoublePrime, Nk, psiT, psiK;
+        double D;
+        AngleValue epsilon;
+        AngleValue gyroscopicAzimuth;
+        double psiTDirectValue;
+
+        LegacyGyroscopicMeasurement(GyroscopicMeasurement m) {
+            id = m.getId();
+            name = m.getName();
+            createdAt = m.getCreatedAt();
+            N1 = m.getN1();
+            N2 = m.getN2();
+            N3 = m.getN3();
+            N4 = m.getN4();
+            N0Prime = m.getN0Prime();
+            N0DoublePrime = m.getN0DoublePrime();
+            N0 = m.getN0();
+            KL1 = m.getKL1();
+            KP1 = m.getKP1();
+            KL2 = m.getKL2();
+            KP2 = m.getKP2();
+            NPrime = m.getNPrime();
+            NDoublePrime = m.getNDoublePrime();
+            N = m.getN();
+            t = m.getT();
+            NkPrime = m.getNkPrime();
+            NkDoublePrime = m.getNkDoublePrime();
+            Nk = m.getNk();
+            psiT = m.getPsiT();
+            psiK = m.getPsiK();
+            epsilon = m.getEpsilon();
+            gyroscopicAzimuth = m.getGyroscopicAzimuth();
+        }
+    }
+
+    private static GyroscopicMeasurement sample(int id) {
+        GyroscopicMeasurement m = BinaryCodecTest.sampleGyroscopic(id);
+        m.setKL2(new AngleValue(10, 20, 29.5));
+        m.setKP2(new AngleValue(190, 20, 30.1));
+        m.setNkPrime(new AngleValue(0, 12, 30.0));
+        m.setNkDoublePrime(new AngleValue(0, 12, 31.4));
+        new GyroscopicCalculator(m).calculateAll();
+        return m;
+    }
+
+    @Test
+    public void primitiveAnglesShrinkHistory() throws IOException {
+        byte[][] records = new byte[MEASUREMENTS][];
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            records[i] = BinaryCodec.encodeGyroscopic(sample(i + 1));
+        }
+
+        long legacyBytes = retainedBytes(() -> {
+            Object[] history = new Object[MEASUREMENTS];
+            for (int i = 0; i < MEASUREMENTS; i++) {
+                history[i] = new LegacyGyroscopicMeasurement(sample(i + 1));
+            }
+            return history;
+        });
+        long primitiveBytes = retainedBytes(() -> {
+            Object[] history = new Object[MEASUREMENTS];
+            for (int i = 0; i < MEASUREMENTS; i++) {
+                history[i] = sample(i + 1);
+            }
+            return history;
+        });
+
+        GyroscopicMeasurement[] history = new GyroscopicMeasurement[MEASUREMENTS];
+        for (int round = 0; round < WARMUP; round++) {
+            decodeAll(records, history);
+        }
+        long start = System.nanoTime();
+        decodeAll(records, history);
+        long load = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (GyroscopicMeasurement m : history) {
+            new GyroscopicCalculator(m).calculateAll();
+        }
+        long calculate = System.nanoTime() - start;
+
+        System.out.println(String.format(Locale.US,
+                "Измерение в памяти: углы-объекты %d байт, углы в массиве %d байт (%.0f%%)",
+                legacyBytes / MEASUREMENTS, primitiveBytes / MEASUREMENTS, 100.0 * primitiveBytes / legacyBytes));
+        System.out.println(String.format(Locale.US,
+                "История из %d измерений: чтение %.1f мс, пересчет %.1f мс",
+                MEASUREMENTS, load / 1e6, calculate / 1e6));
+        assertTrue(primitiveBytes * 2 < legacyBytes);
+    }
+
+    private static void decodeAll(byte[][] records, GyroscopicMeasurement[] history) throws IOException {
+        for (int i = 0; i < records.length; i++) {
+            history[i] = BinaryCodec.decodeGyroscopic(records[i]);
+        }
+    }
+
+    private interface Allocation {
+        Object allocate();
+    }
+
+    /**
+     * Прирост занятой кучи после сборки мусора, пока результат allocation удерживается
+     */
+    private static long retainedBytes(Allocation allocation) {
+        long before = usedMemory();
+        Object retained = allocation.allocate();
+        long after = usedMemory();
+        assertNotNull(retained);
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
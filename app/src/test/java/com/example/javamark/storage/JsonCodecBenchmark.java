@@ -0,0 +1,113 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.Project;
+import com.example.javamark.model.TheodoliteJournal;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Сравнение адаптеров {@link JsonCodec} со стандартными адаптерами Gson на отражении:
+ * время первого чтения новым экземпляром Gson (построение адаптеров) и время
+ * чтения и записи после прогрева. Результаты выводятся в stdout при запуске unit-тестов
+ */
+public class JsonCodecBenchmark {
+    private static final int FIRST_USE_ROUNDS = 200;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    // Записи в формате хранилища. Внутренние поля моделей уже не совпадают с этим форматом,
+    // поэтому Gson на отражении читает записи в своей собственной раскладке
+    private final Samples stored = new Samples(JsonCodec.gson());
+    private final Samples reflectiveLayout = new Samples(new Gson());
+    private final String journalJson = stored.journal;
+
+    private interface GsonFactory {
+        Gson create();
+    }
+
+    private static final class Samples {
+        final String project;
+        final String journal;
+        final String gyroscopic;
+
+        Samples(Gson gson) {
+            project = gson.toJson(JsonCodecTest.sampleProject(1));
+            journal = gson.toJson(BinaryCodecTest.sampleJournal(1, 100));
+            gyroscopic = gson.toJson(BinaryCodecTest.sampleGyroscopic(1));
+        }
+    }
+
+    @Test
+    public void firstUse() {
+        // Прогрев загрузки классов, чтобы измерялось только построение адаптеров
+        firstUse(Gson::new, reflectiveLayout, FIRST_USE_ROUNDS / 4);
+        firstUse(JsonCodec::create, stored, FIRST_USE_ROUNDS / 4);
+
+        long reflective = firstUse(Gson::new, reflectiveLayout, FIRST_USE_ROUNDS);
+        long codec = firstUse(JsonCodec::create, stored, FIRST_USE_ROUNDS);
+
+        System.out.println(String.format(Locale.US,
+                "Первое чтение новым Gson: отражение %.1f мкс, JsonCodec %.1f мкс (%.1fx)",
+                reflective / 1000.0 / FIRST_USE_ROUNDS, codec / 1000.0 / FIRST_USE_ROUNDS, (double) reflective / codec));
+    }
+
+    @Test
+    public void steadyState() {
+        Gson reflective = new Gson();
+        Gson codec = JsonCodec.gson();
+        TheodoliteJournal journal = codec.fromJson(journalJson, TheodoliteJournal.class);
+
+        for (int i = 0; i < WARMUP; i++) {
+            reflective.fromJson(journalJson, TheodoliteJournal.class);
+            codec.fromJson(journalJson, TheodoliteJournal.class);
+            reflective.toJson(journal);
+            codec.toJson(journal);
+        }
+
+        long reflectiveRead = 0;
+        long codecRead = 0;
+        long reflectiveWrite = 0;
+        long codecWrite = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            assertNotNull(reflective.fromJson(journalJson, TheodoliteJournal.class));
+            reflectiveRead += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            assertNotNull(codec.fromJson(journalJson, TheodoliteJournal.class));
+            codecRead += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            assertNotNull(reflective.toJson(journal));
+            reflectiveWrite += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            assertNotNull(codec.toJson(journal));
+            codecWrite += System.nanoTime() - start;
+        }
+
+        System.out.println(String.format(Locale.US,
+                "TheodoliteJournal (100 станций): чтение %.1f / %.1f мкс, запись %.1f / %.1f мкс (отражение / JsonCodec)",
+                reflectiveRead / 1000.0 / ITERATIONS, codecRead / 1000.0 / ITERATIONS,
+                reflectiveWrite / 1000.0 / ITERATIONS, codecWrite / 1000.0 / ITERATIONS));
+    }
+
+    private static long firstUse(GsonFactory factory, Samples samples, int rounds) {
+        long elapsed = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            Gson gson = factory.create();
+            assertNotNull(gson.fromJson(samples.project, Project.class));
+            assertNotNull(gson.fromJson(samples.journal, TheodoliteJournal.class));
+            assertNotNull(gson.fromJson(samples.gyroscopic, GyroscopicMeasurement.class));
+            elapsed += System.nanoTime() - start;
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.CalculationResult;
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.Project;
+import com.example.javamark.model.ReferencePoint;
+import com.example.javamark.model.StationMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка адаптеров {@link JsonCodec}: JSON должен совпадать с тем,
+ * что пишет стандартный Gson через отражение, и читаться обратно без потерь
+ */
+public class JsonCodecTest {
+    private final Gson reflective = new Gson();
+    private final Gson codec = JsonCodec.gson();
+
+    static Project sampleProject(int id) {
+        Project project = new Project("Проект " + id);
+        project.setId(id);
+        project.setCreatedAt(new Date(1700000000000L + id));
+        project.setMaxAllowableError(0.05);
+        project.addReferencePoint(new ReferencePoint(1, "Пункт 1", 5000.25, 7000.5, 45.125));
+        project.addReferencePoint(new ReferencePoint(2, "Пункт 2", 5100.0, 7050.75, 120.0));
+        project.addReferencePoint(new ReferencePoint(3, null, -10.0, 0.0, 300.5));
+
+        CalculationResult result = new CalculationResult();
+        result.addDirectionalAngle(new CalculationResult.DirectionalAngle("1-2", 0.7853981633974483));
+        result.addDirectionalAngle(new CalculationResult.DirectionalAngle("2-3", 2.5));
+        result.setX1(5050.123);
+        result.setY1(7020.456);
+        result.setX2(5050.125);
+        result.setY2(7020.451);
+        result.setDiscrepancyMeters(0.0054);
+        result.setFinalX(5050.124);
+        result.setFinalY(7020.4535);
+        result.setInsideDangerCircle(true);
+        result.setCombinationInfo1("1-2-3");
+        project.setResult(result);
+        return project;
+    }
+
+    @Test
+    public void projectMatchesReflectiveGson() {
+        Project project = sampleProject(7);
+        String json = reflective.toJson(project);
+
+        assertEquals(json, codec.toJson(project));
+        assertEquals(json, codec.toJson(codec.fromJson(json, Project.class)));
+    }
+
+    @Test
+    public void projectWithoutResultMatchesReflectiveGson() {
+        Project project = new Project("Пустой");
+        project.setId(1);
+        project.setReferencePoints(null);
+        String json = reflective.toJson(project);
+
+        assertEquals(json, codec.toJson(project));
+        Project decoded = codec.fromJson(json, Project.class);
+        assertEquals(reflective.toJson(reflective.fromJson(json, Project.class)), codec.toJson(decoded));
+        assertNull(decoded.getResult());
+    }
+
+    @Test
+    public void journalMatchesReflectiveGson() {
+        TheodoliteJournal journal = BinaryCodecTest.sampleJournal(3, 25);
+        journal.getMeasurements().get(4).setSlopeAngle(null);
+        String json = reflective.toJson(journal);
+
+        assertEquals(json, codec.toJson(journal));
+        TheodoliteJournal decoded = codec.fromJson(json, TheodoliteJournal.class);
+        // Пропущенный угол, как и при чтении через отражение, получает значение из конструктора
+        assertEquals(reflective.toJson(reflective.fromJson(json, TheodoliteJournal.class)), codec.toJson(decoded));
+        // Прочитанный журнал не содержит несохраненных изменений
+        assertTrue(decoded.drainPendingChanges().isEmpty());
+    }
+
+    /**
+     * Прежнее устройство измерения: углы в отдельных объектах. JSON измерения
+     * должен совпадать с тем, что Gson через отражение писал для такого класса
+     */
+    @SuppressWarnings("unused")
+    private static final class LegacyGyroscopicMeasurement {
+        int id;
+        String name;
+        Date createdAt;
+        double n1Value, n2Value, n3Value, n4Value;
+        double n0PrimeValue, n0DoublePrimeValue, n0Value;
+        AngleValue N1, N2, N3, N4, N0Prime, N0DoublePrime, N0;
+        AngleValue KL1, KP1, KL2, KP2, NPrime, NDoublePrime, N;
+        double nkValue;
+        AngleValue t, NkPrime, NkDoublePrime, Nk, psiT, psiK;
+        double D;
+        AngleValue epsilon;
+        AngleValue gyroscopicAzimuth;
+        double psiTDirectValue;
+
+        LegacyGyroscopicMeasurement(GyroscopicMeasurement m) {
+            id = m.getId();
+            name = m.getName();
+            createdAt = m.getCreatedAt();
+            n1Value = m.getN1Value();
+            n2Value = m.getN2Value();
+            n3Value = m.getN3Value();
+            n4Value = m.getN4Value();
+            n0PrimeValue = m.getN0PrimeValue();
+            n0DoublePrimeValue = m.getN0DoublePrimeValue();
+            n0Value = m.getN0Value();
+            N1 = m.getN1();
+            N2 = m.getN2();
+            N3 = m.getN3();
+            N4 = m.getN4();
+            N0Prime = m.getN0Prime();
+            N0DoublePrime = m.getN0DoublePrime();
+            N0 = m.getN0();
+            KL1 = m.getKL1();
+            KP1 = m.getKP1();
+            KL2 = m.getKL2();
+            KP2 = m.getKP2();
+            NPrime = m.getNPrime();
+            NDoublePrime = m.getNDoublePrime();
+            N = m.getN();
+            nkValue = m.getNkValue();
+            t = m.getT();
+            NkPrime = m.getNkPrime();
+            NkDoublePrime = m.getNkDoublePrime();
+            Nk = m.getNk();
+            psiT = m.getPsiT();
+            psiK = m.getPsiK();
+            D = m.getD();
+            epsilon = m.getEpsilon();
+            gyroscopicAzimuth = m.getGyroscopicAzimuth();
+            psiTDirectValue = m.getPsiTDirectValue();
+        }
+    }
+
+    @Test
+    public void gyroscopicMatchesReflectiveGson() {
+        GyroscopicMeasurement measurement = BinaryCodecTest.sampleGyroscopic(42);
+        measurement.setEpsilon(null);
+        String json = reflective.toJson(new LegacyGyroscopicMeasurement(measurement));
+
+        assertEquals(json, codec.toJson(measurement));
+        // Пропущенный угол, как и при чтении через отражение, получает значение из конструктора
+        GyroscopicMeasurement decoded = codec.fromJson(json, GyroscopicMeasurement.class);
+        assertEquals("0°0′0.0″", decoded.getEpsilon().toString());
+        measurement.setEpsilon(new AngleValue());
+        assertEquals(codec.toJson(measurement), codec.toJson(decoded));
+        assertEquals(reflective.toJson(new LegacyGyroscopicMeasurement(measurement)),
+                reflective.toJson(new LegacyGyroscopicMeasurement(decoded)));
+    }
+
+    @Test
+    public void gyroscopicAnglesRoundToTenthOfSecond() {
+        String json = "{\"N1\":{\"degrees\":0,\"minutes\":-5,\"seconds\":3.04},"
+                + "\"N2\":{\"degrees\":10,\"minutes\":75,\"seconds\":59.96},\"t\":null}";
+
+        GyroscopicMeasurement measurement = codec.fromJson(json, GyroscopicMeasurement.class);
+
+        assertEquals(-(5 * 600 + 30), measurement.getAngle(GyroscopicMeasurement.Angle.N1));
+        assertEquals("-0°5′3.0″", measurement.getN1().toString());
+        // Минуты и секунды вне диапазона переносятся в старшие разряды
+        assertEquals("11°16′0.0″", measurement.getN2().toString());
+        assertFalse(measurement.hasAngle(GyroscopicMeasurement.Angle.T));
+        assertNull(measurement.getT());
+        // Углы, которых нет в записи, остаются как в новом измерении
+        assertEquals("0°0′0.0″", measurement.getKL1().toString());
+    }
+
+    @Test
+    public void listsMatchReflectiveGson() {
+        List<Project> projects = Arrays.asList(sampleProject(1), null, sampleProject(2));
+        String json = reflective.toJson(projects);
+
+        assertEquals(json, codec.toJson(projects));
+        List<Project> decoded = codec.fromJson(json, new TypeToken<List<Project>>() {}.getType());
+        assertEquals(3, decoded.size());
+        assertNull(decoded.get(1));
+        assertEquals(json, codec.toJson(decoded));
+    }
+
+    @Test
+    public void readsUnknownFieldsAndNulls() {
+        String json = "{\"stationNumber\":5,\"extra\":{\"a\":[1,2]},\"distance\":null,"
+                + "\"averageAngle\":{\"degrees\":10,\"minutes\":75,\"seconds\":61.5},\"leftCirclePoint1\":null}";
+
+        StationMeasurement station = codec.fromJson(json, StationMeasurement.class);
+
+        assertEquals(5, station.getStationNumber());
+        assertEquals(0.0, station.getDistance(), 0.0);
+        assertNull(station.getLeftCirclePoint1());
+        // Значения вне диапазона читаются как есть, так же как при чтении через отражение
+        AngleValue average = station.getAverageAngle();
+        assertEquals(75, average.getMinutes());
+        assertEquals(61.5, average.getSeconds(), 0.0);
+        assertNotNull(station.getRightCirclePoint1());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.StationMeasurement;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Постепенное чтение измерений журнала: станции читаются порциями по мере обращения.
+ * Оборванный JSON обнаруживается проверкой до создания списка, а ошибка чтения
+ * не выходит из методов списка — он укорачивается до прочитанной части
+ */
+public class LazyMeasurementListTest {
+    private static final int STATIONS = LazyMeasurementList.CHUNK_SIZE * 2 + 10;
+
+    private final Gson gson = new Gson();
+    private final TypeAdapter<StationMeasurement> adapter = gson.getAdapter(StationMeasurement.class);
+
+    private static List<StationMeasurement> stations(int count) {
+        List<StationMeasurement> stations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StationMeasurement station = new StationMeasurement(i, i, i + 1);
+            station.setDistance(i * 10.0);
+            stations.add(station);
+        }
+        return stations;
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+
+    private LazyMeasurementList open(String json, int expectedSize) throws IOException {
+        return new LazyMeasurementList(reader(json), adapter, expectedSize);
+    }
+
+    /**
+     * JSON массива станций, оборванный посередине станции с указанным номером
+     */
+    private String truncatedBefore(int station) {
+        String json = gson.toJson(stations(STATIONS));
+        String marker = gson.toJson(stations(station + 1).get(station));
+        int start = json.indexOf(marker);
+        assertTrue(start > 0);
+        return json.substring(0, start + marker.length() / 2);
+    }
+
+    @Test
+    public void readsAllStationsInChunks() throws IOException {
+        LazyMeasurementList list = open(gson.toJson(stations(STATIONS)), STATIONS);
+        assertEquals(STATIONS, list.size());
+        assertEquals(5, list.get(5).getStationNumber());
+        assertEquals(STATIONS - 1, list.get(STATIONS - 1).getStationNumber());
+        assertEquals(STATIONS, list.size());
+    }
+
+    @Test
+    public void truncatedJsonIsDetectedBeforeReading() throws IOException {
+        assertTrue(LazyMeasurementList.isComplete(reader(gson.toJson(stations(STATIONS))), STATIONS));
+        // Массив короче, чем указано в заголовке записи
+        assertFalse(LazyMeasurementList.isComplete(reader(gson.toJson(stations(10))), STATIONS));
+        try {
+            LazyMeasurementList.isComplete(reader(truncatedBefore(LazyMeasurementList.CHUNK_SIZE + 20)), STATIONS);
+            fail("Ожидалась ошибка проверки оборванного журнала");
+        } catch (IOException expected) {
+            // Журнал читается целиком и не открывается, как при полном разборе
+        }
+    }
+
+    @Test
+    public void readFailureShortensTheListQuietly() throws IOException {
+        int broken = LazyMeasurementList.CHUNK_SIZE + 20;
+        LazyMeasurementList list = open(truncatedBefore(broken), STATIONS);
+        assertEquals(STATIONS, list.size());
+        assertEquals(10.0, list.get(1).getDistance(), 0.0);
+
+        // Ошибка чтения второй порции не выходит из get: остаются станции, прочитанные до обрыва
+        assertEquals(broken - 1, list.get(broken - 1).getStationNumber());
+        assertEquals(broken, list.size());
+        int count = 0;
+        for (StationMeasurement station : list) {
+            assertEquals(count++, station.getStationNumber());
+        }
+        assertEquals(broken, count);
+
+        list.add(list.size(), stations(1).get(0));
+        assertEquals(broken + 1, list.size());
+    }
+
+    @Test
+    public void modifyingTruncatedListDoesNotThrow() throws IOException {
+        LazyMeasurementList list = open(truncatedBefore(3), STATIONS);
+        list.remove(0);
+        assertEquals(2, list.size());
+        assertEquals(1, list.get(0).getStationNumber());
+    }
+
+    @Test
+    public void shorterArrayThanHeaderShrinksTheList() throws IOException {
+        LazyMeasurementList list = open(gson.toJson(stations(10)), STATIONS);
+        assertEquals(STATIONS, list.size());
+        assertEquals(9, list.get(9).getStationNumber());
+        assertEquals(10, list.size());
+    }
+}
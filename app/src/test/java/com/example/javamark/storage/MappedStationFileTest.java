@@ -0,0 +1,175 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.StationMeasurement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Построчное хранение станций: вставка и удаление держатся в памяти до сохранения,
+ * при сохранении хвост записывается сдвинутым в новый файл, заменяющий прежний целиком,
+ * а списки, читающие прежний файл, продолжают видеть прежние станции
+ */
+public class MappedStationFileTest {
+    private static final int STATIONS = 300;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("mapped-stations").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                MappedStationFile.delete(file);
+            }
+        }
+        dir.delete();
+    }
+
+    private static StationMeasurement station(int number) {
+        StationMeasurement station = new StationMeasurement(number, number, number + 1);
+        station.setDistance(number * 10.0);
+        return station;
+    }
+
+    private static List<StationMeasurement> stations(int count) {
+        List<StationMeasurement> stations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            stations.add(station(i));
+        }
+        return stations;
+    }
+
+    private static List<Integer> numbers(List<StationMeasurement> stations) {
+        List<Integer> numbers = new ArrayList<>();
+        for (StationMeasurement station : stations) {
+            numbers.add(station.getStationNumber());
+        }
+        return numbers;
+    }
+
+    /**
+     * Открывает копию файла, чтобы прочитать станции с диска, а не из общего объекта процесса
+     */
+    private MappedStationFile reopen(File file) throws IOException {
+        File copy = new File(dir, file.getName() + ".copy");
+        Files.copy(file.toPath(), copy.toPath());
+        return MappedStationFile.open(copy);
+    }
+
+    @Test
+    public void insertAndRemoveShiftTheTailOnSave() throws IOException {
+        File file = new File(dir, "1.stations");
+        MappedStationFile stations = MappedStationFile.rewrite(file, stations(STATIONS));
+        MappedStationList list = new MappedStationList(stations);
+
+        list.add(10, station(-1));
+        list.remove(0);
+        list.add(list.size(), station(-2));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 1; i < STATIONS; i++) {
+            if (i == 10) {
+                expected.add(-1);
+            }
+            expected.add(i);
+        }
+        expected.add(-2);
+        assertEquals(expected, numbers(list));
+
+        // До сохранения файл и другие его списки не изменяются
+        assertEquals(STATIONS, stations.size());
+        assertEquals(0, new MappedStationList(stations).get(0).getStationNumber());
+
+        MappedStationFile written = list.snapshot().writeTo(file);
+        assertNotSame(stations, written);
+        assertSame(written, MappedStationFile.open(file));
+        assertEquals(expected, numbers(new MappedStationList(written)));
+        assertEquals(expected, numbers(new MappedStationList(reopen(file))));
+        assertEquals(100.0, new MappedStationList(written).get(10).getDistance(), 0.0);
+        assertFalse(new File(dir, "1.stations.tmp").exists());
+    }
+
+    @Test
+    public void removingEveryStationLeavesAnEmptyFile() throws IOException {
+        File file = new File(dir, "2.stations");
+        MappedStationList list = new MappedStationList(MappedStationFile.rewrite(file, stations(5)));
+        for (int i = 0; i < 5; i++) {
+            list.remove(list.size() - 1);
+        }
+        assertTrue(list.isEmpty());
+        list.snapshot().writeTo(file);
+        assertEquals(0, reopen(file).size());
+    }
+
+    @Test
+    public void editsAreWrittenInPlaceOnlyOnSave() throws IOException {
+        File file = new File(dir, "3.stations");
+        MappedStationFile stations = MappedStationFile.rewrite(file, stations(STATIONS));
+        MappedStationList list = new MappedStationList(stations);
+
+        StationMeasurement edited = list.get(5);
+        edited.setDistance(555.0);
+        list.set(5, edited);
+        assertEquals(555.0, list.get(5).getDistance(), 0.0);
+        assertEquals(50.0, stations.read(5).getDistance(), 0.0);
+
+        MappedStationList snapshot = list.snapshot();
+        // Изменения станции после снимка в запись не попадают
+        edited.setDistance(-1.0);
+        assertSame(stations, snapshot.writeTo(file));
+        assertEquals(555.0, stations.read(5).getDistance(), 0.0);
+        assertEquals(60.0, stations.read(6).getDistance(), 0.0);
+
+        // Список изменен после снимка: его изменения остаются в памяти
+        list.set(5, edited);
+        list.saved(snapshot, stations);
+        assertEquals(-1.0, list.get(5).getDistance(), 0.0);
+        MappedStationList unchanged = new MappedStationList(stations);
+        unchanged.set(7, unchanged.get(7));
+        MappedStationList unchangedSnapshot = unchanged.snapshot();
+        unchanged.saved(unchangedSnapshot, stations);
+        assertEquals(70.0, unchanged.get(7).getDistance(), 0.0);
+    }
+
+    @Test
+    public void replacedFileStaysReadableForOldLists() throws IOException {
+        File file = new File(dir, "4.stations");
+        MappedStationFile old = MappedStationFile.rewrite(file, stations(STATIONS));
+        MappedStationList oldList = new MappedStationList(old);
+
+        // Оставшийся после сбоя временный файл не мешает записи
+        Files.write(new File(dir, "4.stations.tmp").toPath(), new byte[]{1, 2, 3});
+        MappedStationFile current = MappedStationFile.rewrite(file, stations(3));
+
+        assertEquals(3, current.size());
+        assertEquals(STATIONS, oldList.size());
+        assertEquals(STATIONS - 1, oldList.get(STATIONS - 1).getStationNumber());
+        try {
+            old.write(0, station(0));
+            fail("Ожидалась ошибка записи в замененный файл");
+        } catch (IOException expected) {
+            // Запись в замененный файл потерялась бы
+        }
+
+        // Список замененного файла при сохранении переписывает файл целиком
+        oldList.set(0, station(-5));
+        MappedStationFile written = oldList.snapshot().writeTo(file);
+        assertNotSame(current, written);
+        assertEquals(STATIONS, written.size());
+        assertEquals(-5, written.read(0).getStationNumber());
+    }
+}
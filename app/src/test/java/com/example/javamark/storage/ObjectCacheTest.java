@@ -0,0 +1,110 @@
+package com.example.javamark.storage;
+
+import android.content.ComponentCallbacks2;
+
+import com.example.javamark.model.AngleValue;
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.example.javamark.model.Project;
+import com.example.javamark.model.ReferencePoint;
+import com.example.javamark.model.StationMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Кеш объектов: вытеснение по объему, отказ кешировать объект, прочитанный до сохранения,
+ * сокращение при нехватке памяти, а также независимость копий от кешированного объекта
+ */
+public class ObjectCacheTest {
+    private final ObjectCache cache = new ObjectCache(100);
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvictedBySize() {
+        cache.put("a", cache.stamp(), "A", 40);
+        cache.put("b", cache.stamp(), "B", 40);
+        assertEquals("A", cache.get("a"));
+
+        // "b" использовалась давнее всех и вытесняется первой
+        cache.put("c", cache.stamp(), "C", 40);
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(80, cache.size());
+
+        // Запись больше всего кеша не кешируется
+        cache.put("d", cache.stamp(), "D", 101);
+        assertNull(cache.get("d"));
+
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.6, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void objectReadBeforeInvalidationIsNotCached() {
+        cache.put("a", cache.stamp(), "old", 10);
+        long stamp = cache.stamp();
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+
+        cache.put("a", stamp, "old", 10);
+        assertNull(cache.get("a"));
+        cache.put("a", cache.stamp(), "new", 10);
+        assertEquals("new", cache.get("a"));
+    }
+
+    @Test
+    public void trimMemoryShrinksOrClearsCache() {
+        for (int i = 0; i < 4; i++) {
+            cache.put("k" + i, cache.stamp(), i, 25);
+        }
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(50, cache.size());
+        assertNull(cache.get("k0"));
+        assertNotNull(cache.get("k3"));
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(0, cache.size());
+        assertNull(cache.get("k3"));
+    }
+
+    @Test
+    public void copiesMatchAndDoNotShareState() {
+        Gson gson = JsonCodec.gson();
+
+        Project project = new Project("Засечка");
+        project.setId(3);
+        project.setCreatedAt(new Date(1700000000000L));
+        project.addReferencePoint(new ReferencePoint(1, "Пункт", 10.5, 20.25, 45));
+        Project projectCopy = ModelCopier.copy(project);
+        assertEquals(gson.toJson(project), gson.toJson(projectCopy));
+        projectCopy.getReferencePoints().get(0).setX(0);
+        assertEquals(10.5, project.getReferencePoints().get(0).getX(), 0);
+
+        GyroscopicMeasurement measurement = new GyroscopicMeasurement("Ориентирование");
+        measurement.setN1(1.5);
+        measurement.setPsiT(null);
+        measurement.setGyroscopicAzimuth(new AngleValue(120, 30, 15.5));
+        GyroscopicMeasurement measurementCopy = ModelCopier.copy(measurement);
+        assertEquals(gson.toJson(measurement), gson.toJson(measurementCopy));
+        measurementCopy.getGyroscopicAzimuth().setDegrees(0);
+        assertEquals(120, measurement.getGyroscopicAzimuth().getDegrees());
+
+        TheodoliteJournal journal = new TheodoliteJournal("Ход");
+        StationMeasurement station = new StationMeasurement(1, 2, 3);
+        station.setDistance(100);
+        station.setSlopeAngle(new AngleValue(2, 0, 0));
+        station.calculateHorizontalDistance();
+        journal.addMeasurement(station);
+        TheodoliteJournal journalCopy = ModelCopier.copy(journal);
+        assertEquals(gson.toJson(journal), gson.toJson(journalCopy));
+        // Копия ведет себя как только что прочитанный журнал
+        assertTrue(journalCopy.drainPendingChanges().isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.GyroscopicMeasurement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Версии схемы записей: определение версии по префиксу и переход
+ * из сохраненной версии в текущую по цепочке переходов
+ */
+public class RecordSchemaTest {
+    private final RecordSchema schema = new RecordSchema(
+            record -> record.addProperty("v2", record.has("v2") ? record.get("v2").getAsInt() : 2),
+            record -> record.addProperty("v3", record.get("v2").getAsInt() + 1));
+
+    @Test
+    public void versionIsReadFromPrefix() {
+        byte[] legacy = "{\"name\":\"a\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] current = schema.wrap("{\"name\":\"a\"}");
+        byte[] binary = BinaryCodec.encodeGyroscopic(new GyroscopicMeasurement());
+
+        assertEquals(3, schema.currentVersion());
+        assertEquals(RecordSchema.LEGACY_VERSION, schema.versionOf(legacy));
+        assertEquals(3, schema.versionOf(current));
+        assertEquals(3, schema.versionOf(binary));
+        assertTrue(schema.isStale(legacy));
+        assertFalse(schema.isStale(current));
+        assertFalse(schema.isStale(binary));
+        assertEquals("{\"name\":\"a\"}", RecordSchema.json(current));
+        assertEquals("{\"name\":\"a\"}", RecordSchema.json(legacy));
+    }
+
+    @Test
+    public void migrationsRunFromStoredVersion() {
+        JsonObject legacy = schema.upgrade("{\"name\":\"a\"}".getBytes(StandardCharsets.UTF_8)).getAsJsonObject();
+        assertEquals(2, legacy.get("v2").getAsInt());
+        assertEquals(3, legacy.get("v3").getAsInt());
+
+        // Запись версии 2 проходит только второй переход
+        JsonObject second = schema.upgrade(JsonParser.parseString("{\"v2\":10}"), 2).getAsJsonObject();
+        assertEquals(11, second.get("v3").getAsInt());
+
+        JsonObject current = schema.upgrade(schema.wrap("{\"v2\":5,\"v3\":7}")).getAsJsonObject();
+        assertEquals(7, current.get("v3").getAsInt());
+    }
+
+    @Test
+    public void schemaWithoutMigrationsTreatsLegacyAsCurrent() {
+        RecordSchema initial = new RecordSchema();
+        assertEquals(RecordSchema.LEGACY_VERSION, initial.currentVersion());
+        assertFalse(initial.isStale("{}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(initial.isStale(initial.wrap("{}")));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.javamark.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Время чтения, перезаписи и удаления записи по ID в зависимости от размера
+ * хранилища. Благодаря индексу ID → смещение время не должно расти вместе
+ * с количеством записей. Результаты выводятся в stdout при запуске unit-тестов
+ */
+public class RecordStoreBenchmark {
+    private static final int[] SIZES = {10, 100, 1_000, 10_000, 100_000};
+    private static final int RECORD_SIZE = 128;
+    private static final int WARMUP = 5_000;
+    private static final int LOOKUPS = 20_000;
+    private static final int UPDATES = 2_000;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("record-store-benchmark").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void lookupByIdDoesNotDependOnStoreSize() throws IOException {
+        for (int size : SIZES) {
+            String name = "benchmark_" + size;
+            RecordStore store = RecordStore.openFile(dir, name, RecordStoreRecoveryTest::header);
+            byte[] data = new byte[RECORD_SIZE];
+            for (int i = 0; i < size; i++) {
+                int id = store.resolveId(0);
+                store.put(id, data, RecordStoreRecoveryTest.header(id, data));
+            }
+            assertEquals(size, store.size());
+
+            Random random = new Random(size);
+            for (int i = 0; i < WARMUP; i++) {
+                store.get(1 + random.nextInt(size));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                byte[] record = store.get(1 + random.nextInt(size));
+                assertEquals(RECORD_SIZE, record.length);
+            }
+            long lookup = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < UPDATES; i++) {
+                int id = 1 + random.nextInt(size);
+                store.put(id, data, RecordStoreRecoveryTest.header(id, data));
+            }
+            long update = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int deletes = Math.min(UPDATES, size);
+            for (int id = 1; id <= deletes; id++) {
+                assertTrue(store.delete(id));
+            }
+            long delete = System.nanoTime() - start;
+
+            System.out.println(String.format(Locale.US,
+                    "RecordStore, %d записей: чтение %.2f мкс, перезапись %.2f мкс, удаление %.2f мкс",
+                    size, lookup / 1000.0 / LOOKUPS, update / 1000.0 / UPDATES, delete / 1000.0 / deletes));
+            store.close();
+        }
+    }
+
+    @Test
+    public void batchDeleteCostsAboutOneCommit() throws IOException {
+        RecordStore store = RecordStore.openFile(dir, "benchmark_batch", RecordStoreRecoveryTest::header);
+        byte[] data = new byte[RECORD_SIZE];
+        for (int i = 0; i < 2_002; i++) {
+            int id = store.resolveId(0);
+            store.put(id, data, RecordStoreRecoveryTest.header(id, data));
+        }
+        store.sync();
+
+        // Каждое сохранение завершается сбросом на диск, который и определяет цену записи
+        long start = System.nanoTime();
+        assertTrue(store.delete(1));
+        store.sync();
+        long single = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int id = 2; id <= 1_001; id++) {
+            assertTrue(store.delete(id));
+            store.sync();
+        }
+        long separate = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        RecordStore.Batch batch = new RecordStore.Batch();
+        for (int id = 1_002; id <= 2_001; id++) {
+            batch.delete(id);
+        }
+        assertEquals(1_000, store.apply(batch));
+        store.sync();
+        long batched = System.nanoTime() - start;
+
+        assertEquals(1, store.size());
+        System.out.println(String.format(Locale.US,
+                "RecordStore, удаление: одна запись %.2f мс, 1000 по одной %.2f мс, 1000 одним набором %.2f мс",
+                single / 1e6, separate / 1e6, batched / 1e6));
+        assertTrue(batched < separate);
+        store.close();
+    }
+}
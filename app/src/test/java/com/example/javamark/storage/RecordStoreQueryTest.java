@@ -0,0 +1,197 @@
+package com.example.javamark.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Постраничные запросы, поиск и обратный индекс ссылок по хранилищу: порядок по дате создания
+ * и найденные записи должны сохраняться при перезаписи, удалении и повторном открытии хранилища
+ */
+public class RecordStoreQueryTest {
+    private static final String NAME = "query_test";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("record-store-query").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private RecordStore open() {
+        return RecordStore.openFile(dir, NAME, (id, data) -> header(id, 0L, data));
+    }
+
+    private static RecordHeader header(int id, long createdAt, byte[] data) {
+        return new RecordHeader(id, "record " + id, new Date(createdAt), data.length, 0, null);
+    }
+
+    private static void put(RecordStore store, int id, long createdAt) throws IOException {
+        byte[] data = new byte[]{(byte) id};
+        store.put(id, data, header(id, createdAt, data));
+    }
+
+    private static List<Integer> ids(List<RecordHeader> headers) {
+        List<Integer> ids = new ArrayList<>();
+        for (RecordHeader header : headers) {
+            ids.add(header.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void pagesAreOrderedByCreationDate() throws IOException {
+        RecordStore store = open();
+        // Записи добавляются не в порядке дат
+        long[] dates = {500, 100, 300, 200, 400};
+        for (int i = 0; i < dates.length; i++) {
+            put(store, i + 1, dates[i]);
+        }
+
+        assertEquals(Arrays.asList(1, 5, 3), ids(store.queryHeaders(SortOrder.NEWEST_FIRST, 0, 3)));
+        assertEquals(Arrays.asList(4, 2), ids(store.queryHeaders(SortOrder.NEWEST_FIRST, 3, 3)));
+        assertEquals(Arrays.asList(2, 4, 3, 5), ids(store.queryHeaders(SortOrder.OLDEST_FIRST, 0, 4)));
+        assertTrue(store.queryHeaders(SortOrder.OLDEST_FIRST, 5, 10).isEmpty());
+        assertTrue(store.queryHeaders(SortOrder.OLDEST_FIRST, 0, 0).isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void updatesAndDeletesKeepOrder() throws IOException {
+        RecordStore store = open();
+        for (int id = 1; id <= 5; id++) {
+            put(store, id, id * 100L);
+        }
+
+        put(store, 2, 1000);
+        assertTrue(store.delete(4));
+        byte[] data = new byte[]{1};
+        assertTrue(store.putHeader(5, header(5, 50, data)));
+
+        assertEquals(Arrays.asList(2, 3, 1, 5), ids(store.queryHeaders(SortOrder.NEWEST_FIRST, 0, 10)));
+        store.close();
+
+        RecordStore reopened = open();
+        assertEquals(Arrays.asList(2, 3, 1, 5), ids(reopened.queryHeaders(SortOrder.NEWEST_FIRST, 0, 10)));
+        reopened.close();
+    }
+
+    @Test
+    public void largeStoreReturnsOnlyRequestedPage() throws IOException {
+        RecordStore store = open();
+        for (int id = 1; id <= 5000; id++) {
+            put(store, id, 1_000_000L - id * 7L % 5000);
+        }
+        store.close();
+
+        RecordStore reopened = open();
+        List<RecordHeader> all = new ArrayList<>();
+        for (int offset = 0; offset < 5000; offset += 50) {
+            List<RecordHeader> page = reopened.queryHeaders(SortOrder.NEWEST_FIRST, offset, 50);
+            assertEquals(50, page.size());
+            all.addAll(page);
+        }
+        for (int i = 1; i < all.size(); i++) {
+            RecordHeader previous = all.get(i - 1);
+            RecordHeader current = all.get(i);
+            assertTrue(previous.getCreatedAt().getTime() > current.getCreatedAt().getTime()
+                    || (previous.getCreatedAt().equals(current.getCreatedAt()) && previous.getId() > current.getId()));
+        }
+        reopened.close();
+    }
+
+    private static void putNamed(RecordStore store, int id, long createdAt, String name, String keywords)
+            throws IOException {
+        byte[] data = new byte[]{(byte) id};
+        store.put(id, data, new RecordHeader(id, name, new Date(createdAt), data.length, 0, null, keywords));
+    }
+
+    @Test
+    public void searchMatchesWordPrefixesInNameAndKeywords() throws IOException {
+        RecordStore store = open();
+        putNamed(store, 1, 100, "Шахта Северная", "Рп1 Рп2");
+        putNamed(store, 2, 200, "Штольня ёлочная", null);
+        putNamed(store, 3, 300, "Северный ствол", "Т-15");
+
+        assertEquals(Arrays.asList(3, 1), ids(store.search("сев", 0, 10)));
+        assertEquals(Arrays.asList(1), ids(store.search("СЕВ шах", 0, 10)));
+        assertEquals(Arrays.asList(1), ids(store.search("рп2", 0, 10)));
+        assertEquals(Arrays.asList(2), ids(store.search("елоч", 0, 10)));
+        assertEquals(Arrays.asList(3), ids(store.search("т 15", 0, 10)));
+        assertEquals(Arrays.asList(1), ids(store.search("сев", 1, 10)));
+        assertTrue(store.search("шахта ствол", 0, 10).isEmpty());
+        assertTrue(store.search("  ", 0, 10).isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void searchFollowsUpdatesDeletesAndReopen() throws IOException {
+        RecordStore store = open();
+        putNamed(store, 1, 100, "Шахта Северная", null);
+        putNamed(store, 2, 200, "Шахта Южная", null);
+        putNamed(store, 3, 300, "Шахта Западная", null);
+
+        putNamed(store, 1, 100, "Рудник Северный", null);
+        assertTrue(store.delete(3));
+
+        assertEquals(Arrays.asList(2), ids(store.search("шахта", 0, 10)));
+        assertEquals(Arrays.asList(1), ids(store.search("рудник сев", 0, 10)));
+        store.close();
+
+        RecordStore reopened = open();
+        assertEquals(Arrays.asList(2), ids(reopened.search("шахта", 0, 10)));
+        assertEquals(Arrays.asList(1), ids(reopened.search("рудник", 0, 10)));
+        assertTrue(reopened.search("запад", 0, 10).isEmpty());
+        reopened.close();
+    }
+
+    private static void putReferencing(RecordStore store, int id, String... references) throws IOException {
+        byte[] data = new byte[]{(byte) id};
+        store.put(id, data, new RecordHeader(id, "record " + id, new Date(id), data.length, 0, null, null,
+                references));
+    }
+
+    @Test
+    public void referencesFollowUpdatesDeletesAndReopen() throws IOException {
+        RecordStore store = open();
+        putReferencing(store, 3, "name:рп-17", "xy:1000:2000");
+        putReferencing(store, 1, "name:рп-17", "name:рп-18");
+        putReferencing(store, 2, "name:рп-18");
+
+        assertEquals(Arrays.asList(1, 3), ids(store.findReferences("name:рп-17")));
+        assertEquals(Arrays.asList(3), ids(store.findReferences("xy:1000:2000")));
+
+        putReferencing(store, 1, "name:рп-18");
+        assertTrue(store.delete(2));
+        assertEquals(Arrays.asList(3), ids(store.findReferences("name:рп-17")));
+        assertEquals(Arrays.asList(1), ids(store.findReferences("name:рп-18")));
+        store.close();
+
+        RecordStore reopened = open();
+        assertEquals(Arrays.asList(3), ids(reopened.findReferences("name:рп-17")));
+        assertEquals(Arrays.asList(1), ids(reopened.findReferences("name:рп-18")));
+        assertTrue(reopened.findReferences("name:рп-19").isEmpty());
+        reopened.close();
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.javamark.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Восстановление журнального хранилища после сбоя: оборванный или поврежденный хвост
+ * отбрасывается, а подтвержденные записи сохраняются даже при убийстве процесса во время записи
+ */
+public class RecordStoreRecoveryTest {
+    private static final String NAME = "recovery_test";
+    private static final int ACKNOWLEDGED_BEFORE_KILL = 400;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("record-store").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    static RecordHeader header(int id, byte[] data) {
+        return new RecordHeader(id, "record " + id, null, data.length, 0, null);
+    }
+
+    static byte[] payload(int id) {
+        byte[] data = new byte[16 + (id * 7919) % 20000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (id * 31 + i);
+        }
+        return data;
+    }
+
+    private RecordStore open() {
+        return RecordStore.openFile(dir, NAME, RecordStoreRecoveryTest::header);
+    }
+
+    private File logFile() {
+        return new File(dir, NAME + ".log");
+    }
+
+    private static void put(RecordStore store, int id) throws IOException {
+        byte[] data = payload(id);
+        store.put(id, data, header(id, data));
+    }
+
+    @Test
+    public void reopenKeepsSyncedRecords() throws IOException {
+        RecordStore store = open();
+        for (int id = 1; id <= 50; id++) {
+            put(store, id);
+        }
+        store.delete(7);
+        store.close();
+
+        RecordStore reopened = open();
+        assertEquals(49, reopened.size());
+        assertNull(reopened.get(7));
+        for (int id = 1; id <= 50; id++) {
+            if (id != 7) {
+                assertArrayEquals(payload(id), reopened.get(id));
+            }
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void tornTailIsDiscarded() throws IOException {
+        RecordStore store = open();
+        for (int id = 1; id <= 10; id++) {
+            put(store, id);
+        }
+        store.close();
+        long committedLength = logFile().length();
+
+        store = open();
+        put(store, 11);
+        store.close();
+        byte[] full = Files.readAllBytes(logFile().toPath());
+
+        for (long cut = committedLength + 1; cut < full.length; cut += 997) {
+            try (RandomAccessFile raf = new RandomAccessFile(logFile(), "rw")) {
+                raf.setLength(0);
+                raf.write(full, 0, (int) cut);
+            }
+
+            RecordStore reopened = open();
+            assertEquals(10, reopened.size());
+            assertNull(reopened.get(11));
+            assertArrayEquals(payload(10), reopened.get(10));
+            reopened.close();
+            assertEquals(committedLength, logFile().length());
+        }
+    }
+
+    @Test
+    public void corruptedRecordIsDiscarded() throws IOException {
+        RecordStore store = open();
+        for (int id = 1; id <= 5; id++) {
+            put(store, id);
+        }
+        store.close();
+
+        // Портим последний байт данных последней записи
+        try (RandomAccessFile raf = new RandomAccessFile(logFile(), "rw")) {
+            raf.seek(raf.length() - 1);
+            int value = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(value ^ 0xFF);
+        }
+
+        RecordStore reopened = open();
+        assertEquals(4, reopened.size());
+        assertNull(reopened.get(5));
+        assertArrayEquals(payload(4), reopened.get(4));
+
+        // После восстановления хранилище продолжает принимать записи
+        put(reopened, 5);
+        reopened.close();
+        assertArrayEquals(payload(5), open().get(5));
+    }
+
+    @Test
+    public void batchIsAppliedAtomically() throws IOException {
+        RecordStore store = open();
+        for (int id = 1; id <= 10; id++) {
+            put(store, id);
+        }
+        store.close();
+        long committedLength = logFile().length();
+
+        store = open();
+        RecordStore.Batch batch = new RecordStore.Batch();
+        for (int id = 1; id <= 5; id++) {
+            batch.delete(id);
+        }
+        // Удаление отсутствующей записи пропускается
+        batch.delete(99);
+        byte[] replaced = payload(1000);
+        batch.put(10, replaced, header(10, replaced));
+        batch.put(11, payload(11), header(11, payload(11)));
+        assertEquals(7, store.apply(batch));
+        assertEquals(6, store.size());
+        assertArrayEquals(replaced, store.get(10));
+        store.close();
+        byte[] full = Files.readAllBytes(logFile().toPath());
+
+        RecordStore reopened = open();
+        assertEquals(6, reopened.size());
+        assertNull(reopened.get(1));
+        assertArrayEquals(replaced, reopened.get(10));
+        assertArrayEquals(payload(11), reopened.get(11));
+        reopened.close();
+
+        // Оборванный набор не применяется ни частично, ни целиком
+        for (long cut = committedLength + 1; cut < full.length; cut += 997) {
+            try (RandomAccessFile raf = new RandomAccessFile(logFile(), "rw")) {
+                raf.setLength(0);
+                raf.write(full, 0, (int) cut);
+            }
+
+            reopened = open();
+            assertEquals(10, reopened.size());
+            assertArrayEquals(payload(1), reopened.get(1));
+            assertArrayEquals(payload(10), reopened.get(10));
+            assertNull(reopened.get(11));
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void batchSurvivesCompaction() throws Exception {
+        RecordStore store = open();
+        RecordStore.Batch batch = new RecordStore.Batch();
+        for (int id = 1; id <= 20; id++) {
+            batch.put(id, payload(id), header(id, payload(id)));
+        }
+        store.apply(batch);
+        int large = store.resolveId(0);
+        store.put(large, new byte[256 * 1024], header(large, new byte[0]));
+        long length = logFile().length();
+        assertEquals(1, store.apply(new RecordStore.Batch().delete(large)));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (logFile().length() >= length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(logFile().length() < length);
+        assertArrayEquals(payload(20), store.get(20));
+        store.close();
+
+        RecordStore reopened = open();
+        assertEquals(20, reopened.size());
+        for (int id = 1; id <= 20; id++) {
+            assertArrayEquals(payload(id), reopened.get(id));
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void upgradesFilesWithoutChecksums() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(logFile(), "rw")) {
+            raf.writeInt(0x4A4D5253);
+            raf.writeByte(1);
+            for (int id = 1; id <= 3; id++) {
+                byte[] data = payload(id);
+                raf.writeInt(data.length);
+                raf.writeInt(id);
+                raf.writeByte(1);
+                raf.write(data);
+            }
+        }
+
+        RecordStore store = open();
+        assertEquals(3, store.size());
+        for (int id = 1; id <= 3; id++) {
+            assertArrayEquals(payload(id), store.get(id));
+        }
+        store.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(logFile(), "r")) {
+            raf.seek(4);
+            assertEquals(2, raf.readByte());
+        }
+    }
+
+    @Test
+    public void deletedIdsAreNotReusedAfterReopen() throws IOException {
+        RecordStore store = open();
+        for (int i = 0; i < 3; i++) {
+            put(store, store.resolveId(0));
+        }
+        assertTrue(store.delete(3));
+        store.close();
+
+        RecordStore reopened = open();
+        assertEquals(4, reopened.resolveId(0));
+        reopened.close();
+    }
+
+    @Test
+    public void sequenceSurvivesCompaction() throws Exception {
+        RecordStore store = open();
+        put(store, store.resolveId(0));
+        int large = store.resolveId(0);
+        store.put(large, new byte[256 * 1024], header(large, new byte[0]));
+        long length = logFile().length();
+        assertTrue(store.delete(large));
+
+        // Уплотнение запускается в фоне: ждем, пока файл не будет переписан без удаленной записи
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (logFile().length() >= length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(logFile().length() < length);
+        store.close();
+
+        RecordStore reopened = open();
+        assertEquals(1, reopened.size());
+        assertEquals(large + 1, reopened.resolveId(0));
+        reopened.close();
+    }
+
+    @Test
+    public void killedWriterKeepsAcknowledgedRecords() throws Exception {
+        // Подтверждения пишутся в файл, чтобы ни одно из них не потерялось при убийстве процесса
+        File acknowledgements = File.createTempFile("acknowledged", ".txt");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                CrashWriter.class.getName(), dir.getPath())
+                .redirectOutput(acknowledgements)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        try {
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (readAcknowledgements(acknowledgements).size() < ACKNOWLEDGED_BEFORE_KILL
+                    && process.isAlive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            // Процесс убивается посреди записи, без возможности что-либо дописать или закрыть
+            process.destroyForcibly();
+            process.waitFor();
+
+            Set<Integer> acknowledged = readAcknowledgements(acknowledgements);
+            assertFalse("Процесс записи не подтвердил ни одной записи", acknowledged.isEmpty());
+
+            RecordStore store = open();
+            for (int id : acknowledged) {
+                assertArrayEquals("Потеряна подтвержденная запись " + id, payload(id), store.get(id));
+            }
+            store.close();
+        } finally {
+            process.destroyForcibly();
+            acknowledgements.delete();
+        }
+    }
+
+    private static Set<Integer> readAcknowledgements(File file) throws IOException {
+        Set<Integer> acknowledged = new HashSet<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            // Последняя строка может быть оборвана на середине
+            if (line.startsWith("ACK ") && line.endsWith(";")) {
+                acknowledged.add(Integer.parseInt(line.substring(4, line.length() - 1)));
+            }
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Процесс, который непрерывно сохраняет записи из нескольких потоков
+     * через {@link StorageExecutor} и выводит ID каждой подтвержденной записи
+     */
+    public static class CrashWriter {
+        public static void main(String[] args) {
+            RecordStore store = RecordStore.openFile(new File(args[0]), NAME, RecordStoreRecoveryTest::header);
+            StorageExecutor executor = StorageExecutor.getInstance();
+            int threads = 4;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                int base = (t + 1) * 1_000_000;
+                pool.execute(() -> {
+                    for (int i = 0; ; i++) {
+                        int id = base + i;
+                        try {
+                            boolean saved = executor.submit(NAME + "#" + id, () -> {
+                                put(store, id);
+                                return true;
+                            }, true).get();
+                            if (saved) {
+                                synchronized (System.out) {
+                                    System.out.println("ACK " + id + ";");
+                                    System.out.flush();
+                                }
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.javamark.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Версии записей: сохранение с проверкой версии не затирает изменения, сделанные после чтения,
+ * перезапись в другом представлении версию не меняет, а сохранения разных записей
+ * из нескольких потоков не конфликтуют друг с другом
+ */
+public class RecordStoreVersionTest {
+    private static final String NAME = "version_test";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("record-store-version").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private RecordStore open() {
+        return RecordStore.openFile(dir, NAME, RecordStoreVersionTest::header);
+    }
+
+    private static RecordHeader header(int id, byte[] data) {
+        return new RecordHeader(id, "record " + id, new Date(0), data.length, 0, null);
+    }
+
+    private static byte[] value(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static int value(byte[] data) {
+        return ByteBuffer.wrap(data).getInt();
+    }
+
+    @Test
+    public void staleSaveIsRejected() throws IOException {
+        RecordStore store = open();
+        assertEquals(RecordStore.NO_VERSION, store.getVersion(1));
+        long first = store.compareAndPut(1, RecordStore.NO_VERSION, value(1), header(1, value(1)));
+        assertNotEquals(RecordStore.CONFLICT, first);
+        // Новая запись с тем же ID уже не считается новой
+        assertEquals(RecordStore.CONFLICT,
+                store.compareAndPut(1, RecordStore.NO_VERSION, value(9), header(1, value(9))));
+
+        // Два редактора прочитали одну версию; второе сохранение не затирает первое
+        long second = store.compareAndPut(1, first, value(2), header(1, value(2)));
+        assertTrue(second > first);
+        assertEquals(RecordStore.CONFLICT, store.compareAndPut(1, first, value(3), header(1, value(3))));
+        assertEquals(2, value(store.get(1)));
+        assertEquals(second, store.getVersion(1));
+    }
+
+    @Test
+    public void deletedRecordConflictsWithStaleSave() throws IOException {
+        RecordStore store = open();
+        store.put(1, value(1), header(1, value(1)));
+        long read = store.getVersion(1);
+        assertTrue(store.delete(1));
+        assertNotEquals(RecordStore.NO_VERSION, store.getVersion(1));
+        assertEquals(RecordStore.CONFLICT, store.compareAndPut(1, read, value(2), header(1, value(2))));
+        assertNull(store.get(1));
+
+        // После повторного открытия все записи начинают с одной версии
+        RecordStore reopened = open();
+        reopened.put(2, value(2), header(2, value(2)));
+        RecordStore again = open();
+        assertEquals(RecordStore.INITIAL_VERSION, again.getVersion(2));
+        assertEquals(RecordStore.NO_VERSION, again.getVersion(1));
+    }
+
+    @Test
+    public void rewriteKeepsVersion() throws IOException {
+        RecordStore store = open();
+        long version = store.compareAndPut(1, RecordStore.NO_VERSION, value(1), header(1, value(1)));
+        assertTrue(store.rewrite(1, version, value(1), header(1, value(1))));
+        assertEquals(version, store.getVersion(1));
+        assertNotEquals(RecordStore.CONFLICT, store.compareAndPut(1, version, value(2), header(1, value(2))));
+        // Перезапись не трогает запись, измененную после чтения
+        assertFalse(store.rewrite(1, version, value(1), header(1, value(1))));
+        assertEquals(2, value(store.get(1)));
+    }
+
+    @Test
+    public void batchWithStaleRecordWritesNothing() throws IOException {
+        RecordStore store = open();
+        store.put(1, value(1), header(1, value(1)));
+        store.put(2, value(2), header(2, value(2)));
+        long stale = store.getVersion(2);
+        store.put(2, value(20), header(2, value(20)));
+
+        RecordStore.Batch batch = new RecordStore.Batch()
+                .put(1, value(10), header(1, value(10))).expect(1, store.getVersion(1))
+                .put(2, value(30), header(2, value(30))).expect(2, stale);
+        try {
+            store.apply(batch);
+            fail("Ожидался конфликт версий");
+        } catch (WriteConflictException e) {
+            assertEquals(2, e.getId());
+        }
+        assertEquals(1, value(store.get(1)));
+        assertEquals(20, value(store.get(2)));
+    }
+
+    @Test
+    public void concurrentSavesLoseNoUpdates() throws Exception {
+        RecordStore store = open();
+        int threads = 4;
+        int increments = 500;
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int own = 100 + t;
+            workers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < increments; i++) {
+                        // Собственная запись потока: с чужими записями не конфликтует
+                        long ownVersion = store.getVersion(own);
+                        byte[] ownData = store.get(own);
+                        int next = ownData != null ? value(ownData) + 1 : 1;
+                        assertNotEquals(RecordStore.CONFLICT,
+                                store.compareAndPut(own, ownVersion, value(next), header(own, value(next))));
+
+                        // Общая запись: чтение, изменение и повтор при конфликте
+                        while (true) {
+                            long version;
+                            byte[] data;
+                            synchronized (store) {
+                                version = store.getVersion(1);
+                                data = store.get(1);
+                            }
+                            int counter = data != null ? value(data) + 1 : 1;
+                            if (store.compareAndPut(1, version, value(counter), header(1, value(counter)))
+                                    != RecordStore.CONFLICT) {
+                                break;
+                            }
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * increments, value(store.get(1)));
+        for (int t = 0; t < threads; t++) {
+            assertEquals(increments, value(store.get(100 + t)));
+        }
+        System.out.println("Конфликтов при сохранении общей записи: " + conflicts.get());
+    }
+}
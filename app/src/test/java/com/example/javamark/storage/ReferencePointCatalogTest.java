@@ -0,0 +1,119 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.Project;
+import com.example.javamark.model.ReferencePoint;
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Каталог пунктов: одинаковые пункты хранятся один раз, проекты со ссылками на каталог
+ * читаются так же, как проекты со встроенными пунктами, а размер записей сокращается
+ * пропорционально повторному использованию пунктов
+ */
+public class ReferencePointCatalogTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("point-catalog").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private ReferencePointCatalog open() {
+        return new ReferencePointCatalog(RecordStore.openFile(dir, "reference_points",
+                (id, data) -> new RecordHeader(id, null, null, data.length, 0, null)));
+    }
+
+    private static Project project(int id, int points, int offset) {
+        Project project = new Project("Засечка " + id);
+        project.setId(id);
+        project.setCreatedAt(new Date(1700000000000L + id));
+        for (int i = 0; i < points; i++) {
+            int n = (offset + i * 7) % 300;
+            project.addReferencePoint(new ReferencePoint(i, "Рп-" + n, 5000 + n * 1.25, 7000 - n * 0.5, i * 11.5));
+        }
+        return project;
+    }
+
+    @Test
+    public void equalPointsAreStoredOnce() throws IOException {
+        ReferencePointCatalog catalog = open();
+        int ref = catalog.intern("Рп-17", 100.5, 200.25);
+        assertEquals(ref, catalog.intern("Рп-17", 100.5, 200.25));
+        assertNotEquals(ref, catalog.intern("Рп-17", 100.5, 200.26));
+        assertNotEquals(ref, catalog.intern(null, 100.5, 200.25));
+        assertEquals(3, catalog.size());
+
+        ReferencePointCatalog reopened = open();
+        assertEquals(ref, reopened.find("Рп-17", 100.5, 200.25));
+        assertEquals("Рп-17", reopened.resolve(ref).getName());
+        assertEquals(-1, reopened.find("Рп-18", 0, 0));
+    }
+
+    @Test
+    public void projectsReadTheSameWithEmbeddedOrSharedPoints() {
+        Gson embedded = JsonCodec.gson();
+        Gson shared = open().gson();
+        Project project = project(1, 12, 5);
+        project.getReferencePoints().add(null);
+
+        String json = shared.toJson(project);
+        assertFalse(json.contains("Рп-"));
+        assertEquals(embedded.toJson(project), embedded.toJson(shared.fromJson(json, Project.class)));
+        // Пункты, записанные целиком прежними версиями, читаются как есть
+        assertEquals(embedded.toJson(project),
+                embedded.toJson(shared.fromJson(embedded.toJson(project), Project.class)));
+    }
+
+    @Test
+    public void unreferencedPointsAreRemoved() throws IOException {
+        ReferencePointCatalog catalog = open();
+        int kept = catalog.intern("Рп-1", 1, 1);
+        int removed = catalog.intern("Рп-2", 2, 2);
+        assertEquals(1, catalog.retain(ref -> ref == kept));
+        assertEquals(-1, catalog.find("Рп-2", 2, 2));
+        assertEquals(1, open().size());
+        // Удаленный пункт добавляется заново под новой ссылкой
+        assertNotEquals(removed, catalog.intern("Рп-2", 2, 2));
+    }
+
+    @Test
+    public void sharedPointsShrinkStorage() throws IOException {
+        Gson embedded = JsonCodec.gson();
+        ReferencePointCatalog catalog = open();
+        long embeddedBytes = 0;
+        long sharedBytes = 0;
+        // 400 проектов по 30 пунктов из каталога в 300 пунктов
+        for (int id = 1; id <= 400; id++) {
+            Project project = project(id, 30, id * 13);
+            embeddedBytes += embedded.toJson(project).getBytes(StandardCharsets.UTF_8).length;
+            sharedBytes += catalog.gson().toJson(project).getBytes(StandardCharsets.UTF_8).length;
+        }
+        assertEquals(300, catalog.size());
+        long catalogBytes = new File(dir, "reference_points.log").length();
+        System.out.println("Пункты встроены: " + embeddedBytes + " байт, ссылки на каталог: " + sharedBytes
+                + " байт + каталог " + catalogBytes + " байт");
+        assertTrue(sharedBytes + catalogBytes < embeddedBytes * 2 / 3);
+    }
+}
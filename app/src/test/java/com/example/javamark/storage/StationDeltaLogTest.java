@@ -0,0 +1,200 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.StationMeasurement;
+import com.example.javamark.model.TheodoliteJournal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Файл изменений станций: запись с неверной контрольной суммой и все следующие за ней
+ * отбрасываются, изменения чужого снимка удаляются, а накопившиеся изменения
+ * сворачиваются в новый снимок, после чего файл начинается заново
+ */
+public class StationDeltaLogTest {
+    private static final byte[] SNAPSHOT = "{\"name\":\"journal\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEXT_SNAPSHOT = "{\"name\":\"journal 2\"}".getBytes(StandardCharsets.UTF_8);
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("delta-log").toFile();
+        file = new File(dir, "1.delta");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        GroupCommit.commit();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static StationMeasurement station(int number) {
+        StationMeasurement station = new StationMeasurement(number, number, number + 1);
+        station.setDistance(number * 10.0);
+        return station;
+    }
+
+    private static TheodoliteJournal.StationChange update(int position, int number) {
+        return new TheodoliteJournal.StationChange(TheodoliteJournal.StationChange.UPDATE, position, station(number));
+    }
+
+    private static List<Integer> numbers(List<StationMeasurement> stations) {
+        List<Integer> numbers = new ArrayList<>();
+        for (StationMeasurement station : stations) {
+            numbers.add(station.getStationNumber());
+        }
+        return numbers;
+    }
+
+    private static List<StationMeasurement> stations(int count) {
+        List<StationMeasurement> stations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            stations.add(station(i));
+        }
+        return stations;
+    }
+
+    @Test
+    public void entryWithWrongChecksumEndsTheLog() throws IOException {
+        long checksum = StationDeltaLog.checksum(SNAPSHOT);
+        StationDeltaLog.append(file, checksum, Collections.singletonList(update(0, 100)));
+        long first = file.length();
+        StationDeltaLog.append(file, checksum, Collections.singletonList(update(1, 101)));
+        StationDeltaLog.append(file, checksum, Collections.singletonList(update(2, 102)));
+        GroupCommit.commit();
+
+        // Портим последний байт второй записи: ее длина цела, а данные нет
+        long second = first + (file.length() - first) / 2;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(second - 1);
+            byte value = raf.readByte();
+            raf.seek(second - 1);
+            raf.writeByte(value ^ 0x5A);
+        }
+
+        List<TheodoliteJournal.StationChange> changes = StationDeltaLog.read(file, checksum);
+        assertEquals(1, changes.size());
+        assertEquals(100, changes.get(0).getStation().getStationNumber());
+
+        // Следующее дописывание отрезает поврежденный хвост, иначе новые изменения были бы не видны
+        StationDeltaLog.append(file, checksum, Collections.singletonList(update(3, 103)));
+        changes = StationDeltaLog.read(file, checksum);
+        assertEquals(2, changes.size());
+        assertEquals(103, changes.get(1).getStation().getStationNumber());
+
+        List<StationMeasurement> measurements = stations(5);
+        StationDeltaLog.apply(measurements, changes);
+        assertEquals(Arrays.asList(100, 1, 2, 103, 4), numbers(measurements));
+    }
+
+    @Test
+    public void truncatedLastEntryIsDropped() throws IOException {
+        long checksum = StationDeltaLog.checksum(SNAPSHOT);
+        StationDeltaLog.append(file, checksum, Collections.singletonList(update(0, 100)));
+        long length = StationDeltaLog.append(file, checksum, Collections.singletonList(update(1, 101)));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length - 3);
+        }
+        assertEquals(1, StationDeltaLog.read(file, checksum).size());
+    }
+
+    @Test
+    public void staleLogIsDeletedAndNotApplied() throws IOException {
+        long checksum = StationDeltaLog.checksum(SNAPSHOT);
+        long next = StationDeltaLog.checksum(NEXT_SNAPSHOT);
+        StationDeltaLog.append(file, checksum, Collections.singletonList(update(0, 100)));
+
+        // Изменения текущего снимка не удаляются
+        StationDeltaLog.deleteStale(file, checksum);
+        assertTrue(file.exists());
+        assertEquals(1, StationDeltaLog.read(file, checksum).size());
+
+        // Снимок переписан, а файл изменений остался: к новому снимку изменения не применяются
+        assertEquals(0, StationDeltaLog.length(file, next));
+        assertTrue(StationDeltaLog.read(file, next).isEmpty());
+        StationDeltaLog.deleteStale(file, next);
+        assertFalse(file.exists());
+
+        // Поврежденный заголовок — тоже чужой файл
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+        StationDeltaLog.deleteStale(file, checksum);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void logOfAnotherSnapshotStartsOver() throws IOException {
+        long checksum = StationDeltaLog.checksum(SNAPSHOT);
+        long next = StationDeltaLog.checksum(NEXT_SNAPSHOT);
+        StationDeltaLog.append(file, checksum, Collections.singletonList(update(0, 100)));
+        StationDeltaLog.append(file, next, Collections.singletonList(update(1, 101)));
+
+        assertTrue(StationDeltaLog.read(file, checksum).isEmpty());
+        List<TheodoliteJournal.StationChange> changes = StationDeltaLog.read(file, next);
+        assertEquals(1, changes.size());
+        assertEquals(101, changes.get(0).getStation().getStationNumber());
+    }
+
+    @Test
+    public void changesFoldOverIntoANewSnapshot() throws IOException {
+        List<StationMeasurement> measurements = stations(20);
+        byte[] snapshot = new byte[1024];
+        long checksum = StationDeltaLog.checksum(snapshot);
+        assertFalse(StationDeltaLog.shouldFold(file, checksum, snapshot.length));
+
+        List<StationMeasurement> expected = stations(20);
+        int appended = 0;
+        while (!StationDeltaLog.shouldFold(file, checksum, snapshot.length)) {
+            int position = appended % expected.size();
+            List<TheodoliteJournal.StationChange> changes = new ArrayList<>();
+            if (appended % 3 == 2) {
+                changes.add(new TheodoliteJournal.StationChange(TheodoliteJournal.StationChange.REMOVE, position, null));
+                expected.remove(position);
+            } else if (appended % 3 == 1) {
+                changes.add(new TheodoliteJournal.StationChange(
+                        TheodoliteJournal.StationChange.ADD, position, station(200 + appended)));
+                expected.add(position, station(200 + appended));
+            } else {
+                changes.add(update(position, 100 + appended));
+                expected.set(position, station(100 + appended));
+            }
+            StationDeltaLog.append(file, checksum, changes);
+            appended++;
+        }
+        assertTrue(appended > 1);
+        assertTrue(file.length() > snapshot.length / 2);
+
+        // Все накопленные изменения применяются к снимку в порядке записи
+        StationDeltaLog.apply(measurements, StationDeltaLog.read(file, checksum));
+        assertEquals(numbers(expected), numbers(measurements));
+
+        // После записи нового снимка прежние изменения удаляются, и файл растет заново
+        long folded = StationDeltaLog.checksum(NEXT_SNAPSHOT);
+        StationDeltaLog.deleteStale(file, folded);
+        assertFalse(file.exists());
+        assertFalse(StationDeltaLog.shouldFold(file, folded, snapshot.length));
+        StationDeltaLog.append(file, folded, Collections.singletonList(update(0, 300)));
+        assertFalse(StationDeltaLog.shouldFold(file, folded, snapshot.length));
+        assertEquals(1, StationDeltaLog.read(file, folded).size());
+    }
+}
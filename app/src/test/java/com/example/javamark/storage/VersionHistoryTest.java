@@ -0,0 +1,161 @@
+package com.example.javamark.storage;
+
+import com.example.javamark.model.CalculationResult;
+import com.example.javamark.model.Project;
+import com.example.javamark.model.ReferencePoint;
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * История версий: версии должны восстанавливаться без потерь, неизмененные пункты —
+ * храниться один раз, а сравнение — находить добавленные, удаленные и измененные пункты
+ */
+public class VersionHistoryTest {
+    private static final String[] LISTS = {"referencePoints", "result.directionalAngles"};
+
+    private final Gson gson = JsonCodec.gson();
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("version-history").toFile();
+        file = new File(dir, "1.history");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        dir.delete();
+    }
+
+    private static Project project(int points) {
+        Project project = new Project("Засечка");
+        project.setId(1);
+        project.setCreatedAt(new Date(1700000000000L));
+        project.setMaxAllowableError(0.05);
+        CalculationResult result = new CalculationResult();
+        for (int i = 0; i < points; i++) {
+            project.addReferencePoint(new ReferencePoint(i, "Пункт " + i, 5000 + i * 1.5, 7000 - i * 2.25, i % 360));
+            result.addDirectionalAngle(new CalculationResult.DirectionalAngle("Пункт " + i, i * 0.01));
+        }
+        result.setFinalX(5050.124);
+        project.setResult(result);
+        return project;
+    }
+
+    private int commit(Project project) throws IOException {
+        return VersionHistory.commit(file, VersionHistory.split(gson.toJsonTree(project).getAsJsonObject(), LISTS),
+                1700000000000L);
+    }
+
+    private Project restore(int number) throws IOException {
+        List<List<byte[]>> sequences = VersionHistory.read(file).sequences(number);
+        return gson.fromJson(VersionHistory.join(sequences, LISTS), Project.class);
+    }
+
+    @Test
+    public void versionsRestoreExactly() throws IOException {
+        Project project = project(20);
+        String[] saved = new String[10];
+        for (int v = 0; v < saved.length; v++) {
+            project.getReferencePoints().get(v).setBeta(100 + v);
+            project.setMaxAllowableError(0.01 * v);
+            assertEquals(v + 1, commit(project));
+            saved[v] = gson.toJson(project);
+        }
+
+        for (int v = 0; v < saved.length; v++) {
+            assertEquals(saved[v], gson.toJson(restore(v + 1)));
+        }
+        assertNull(VersionHistory.read(file).sequences(11));
+
+        // Сохранение без изменений не создает новую версию
+        assertEquals(10, commit(project));
+        assertEquals(10, VersionHistory.read(file).size());
+    }
+
+    @Test
+    public void projectWithoutResultRestores() throws IOException {
+        Project project = project(3);
+        project.setResult(null);
+        commit(project);
+        assertEquals(gson.toJson(project), gson.toJson(restore(1)));
+    }
+
+    @Test
+    public void hundredVersionsCostLittleMoreThanOne() throws IOException {
+        Project project = project(200);
+        commit(project);
+        long single = file.length();
+
+        for (int v = 1; v < 100; v++) {
+            ReferencePoint point = project.getReferencePoints().get(v * 13 % 200);
+            point.setBeta(point.getBeta() + 0.5);
+            commit(project);
+        }
+
+        assertEquals(100, VersionHistory.read(file).size());
+        System.out.println("История 200 пунктов: 1 версия — " + single + " байт, 100 версий — " + file.length());
+        assertTrue(file.length() < single * 2);
+    }
+
+    @Test
+    public void diffCountsAddedRemovedAndChangedPoints() throws IOException {
+        Project project = project(10);
+        commit(project);
+
+        project.getReferencePoints().add(5, new ReferencePoint(99, "Новый", 1, 2, 3));
+        project.getReferencePoints().remove(9);
+        project.getReferencePoints().get(1).setY(1.0);
+        project.getReferencePoints().get(2).setY(2.0);
+        commit(project);
+
+        VersionDiff diff = VersionHistory.read(file).diff(1, 2, 1);
+        assertEquals(1, diff.getAdded());
+        assertEquals(1, diff.getRemoved());
+        assertEquals(2, diff.getChanged());
+        assertFalse(diff.isMetadataChanged());
+
+        project.setName("Засечка 2");
+        commit(project);
+        VersionHistory history = VersionHistory.read(file);
+        assertTrue(history.diff(2, 3, 1).isMetadataChanged());
+        assertTrue(history.diff(3, 3, 1).isEmpty());
+        assertEquals(10, history.list(1).get(0).getItemCount());
+        assertEquals(3, history.list(1).get(0).getNumber());
+    }
+
+    @Test
+    public void tornTailIsDiscarded() throws IOException {
+        Project project = project(5);
+        commit(project);
+        project.getReferencePoints().get(0).setX(1.0);
+        commit(project);
+        long complete = file.length();
+
+        project.getReferencePoints().get(1).setX(2.0);
+        commit(project);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 3);
+        }
+        assertEquals(2, VersionHistory.read(file).size());
+
+        project.getReferencePoints().get(2).setX(3.0);
+        assertEquals(3, commit(project));
+        assertTrue(file.length() > complete);
+        assertEquals(gson.toJson(project), gson.toJson(restore(3)));
+    }
+}